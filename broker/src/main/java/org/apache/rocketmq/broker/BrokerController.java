@@ -42,6 +42,7 @@ import org.apache.rocketmq.broker.metrics.BrokerMetricsManager;
 import org.apache.rocketmq.broker.mqtrace.ConsumeMessageHook;
 import org.apache.rocketmq.broker.mqtrace.SendMessageHook;
 import org.apache.rocketmq.broker.offset.BroadcastOffsetManager;
+import org.apache.rocketmq.broker.offset.CompactConsumerOffsetManager;
 import org.apache.rocketmq.broker.offset.ConsumerOffsetManager;
 import org.apache.rocketmq.broker.offset.ConsumerOrderInfoManager;
 import org.apache.rocketmq.broker.offset.LmqConsumerOffsetManager;
@@ -110,6 +111,7 @@ import org.apache.rocketmq.remoting.protocol.NamespaceUtil;
 import org.apache.rocketmq.remoting.protocol.RemotingCommand;
 import org.apache.rocketmq.remoting.protocol.RequestCode;
 import org.apache.rocketmq.remoting.protocol.body.BrokerMemberGroup;
+import org.apache.rocketmq.remoting.protocol.body.RegisterBrokerDeltaBody;
 import org.apache.rocketmq.remoting.protocol.body.TopicConfigAndMappingSerializeWrapper;
 import org.apache.rocketmq.remoting.protocol.body.TopicConfigSerializeWrapper;
 import org.apache.rocketmq.remoting.protocol.namesrv.RegisterBrokerResult;
@@ -270,6 +272,12 @@ public class BrokerController {
     private BrokerMetricsManager brokerMetricsManager;
     private ColdDataPullRequestHoldService coldDataPullRequestHoldService;
     private ColdDataCgCtrService coldDataCgCtrService;
+    /**
+     * Topic configs and data version of the last registration, the base of delta registrations. Guarded by
+     * {@link #registerBrokerAll}.
+     */
+    private Map<String, TopicConfig> registeredTopicConfigTable;
+    private DataVersion registeredDataVersion;
 
     public BrokerController(
         final BrokerConfig brokerConfig,
@@ -301,7 +309,13 @@ public class BrokerController {
         this.messageStoreConfig = messageStoreConfig;
         this.setStoreHost(new InetSocketAddress(this.getBrokerConfig().getBrokerIP1(), getListenPort()));
         this.brokerStatsManager = messageStoreConfig.isEnableLmq() ? new LmqBrokerStatsManager(this.brokerConfig.getBrokerClusterName(), this.brokerConfig.isEnableDetailStat()) : new BrokerStatsManager(this.brokerConfig.getBrokerClusterName(), this.brokerConfig.isEnableDetailStat());
-        this.consumerOffsetManager = messageStoreConfig.isEnableLmq() ? new LmqConsumerOffsetManager(this) : new ConsumerOffsetManager(this);
+        if (messageStoreConfig.isEnableLmq()) {
+            this.consumerOffsetManager = new LmqConsumerOffsetManager(this);
+        } else if (brokerConfig.isEnableCompactConsumerOffset()) {
+            this.consumerOffsetManager = new CompactConsumerOffsetManager(this);
+        } else {
+            this.consumerOffsetManager = new ConsumerOffsetManager(this);
+        }
         this.broadcastOffsetManager = new BroadcastOffsetManager(this);
         this.topicConfigManager = messageStoreConfig.isEnableLmq() ? new LmqTopicConfigManager(this) : new TopicConfigManager(this);
         this.topicQueueMappingManager = new TopicQueueMappingManager(this);
@@ -1383,7 +1397,7 @@ public class BrokerController {
             this.adminBrokerExecutor.shutdown();
         }
 
-        this.consumerOffsetManager.persist();
+        this.consumerOffsetManager.shutdown();
 
         if (this.brokerFastFailure != null) {
             this.brokerFastFailure.shutdown();
@@ -1751,8 +1765,72 @@ public class BrokerController {
             this.brokerConfig.getBrokerId(),
             this.brokerConfig.getRegisterBrokerTimeoutMills(),
             this.brokerConfig.isInBrokerContainer())) {
-            doRegisterBrokerAll(checkOrderConfig, oneway, topicConfigWrapper);
+            if (this.brokerConfig.isEnableDeltaRegister()) {
+                doRegisterBrokerDelta(checkOrderConfig, oneway, topicConfigWrapper);
+            } else {
+                doRegisterBrokerAll(checkOrderConfig, oneway, topicConfigWrapper);
+            }
+        }
+    }
+
+    private void doRegisterBrokerDelta(boolean checkOrderConfig, boolean oneway,
+        TopicConfigAndMappingSerializeWrapper topicConfigWrapper) {
+        // pin the registered configs and their version, the live ones keep changing
+        DataVersion dataVersion = new DataVersion();
+        dataVersion.assignNewOne(topicConfigWrapper.getDataVersion());
+        ConcurrentMap<String, TopicConfig> topicConfigTable = new ConcurrentHashMap<>();
+        for (Map.Entry<String, TopicConfig> entry : topicConfigWrapper.getTopicConfigTable().entrySet()) {
+            topicConfigTable.put(entry.getKey(), new TopicConfig(entry.getValue()));
         }
+        topicConfigWrapper.setDataVersion(dataVersion);
+        topicConfigWrapper.setTopicConfigTable(topicConfigTable);
+
+        // a oneway registration could not fall back to all the configs, static topics are always registered in full
+        if (oneway || this.registeredDataVersion == null
+            || !topicConfigWrapper.getTopicQueueMappingInfoMap().isEmpty()) {
+            doRegisterBrokerAll(checkOrderConfig, oneway, topicConfigWrapper);
+        } else {
+            if (shutdown) {
+                BrokerController.LOG.info("BrokerController#doRegisterBrokerDelta: broker has shutdown, no need to register any more.");
+                return;
+            }
+            TopicConfigAndMappingSerializeWrapper changedTopicConfigWrapper = new TopicConfigAndMappingSerializeWrapper();
+            changedTopicConfigWrapper.setDataVersion(dataVersion);
+            for (Map.Entry<String, TopicConfig> entry : topicConfigTable.entrySet()) {
+                if (!entry.getValue().equals(this.registeredTopicConfigTable.get(entry.getKey()))) {
+                    changedTopicConfigWrapper.getTopicConfigTable().put(entry.getKey(), entry.getValue());
+                }
+            }
+            RegisterBrokerDeltaBody deltaBody = new RegisterBrokerDeltaBody();
+            deltaBody.setBaseDataVersion(this.registeredDataVersion);
+            deltaBody.setTopicConfigSerializeWrapper(changedTopicConfigWrapper);
+            for (String topic : this.registeredTopicConfigTable.keySet()) {
+                if (!topicConfigTable.containsKey(topic)) {
+                    deltaBody.getRemovedTopics().add(topic);
+                }
+            }
+
+            List<RegisterBrokerResult> registerBrokerResultList = this.brokerOuterAPI.registerBrokerDelta(
+                this.brokerConfig.getBrokerClusterName(),
+                this.getBrokerAddr(),
+                this.brokerConfig.getBrokerName(),
+                this.brokerConfig.getBrokerId(),
+                this.getHAServerAddr(),
+                deltaBody,
+                topicConfigWrapper,
+                Lists.newArrayList(),
+                this.brokerConfig.getRegisterBrokerTimeoutMills(),
+                this.brokerConfig.isEnableSlaveActingMaster(),
+                this.brokerConfig.isCompressedRegister(),
+                this.brokerConfig.isEnableSlaveActingMaster() ? this.brokerConfig.getBrokerNotActiveTimeoutMillis() : null,
+                this.getBrokerIdentity());
+
+            handleRegisterBrokerResult(registerBrokerResultList, checkOrderConfig);
+        }
+
+        // a name server that missed this registration requires all the configs next time
+        this.registeredTopicConfigTable = topicConfigTable;
+        this.registeredDataVersion = dataVersion;
     }
 
     protected void doRegisterBrokerAll(boolean checkOrderConfig, boolean oneway,
@@ -43,6 +43,10 @@ public class BrokerPathConfigHelper {
         return rootDir + File.separator + "config" + File.separator + "consumerOffset.json";
     }
 
+    public static String getConsumerOffsetLogPath(final String rootDir) {
+        return rootDir + File.separator + "config" + File.separator + "consumerOffset.log";
+    }
+
     public static String getLmqConsumerOffsetPath(final String rootDir) {
         return rootDir + File.separator + "config" + File.separator + "lmqConsumerOffset.json";
     }
@@ -0,0 +1,589 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.broker.offset;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.BiPredicate;
+import org.apache.rocketmq.broker.BrokerController;
+import org.apache.rocketmq.broker.BrokerPathConfigHelper;
+import org.apache.rocketmq.common.MixAll;
+import org.apache.rocketmq.common.constant.LoggerName;
+import org.apache.rocketmq.logging.org.slf4j.Logger;
+import org.apache.rocketmq.logging.org.slf4j.LoggerFactory;
+import org.apache.rocketmq.remoting.protocol.DataVersion;
+
+/**
+ * Consumer offset manager that keeps the offsets of each interned topic@group in a primitive long array indexed by
+ * queue id, instead of a map of boxed values.
+ * <p>
+ * Persisting only appends the entries changed since the last round to {@code consumerOffset.log}. The log is rewritten
+ * as a snapshot on the first persist after start, whenever it grows beyond {@code consumerOffsetLogCompactSize} and on
+ * shutdown. The json file is refreshed at the same time, so the mode can be switched off after a clean shutdown; after
+ * a crash the json file lacks the offsets committed since the last snapshot.
+ */
+public class CompactConsumerOffsetManager extends ConsumerOffsetManager {
+    private static final Logger LOG = LoggerFactory.getLogger(LoggerName.BROKER_LOGGER_NAME);
+
+    private static final int LOG_MAGIC = 0x52434F4C;
+    private static final int LOG_VERSION = 1;
+    private static final byte RECORD_KEY = 1;
+    private static final byte RECORD_OFFSET = 2;
+    private static final byte RECORD_REMOVE = 3;
+    private static final byte RECORD_DATA_VERSION = 4;
+
+    private final ConcurrentMap<String/* topic@group */, QueueOffsetTable> compactTable = new ConcurrentHashMap<>(512);
+
+    private final AtomicInteger keyIdGenerator = new AtomicInteger(0);
+
+    private final Queue<Integer> removedKeyIds = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Size of the log, -1 means a snapshot must be written on the next persist.
+     */
+    private long logSize = -1;
+
+    private long snapshotSize = 0;
+
+    public CompactConsumerOffsetManager(BrokerController brokerController) {
+        super(brokerController);
+    }
+
+    @Override
+    protected void commitOffset(final String clientHost, final String key, final int queueId, final long offset) {
+        if (queueId < 0) {
+            LOG.warn("Illegal queueId when committing offset. clientHost={}, key={}, queueId={}", clientHost, key, queueId);
+            return;
+        }
+        long storeOffset = getOrCreateTable(key).put(queueId, offset);
+        if (storeOffset >= 0 && offset < storeOffset) {
+            LOG.warn("[NOTIFYME]update consumer offset less than store. clientHost={}, key={}, queueId={}, requestOffset={}, storeOffset={}", clientHost, key, queueId, offset, storeOffset);
+        }
+        increaseDataVersionIfNeeded();
+    }
+
+    @Override
+    public long queryOffset(final String group, final String topic, final int queueId) {
+        // topic@group
+        String key = topic + TOPIC_GROUP_SEPARATOR + group;
+
+        if (this.brokerController.getBrokerConfig().isUseServerSideResetOffset()) {
+            Map<Integer, Long> reset = resetOffsetTable.get(key);
+            if (null != reset) {
+                Long offset = reset.get(queueId);
+                if (offset != null) {
+                    return offset;
+                }
+            }
+        }
+
+        QueueOffsetTable table = this.compactTable.get(key);
+        return table != null ? table.get(queueId) : -1L;
+    }
+
+    @Override
+    public Map<Integer, Long> queryOffset(final String group, final String topic) {
+        QueueOffsetTable table = this.compactTable.get(topic + TOPIC_GROUP_SEPARATOR + group);
+        return table != null ? table.toMap() : null;
+    }
+
+    @Override
+    public void cloneOffset(final String srcGroup, final String destGroup, final String topic) {
+        QueueOffsetTable src = this.compactTable.get(topic + TOPIC_GROUP_SEPARATOR + srcGroup);
+        if (src != null) {
+            String destKey = topic + TOPIC_GROUP_SEPARATOR + destGroup;
+            removeKey(destKey);
+            putAll(destKey, src.toMap());
+        }
+    }
+
+    @Override
+    public void assignResetOffset(String topic, String group, int queueId, long offset) {
+        super.assignResetOffset(topic, group, queueId, offset);
+        QueueOffsetTable table = this.compactTable.get(topic + TOPIC_GROUP_SEPARATOR + group);
+        if (null != table && queueId >= 0 && offset >= 0) {
+            table.put(queueId, offset);
+        }
+    }
+
+    @Override
+    public void cleanOffset(String group) {
+        removeIf((topic, g) -> group.equals(g), "Clean group's offset, {}");
+    }
+
+    @Override
+    public void cleanOffsetByTopic(String topic) {
+        removeIf((t, group) -> topic.equals(t), "Clean topic's offset, {}");
+    }
+
+    @Override
+    public void removeOffset(final String group) {
+        removeIf((topic, g) -> group.equals(g), "clean group offset {}");
+    }
+
+    @Override
+    public void scanUnsubscribedTopic() {
+        removeIf((topic, group) -> null == brokerController.getConsumerManager().findSubscriptionData(group, topic)
+            && this.offsetBehindMuchThanData(topic, this.compactTable.get(topic + TOPIC_GROUP_SEPARATOR + group)),
+            "remove topic offset, {}");
+    }
+
+    private boolean offsetBehindMuchThanData(final String topic, final QueueOffsetTable table) {
+        if (table == null) {
+            return false;
+        }
+        boolean result = false;
+        AtomicLongArray offsets = table.offsets;
+        for (int queueId = 0; queueId < offsets.length(); queueId++) {
+            long offsetInPersist = offsets.get(queueId);
+            if (offsetInPersist < 0) {
+                continue;
+            }
+            long minOffsetInStore = this.brokerController.getMessageStore().getMinOffsetInQueue(topic, queueId);
+            if (offsetInPersist > minOffsetInStore) {
+                return false;
+            }
+            result = true;
+        }
+        return result;
+    }
+
+    @Override
+    public Set<String> whichTopicByConsumer(final String group) {
+        Set<String> topics = new HashSet<>();
+        for (String topicAtGroup : this.compactTable.keySet()) {
+            String[] arrays = topicAtGroup.split(TOPIC_GROUP_SEPARATOR);
+            if (arrays.length == 2 && group.equals(arrays[1])) {
+                topics.add(arrays[0]);
+            }
+        }
+        return topics;
+    }
+
+    @Override
+    public Set<String> whichGroupByTopic(final String topic) {
+        Set<String> groups = new HashSet<>();
+        for (String topicAtGroup : this.compactTable.keySet()) {
+            String[] arrays = topicAtGroup.split(TOPIC_GROUP_SEPARATOR);
+            if (arrays.length == 2 && topic.equals(arrays[0])) {
+                groups.add(arrays[1]);
+            }
+        }
+        return groups;
+    }
+
+    @Override
+    public Map<String, Set<String>> getGroupTopicMap() {
+        Map<String, Set<String>> retMap = new HashMap<>(128);
+        for (String topicAtGroup : this.compactTable.keySet()) {
+            String[] arrays = topicAtGroup.split(TOPIC_GROUP_SEPARATOR);
+            if (arrays.length == 2) {
+                retMap.computeIfAbsent(arrays[1], k -> new HashSet<>(8)).add(arrays[0]);
+            }
+        }
+        return retMap;
+    }
+
+    /**
+     * Materialize the offsets as a map, the returned map is a snapshot and changes to it are not reflected back.
+     */
+    @Override
+    public ConcurrentMap<String, ConcurrentMap<Integer, Long>> getOffsetTable() {
+        ConcurrentMap<String, ConcurrentMap<Integer, Long>> snapshot = new ConcurrentHashMap<>(this.compactTable.size());
+        for (Entry<String, QueueOffsetTable> entry : this.compactTable.entrySet()) {
+            snapshot.put(entry.getKey(), new ConcurrentHashMap<>(entry.getValue().toMap()));
+        }
+        return snapshot;
+    }
+
+    @Override
+    public void setOffsetTable(ConcurrentMap<String, ConcurrentMap<Integer, Long>> offsetTable) {
+        for (String key : this.compactTable.keySet()) {
+            removeKey(key);
+        }
+        putAllOffsets(offsetTable);
+    }
+
+    @Override
+    public void putAllOffsets(ConcurrentMap<String, ConcurrentMap<Integer, Long>> offsets) {
+        for (Entry<String, ConcurrentMap<Integer, Long>> entry : offsets.entrySet()) {
+            putAll(entry.getKey(), entry.getValue());
+        }
+    }
+
+    public String logFilePath() {
+        return BrokerPathConfigHelper.getConsumerOffsetLogPath(this.brokerController.getMessageStoreConfig().getStorePathRootDir());
+    }
+
+    @Override
+    public boolean load() {
+        File logFile = new File(logFilePath());
+        File jsonFile = new File(configFilePath());
+        // the json file is newer if this mode was switched off for a while
+        if (!logFile.exists() || jsonFile.lastModified() > logFile.lastModified()) {
+            return super.load();
+        }
+        try {
+            replay(logFile);
+            LOG.info("load {} OK, {} topic@group", logFile, this.compactTable.size());
+            return true;
+        } catch (IOException e) {
+            LOG.error("load {} failed, and try to load json file", logFile, e);
+            return super.load();
+        }
+    }
+
+    @Override
+    public synchronized void persist() {
+        try {
+            long compactSize = Math.max(this.brokerController.getBrokerConfig().getConsumerOffsetLogCompactSize(), 2 * this.snapshotSize);
+            if (this.logSize < 0 || this.logSize > compactSize) {
+                compact();
+            } else {
+                appendDirty();
+            }
+        } catch (IOException e) {
+            LOG.error("persist consumer offset log {} failed", logFilePath(), e);
+            this.logSize = -1;
+        }
+    }
+
+    /**
+     * Write a snapshot, which also refreshes the json file in case the mode is switched off on the next start.
+     */
+    @Override
+    public synchronized void shutdown() {
+        try {
+            compact();
+        } catch (IOException e) {
+            LOG.error("persist consumer offset log {} failed", logFilePath(), e);
+            this.logSize = -1;
+        }
+    }
+
+    private void appendDirty() throws IOException {
+        File logFile = new File(logFilePath());
+        try (FileOutputStream fileStream = new FileOutputStream(logFile, true)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileStream));
+            Integer removedId;
+            while ((removedId = this.removedKeyIds.poll()) != null) {
+                out.writeByte(RECORD_REMOVE);
+                out.writeInt(removedId);
+            }
+            for (QueueOffsetTable table : this.compactTable.values()) {
+                if (!table.keyPersisted) {
+                    writeKey(out, table);
+                }
+                writeDirtyOffsets(out, table);
+            }
+            writeDataVersion(out);
+            out.flush();
+            fileStream.getFD().sync();
+            this.logSize = fileStream.getChannel().size();
+        }
+    }
+
+    private void compact() throws IOException {
+        // refresh json before the log, so that the json file never looks newer than the log
+        String jsonString = this.encode(true);
+        MixAll.string2File(jsonString, configFilePath());
+
+        // removals before the snapshot are covered by it
+        this.removedKeyIds.clear();
+
+        File logFile = new File(logFilePath());
+        File tmpFile = new File(logFilePath() + ".tmp");
+        try (FileOutputStream fileStream = new FileOutputStream(tmpFile, false)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileStream));
+            out.writeInt(LOG_MAGIC);
+            out.writeInt(LOG_VERSION);
+            for (QueueOffsetTable table : this.compactTable.values()) {
+                table.clearDirty();
+                writeKey(out, table);
+                AtomicLongArray offsets = table.offsets;
+                for (int queueId = 0; queueId < offsets.length(); queueId++) {
+                    long offset = offsets.get(queueId);
+                    if (offset >= 0) {
+                        writeOffset(out, table.id, queueId, offset);
+                    }
+                }
+            }
+            writeDataVersion(out);
+            out.flush();
+            fileStream.getFD().sync();
+        }
+        Files.move(tmpFile.toPath(), logFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        this.snapshotSize = logFile.length();
+        this.logSize = this.snapshotSize;
+        LOG.info("compact consumer offset log {}, size={}", logFile, this.snapshotSize);
+    }
+
+    private void replay(File logFile) throws IOException {
+        Map<Integer, QueueOffsetTable> tables = new HashMap<>();
+        int maxId = -1;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(logFile)))) {
+            if (in.readInt() != LOG_MAGIC || in.readInt() != LOG_VERSION) {
+                throw new IOException("Unrecognized consumer offset log " + logFile);
+            }
+            while (true) {
+                byte type;
+                try {
+                    type = in.readByte();
+                } catch (EOFException e) {
+                    break;
+                }
+                try {
+                    switch (type) {
+                        case RECORD_KEY: {
+                            int id = in.readInt();
+                            String key = in.readUTF();
+                            QueueOffsetTable table = new QueueOffsetTable(id, key);
+                            table.keyPersisted = true;
+                            tables.put(id, table);
+                            this.compactTable.put(key, table);
+                            maxId = Math.max(maxId, id);
+                            break;
+                        }
+                        case RECORD_OFFSET: {
+                            QueueOffsetTable table = tables.get(in.readInt());
+                            int queueId = in.readInt();
+                            long offset = in.readLong();
+                            if (table != null) {
+                                table.put(queueId, offset);
+                            }
+                            break;
+                        }
+                        case RECORD_REMOVE: {
+                            QueueOffsetTable table = tables.remove(in.readInt());
+                            if (table != null) {
+                                this.compactTable.remove(table.key, table);
+                            }
+                            break;
+                        }
+                        case RECORD_DATA_VERSION:
+                            this.getDataVersion().assignNewOne(DataVersion.fromJson(in.readUTF(), DataVersion.class));
+                            break;
+                        default:
+                            throw new IOException("Unknown record type " + type + " in " + logFile);
+                    }
+                } catch (EOFException e) {
+                    // the last append was interrupted, everything before it is intact
+                    LOG.warn("Truncated record at the tail of {}", logFile);
+                    break;
+                }
+            }
+        }
+        this.keyIdGenerator.set(maxId + 1);
+    }
+
+    private void writeKey(DataOutputStream out, QueueOffsetTable table) throws IOException {
+        out.writeByte(RECORD_KEY);
+        out.writeInt(table.id);
+        out.writeUTF(table.key);
+        table.keyPersisted = true;
+    }
+
+    private void writeDirtyOffsets(DataOutputStream out, QueueOffsetTable table) throws IOException {
+        AtomicLongArray bits = table.dirty;
+        for (int word = 0; word < bits.length(); word++) {
+            long dirtyWord = bits.get(word) == 0 ? 0 : bits.getAndSet(word, 0);
+            while (dirtyWord != 0) {
+                int queueId = (word << 6) | Long.numberOfTrailingZeros(dirtyWord);
+                dirtyWord &= dirtyWord - 1;
+                writeOffset(out, table.id, queueId, table.get(queueId));
+            }
+        }
+    }
+
+    private void writeOffset(DataOutputStream out, int id, int queueId, long offset) throws IOException {
+        out.writeByte(RECORD_OFFSET);
+        out.writeInt(id);
+        out.writeInt(queueId);
+        out.writeLong(offset);
+    }
+
+    private void writeDataVersion(DataOutputStream out) throws IOException {
+        out.writeByte(RECORD_DATA_VERSION);
+        out.writeUTF(this.getDataVersion().toJson());
+    }
+
+    private QueueOffsetTable getOrCreateTable(final String key) {
+        QueueOffsetTable table = this.compactTable.get(key);
+        if (table == null) {
+            table = this.compactTable.computeIfAbsent(key, k -> new QueueOffsetTable(this.keyIdGenerator.getAndIncrement(), k));
+        }
+        return table;
+    }
+
+    private void putAll(final String key, final Map<Integer, Long> offsets) {
+        QueueOffsetTable table = getOrCreateTable(key);
+        for (Entry<Integer, Long> entry : offsets.entrySet()) {
+            if (entry.getKey() >= 0 && entry.getValue() != null) {
+                table.put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private void removeKey(final String key) {
+        QueueOffsetTable table = this.compactTable.remove(key);
+        if (table != null) {
+            this.removedKeyIds.add(table.id);
+        }
+    }
+
+    private void removeIf(final BiPredicate<String/* topic */, String/* group */> filter, final String logFormat) {
+        Iterator<Entry<String, QueueOffsetTable>> it = this.compactTable.entrySet().iterator();
+        while (it.hasNext()) {
+            Entry<String, QueueOffsetTable> next = it.next();
+            String topicAtGroup = next.getKey();
+            String[] arrays = topicAtGroup.split(TOPIC_GROUP_SEPARATOR);
+            if (arrays.length == 2 && filter.test(arrays[0], arrays[1])) {
+                it.remove();
+                this.removedKeyIds.add(next.getValue().id);
+                LOG.warn(logFormat, topicAtGroup);
+            }
+        }
+    }
+
+    /**
+     * Offsets of one topic@group, indexed by queue id, -1 means no offset. Writers never block each other, the
+     * arrays are only replaced under the monitor when a larger queue id shows up.
+     */
+    static final class QueueOffsetTable {
+        private static final int INITIAL_CAPACITY = 8;
+
+        private final int id;
+        private final String key;
+        private volatile AtomicLongArray offsets;
+        /**
+         * Bitmap of queue ids changed since the last persist.
+         */
+        private volatile AtomicLongArray dirty;
+        /**
+         * Only accessed by the persisting thread.
+         */
+        private boolean keyPersisted = false;
+
+        QueueOffsetTable(int id, String key) {
+            this.id = id;
+            this.key = key;
+            this.offsets = newOffsets(INITIAL_CAPACITY);
+            this.dirty = new AtomicLongArray(1);
+        }
+
+        long get(int queueId) {
+            AtomicLongArray current = this.offsets;
+            return queueId >= 0 && queueId < current.length() ? current.get(queueId) : -1L;
+        }
+
+        long put(int queueId, long offset) {
+            AtomicLongArray current;
+            long previous;
+            do {
+                current = ensureCapacity(queueId);
+                previous = current.getAndSet(queueId, offset);
+                // retry if the array was replaced concurrently, the write may have missed the copy
+            } while (current != this.offsets);
+
+            AtomicLongArray bits;
+            do {
+                bits = this.dirty;
+                int word = queueId >>> 6;
+                long mask = 1L << (queueId & 63);
+                long value;
+                do {
+                    value = bits.get(word);
+                } while ((value & mask) == 0 && !bits.compareAndSet(word, value, value | mask));
+            } while (bits != this.dirty);
+            return previous;
+        }
+
+        void clearDirty() {
+            AtomicLongArray bits = this.dirty;
+            for (int i = 0; i < bits.length(); i++) {
+                bits.set(i, 0);
+            }
+        }
+
+        Map<Integer, Long> toMap() {
+            AtomicLongArray current = this.offsets;
+            Map<Integer, Long> map = new HashMap<>();
+            for (int queueId = 0; queueId < current.length(); queueId++) {
+                long offset = current.get(queueId);
+                if (offset >= 0) {
+                    map.put(queueId, offset);
+                }
+            }
+            return map;
+        }
+
+        private AtomicLongArray ensureCapacity(int queueId) {
+            AtomicLongArray current = this.offsets;
+            if (queueId < current.length()) {
+                return current;
+            }
+            synchronized (this) {
+                current = this.offsets;
+                if (queueId >= current.length()) {
+                    int capacity = Math.max(queueId + 1, current.length() * 2);
+                    AtomicLongArray grown = newOffsets(capacity);
+                    for (int i = 0; i < current.length(); i++) {
+                        grown.set(i, current.get(i));
+                    }
+                    AtomicLongArray currentDirty = this.dirty;
+                    AtomicLongArray grownDirty = new AtomicLongArray((capacity + 63) >>> 6);
+                    for (int i = 0; i < currentDirty.length(); i++) {
+                        grownDirty.set(i, currentDirty.get(i));
+                    }
+                    // dirty first, a reader seeing the new offsets always sees a large enough bitmap
+                    this.dirty = grownDirty;
+                    this.offsets = grown;
+                }
+                return this.offsets;
+            }
+        }
+
+        private static AtomicLongArray newOffsets(int capacity) {
+            AtomicLongArray array = new AtomicLongArray(capacity);
+            for (int i = 0; i < capacity; i++) {
+                array.set(i, -1L);
+            }
+            return array;
+        }
+    }
+}
@@ -28,6 +28,7 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.rocketmq.broker.latency.BrokerFixedThreadPoolExecutor;
 import org.apache.rocketmq.client.consumer.PullResult;
@@ -87,6 +88,7 @@ import org.apache.rocketmq.remoting.protocol.body.LockBatchRequestBody;
 import org.apache.rocketmq.remoting.protocol.body.LockBatchResponseBody;
 import org.apache.rocketmq.remoting.protocol.body.MessageRequestModeSerializeWrapper;
 import org.apache.rocketmq.remoting.protocol.body.RegisterBrokerBody;
+import org.apache.rocketmq.remoting.protocol.body.RegisterBrokerDeltaBody;
 import org.apache.rocketmq.remoting.protocol.body.SubscriptionGroupWrapper;
 import org.apache.rocketmq.remoting.protocol.body.SyncStateSet;
 import org.apache.rocketmq.remoting.protocol.body.TopicConfigAndMappingSerializeWrapper;
@@ -477,22 +479,10 @@ public class BrokerOuterAPI {
         List<String> nameServerAddressList = this.remotingClient.getAvailableNameSrvList();
         if (nameServerAddressList != null && nameServerAddressList.size() > 0) {
 
-            final RegisterBrokerRequestHeader requestHeader = new RegisterBrokerRequestHeader();
-            requestHeader.setBrokerAddr(brokerAddr);
-            requestHeader.setBrokerId(brokerId);
-            requestHeader.setBrokerName(brokerName);
-            requestHeader.setClusterName(clusterName);
-            requestHeader.setHaServerAddr(haServerAddr);
-            requestHeader.setEnableActingMaster(enableActingMaster);
-            requestHeader.setCompressed(false);
-            if (heartbeatTimeoutMillis != null) {
-                requestHeader.setHeartbeatTimeoutMillis(heartbeatTimeoutMillis);
-            }
+            final RegisterBrokerRequestHeader requestHeader = buildRegisterBrokerRequestHeader(clusterName, brokerAddr,
+                brokerName, brokerId, haServerAddr, enableActingMaster, heartbeatTimeoutMillis);
 
-            RegisterBrokerBody requestBody = new RegisterBrokerBody();
-            requestBody.setTopicConfigSerializeWrapper(TopicConfigAndMappingSerializeWrapper.from(topicConfigWrapper));
-            requestBody.setFilterServerList(filterServerList);
-            final byte[] body = requestBody.encode(compressed);
+            final byte[] body = encodeRegisterBrokerBody(topicConfigWrapper, filterServerList, compressed);
             final int bodyCrc32 = UtilAll.crc32(body);
             requestHeader.setBodyCrc32(bodyCrc32);
             final CountDownLatch countDownLatch = new CountDownLatch(nameServerAddressList.size());
@@ -501,7 +491,7 @@ public class BrokerOuterAPI {
                     @Override
                     public void run0() {
                         try {
-                            RegisterBrokerResult result = registerBroker(namesrvAddr, oneway, timeoutMills, requestHeader, body);
+                            RegisterBrokerResult result = registerBroker(namesrvAddr, RequestCode.REGISTER_BROKER, oneway, timeoutMills, requestHeader, body);
                             if (result != null) {
                                 registerBrokerResultList.add(result);
                             }
@@ -527,15 +517,122 @@ public class BrokerOuterAPI {
         return registerBrokerResultList;
     }
 
+    /**
+     * Registers the topic configs changed since the registration of the base data version of the delta. A name server
+     * not holding the base version, or not supporting delta registration, gets all the topic configs instead.
+     *
+     * @param topicConfigWrapper all the topic configs, only encoded if some name server requires them
+     */
+    public List<RegisterBrokerResult> registerBrokerDelta(
+        final String clusterName,
+        final String brokerAddr,
+        final String brokerName,
+        final long brokerId,
+        final String haServerAddr,
+        final RegisterBrokerDeltaBody deltaBody,
+        final TopicConfigSerializeWrapper topicConfigWrapper,
+        final List<String> filterServerList,
+        final int timeoutMills,
+        final boolean enableActingMaster,
+        final boolean compressed,
+        final Long heartbeatTimeoutMillis,
+        final BrokerIdentity brokerIdentity) {
+
+        final List<RegisterBrokerResult> registerBrokerResultList = new CopyOnWriteArrayList<>();
+        List<String> nameServerAddressList = this.remotingClient.getAvailableNameSrvList();
+        if (nameServerAddressList != null && nameServerAddressList.size() > 0) {
+            deltaBody.setFilterServerList(filterServerList);
+            final byte[] deltaBytes = deltaBody.encode();
+            final int deltaCrc32 = UtilAll.crc32(deltaBytes);
+            final AtomicReference<byte[]> fullBody = new AtomicReference<>();
+            final CountDownLatch countDownLatch = new CountDownLatch(nameServerAddressList.size());
+            for (final String namesrvAddr : nameServerAddressList) {
+                brokerOuterExecutor.execute(new AbstractBrokerRunnable(brokerIdentity) {
+                    @Override
+                    public void run0() {
+                        try {
+                            RegisterBrokerRequestHeader requestHeader = buildRegisterBrokerRequestHeader(clusterName,
+                                brokerAddr, brokerName, brokerId, haServerAddr, enableActingMaster, heartbeatTimeoutMillis);
+                            requestHeader.setBodyCrc32(deltaCrc32);
+                            RegisterBrokerResult result;
+                            try {
+                                result = registerBroker(namesrvAddr, RequestCode.REGISTER_BROKER_DELTA, false, timeoutMills, requestHeader, deltaBytes);
+                            } catch (MQBrokerException e) {
+                                if (e.getResponseCode() != ResponseCode.BROKER_FULL_REGISTER_REQUIRED
+                                    && e.getResponseCode() != ResponseCode.REQUEST_CODE_NOT_SUPPORTED) {
+                                    throw e;
+                                }
+                                LOGGER.info("Name server requires all topic configs, code: {}. TargetHost={}", e.getResponseCode(), namesrvAddr);
+                                byte[] body = fullBody.updateAndGet(current -> current != null ? current
+                                    : encodeRegisterBrokerBody(topicConfigWrapper, filterServerList, compressed));
+                                requestHeader.setBodyCrc32(UtilAll.crc32(body));
+                                result = registerBroker(namesrvAddr, RequestCode.REGISTER_BROKER, false, timeoutMills, requestHeader, body);
+                            }
+                            if (result != null) {
+                                registerBrokerResultList.add(result);
+                            }
+
+                            LOGGER.info("Registering changed topic configs to name server completed. TargetHost={}", namesrvAddr);
+                        } catch (Exception e) {
+                            LOGGER.error("Failed to register changed topic configs to name server. TargetHost={}", namesrvAddr, e);
+                        } finally {
+                            countDownLatch.countDown();
+                        }
+                    }
+                });
+            }
+
+            try {
+                if (!countDownLatch.await(timeoutMills, TimeUnit.MILLISECONDS)) {
+                    LOGGER.warn("Registration to one or more name servers does NOT complete within deadline. Timeout threshold: {}ms", timeoutMills);
+                }
+            } catch (InterruptedException ignore) {
+            }
+        }
+
+        return registerBrokerResultList;
+    }
+
+    private static RegisterBrokerRequestHeader buildRegisterBrokerRequestHeader(
+        final String clusterName,
+        final String brokerAddr,
+        final String brokerName,
+        final long brokerId,
+        final String haServerAddr,
+        final boolean enableActingMaster,
+        final Long heartbeatTimeoutMillis) {
+        final RegisterBrokerRequestHeader requestHeader = new RegisterBrokerRequestHeader();
+        requestHeader.setBrokerAddr(brokerAddr);
+        requestHeader.setBrokerId(brokerId);
+        requestHeader.setBrokerName(brokerName);
+        requestHeader.setClusterName(clusterName);
+        requestHeader.setHaServerAddr(haServerAddr);
+        requestHeader.setEnableActingMaster(enableActingMaster);
+        requestHeader.setCompressed(false);
+        if (heartbeatTimeoutMillis != null) {
+            requestHeader.setHeartbeatTimeoutMillis(heartbeatTimeoutMillis);
+        }
+        return requestHeader;
+    }
+
+    private static byte[] encodeRegisterBrokerBody(final TopicConfigSerializeWrapper topicConfigWrapper,
+        final List<String> filterServerList, final boolean compressed) {
+        RegisterBrokerBody requestBody = new RegisterBrokerBody();
+        requestBody.setTopicConfigSerializeWrapper(TopicConfigAndMappingSerializeWrapper.from(topicConfigWrapper));
+        requestBody.setFilterServerList(filterServerList);
+        return requestBody.encode(compressed);
+    }
+
     private RegisterBrokerResult registerBroker(
         final String namesrvAddr,
+        final int requestCode,
         final boolean oneway,
         final int timeoutMills,
         final RegisterBrokerRequestHeader requestHeader,
         final byte[] body
     ) throws RemotingCommandException, MQBrokerException, RemotingConnectException, RemotingSendRequestException, RemotingTimeoutException,
         InterruptedException {
-        RemotingCommand request = RemotingCommand.createRequestCommand(RequestCode.REGISTER_BROKER, requestHeader);
+        RemotingCommand request = RemotingCommand.createRequestCommand(requestCode, requestHeader);
         request.setBody(body);
 
         if (oneway) {
@@ -1342,12 +1439,7 @@ public class BrokerOuterAPI {
 
         if (PullStatus.FOUND == pullResult.getPullStatus()) {
             ByteBuffer byteBuffer = ByteBuffer.wrap(pullResult.getMessageBinary());
-            List<MessageExt> msgList = MessageDecoder.decodesBatch(
-                byteBuffer,
-                true,
-                true,
-                true
-            );
+            List<MessageExt> msgList = decodePulledMessages(byteBuffer, brokerName, queueId);
 
             // Currently batch messages are not supported
             for (MessageExt msg : msgList) {
@@ -1374,4 +1466,38 @@ public class BrokerOuterAPI {
         return pullResult;
     }
 
+    /**
+     * Decode the pulled messages with their bodies decompressed. A body that cannot be decompressed, like one
+     * compressed with a zstd dictionary the broker does not have, is kept compressed, and a message that cannot be
+     * decoded at all is skipped, instead of dropping the rest of the messages.
+     */
+    private List<MessageExt> decodePulledMessages(ByteBuffer byteBuffer, String brokerName, int queueId) {
+        List<MessageExt> msgList = new ArrayList<>();
+        while (byteBuffer.hasRemaining()) {
+            int position = byteBuffer.position();
+            int totalSize = byteBuffer.remaining() >= 4 ? byteBuffer.getInt(position) : 0;
+            MessageExt msgExt = MessageDecoder.decode(byteBuffer, true, true, true);
+            if (null == msgExt) {
+                byteBuffer.position(position);
+                msgExt = MessageDecoder.decode(byteBuffer, true, false, true);
+                if (null != msgExt) {
+                    LOGGER.warn("Keep the compressed body of message {} pulled from {}:{}, failed to decompress it",
+                        msgExt.getMsgId(), brokerName, queueId);
+                }
+            }
+            if (null == msgExt) {
+                if (totalSize <= 0 || totalSize > byteBuffer.limit() - position) {
+                    LOGGER.warn("Stop decoding messages pulled from {}:{} at {}, bad message size {}", brokerName,
+                        queueId, position, totalSize);
+                    break;
+                }
+                LOGGER.warn("Skip the message pulled from {}:{} at {}, failed to decode it", brokerName, queueId, position);
+                byteBuffer.position(position + totalSize);
+                continue;
+            }
+            msgList.add(msgExt);
+        }
+        return msgList;
+    }
+
 }
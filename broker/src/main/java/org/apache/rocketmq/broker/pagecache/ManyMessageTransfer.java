@@ -22,9 +22,14 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.WritableByteChannel;
 import java.util.List;
+import org.apache.rocketmq.remoting.protocol.RemotingCommand;
 import org.apache.rocketmq.store.GetMessageResult;
 
 public class ManyMessageTransfer extends AbstractReferenceCounted implements FileRegion {
+    /**
+     * The response the header was encoded from, kept for in-process channels which read the messages directly.
+     */
+    private final RemotingCommand response;
     private final ByteBuffer byteBufferHeader;
     private final GetMessageResult getMessageResult;
 
@@ -34,10 +39,24 @@ public class ManyMessageTransfer extends AbstractReferenceCounted implements Fil
     private long transferred;
 
     public ManyMessageTransfer(ByteBuffer byteBufferHeader, GetMessageResult getMessageResult) {
+        this(null, byteBufferHeader, getMessageResult);
+    }
+
+    public ManyMessageTransfer(RemotingCommand response, ByteBuffer byteBufferHeader,
+        GetMessageResult getMessageResult) {
+        this.response = response;
         this.byteBufferHeader = byteBufferHeader;
         this.getMessageResult = getMessageResult;
     }
 
+    public RemotingCommand getResponse() {
+        return response;
+    }
+
+    public GetMessageResult getGetMessageResult() {
+        return getMessageResult;
+    }
+
     @Override
     public long position() {
         int pos = byteBufferHeader.position();
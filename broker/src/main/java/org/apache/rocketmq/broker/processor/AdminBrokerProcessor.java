@@ -79,6 +79,9 @@ import org.apache.rocketmq.logging.org.slf4j.LoggerFactory;
 import org.apache.rocketmq.remoting.common.RemotingHelper;
 import org.apache.rocketmq.remoting.exception.RemotingCommandException;
 import org.apache.rocketmq.remoting.exception.RemotingTimeoutException;
+import org.apache.rocketmq.remoting.metrics.LatencyHistogram;
+import org.apache.rocketmq.remoting.metrics.RemotingMetricsManager;
+import org.apache.rocketmq.remoting.metrics.RpcStageLatencyStats;
 import org.apache.rocketmq.remoting.netty.NettyRemotingAbstract;
 import org.apache.rocketmq.remoting.netty.NettyRequestProcessor;
 import org.apache.rocketmq.remoting.protocol.LanguageCode;
@@ -2435,6 +2438,12 @@ public class AdminBrokerProcessor implements NettyRequestProcessor {
         runtimeInfo.put("EndTransactionThreadPoolQueueCapacity",
             String.valueOf(this.brokerController.getBrokerConfig().getEndTransactionPoolQueueCapacity()));
 
+        for (Map.Entry<Integer, LatencyHistogram.Snapshot[]> entry
+            : RemotingMetricsManager.RPC_STAGE_LATENCY_STATS.getLastWindow().entrySet()) {
+            runtimeInfo.put("rpcStageLatencyMicros_" + RemotingHelper.getRequestCodeDesc(entry.getKey()),
+                RpcStageLatencyStats.toString(entry.getValue()));
+        }
+
         return runtimeInfo;
     }
 
@@ -45,6 +45,7 @@ import org.apache.rocketmq.logging.org.slf4j.Logger;
 import org.apache.rocketmq.logging.org.slf4j.LoggerFactory;
 import org.apache.rocketmq.remoting.common.RemotingHelper;
 import org.apache.rocketmq.remoting.metrics.RemotingMetricsManager;
+import org.apache.rocketmq.remoting.metrics.RpcStageLatencyStats;
 import org.apache.rocketmq.remoting.protocol.RemotingCommand;
 import org.apache.rocketmq.remoting.protocol.ResponseCode;
 import org.apache.rocketmq.remoting.protocol.header.PullMessageRequestHeader;
@@ -150,8 +151,10 @@ public class DefaultPullMessageResultHandler implements PullMessageResultHandler
                         FileRegion fileRegion =
                             new ManyMessageTransfer(response.encodeHeader(getMessageResult.getBufferTotalSize()), getMessageResult);
                         RemotingCommand finalResponse = response;
+                        RemotingMetricsManager.recordRpcStage(request, RpcStageLatencyStats.Stage.AWAIT);
                         channel.writeAndFlush(fileRegion)
                             .addListener((ChannelFutureListener) future -> {
+                                RemotingMetricsManager.recordRpcStage(request, RpcStageLatencyStats.Stage.FLUSH);
                                 getMessageResult.release();
                                 Attributes attributes = RemotingMetricsManager.newAttributesBuilder()
                                     .put(LABEL_REQUEST_CODE, RemotingHelper.getRequestCodeDesc(request.getCode()))
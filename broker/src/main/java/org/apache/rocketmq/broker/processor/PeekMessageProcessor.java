@@ -41,6 +41,7 @@ import org.apache.rocketmq.logging.org.slf4j.LoggerFactory;
 import org.apache.rocketmq.remoting.common.RemotingHelper;
 import org.apache.rocketmq.remoting.exception.RemotingCommandException;
 import org.apache.rocketmq.remoting.metrics.RemotingMetricsManager;
+import org.apache.rocketmq.remoting.metrics.RpcStageLatencyStats;
 import org.apache.rocketmq.remoting.netty.NettyRequestProcessor;
 import org.apache.rocketmq.remoting.protocol.RemotingCommand;
 import org.apache.rocketmq.remoting.protocol.ResponseCode;
@@ -197,8 +198,10 @@ public class PeekMessageProcessor implements NettyRequestProcessor {
                         FileRegion fileRegion =
                             new ManyMessageTransfer(response.encodeHeader(getMessageResult.getBufferTotalSize()), getMessageResult);
                         RemotingCommand finalResponse = response;
+                        RemotingMetricsManager.recordRpcStage(request, RpcStageLatencyStats.Stage.AWAIT);
                         channel.writeAndFlush(fileRegion)
                             .addListener((ChannelFutureListener) future -> {
+                                RemotingMetricsManager.recordRpcStage(request, RpcStageLatencyStats.Stage.FLUSH);
                                 tmpGetMessageResult.release();
                                 Attributes attributes = RemotingMetricsManager.newAttributesBuilder()
                                     .put(LABEL_REQUEST_CODE, RemotingHelper.getRequestCodeDesc(request.getCode()))
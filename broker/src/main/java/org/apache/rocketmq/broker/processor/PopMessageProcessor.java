@@ -66,6 +66,7 @@ import org.apache.rocketmq.logging.org.slf4j.LoggerFactory;
 import org.apache.rocketmq.remoting.common.RemotingHelper;
 import org.apache.rocketmq.remoting.exception.RemotingCommandException;
 import org.apache.rocketmq.remoting.metrics.RemotingMetricsManager;
+import org.apache.rocketmq.remoting.metrics.RpcStageLatencyStats;
 import org.apache.rocketmq.remoting.netty.NettyRemotingAbstract;
 import org.apache.rocketmq.remoting.netty.NettyRequestProcessor;
 import org.apache.rocketmq.remoting.protocol.RemotingCommand;
@@ -436,10 +437,12 @@ public class PopMessageProcessor implements NettyRequestProcessor {
                         final GetMessageResult tmpGetMessageResult = getMessageResult;
                         try {
                             FileRegion fileRegion =
-                                new ManyMessageTransfer(finalResponse.encodeHeader(getMessageResult.getBufferTotalSize()),
-                                    getMessageResult);
+                                new ManyMessageTransfer(finalResponse,
+                                    finalResponse.encodeHeader(getMessageResult.getBufferTotalSize()), getMessageResult);
+                            RemotingMetricsManager.recordRpcStage(request, RpcStageLatencyStats.Stage.AWAIT);
                             channel.writeAndFlush(fileRegion)
                                 .addListener((ChannelFutureListener) future -> {
+                                    RemotingMetricsManager.recordRpcStage(request, RpcStageLatencyStats.Stage.FLUSH);
                                     tmpGetMessageResult.release();
                                     Attributes attributes = RemotingMetricsManager.newAttributesBuilder()
                                         .put(LABEL_REQUEST_CODE, RemotingHelper.getRequestCodeDesc(request.getCode()))
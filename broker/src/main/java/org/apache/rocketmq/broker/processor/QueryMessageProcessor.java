@@ -31,6 +31,7 @@ import org.apache.rocketmq.logging.org.slf4j.LoggerFactory;
 import org.apache.rocketmq.remoting.common.RemotingHelper;
 import org.apache.rocketmq.remoting.exception.RemotingCommandException;
 import org.apache.rocketmq.remoting.metrics.RemotingMetricsManager;
+import org.apache.rocketmq.remoting.metrics.RpcStageLatencyStats;
 import org.apache.rocketmq.remoting.netty.NettyRequestProcessor;
 import org.apache.rocketmq.remoting.protocol.RemotingCommand;
 import org.apache.rocketmq.remoting.protocol.RequestCode;
@@ -107,9 +108,11 @@ public class QueryMessageProcessor implements NettyRequestProcessor {
                 FileRegion fileRegion =
                     new QueryMessageTransfer(response.encodeHeader(queryMessageResult
                         .getBufferTotalSize()), queryMessageResult);
+                RemotingMetricsManager.recordRpcStage(request, RpcStageLatencyStats.Stage.AWAIT);
                 ctx.channel()
                     .writeAndFlush(fileRegion)
                     .addListener((ChannelFutureListener) future -> {
+                        RemotingMetricsManager.recordRpcStage(request, RpcStageLatencyStats.Stage.FLUSH);
                         queryMessageResult.release();
                         Attributes attributes = RemotingMetricsManager.newAttributesBuilder()
                             .put(LABEL_REQUEST_CODE, RemotingHelper.getRequestCodeDesc(request.getCode()))
@@ -152,9 +155,11 @@ public class QueryMessageProcessor implements NettyRequestProcessor {
                 FileRegion fileRegion =
                     new OneMessageTransfer(response.encodeHeader(selectMappedBufferResult.getSize()),
                         selectMappedBufferResult);
+                RemotingMetricsManager.recordRpcStage(request, RpcStageLatencyStats.Stage.AWAIT);
                 ctx.channel()
                     .writeAndFlush(fileRegion)
                     .addListener((ChannelFutureListener) future -> {
+                        RemotingMetricsManager.recordRpcStage(request, RpcStageLatencyStats.Stage.FLUSH);
                         selectMappedBufferResult.release();
                         Attributes attributes = RemotingMetricsManager.newAttributesBuilder()
                             .put(LABEL_REQUEST_CODE, RemotingHelper.getRequestCodeDesc(request.getCode()))
@@ -35,6 +35,7 @@ import org.apache.rocketmq.common.TopicFilterType;
 import org.apache.rocketmq.common.UtilAll;
 import org.apache.rocketmq.common.attribute.CleanupPolicy;
 import org.apache.rocketmq.common.attribute.TopicMessageType;
+import org.apache.rocketmq.common.compression.CompressorFactory;
 import org.apache.rocketmq.common.constant.PermName;
 import org.apache.rocketmq.common.help.FAQUrl;
 import org.apache.rocketmq.common.message.MessageAccessor;
@@ -74,6 +75,11 @@ import static org.apache.rocketmq.broker.metrics.BrokerMetricsConstant.LABEL_TOP
 import static org.apache.rocketmq.remoting.protocol.RemotingCommand.buildErrorResponse;
 
 public class SendMessageProcessor extends AbstractSendMessageProcessor implements NettyRequestProcessor {
+    /**
+     * A compressed batch may decompress to this many times maxMessageSize at most, which leaves room for the
+     * compressed inner batches stored as is
+     */
+    private static final int MAX_BATCH_DECOMPRESS_RATIO = 4;
 
     public SendMessageProcessor(final BrokerController brokerController) {
         super(brokerController);
@@ -557,11 +563,28 @@ public class SendMessageProcessor extends AbstractSendMessageProcessor implement
         if (TopicFilterType.MULTI_TAG == topicConfig.getTopicFilterType()) {
             sysFlag |= MessageSysFlag.MULTI_TAGS_FLAG;
         }
+        byte[] batchBody = request.getBody();
+        int compressionFlag = 0;
+        if (MessageSysFlag.check(sysFlag, MessageSysFlag.BATCH_COMPRESSED_FLAG)) {
+            compressionFlag = sysFlag & MessageSysFlag.COMPRESSION_TYPE_COMPARATOR;
+            sysFlag &= ~(MessageSysFlag.BATCH_COMPRESSED_FLAG | MessageSysFlag.COMPRESSION_TYPE_COMPARATOR);
+            int maxBatchBodySize = (int) Math.min(Integer.MAX_VALUE,
+                (long) this.brokerController.getMessageStoreConfig().getMaxMessageSize() * MAX_BATCH_DECOMPRESS_RATIO);
+            try {
+                batchBody = CompressorFactory.getCompressor(MessageSysFlag.getCompressionType(compressionFlag))
+                    .decompress(batchBody, maxBatchBodySize);
+            } catch (Exception e) {
+                LOGGER.warn("Failed to decompress the batch body from {}", ctx.channel().remoteAddress(), e);
+                response.setCode(ResponseCode.MESSAGE_ILLEGAL);
+                response.setRemark("failed to decompress the batch body: " + e.getMessage());
+                return response;
+            }
+        }
         messageExtBatch.setSysFlag(sysFlag);
 
         messageExtBatch.setFlag(requestHeader.getFlag());
         MessageAccessor.setProperties(messageExtBatch, MessageDecoder.string2messageProperties(requestHeader.getProperties()));
-        messageExtBatch.setBody(request.getBody());
+        messageExtBatch.setBody(batchBody);
         messageExtBatch.setBornTimestamp(requestHeader.getBornTimestamp());
         messageExtBatch.setBornHost(ctx.channel().remoteAddress());
         messageExtBatch.setStoreHost(this.getStoreHost());
@@ -578,6 +601,11 @@ public class SendMessageProcessor extends AbstractSendMessageProcessor implement
             messageExtBatch.setInnerBatch(true);
 
             int innerNum = MessageDecoder.countInnerMsgNum(ByteBuffer.wrap(messageExtBatch.getBody()));
+            if (compressionFlag != 0) {
+                // an inner batch is stored as one message, keep it compressed and let the consumer decompress it
+                messageExtBatch.setBody(request.getBody());
+                messageExtBatch.setSysFlag(messageExtBatch.getSysFlag() | MessageSysFlag.COMPRESSED_FLAG | compressionFlag);
+            }
 
             MessageAccessor.putProperty(messageExtBatch, MessageConst.PROPERTY_INNER_NUM, String.valueOf(innerNum));
             messageExtBatch.setPropertiesString(MessageDecoder.messageProperties2String(messageExtBatch.getProperties()));
@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.broker.offset;
+
+import java.io.File;
+import java.util.Map;
+import java.util.UUID;
+import org.apache.rocketmq.broker.BrokerController;
+import org.apache.rocketmq.common.BrokerConfig;
+import org.apache.rocketmq.common.UtilAll;
+import org.apache.rocketmq.store.config.MessageStoreConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CompactConsumerOffsetManagerTest {
+
+    private String storePath;
+    private BrokerController brokerController;
+    private BrokerConfig brokerConfig;
+
+    @Before
+    public void init() {
+        storePath = System.getProperty("java.io.tmpdir") + File.separator + "compact-offset-" + UUID.randomUUID();
+        brokerController = Mockito.mock(BrokerController.class);
+        MessageStoreConfig messageStoreConfig = new MessageStoreConfig();
+        messageStoreConfig.setStorePathRootDir(storePath);
+        brokerConfig = new BrokerConfig();
+        Mockito.when(brokerController.getMessageStoreConfig()).thenReturn(messageStoreConfig);
+        Mockito.when(brokerController.getBrokerConfig()).thenReturn(brokerConfig);
+    }
+
+    @After
+    public void destroy() {
+        UtilAll.deleteFile(new File(storePath));
+    }
+
+    @Test
+    public void testCommitAndQuery() {
+        CompactConsumerOffsetManager manager = new CompactConsumerOffsetManager(brokerController);
+        assertThat(manager.queryOffset("G1", "T1", 0)).isEqualTo(-1L);
+
+        manager.commitOffset("client", "G1", "T1", 0, 10L);
+        manager.commitOffset("client", "G1", "T1", 100, 20L);
+        assertThat(manager.queryOffset("G1", "T1", 0)).isEqualTo(10L);
+        assertThat(manager.queryOffset("G1", "T1", 100)).isEqualTo(20L);
+        assertThat(manager.queryOffset("G1", "T1", 50)).isEqualTo(-1L);
+
+        Map<Integer, Long> offsets = manager.queryOffset("G1", "T1");
+        assertThat(offsets).hasSize(2).containsEntry(0, 10L).containsEntry(100, 20L);
+        assertThat(manager.getOffsetTable()).containsOnlyKeys("T1@G1");
+        assertThat(manager.whichTopicByConsumer("G1")).containsExactly("T1");
+
+        manager.commitOffset("client", "G2", "T1", 0, 30L);
+        manager.commitOffset("client", "G2", "T2", 0, 40L);
+        assertThat(manager.whichTopicByConsumer("G2")).containsOnly("T1", "T2");
+        assertThat(manager.whichGroupByTopic("T1")).containsOnly("G1", "G2");
+        assertThat(manager.getGroupTopicMap()).hasSize(2).containsKeys("G1", "G2");
+        assertThat(manager.getGroupTopicMap().get("G2")).containsOnly("T1", "T2");
+    }
+
+    @Test
+    public void testIncrementalPersistAndReload() {
+        CompactConsumerOffsetManager manager = new CompactConsumerOffsetManager(brokerController);
+        for (int i = 0; i < 64; i++) {
+            manager.commitOffset("client", "G" + i, "T1", i % 8, i);
+        }
+        // first persist writes a snapshot
+        manager.persist();
+        long snapshotLength = new File(manager.logFilePath()).length();
+
+        manager.commitOffset("client", "G1", "T1", 1, 1000L);
+        manager.cleanOffset("G2");
+        manager.persist();
+        long appended = new File(manager.logFilePath()).length() - snapshotLength;
+        assertThat(appended).isPositive().isLessThan(snapshotLength / 4);
+
+        CompactConsumerOffsetManager reloaded = new CompactConsumerOffsetManager(brokerController);
+        assertThat(reloaded.load()).isTrue();
+        assertThat(reloaded.queryOffset("G1", "T1", 1)).isEqualTo(1000L);
+        assertThat(reloaded.queryOffset("G2", "T1", 2)).isEqualTo(-1L);
+        assertThat(reloaded.queryOffset("G63", "T1", 7)).isEqualTo(63L);
+        assertThat(reloaded.getOffsetTable()).hasSize(63);
+
+        // keys created after reload must not reuse persisted ids
+        reloaded.commitOffset("client", "G100", "T2", 0, 5L);
+        reloaded.persist();
+        reloaded.commitOffset("client", "G100", "T2", 0, 6L);
+        reloaded.persist();
+        CompactConsumerOffsetManager again = new CompactConsumerOffsetManager(brokerController);
+        assertThat(again.load()).isTrue();
+        assertThat(again.queryOffset("G100", "T2", 0)).isEqualTo(6L);
+        assertThat(again.queryOffset("G1", "T1", 1)).isEqualTo(1000L);
+    }
+
+    @Test
+    public void testCompactWhenLogGrows() {
+        brokerConfig.setConsumerOffsetLogCompactSize(0);
+        CompactConsumerOffsetManager manager = new CompactConsumerOffsetManager(brokerController);
+        manager.commitOffset("client", "G1", "T1", 0, 1L);
+        manager.persist();
+        long snapshotLength = new File(manager.logFilePath()).length();
+        for (int i = 0; i < 100; i++) {
+            manager.commitOffset("client", "G1", "T1", 0, i);
+            manager.persist();
+        }
+        assertThat(new File(manager.logFilePath()).length()).isLessThanOrEqualTo(snapshotLength * 3);
+
+        CompactConsumerOffsetManager reloaded = new CompactConsumerOffsetManager(brokerController);
+        assertThat(reloaded.load()).isTrue();
+        assertThat(reloaded.queryOffset("G1", "T1", 0)).isEqualTo(99L);
+    }
+
+    @Test
+    public void testUpgradeFromJson() {
+        ConsumerOffsetManager legacy = new ConsumerOffsetManager(brokerController);
+        legacy.commitOffset("client", "G1", "T1", 3, 30L);
+        legacy.persist();
+
+        CompactConsumerOffsetManager manager = new CompactConsumerOffsetManager(brokerController);
+        assertThat(manager.load()).isTrue();
+        assertThat(manager.queryOffset("G1", "T1", 3)).isEqualTo(30L);
+        manager.persist();
+        assertThat(new File(manager.logFilePath())).exists();
+
+        // switching the mode off keeps the json up to date as of the last snapshot
+        ConsumerOffsetManager downgraded = new ConsumerOffsetManager(brokerController);
+        assertThat(downgraded.load()).isTrue();
+        assertThat(downgraded.queryOffset("G1", "T1", 3)).isEqualTo(30L);
+    }
+
+    @Test
+    public void testDowngradeAfterShutdown() {
+        CompactConsumerOffsetManager manager = new CompactConsumerOffsetManager(brokerController);
+        manager.commitOffset("client", "G1", "T1", 0, 10L);
+        manager.persist();
+        manager.commitOffset("client", "G1", "T1", 0, 20L);
+        manager.persist();
+
+        // incremental persists leave the json as of the last snapshot
+        ConsumerOffsetManager downgraded = new ConsumerOffsetManager(brokerController);
+        assertThat(downgraded.load()).isTrue();
+        assertThat(downgraded.queryOffset("G1", "T1", 0)).isEqualTo(10L);
+
+        manager.shutdown();
+        downgraded = new ConsumerOffsetManager(brokerController);
+        assertThat(downgraded.load()).isTrue();
+        assertThat(downgraded.queryOffset("G1", "T1", 0)).isEqualTo(20L);
+    }
+}
@@ -18,9 +18,11 @@ package org.apache.rocketmq.broker.processor;
 
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
+import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
@@ -35,10 +37,18 @@ import org.apache.rocketmq.broker.subscription.SubscriptionGroupManager;
 import org.apache.rocketmq.broker.topic.TopicConfigManager;
 import org.apache.rocketmq.broker.transaction.TransactionalMessageService;
 import org.apache.rocketmq.common.BrokerConfig;
+import org.apache.rocketmq.common.TopicAttributes;
 import org.apache.rocketmq.common.TopicConfig;
+import org.apache.rocketmq.common.attribute.CQType;
+import org.apache.rocketmq.common.compression.CompressionType;
+import org.apache.rocketmq.common.compression.CompressorFactory;
+import org.apache.rocketmq.common.message.Message;
+import org.apache.rocketmq.common.message.MessageBatch;
+import org.apache.rocketmq.common.message.MessageClientIDSetter;
 import org.apache.rocketmq.common.message.MessageConst;
 import org.apache.rocketmq.common.message.MessageDecoder;
 import org.apache.rocketmq.common.message.MessageExt;
+import org.apache.rocketmq.common.message.MessageExtBatch;
 import org.apache.rocketmq.common.message.MessageExtBrokerInner;
 import org.apache.rocketmq.common.sysflag.MessageSysFlag;
 import org.apache.rocketmq.common.topic.TopicValidator;
@@ -59,6 +69,7 @@ import org.apache.rocketmq.store.config.MessageStoreConfig;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnitRunner;
@@ -299,6 +310,81 @@ public class SendMessageProcessorTest {
         assertThat(response.getCode()).isEqualTo(ResponseCode.SUCCESS);
     }
 
+    @Test
+    public void testProcessRequest_CompressedBatch() throws Exception {
+        ArgumentCaptor<MessageExtBatch> captor = ArgumentCaptor.forClass(MessageExtBatch.class);
+        when(messageStore.asyncPutMessages(captor.capture())).
+            thenReturn(CompletableFuture.completedFuture(new PutMessageResult(PutMessageStatus.PUT_OK, new AppendMessageResult(AppendMessageStatus.PUT_OK))));
+        MessageBatch batch = createMessageBatch(topic, 128);
+        assertPutResult(createCompressedBatchCommand(batch), ResponseCode.SUCCESS);
+
+        // decompressed before the batch is split into messages
+        MessageExtBatch messageExtBatch = captor.getValue();
+        assertThat(messageExtBatch.getBody()).isEqualTo(batch.getBody());
+        assertThat(messageExtBatch.getSysFlag() & (MessageSysFlag.BATCH_COMPRESSED_FLAG | MessageSysFlag.COMPRESSED_FLAG
+            | MessageSysFlag.COMPRESSION_TYPE_COMPARATOR)).isZero();
+    }
+
+    @Test
+    public void testProcessRequest_CompressedBatchToBatchCQ() throws Exception {
+        String batchTopic = "FooBarBatch";
+        TopicConfig topicConfig = new TopicConfig(batchTopic);
+        Map<String, String> attributes = new HashMap<>();
+        attributes.put(TopicAttributes.QUEUE_TYPE_ATTRIBUTE.getName(), CQType.BatchCQ.name());
+        topicConfig.setAttributes(attributes);
+        brokerController.getTopicConfigManager().getTopicConfigTable().put(batchTopic, topicConfig);
+        ArgumentCaptor<MessageExtBrokerInner> captor = ArgumentCaptor.forClass(MessageExtBrokerInner.class);
+        when(messageStore.asyncPutMessage(captor.capture())).
+            thenReturn(CompletableFuture.completedFuture(new PutMessageResult(PutMessageStatus.PUT_OK, new AppendMessageResult(AppendMessageStatus.PUT_OK))));
+        MessageBatch batch = createMessageBatch(batchTopic, 128);
+        RemotingCommand request = createCompressedBatchCommand(batch);
+        assertPutResult(request, ResponseCode.SUCCESS);
+
+        // stored as one compressed inner batch message, which the consumers decompress
+        MessageExtBrokerInner innerBatch = captor.getValue();
+        assertThat(innerBatch.getBody()).isEqualTo(request.getBody());
+        assertThat(MessageSysFlag.check(innerBatch.getSysFlag(), MessageSysFlag.INNER_BATCH_FLAG)).isTrue();
+        assertThat(MessageSysFlag.check(innerBatch.getSysFlag(), MessageSysFlag.COMPRESSED_FLAG)).isTrue();
+        assertThat(MessageSysFlag.check(innerBatch.getSysFlag(), MessageSysFlag.BATCH_COMPRESSED_FLAG)).isFalse();
+        assertThat(MessageSysFlag.getCompressionType(innerBatch.getSysFlag())).isEqualTo(CompressionType.ZSTD);
+        assertThat(innerBatch.getProperty(MessageConst.PROPERTY_INNER_NUM)).isEqualTo("16");
+        assertThat(CompressorFactory.getCompressor(CompressionType.ZSTD).decompress(innerBatch.getBody()))
+            .isEqualTo(batch.getBody());
+    }
+
+    @Test
+    public void testProcessRequest_CompressedBatchTooLarge() throws Exception {
+        brokerController.getMessageStoreConfig().setMaxMessageSize(1024);
+        assertPutResult(createCompressedBatchCommand(createMessageBatch(topic, 1024)), ResponseCode.MESSAGE_ILLEGAL);
+    }
+
+    private MessageBatch createMessageBatch(String topic, int bodySize) {
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            messages.add(new Message(topic, "TagA", new byte[bodySize]));
+        }
+        MessageBatch batch = MessageBatch.generateFromList(messages);
+        for (Message message : batch) {
+            MessageClientIDSetter.setUniqID(message);
+        }
+        MessageClientIDSetter.setUniqID(batch);
+        batch.setBody(batch.encode());
+        return batch;
+    }
+
+    private RemotingCommand createCompressedBatchCommand(MessageBatch batch) throws IOException {
+        SendMessageRequestHeader requestHeader = createSendMsgRequestHeader();
+        requestHeader.setTopic(batch.getTopic());
+        requestHeader.setBatch(true);
+        requestHeader.setSysFlag(MessageSysFlag.BATCH_COMPRESSED_FLAG | CompressionType.ZSTD.getCompressionFlag());
+        requestHeader.setProperties(MessageDecoder.messageProperties2String(batch.getProperties()));
+
+        RemotingCommand request = RemotingCommand.createRequestCommand(RequestCode.SEND_MESSAGE, requestHeader);
+        request.setBody(CompressorFactory.getCompressor(CompressionType.ZSTD).compress(batch.getBody(), 3));
+        request.makeCustomHeaderToNet();
+        return request;
+    }
+
     private RemotingCommand createSendTransactionMsgCommand(int requestCode) {
         SendMessageRequestHeader header = createSendMsgRequestHeader();
         int sysFlag = header.getSysFlag();
@@ -358,7 +444,10 @@ public class SendMessageProcessorTest {
      * @throws RemotingCommandException
      */
     private void assertPutResult(int responseCode) throws RemotingCommandException {
-        final RemotingCommand request = createSendMsgCommand(RequestCode.SEND_MESSAGE);
+        assertPutResult(createSendMsgCommand(RequestCode.SEND_MESSAGE), responseCode);
+    }
+
+    private void assertPutResult(final RemotingCommand request, int responseCode) throws RemotingCommandException {
         final RemotingCommand[] response = new RemotingCommand[1];
         doAnswer(invocation -> {
             response[0] = invocation.getArgument(0);
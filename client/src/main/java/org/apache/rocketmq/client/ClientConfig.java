@@ -39,6 +39,7 @@ public class ClientConfig {
     public static final String DECODE_READ_BODY = "com.rocketmq.read.body";
     public static final String DECODE_DECOMPRESS_BODY = "com.rocketmq.decompress.body";
     public static final String HEART_BEAT_V2 = "com.rocketmq.heartbeat.v2";
+    public static final String TOPIC_ROUTE_NOTIFY = "com.rocketmq.topic.route.notify";
     private String namesrvAddr = NameServerAddressUtils.getNameServerAddresses();
     private String clientIP = NetworkUtil.getLocalAddress();
     private String instanceName = System.getProperty("rocketmq.client.name", "DEFAULT");
@@ -51,6 +52,11 @@ public class ClientConfig {
      * Pulling topic information interval from the named server
      */
     private int pollNameServerInterval = 1000 * 30;
+    /**
+     * Subscribe the topic routes on each poll instead of querying them one by one, the name server then pushes the
+     * route changes in between. Falls back to querying if the name server does not support it.
+     */
+    private boolean enableTopicRouteNotify = Boolean.parseBoolean(System.getProperty(TOPIC_ROUTE_NOTIFY, "false"));
     /**
      * Heartbeat interval in microseconds with message broker
      */
@@ -186,6 +192,7 @@ public class ClientConfig {
         this.decodeDecompressBody = cc.decodeDecompressBody;
         this.enableStreamRequestType = cc.enableStreamRequestType;
         this.useHeartbeatV2 = cc.useHeartbeatV2;
+        this.enableTopicRouteNotify = cc.enableTopicRouteNotify;
     }
 
     public ClientConfig cloneClientConfig() {
@@ -210,6 +217,7 @@ public class ClientConfig {
         cc.decodeDecompressBody = decodeDecompressBody;
         cc.enableStreamRequestType = enableStreamRequestType;
         cc.useHeartbeatV2 = useHeartbeatV2;
+        cc.enableTopicRouteNotify = enableTopicRouteNotify;
         return cc;
     }
 
@@ -246,6 +254,14 @@ public class ClientConfig {
         this.pollNameServerInterval = pollNameServerInterval;
     }
 
+    public boolean isEnableTopicRouteNotify() {
+        return enableTopicRouteNotify;
+    }
+
+    public void setEnableTopicRouteNotify(boolean enableTopicRouteNotify) {
+        this.enableTopicRouteNotify = enableTopicRouteNotify;
+    }
+
     public int getHeartbeatBrokerInterval() {
         return heartbeatBrokerInterval;
     }
@@ -403,6 +419,7 @@ public class ClientConfig {
             + ", socksProxyConfig=" + socksProxyConfig + ", language=" + language.name()
             + ", namespace=" + namespace + ", mqClientApiTimeout=" + mqClientApiTimeout
             + ", decodeReadBody=" + decodeReadBody + ", decodeDecompressBody=" + decodeDecompressBody
-            + ", enableStreamRequestType=" + enableStreamRequestType + ", useHeartbeatV2=" + useHeartbeatV2 + "]";
+            + ", enableStreamRequestType=" + enableStreamRequestType + ", useHeartbeatV2=" + useHeartbeatV2
+            + ", enableTopicRouteNotify=" + enableTopicRouteNotify + "]";
     }
 }
@@ -288,6 +288,31 @@ public class DefaultMQPushConsumer extends ClientConfig implements MQPushConsume
     // force to use client rebalance
     private boolean clientRebalance = true;
 
+    /**
+     * Keep the messages of a concurrently consumed queue in a lock free ring instead of a locked tree map, cheaper
+     * when many messages are buffered and consumed by many threads
+     */
+    private boolean lockFreeProcessQueueEnable = false;
+
+    /**
+     * Run each concurrent consume request on a virtual thread when the JVM supports them (JDK 21+), at most
+     * {@code pullThresholdForQueue} of them at the same time, instead of the consumeThreadMin/Max pool. Suits
+     * listeners blocking on I/O.
+     */
+    private boolean consumeVirtualThreadEnable = false;
+
+    /**
+     * Adjust the batch size of each pull to the observed consume rate and message size, starting at
+     * {@code pullBatchSize} and staying within {@code pullThresholdForQueue} and {@code pullThresholdSizeForQueue}
+     */
+    private boolean adaptivePullBatchSizeEnable = false;
+
+    /**
+     * Max pulls in flight for a queue lagging behind, each one starting where the previous one is expected to end.
+     * Only used by concurrent consumers whose subscriptions are not filtered by the broker, 1 disables pipelining
+     */
+    private int pullPipelineDepth = 1;
+
     /**
      * Default constructor.
      */
@@ -987,4 +1012,36 @@ public class DefaultMQPushConsumer extends ClientConfig implements MQPushConsume
     public void setClientRebalance(boolean clientRebalance) {
         this.clientRebalance = clientRebalance;
     }
+
+    public boolean isLockFreeProcessQueueEnable() {
+        return lockFreeProcessQueueEnable;
+    }
+
+    public void setLockFreeProcessQueueEnable(boolean lockFreeProcessQueueEnable) {
+        this.lockFreeProcessQueueEnable = lockFreeProcessQueueEnable;
+    }
+
+    public boolean isConsumeVirtualThreadEnable() {
+        return consumeVirtualThreadEnable;
+    }
+
+    public void setConsumeVirtualThreadEnable(boolean consumeVirtualThreadEnable) {
+        this.consumeVirtualThreadEnable = consumeVirtualThreadEnable;
+    }
+
+    public boolean isAdaptivePullBatchSizeEnable() {
+        return adaptivePullBatchSizeEnable;
+    }
+
+    public void setAdaptivePullBatchSizeEnable(boolean adaptivePullBatchSizeEnable) {
+        this.adaptivePullBatchSizeEnable = adaptivePullBatchSizeEnable;
+    }
+
+    public int getPullPipelineDepth() {
+        return pullPipelineDepth;
+    }
+
+    public void setPullPipelineDepth(int pullPipelineDepth) {
+        this.pullPipelineDepth = pullPipelineDepth;
+    }
 }
@@ -47,6 +47,7 @@ import org.apache.rocketmq.remoting.protocol.body.ConsumeMessageDirectlyResult;
 import org.apache.rocketmq.remoting.protocol.body.ConsumerRunningInfo;
 import org.apache.rocketmq.remoting.protocol.body.GetConsumerStatusBody;
 import org.apache.rocketmq.remoting.protocol.body.ResetOffsetBody;
+import org.apache.rocketmq.remoting.protocol.body.TopicRouteChangeBody;
 import org.apache.rocketmq.remoting.protocol.header.CheckTransactionStateRequestHeader;
 import org.apache.rocketmq.remoting.protocol.header.ConsumeMessageDirectlyResultRequestHeader;
 import org.apache.rocketmq.remoting.protocol.header.GetConsumerRunningInfoRequestHeader;
@@ -86,6 +87,9 @@ public class ClientRemotingProcessor implements NettyRequestProcessor {
 
             case RequestCode.PUSH_REPLY_MESSAGE_TO_CLIENT:
                 return this.receiveReplyMessage(ctx, request);
+
+            case RequestCode.NOTIFY_TOPIC_ROUTE_CHANGED:
+                return this.notifyTopicRouteChanged(ctx, request);
             default:
                 break;
         }
@@ -146,6 +150,20 @@ public class ClientRemotingProcessor implements NettyRequestProcessor {
         return null;
     }
 
+    public RemotingCommand notifyTopicRouteChanged(ChannelHandlerContext ctx, RemotingCommand request) {
+        try {
+            if (request.getBody() != null) {
+                TopicRouteChangeBody changeBody = TopicRouteChangeBody.decode(request.getBody(), TopicRouteChangeBody.class);
+                logger.info("receive name server's notification[{}], the routes of topics: {} changed",
+                    RemotingHelper.parseChannelRemoteAddr(ctx.channel()), changeBody.getTopicRouteTable().keySet());
+                this.mqClientFactory.onTopicRouteChanged(changeBody);
+            }
+        } catch (Exception e) {
+            logger.error("notifyTopicRouteChanged exception", UtilAll.exceptionSimpleDesc(e));
+        }
+        return null;
+    }
+
     public RemotingCommand resetOffset(ChannelHandlerContext ctx,
         RemotingCommand request) throws RemotingCommandException {
         final ResetOffsetRequestHeader requestHeader =
@@ -131,6 +131,8 @@ import org.apache.rocketmq.remoting.protocol.body.SetMessageRequestModeRequestBo
 import org.apache.rocketmq.remoting.protocol.body.SubscriptionGroupWrapper;
 import org.apache.rocketmq.remoting.protocol.body.TopicConfigSerializeWrapper;
 import org.apache.rocketmq.remoting.protocol.body.TopicList;
+import org.apache.rocketmq.remoting.protocol.body.TopicRouteChangeBody;
+import org.apache.rocketmq.remoting.protocol.body.TopicRouteSubscriptionBody;
 import org.apache.rocketmq.remoting.protocol.body.UnlockBatchRequestBody;
 import org.apache.rocketmq.remoting.protocol.header.AckMessageRequestHeader;
 import org.apache.rocketmq.remoting.protocol.header.AddBrokerRequestHeader;
@@ -268,6 +270,8 @@ public class MQClientAPIImpl implements NameServerUpdateCallback {
         this.remotingClient.registerProcessor(RequestCode.CONSUME_MESSAGE_DIRECTLY, this.clientRemotingProcessor, null);
 
         this.remotingClient.registerProcessor(RequestCode.PUSH_REPLY_MESSAGE_TO_CLIENT, this.clientRemotingProcessor, null);
+
+        this.remotingClient.registerProcessor(RequestCode.NOTIFY_TOPIC_ROUTE_CHANGED, this.clientRemotingProcessor, null);
     }
 
     public List<String> getNameServerAddressList() {
@@ -1959,6 +1963,35 @@ public class MQClientAPIImpl implements NameServerUpdateCallback {
         throw new MQClientException(response.getCode(), response.getRemark());
     }
 
+    /**
+     * Subscribes the routes of the topics on the name server connection, replacing the previous subscription.
+     *
+     * @param topicRouteVersionTable the route version held of each topic, 0 if none
+     * @return the routes changed since the held versions
+     */
+    public TopicRouteChangeBody subscribeTopicRoute(final Map<String, Long> topicRouteVersionTable,
+        final long timeoutMillis) throws RemotingException, MQClientException, InterruptedException {
+        TopicRouteSubscriptionBody requestBody = new TopicRouteSubscriptionBody();
+        requestBody.setTopicRouteVersionTable(topicRouteVersionTable);
+        RemotingCommand request = RemotingCommand.createRequestCommand(RequestCode.SUBSCRIBE_TOPIC_ROUTE, null);
+        request.setBody(requestBody.encode());
+
+        RemotingCommand response = this.remotingClient.invokeSync(null, request, timeoutMillis);
+        assert response != null;
+        switch (response.getCode()) {
+            case ResponseCode.SUCCESS: {
+                byte[] body = response.getBody();
+                if (body != null) {
+                    return TopicRouteChangeBody.decode(body, TopicRouteChangeBody.class);
+                }
+            }
+            default:
+                break;
+        }
+
+        throw new MQClientException(response.getCode(), response.getRemark());
+    }
+
     public TopicList getTopicListFromNameServer(final long timeoutMillis)
         throws RemotingException, MQClientException, InterruptedException {
         RemotingCommand request = RemotingCommand.createRequestCommand(RequestCode.GET_ALL_TOPIC_LIST_FROM_NAMESERVER, null);
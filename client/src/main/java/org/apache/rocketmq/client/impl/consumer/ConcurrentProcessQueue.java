@@ -0,0 +1,477 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.client.impl.consumer;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.rocketmq.client.consumer.DefaultMQPushConsumer;
+import org.apache.rocketmq.common.message.MessageAccessor;
+import org.apache.rocketmq.common.message.MessageConst;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.apache.rocketmq.logging.org.slf4j.Logger;
+import org.apache.rocketmq.logging.org.slf4j.LoggerFactory;
+import org.apache.rocketmq.remoting.protocol.body.ProcessQueueInfo;
+
+/**
+ * Queue consumption snapshot of a concurrently consumed queue, keeping the messages in a ring indexed by the order
+ * they are put in, along with a bitmap of the ones not removed yet.
+ *
+ * <p>Messages are put by the single pull of the queue, in increasing offsets, and removed by any consuming thread
+ * without taking a lock: a removal finds the slot of its offset by a binary search and clears it with a CAS, and the
+ * first message not removed yet, from which the consume offset is committed, is found by scanning the bitmap from a
+ * head only moving forward. The ring only grows, under a lock the removals just validate they did not race with.
+ *
+ * <p>Orderly consumption keeps using {@link ProcessQueue}.
+ */
+public class ConcurrentProcessQueue extends ProcessQueue {
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final Logger log = LoggerFactory.getLogger(ConcurrentProcessQueue.class);
+    private final Lock putLock = new ReentrantLock();
+    private final StampedLock ringLock = new StampedLock();
+    private volatile Ring ring = new Ring(INITIAL_CAPACITY);
+    /**
+     * Sequence of the first message which may not be removed yet
+     */
+    private final AtomicLong head = new AtomicLong();
+    /**
+     * Sequence of the next message put, written after its slot
+     */
+    private volatile long tail = 0L;
+    private volatile long queueOffsetMax = -1L;
+    private volatile boolean consuming = false;
+
+    private static class Ring {
+        private final int mask;
+        private final long[] offsets;
+        private final AtomicReferenceArray<MessageExt> messages;
+        /**
+         * A set bit means the message of the slot is not removed yet
+         */
+        private final AtomicLongArray pendingBits;
+
+        Ring(int capacity) {
+            this.mask = capacity - 1;
+            this.offsets = new long[capacity];
+            this.messages = new AtomicReferenceArray<>(capacity);
+            this.pendingBits = new AtomicLongArray(capacity >>> 6);
+        }
+
+        int capacity() {
+            return mask + 1;
+        }
+
+        int index(long seq) {
+            return (int) (seq & mask);
+        }
+
+        void put(long seq, MessageExt msg) {
+            int index = index(seq);
+            offsets[index] = msg.getQueueOffset();
+            messages.set(index, msg);
+            pendingBits.getAndAccumulate(index >>> 6, 1L << index, (word, bit) -> word | bit);
+        }
+
+        /**
+         * @return the sequence in [from, to) of the slot of the offset, or -1
+         */
+        long search(long from, long to, long offset) {
+            long low = from;
+            long high = to - 1;
+            while (low <= high) {
+                long mid = (low + high) >>> 1;
+                long midOffset = offsets[index(mid)];
+                if (midOffset < offset) {
+                    low = mid + 1;
+                } else if (midOffset > offset) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+
+        MessageExt get(long seq, long offset) {
+            MessageExt msg = messages.get(index(seq));
+            return msg != null && msg.getQueueOffset() == offset ? msg : null;
+        }
+
+        /**
+         * @return the removed message, null if it was already
+         */
+        MessageExt remove(long seq, long offset) {
+            int index = index(seq);
+            MessageExt msg = messages.get(index);
+            if (msg != null && msg.getQueueOffset() == offset && messages.compareAndSet(index, msg, null)) {
+                pendingBits.getAndAccumulate(index >>> 6, ~(1L << index), (word, bits) -> word & bits);
+                return msg;
+            }
+            return null;
+        }
+
+        /**
+         * @return the first pending sequence in [from, to), or to
+         */
+        long firstPending(long from, long to) {
+            long seq = from;
+            while (seq < to) {
+                int index = index(seq);
+                long word = pendingBits.get(index >>> 6) >>> index;
+                if (word != 0) {
+                    return Math.min(seq + Long.numberOfTrailingZeros(word), to);
+                }
+                seq += 64 - (index & 63);
+            }
+            return to;
+        }
+
+        /**
+         * @return the last pending sequence in [from, to), or -1
+         */
+        long lastPending(long from, long to) {
+            for (long seq = to - 1; seq >= from; seq--) {
+                int index = index(seq);
+                if ((pendingBits.get(index >>> 6) & (1L << index)) != 0) {
+                    return seq;
+                }
+            }
+            return -1;
+        }
+    }
+
+    @Override
+    public void cleanExpiredMsg(DefaultMQPushConsumer pushConsumer) {
+        if (pushConsumer.isConsumeOrderly()) {
+            return;
+        }
+
+        int loop = (int) Math.min(getMsgCount().get(), 16);
+        for (int i = 0; i < loop; i++) {
+            MessageExt msg = firstPendingMessage();
+            if (msg == null) {
+                break;
+            }
+            String consumeStartTimeStamp = MessageAccessor.getConsumeStartTimeStamp(msg);
+            if (StringUtils.isEmpty(consumeStartTimeStamp)
+                || System.currentTimeMillis() - Long.parseLong(consumeStartTimeStamp) <= pushConsumer.getConsumeTimeout() * 60 * 1000) {
+                break;
+            }
+
+            try {
+                pushConsumer.sendMessageBack(msg, 3);
+                log.info("send expire msg back. topic={}, msgId={}, storeHost={}, queueId={}, queueOffset={}", msg.getTopic(), msg.getMsgId(), msg.getStoreHost(), msg.getQueueId(), msg.getQueueOffset());
+                removeMessage(Collections.singletonList(msg));
+            } catch (Exception e) {
+                log.error("send expired msg exception", e);
+            }
+        }
+    }
+
+    @Override
+    public boolean putMessage(final List<MessageExt> msgs) {
+        boolean dispatchToConsume = false;
+        putLock.lock();
+        try {
+            int validMsgCnt = 0;
+            long validMsgSize = 0;
+            for (MessageExt msg : msgs) {
+                if (msg.getQueueOffset() <= this.queueOffsetMax) {
+                    // pulled again, keep the one already put
+                    if (find(msg.getQueueOffset()) == null) {
+                        log.warn("drop the message pulled again after it was consumed, queueOffset={}, queueOffsetMax={}",
+                            msg.getQueueOffset(), this.queueOffsetMax);
+                    }
+                    continue;
+                }
+                ensureCapacity();
+                long seq = this.tail;
+                this.ring.put(seq, msg);
+                this.tail = seq + 1;
+                this.queueOffsetMax = msg.getQueueOffset();
+                validMsgCnt++;
+                validMsgSize += msg.getBody().length;
+            }
+            getMsgSize().addAndGet(validMsgSize);
+            getMsgCount().addAndGet(validMsgCnt);
+
+            if (getMsgCount().get() > 0 && !this.consuming) {
+                dispatchToConsume = true;
+                this.consuming = true;
+            }
+
+            if (!msgs.isEmpty()) {
+                MessageExt messageExt = msgs.get(msgs.size() - 1);
+                String property = messageExt.getProperty(MessageConst.PROPERTY_MAX_OFFSET);
+                if (property != null) {
+                    long accTotal = Long.parseLong(property) - messageExt.getQueueOffset();
+                    if (accTotal > 0) {
+                        setMsgAccCnt(accTotal);
+                    }
+                }
+            }
+        } finally {
+            putLock.unlock();
+        }
+
+        return dispatchToConsume;
+    }
+
+    private void ensureCapacity() {
+        Ring current = this.ring;
+        if (this.tail - advanceHead() < current.capacity()) {
+            return;
+        }
+        long stamp = ringLock.writeLock();
+        try {
+            Ring bigger = new Ring(current.capacity() << 1);
+            for (long seq = head.get(); seq < this.tail; seq++) {
+                MessageExt msg = current.messages.get(current.index(seq));
+                if (msg != null) {
+                    bigger.put(seq, msg);
+                } else {
+                    bigger.offsets[bigger.index(seq)] = current.offsets[current.index(seq)];
+                }
+            }
+            this.ring = bigger;
+        } finally {
+            ringLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Moves the head past the removed messages.
+     *
+     * @return the sequence of the first pending message, or the tail
+     */
+    private long advanceHead() {
+        while (true) {
+            long h = head.get();
+            // the ring read after the tail holds every sequence before it
+            long t = this.tail;
+            long first = this.ring.firstPending(h, t);
+            if (first == h || head.compareAndSet(h, first)) {
+                return first;
+            }
+        }
+    }
+
+    private MessageExt find(long offset) {
+        while (true) {
+            long stamp = ringLock.tryOptimisticRead();
+            long h = head.get();
+            long t = this.tail;
+            Ring current = this.ring;
+            long seq = current.search(h, t, offset);
+            MessageExt msg = seq >= 0 ? current.get(seq, offset) : null;
+            // a slot before the head may be reused while searching
+            if (ringLock.validate(stamp) && (msg != null || head.get() == h)) {
+                return msg;
+            }
+        }
+    }
+
+    private MessageExt remove(long offset) {
+        long stamp = ringLock.tryOptimisticRead();
+        MessageExt removed = stamp != 0 ? remove(this.ring, offset) : null;
+        if (!ringLock.validate(stamp)) {
+            // the ring grew meanwhile, the message may have been copied before it was removed
+            stamp = ringLock.readLock();
+            try {
+                MessageExt again = remove(this.ring, offset);
+                if (removed == null) {
+                    removed = again;
+                }
+            } finally {
+                ringLock.unlockRead(stamp);
+            }
+        }
+        return removed;
+    }
+
+    private MessageExt remove(Ring current, long offset) {
+        while (true) {
+            long h = head.get();
+            long t = this.tail;
+            long seq = current.search(h, t, offset);
+            if (seq >= 0) {
+                return current.remove(seq, offset);
+            }
+            if (head.get() == h) {
+                return null;
+            }
+        }
+    }
+
+    private MessageExt firstPendingMessage() {
+        while (true) {
+            long stamp = ringLock.tryOptimisticRead();
+            long first = advanceHead();
+            MessageExt msg = first < this.tail ? this.ring.messages.get(this.ring.index(first)) : null;
+            if (ringLock.validate(stamp) && head.get() == first) {
+                return msg;
+            }
+        }
+    }
+
+    /**
+     * @return the offset of the first message not removed yet, or the one after the last message put if they all are
+     */
+    private long commitOffset() {
+        while (true) {
+            long stamp = ringLock.tryOptimisticRead();
+            long first = advanceHead();
+            long t = this.tail;
+            Ring current = this.ring;
+            if (first < t) {
+                long offset = current.offsets[current.index(first)];
+                // the slot is reused only once the head passed it
+                if (ringLock.validate(stamp) && head.get() == first) {
+                    return offset;
+                }
+            } else {
+                long offset = current.offsets[current.index(t - 1)] + 1;
+                if (ringLock.validate(stamp) && this.tail - (t - 1) < current.capacity()) {
+                    return offset;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the offsets of the first and the last pending messages, or null if there is none
+     */
+    private long[] pendingOffsetRange() {
+        while (true) {
+            long stamp = ringLock.tryOptimisticRead();
+            long first = advanceHead();
+            long t = this.tail;
+            Ring current = this.ring;
+            long last = current.lastPending(first, t);
+            long[] range = last >= 0
+                ? new long[] {current.offsets[current.index(first)], current.offsets[current.index(last)]} : null;
+            if (ringLock.validate(stamp) && head.get() == first) {
+                return range;
+            }
+        }
+    }
+
+    @Override
+    public long getMaxSpan() {
+        long[] range = pendingOffsetRange();
+        return range != null ? range[1] - range[0] : 0;
+    }
+
+    @Override
+    public long removeMessage(final List<MessageExt> msgs) {
+        long result = -1;
+        setLastConsumeTimestamp(System.currentTimeMillis());
+        try {
+            if (getMsgCount().get() > 0) {
+                int removedCnt = 0;
+                long removedSize = 0;
+                for (MessageExt msg : msgs) {
+                    if (remove(msg.getQueueOffset()) != null) {
+                        removedCnt++;
+                        removedSize += msg.getBody().length;
+                    }
+                }
+                getMsgSize().addAndGet(-removedSize);
+                getMsgCount().addAndGet(-removedCnt);
+
+                result = commitOffset();
+            }
+        } catch (Throwable t) {
+            log.error("removeMessage exception", t);
+        }
+
+        return result;
+    }
+
+    /**
+     * @return a snapshot of the messages not removed yet
+     */
+    @Override
+    public TreeMap<Long, MessageExt> getMsgTreeMap() {
+        TreeMap<Long, MessageExt> snapshot = new TreeMap<>();
+        long stamp = ringLock.readLock();
+        try {
+            Ring current = this.ring;
+            for (long seq = head.get(); seq < this.tail; seq++) {
+                MessageExt msg = current.messages.get(current.index(seq));
+                if (msg != null) {
+                    snapshot.put(msg.getQueueOffset(), msg);
+                }
+            }
+        } finally {
+            ringLock.unlockRead(stamp);
+        }
+        return snapshot;
+    }
+
+    @Override
+    public boolean containsMessage(MessageExt message) {
+        if (message == null) {
+            // should never reach here.
+            return false;
+        }
+        return find(message.getQueueOffset()) != null;
+    }
+
+    @Override
+    public boolean hasTempMessage() {
+        return getMsgCount().get() > 0;
+    }
+
+    @Override
+    public void clear() {
+        putLock.lock();
+        try {
+            long stamp = ringLock.writeLock();
+            try {
+                super.clear();
+                this.ring = new Ring(INITIAL_CAPACITY);
+                this.head.set(this.tail);
+                this.queueOffsetMax = -1L;
+            } finally {
+                ringLock.unlockWrite(stamp);
+            }
+        } finally {
+            putLock.unlock();
+        }
+    }
+
+    @Override
+    public void fillProcessQueueInfo(final ProcessQueueInfo info) {
+        super.fillProcessQueueInfo(info);
+        long[] range = pendingOffsetRange();
+        if (range != null) {
+            info.setCachedMsgMinOffset(range[0]);
+            info.setCachedMsgMaxOffset(range[1]);
+            info.setCachedMsgCount((int) getMsgCount().get());
+            info.setCachedMsgSizeInMiB((int) (getMsgSize().get() / (1024 * 1024)));
+        }
+    }
+}
@@ -23,6 +23,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
@@ -54,7 +55,7 @@ public class ConsumeMessageConcurrentlyService implements ConsumeMessageService
     private final DefaultMQPushConsumer defaultMQPushConsumer;
     private final MessageListenerConcurrently messageListener;
     private final BlockingQueue<Runnable> consumeRequestQueue;
-    private final ThreadPoolExecutor consumeExecutor;
+    private final ExecutorService consumeExecutor;
     private final String consumerGroup;
 
     private final ScheduledExecutorService scheduledExecutorService;
@@ -70,13 +71,22 @@ public class ConsumeMessageConcurrentlyService implements ConsumeMessageService
         this.consumeRequestQueue = new LinkedBlockingQueue<>();
 
         String consumerGroupTag = (consumerGroup.length() > 100 ? consumerGroup.substring(0, 100) : consumerGroup) + "_";
-        this.consumeExecutor = new ThreadPoolExecutor(
-            this.defaultMQPushConsumer.getConsumeThreadMin(),
-            this.defaultMQPushConsumer.getConsumeThreadMax(),
-            1000 * 60,
-            TimeUnit.MILLISECONDS,
-            this.consumeRequestQueue,
-            new ThreadFactoryImpl("ConsumeMessageThread_" + consumerGroupTag));
+        ExecutorService virtualThreadExecutor = null;
+        if (this.defaultMQPushConsumer.isConsumeVirtualThreadEnable()) {
+            virtualThreadExecutor = VirtualThreadConsumeExecutor.create("ConsumeMessageVirtualThread_" + consumerGroupTag,
+                this.defaultMQPushConsumer.getPullThresholdForQueue());
+        }
+        if (virtualThreadExecutor != null) {
+            this.consumeExecutor = virtualThreadExecutor;
+        } else {
+            this.consumeExecutor = new ThreadPoolExecutor(
+                this.defaultMQPushConsumer.getConsumeThreadMin(),
+                this.defaultMQPushConsumer.getConsumeThreadMax(),
+                1000 * 60,
+                TimeUnit.MILLISECONDS,
+                this.consumeRequestQueue,
+                new ThreadFactoryImpl("ConsumeMessageThread_" + consumerGroupTag));
+        }
 
         this.scheduledExecutorService = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryImpl("ConsumeMessageScheduledThread_" + consumerGroupTag));
         this.cleanExpireMsgExecutors = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryImpl("CleanExpireMsgScheduledThread_" + consumerGroupTag));
@@ -107,8 +117,9 @@ public class ConsumeMessageConcurrentlyService implements ConsumeMessageService
     public void updateCorePoolSize(int corePoolSize) {
         if (corePoolSize > 0
             && corePoolSize <= Short.MAX_VALUE
-            && corePoolSize < this.defaultMQPushConsumer.getConsumeThreadMax()) {
-            this.consumeExecutor.setCorePoolSize(corePoolSize);
+            && corePoolSize < this.defaultMQPushConsumer.getConsumeThreadMax()
+            && this.consumeExecutor instanceof ThreadPoolExecutor) {
+            ((ThreadPoolExecutor) this.consumeExecutor).setCorePoolSize(corePoolSize);
         }
     }
 
@@ -124,7 +135,10 @@ public class ConsumeMessageConcurrentlyService implements ConsumeMessageService
 
     @Override
     public int getCorePoolSize() {
-        return this.consumeExecutor.getCorePoolSize();
+        if (this.consumeExecutor instanceof VirtualThreadConsumeExecutor) {
+            return ((VirtualThreadConsumeExecutor) this.consumeExecutor).getMaxConcurrency();
+        }
+        return ((ThreadPoolExecutor) this.consumeExecutor).getCorePoolSize();
     }
 
     @Override
@@ -21,6 +21,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
@@ -56,7 +57,7 @@ public class ConsumeMessagePopConcurrentlyService implements ConsumeMessageServi
     private final DefaultMQPushConsumer defaultMQPushConsumer;
     private final MessageListenerConcurrently messageListener;
     private final BlockingQueue<Runnable> consumeRequestQueue;
-    private final ThreadPoolExecutor consumeExecutor;
+    private final ExecutorService consumeExecutor;
     private final String consumerGroup;
 
     private final ScheduledExecutorService scheduledExecutorService;
@@ -70,13 +71,22 @@ public class ConsumeMessagePopConcurrentlyService implements ConsumeMessageServi
         this.consumerGroup = this.defaultMQPushConsumer.getConsumerGroup();
         this.consumeRequestQueue = new LinkedBlockingQueue<>();
 
-        this.consumeExecutor = new ThreadPoolExecutor(
-            this.defaultMQPushConsumer.getConsumeThreadMin(),
-            this.defaultMQPushConsumer.getConsumeThreadMax(),
-            1000 * 60,
-            TimeUnit.MILLISECONDS,
-            this.consumeRequestQueue,
-            new ThreadFactoryImpl("ConsumeMessageThread_"));
+        ExecutorService virtualThreadExecutor = null;
+        if (this.defaultMQPushConsumer.isConsumeVirtualThreadEnable()) {
+            virtualThreadExecutor = VirtualThreadConsumeExecutor.create("ConsumeMessageVirtualThread_",
+                this.defaultMQPushConsumer.getPullThresholdForQueue());
+        }
+        if (virtualThreadExecutor != null) {
+            this.consumeExecutor = virtualThreadExecutor;
+        } else {
+            this.consumeExecutor = new ThreadPoolExecutor(
+                this.defaultMQPushConsumer.getConsumeThreadMin(),
+                this.defaultMQPushConsumer.getConsumeThreadMax(),
+                1000 * 60,
+                TimeUnit.MILLISECONDS,
+                this.consumeRequestQueue,
+                new ThreadFactoryImpl("ConsumeMessageThread_"));
+        }
 
         this.scheduledExecutorService = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryImpl("ConsumeMessageScheduledThread_"));
     }
@@ -93,8 +103,9 @@ public class ConsumeMessagePopConcurrentlyService implements ConsumeMessageServi
     public void updateCorePoolSize(int corePoolSize) {
         if (corePoolSize > 0
             && corePoolSize <= Short.MAX_VALUE
-            && corePoolSize < this.defaultMQPushConsumer.getConsumeThreadMax()) {
-            this.consumeExecutor.setCorePoolSize(corePoolSize);
+            && corePoolSize < this.defaultMQPushConsumer.getConsumeThreadMax()
+            && this.consumeExecutor instanceof ThreadPoolExecutor) {
+            ((ThreadPoolExecutor) this.consumeExecutor).setCorePoolSize(corePoolSize);
         }
     }
 
@@ -108,7 +119,10 @@ public class ConsumeMessagePopConcurrentlyService implements ConsumeMessageServi
 
     @Override
     public int getCorePoolSize() {
-        return this.consumeExecutor.getCorePoolSize();
+        if (this.consumeExecutor instanceof VirtualThreadConsumeExecutor) {
+            return ((VirtualThreadConsumeExecutor) this.consumeExecutor).getMaxConcurrency();
+        }
+        return ((ThreadPoolExecutor) this.consumeExecutor).getCorePoolSize();
     }
 
 
@@ -17,6 +17,7 @@
 package org.apache.rocketmq.client.impl.consumer;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -64,6 +65,7 @@ import org.apache.rocketmq.common.MixAll;
 import org.apache.rocketmq.common.ServiceState;
 import org.apache.rocketmq.common.UtilAll;
 import org.apache.rocketmq.common.consumer.ConsumeFromWhere;
+import org.apache.rocketmq.common.filter.ExpressionType;
 import org.apache.rocketmq.common.help.FAQUrl;
 import org.apache.rocketmq.common.message.Message;
 import org.apache.rocketmq.common.message.MessageAccessor;
@@ -338,6 +340,38 @@ public class DefaultMQPushConsumerImpl implements MQConsumerInner {
             return;
         }
 
+        boolean commitOffsetEnable = false;
+        long commitOffsetValue = 0L;
+        if (MessageModel.CLUSTERING == this.defaultMQPushConsumer.getMessageModel()) {
+            commitOffsetValue = this.offsetStore.readOffset(pullRequest.getMessageQueue(), ReadOffsetType.READ_FROM_MEMORY);
+            if (commitOffsetValue > 0) {
+                commitOffsetEnable = true;
+            }
+        }
+
+        String subExpression = null;
+        boolean classFilter = false;
+        SubscriptionData sd = this.rebalanceImpl.getSubscriptionInner().get(pullRequest.getMessageQueue().getTopic());
+        if (sd != null) {
+            if (this.defaultMQPushConsumer.isPostSubscriptionWhenPull() && !sd.isClassFilterMode()) {
+                subExpression = sd.getSubString();
+            }
+
+            classFilter = sd.isClassFilterMode();
+        }
+
+        int sysFlag = PullSysFlag.buildSysFlag(
+            commitOffsetEnable, // commitOffset
+            true, // suspend
+            subExpression != null, // subscription
+            classFilter // class filter
+        );
+
+        if (this.defaultMQPushConsumer.isAdaptivePullBatchSizeEnable() || this.defaultMQPushConsumer.getPullPipelineDepth() > 1) {
+            this.pullMessagePipelined(pullRequest, subscriptionData, subExpression, classFilter, sysFlag, commitOffsetValue);
+            return;
+        }
+
         final long beginTimestamp = System.currentTimeMillis();
 
         PullCallback pullCallback = new PullCallback() {
@@ -352,42 +386,14 @@ public class DefaultMQPushConsumerImpl implements MQConsumerInner {
                             long prevRequestOffset = pullRequest.getNextOffset();
                             pullRequest.setNextOffset(pullResult.getNextBeginOffset());
                             long pullRT = System.currentTimeMillis() - beginTimestamp;
-                            DefaultMQPushConsumerImpl.this.getConsumerStatsManager().incPullRT(pullRequest.getConsumerGroup(),
-                                pullRequest.getMessageQueue().getTopic(), pullRT);
-
-                            long firstMsgOffset = Long.MAX_VALUE;
-                            if (pullResult.getMsgFoundList() == null || pullResult.getMsgFoundList().isEmpty()) {
+                            if (!DefaultMQPushConsumerImpl.this.dispatchFoundMessages(pullRequest, prevRequestOffset, pullResult, pullRT)) {
                                 DefaultMQPushConsumerImpl.this.executePullRequestImmediately(pullRequest);
+                            } else if (DefaultMQPushConsumerImpl.this.defaultMQPushConsumer.getPullInterval() > 0) {
+                                DefaultMQPushConsumerImpl.this.executePullRequestLater(pullRequest,
+                                    DefaultMQPushConsumerImpl.this.defaultMQPushConsumer.getPullInterval());
                             } else {
-                                firstMsgOffset = pullResult.getMsgFoundList().get(0).getQueueOffset();
-
-                                DefaultMQPushConsumerImpl.this.getConsumerStatsManager().incPullTPS(pullRequest.getConsumerGroup(),
-                                    pullRequest.getMessageQueue().getTopic(), pullResult.getMsgFoundList().size());
-
-                                boolean dispatchToConsume = processQueue.putMessage(pullResult.getMsgFoundList());
-                                DefaultMQPushConsumerImpl.this.consumeMessageService.submitConsumeRequest(
-                                    pullResult.getMsgFoundList(),
-                                    processQueue,
-                                    pullRequest.getMessageQueue(),
-                                    dispatchToConsume);
-
-                                if (DefaultMQPushConsumerImpl.this.defaultMQPushConsumer.getPullInterval() > 0) {
-                                    DefaultMQPushConsumerImpl.this.executePullRequestLater(pullRequest,
-                                        DefaultMQPushConsumerImpl.this.defaultMQPushConsumer.getPullInterval());
-                                } else {
-                                    DefaultMQPushConsumerImpl.this.executePullRequestImmediately(pullRequest);
-                                }
-                            }
-
-                            if (pullResult.getNextBeginOffset() < prevRequestOffset
-                                || firstMsgOffset < prevRequestOffset) {
-                                log.warn(
-                                    "[BUG] pull message result maybe data wrong, nextBeginOffset: {} firstMsgOffset: {} prevRequestOffset: {}",
-                                    pullResult.getNextBeginOffset(),
-                                    firstMsgOffset,
-                                    prevRequestOffset);
+                                DefaultMQPushConsumerImpl.this.executePullRequestImmediately(pullRequest);
                             }
-
                             break;
                         case NO_NEW_MSG:
                         case NO_MATCHED_MSG:
@@ -398,29 +404,7 @@ public class DefaultMQPushConsumerImpl implements MQConsumerInner {
                             DefaultMQPushConsumerImpl.this.executePullRequestImmediately(pullRequest);
                             break;
                         case OFFSET_ILLEGAL:
-                            log.warn("the pull request offset illegal, {} {}",
-                                pullRequest.toString(), pullResult.toString());
-                            pullRequest.setNextOffset(pullResult.getNextBeginOffset());
-
-                            pullRequest.getProcessQueue().setDropped(true);
-                            DefaultMQPushConsumerImpl.this.executeTaskLater(new Runnable() {
-
-                                @Override
-                                public void run() {
-                                    try {
-                                        DefaultMQPushConsumerImpl.this.offsetStore.updateOffset(pullRequest.getMessageQueue(),
-                                            pullRequest.getNextOffset(), false);
-
-                                        DefaultMQPushConsumerImpl.this.offsetStore.persist(pullRequest.getMessageQueue());
-
-                                        DefaultMQPushConsumerImpl.this.rebalanceImpl.removeProcessQueue(pullRequest.getMessageQueue());
-
-                                        log.warn("fix the pull request offset, {}", pullRequest);
-                                    } catch (Throwable e) {
-                                        log.error("executeTaskLater Exception", e);
-                                    }
-                                }
-                            }, 10000);
+                            DefaultMQPushConsumerImpl.this.fixIllegalOffset(pullRequest, pullResult);
                             break;
                         default:
                             break;
@@ -442,32 +426,6 @@ public class DefaultMQPushConsumerImpl implements MQConsumerInner {
             }
         };
 
-        boolean commitOffsetEnable = false;
-        long commitOffsetValue = 0L;
-        if (MessageModel.CLUSTERING == this.defaultMQPushConsumer.getMessageModel()) {
-            commitOffsetValue = this.offsetStore.readOffset(pullRequest.getMessageQueue(), ReadOffsetType.READ_FROM_MEMORY);
-            if (commitOffsetValue > 0) {
-                commitOffsetEnable = true;
-            }
-        }
-
-        String subExpression = null;
-        boolean classFilter = false;
-        SubscriptionData sd = this.rebalanceImpl.getSubscriptionInner().get(pullRequest.getMessageQueue().getTopic());
-        if (sd != null) {
-            if (this.defaultMQPushConsumer.isPostSubscriptionWhenPull() && !sd.isClassFilterMode()) {
-                subExpression = sd.getSubString();
-            }
-
-            classFilter = sd.isClassFilterMode();
-        }
-
-        int sysFlag = PullSysFlag.buildSysFlag(
-            commitOffsetEnable, // commitOffset
-            true, // suspend
-            subExpression != null, // subscription
-            classFilter // class filter
-        );
         try {
             this.pullAPIWrapper.pullKernelImpl(
                 pullRequest.getMessageQueue(),
@@ -490,6 +448,246 @@ public class DefaultMQPushConsumerImpl implements MQConsumerInner {
         }
     }
 
+    /**
+     * Puts the messages found by a pull into the process queue and submits them to consume.
+     *
+     * @return false if no message is left after filtering
+     */
+    private boolean dispatchFoundMessages(final PullRequest pullRequest, final long prevRequestOffset,
+        final PullResult pullResult, final long pullRT) {
+        this.getConsumerStatsManager().incPullRT(pullRequest.getConsumerGroup(),
+            pullRequest.getMessageQueue().getTopic(), pullRT);
+
+        List<MessageExt> msgFoundList = pullResult.getMsgFoundList();
+        boolean found = msgFoundList != null && !msgFoundList.isEmpty();
+        long firstMsgOffset = Long.MAX_VALUE;
+        if (found) {
+            firstMsgOffset = msgFoundList.get(0).getQueueOffset();
+
+            this.getConsumerStatsManager().incPullTPS(pullRequest.getConsumerGroup(),
+                pullRequest.getMessageQueue().getTopic(), msgFoundList.size());
+
+            boolean dispatchToConsume = pullRequest.getProcessQueue().putMessage(msgFoundList);
+            this.consumeMessageService.submitConsumeRequest(
+                msgFoundList,
+                pullRequest.getProcessQueue(),
+                pullRequest.getMessageQueue(),
+                dispatchToConsume);
+        }
+
+        if (pullResult.getNextBeginOffset() < prevRequestOffset
+            || firstMsgOffset < prevRequestOffset) {
+            log.warn(
+                "[BUG] pull message result maybe data wrong, nextBeginOffset: {} firstMsgOffset: {} prevRequestOffset: {}",
+                pullResult.getNextBeginOffset(),
+                firstMsgOffset,
+                prevRequestOffset);
+        }
+        return found;
+    }
+
+    private void fixIllegalOffset(final PullRequest pullRequest, final PullResult pullResult) {
+        log.warn("the pull request offset illegal, {} {}",
+            pullRequest.toString(), pullResult.toString());
+        pullRequest.setNextOffset(pullResult.getNextBeginOffset());
+
+        pullRequest.getProcessQueue().setDropped(true);
+        this.executeTaskLater(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    DefaultMQPushConsumerImpl.this.offsetStore.updateOffset(pullRequest.getMessageQueue(),
+                        pullRequest.getNextOffset(), false);
+
+                    DefaultMQPushConsumerImpl.this.offsetStore.persist(pullRequest.getMessageQueue());
+
+                    DefaultMQPushConsumerImpl.this.rebalanceImpl.removeProcessQueue(pullRequest.getMessageQueue());
+
+                    log.warn("fix the pull request offset, {}", pullRequest);
+                } catch (Throwable e) {
+                    log.error("executeTaskLater Exception", e);
+                }
+            }
+        }, 10000);
+    }
+
+    private void pullMessagePipelined(final PullRequest pullRequest, final SubscriptionData subscriptionData,
+        final String subExpression, final boolean classFilter, final int sysFlag, final long commitOffsetValue) {
+        PullPipeline pullPipeline = pullRequest.getPullPipeline();
+        if (null == pullPipeline) {
+            pullPipeline = new PullPipeline();
+            pullRequest.setPullPipeline(pullPipeline);
+        }
+        // the end of a pull is only predictable if the broker filters nothing out
+        boolean pipelineAllowed = !this.consumeOrderly && !classFilter
+            && ExpressionType.isTagType(subscriptionData.getExpressionType())
+            && SubscriptionData.SUB_ALL.equals(subscriptionData.getSubString());
+        pullPipeline.plan(this.defaultMQPushConsumer, pullRequest.getProcessQueue(), pipelineAllowed,
+            System.currentTimeMillis());
+        new PullRound(pullRequest, subscriptionData, pullPipeline).start(subExpression, sysFlag, commitOffsetValue);
+    }
+
+    /**
+     * The pulls sent at once for a queue, each one starting where the previous one is expected to end. Their results
+     * are applied in order, those not starting where the applied ones ended are dropped, and the next round is
+     * scheduled once all of them are back.
+     */
+    class PullRound {
+        private final PullRequest pullRequest;
+        private final SubscriptionData subscriptionData;
+        private final PullPipeline pullPipeline;
+        private final int batchSize;
+        private final long[] offsets;
+        private final PullResult[] results;
+        private final Throwable[] exceptions;
+        private final boolean[] completed;
+        private final long beginTimestamp = System.currentTimeMillis();
+        private int appliedNum;
+        private int completedNum;
+        /**
+         * Set by an exception or an illegal offset, the later results are dropped
+         */
+        private boolean stopped;
+        /**
+         * Negative if the queue is not pulled anymore
+         */
+        private long nextPullDelay;
+
+        PullRound(PullRequest pullRequest, SubscriptionData subscriptionData, PullPipeline pullPipeline) {
+            this.pullRequest = pullRequest;
+            this.subscriptionData = subscriptionData;
+            this.pullPipeline = pullPipeline;
+            this.batchSize = pullPipeline.getBatchSize();
+            long endOffset = pullRequest.getNextOffset() + pullPipeline.getLag();
+            long[] planned = new long[pullPipeline.getDepth()];
+            int depth = 0;
+            for (long offset = pullRequest.getNextOffset(); depth < planned.length; depth++) {
+                // never pull past the end of the queue known by the last pull
+                if (depth > 0 && offset >= endOffset) {
+                    break;
+                }
+                planned[depth] = offset;
+                offset = pullPipeline.expectedNextOffset(offset);
+            }
+            this.offsets = Arrays.copyOf(planned, depth);
+            this.results = new PullResult[depth];
+            this.exceptions = new Throwable[depth];
+            this.completed = new boolean[depth];
+        }
+
+        void start(String subExpression, int sysFlag, long commitOffsetValue) {
+            for (int i = 0; i < offsets.length; i++) {
+                final int index = i;
+                try {
+                    DefaultMQPushConsumerImpl.this.pullAPIWrapper.pullKernelImpl(
+                        pullRequest.getMessageQueue(),
+                        subExpression,
+                        subscriptionData.getExpressionType(),
+                        subscriptionData.getSubVersion(),
+                        offsets[i],
+                        batchSize,
+                        pullPipeline.getBatchSizeInBytes(),
+                        // only the first pull commits the offset or waits for new messages
+                        i == 0 ? sysFlag : PullSysFlag.clearSuspendFlag(PullSysFlag.clearCommitOffsetFlag(sysFlag)),
+                        commitOffsetValue,
+                        BROKER_SUSPEND_MAX_TIME_MILLIS,
+                        CONSUMER_TIMEOUT_MILLIS_WHEN_SUSPEND,
+                        CommunicationMode.ASYNC,
+                        new PullCallback() {
+                            @Override
+                            public void onSuccess(PullResult pullResult) {
+                                complete(index, pullResult, null);
+                            }
+
+                            @Override
+                            public void onException(Throwable e) {
+                                complete(index, null, e);
+                            }
+                        }
+                    );
+                } catch (Exception e) {
+                    log.error("pullKernelImpl exception", e);
+                    for (int j = i; j < offsets.length; j++) {
+                        complete(j, null, e);
+                    }
+                    return;
+                }
+            }
+        }
+
+        private void complete(int index, PullResult pullResult, Throwable e) {
+            if (pullResult != null) {
+                pullResult = DefaultMQPushConsumerImpl.this.pullAPIWrapper.processPullResult(pullRequest.getMessageQueue(),
+                    pullResult, subscriptionData);
+            }
+            synchronized (this) {
+                results[index] = pullResult;
+                exceptions[index] = e;
+                completed[index] = true;
+                completedNum++;
+                while (appliedNum < completed.length && completed[appliedNum]) {
+                    apply(appliedNum++);
+                }
+                if (completedNum < completed.length) {
+                    return;
+                }
+            }
+
+            if (nextPullDelay > 0) {
+                DefaultMQPushConsumerImpl.this.executePullRequestLater(pullRequest, nextPullDelay);
+            } else if (nextPullDelay == 0) {
+                DefaultMQPushConsumerImpl.this.executePullRequestImmediately(pullRequest);
+            }
+        }
+
+        private void apply(int index) {
+            if (stopped) {
+                return;
+            }
+            Throwable e = exceptions[index];
+            if (e != null) {
+                if (!pullRequest.getMessageQueue().getTopic().startsWith(MixAll.RETRY_GROUP_TOPIC_PREFIX)) {
+                    log.warn("execute the pull request exception", e);
+                }
+                if (e instanceof MQBrokerException && ((MQBrokerException) e).getResponseCode() == ResponseCode.FLOW_CONTROL) {
+                    nextPullDelay = PULL_TIME_DELAY_MILLS_WHEN_BROKER_FLOW_CONTROL;
+                } else {
+                    nextPullDelay = pullTimeDelayMillsWhenException;
+                }
+                stopped = true;
+                return;
+            }
+            PullResult pullResult = results[index];
+            if (pullResult == null || offsets[index] != pullRequest.getNextOffset()) {
+                return;
+            }
+
+            long pullRT = System.currentTimeMillis() - beginTimestamp;
+            pullPipeline.onPulled(offsets[index], batchSize, pullResult, pullRT);
+            switch (pullResult.getPullStatus()) {
+                case FOUND:
+                    pullRequest.setNextOffset(pullResult.getNextBeginOffset());
+                    if (DefaultMQPushConsumerImpl.this.dispatchFoundMessages(pullRequest, offsets[index], pullResult, pullRT)) {
+                        nextPullDelay = Math.max(nextPullDelay, DefaultMQPushConsumerImpl.this.defaultMQPushConsumer.getPullInterval());
+                    }
+                    break;
+                case NO_NEW_MSG:
+                case NO_MATCHED_MSG:
+                    pullRequest.setNextOffset(pullResult.getNextBeginOffset());
+                    DefaultMQPushConsumerImpl.this.correctTagsOffset(pullRequest);
+                    break;
+                case OFFSET_ILLEGAL:
+                    DefaultMQPushConsumerImpl.this.fixIllegalOffset(pullRequest, pullResult);
+                    nextPullDelay = -1;
+                    stopped = true;
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
     void popMessage(final PopRequest popRequest) {
         final PopProcessQueue processQueue = popRequest.getPopProcessQueue();
         if (processQueue.isDropped()) {
@@ -1161,6 +1359,15 @@ public class DefaultMQPushConsumerImpl implements MQConsumerInner {
                 null);
         }
 
+        // pullPipelineDepth
+        if (this.defaultMQPushConsumer.getPullPipelineDepth() < 1
+            || this.defaultMQPushConsumer.getPullPipelineDepth() > PullPipeline.MAX_PULL_PIPELINE_DEPTH) {
+            throw new MQClientException(
+                "pullPipelineDepth Out of range [1, " + PullPipeline.MAX_PULL_PIPELINE_DEPTH + "]"
+                    + FAQUrl.suggestTodo(FAQUrl.CLIENT_PARAMETER_CHECK_URL),
+                null);
+        }
+
         // popInvisibleTime
         if (this.defaultMQPushConsumer.getPopInvisibleTime() < MIN_POP_INVISIBLE_TIME
             || this.defaultMQPushConsumer.getPopInvisibleTime() > MAX_POP_INVISIBLE_TIME) {
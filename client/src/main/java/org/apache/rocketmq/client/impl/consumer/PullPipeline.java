@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.rocketmq.client.impl.consumer;
+
+import java.util.List;
+import org.apache.rocketmq.client.consumer.DefaultMQPushConsumer;
+import org.apache.rocketmq.client.consumer.PullResult;
+import org.apache.rocketmq.client.consumer.PullStatus;
+import org.apache.rocketmq.common.message.MessageExt;
+
+/**
+ * Pull statistics of a queue of a push consumer, which plan the next round of pulls.
+ *
+ * <p>With {@link DefaultMQPushConsumer#isAdaptivePullBatchSizeEnable()} the batch size starts at
+ * {@link DefaultMQPushConsumer#getPullBatchSize()}, doubles while the queue lags behind and the consumers drained the
+ * cached messages, and otherwise shrinks to what is consumed within two pull round trips. With
+ * {@link DefaultMQPushConsumer#getPullPipelineDepth()} above one, a lagging queue is pulled by several requests at
+ * once, each starting where the previous one is expected to end. Both stay within the room left by
+ * {@code pullThresholdForQueue} and {@code pullThresholdSizeForQueue}.
+ */
+public class PullPipeline {
+    public static final int MAX_PULL_BATCH_SIZE = 1024;
+    public static final int MAX_PULL_PIPELINE_DEPTH = 16;
+
+    private static final long CONSUME_RATE_SAMPLE_INTERVAL_MILLIS = 1000;
+    private static final double SMOOTHING_FACTOR = 0.2;
+
+    private double avgMsgSize;
+    private double avgPullRT;
+    private double consumeTps;
+    private long putCount;
+    private long lastSampleTimestamp;
+    private long lastSampleConsumedCount;
+
+    private long lag;
+    /**
+     * How far the last pull not reaching the end of the queue advanced, and whether it was cut short by the broker
+     */
+    private long stride;
+    private boolean strideCapped;
+
+    private int batchSize;
+    private int batchSizeInBytes;
+    private int depth = 1;
+
+    /**
+     * Plans the next round of pulls, call {@link #getBatchSize()}, {@link #getBatchSizeInBytes()} and
+     * {@link #getDepth()} for the result.
+     *
+     * @param pipelineAllowed whether the messages pulled are consecutive, so the end of a pull can be predicted
+     */
+    public synchronized void plan(DefaultMQPushConsumer consumer, ProcessQueue processQueue, boolean pipelineAllowed,
+        long now) {
+        long cachedCount = processQueue.getMsgCount().get();
+        long roomCount = Math.max(1, consumer.getPullThresholdForQueue() - cachedCount);
+        long roomSize = Math.max(1, (long) consumer.getPullThresholdSizeForQueue() * 1024 * 1024 - processQueue.getMsgSize().get());
+        sampleConsumeRate(cachedCount, now);
+
+        int batch = consumer.getPullBatchSize();
+        if (consumer.isAdaptivePullBatchSizeEnable()) {
+            if (batchSize > 0 && lag > 0 && cachedCount < batchSize) {
+                batch = Math.max(batch, batchSize * 2);
+            } else if (batchSize > 0) {
+                int demand = (int) Math.min(MAX_PULL_BATCH_SIZE, Math.ceil(consumeTps * avgPullRT * 2 / 1000));
+                batch = Math.max(batch, Math.min(batchSize, demand));
+            }
+        }
+
+        // as in expectedNextOffset, a smaller batch below only shortens the step so no pull starts past the end
+        long step = strideCapped ? Math.min(batch, stride) : batch;
+        int pipelineDepth = 1;
+        if (pipelineAllowed && consumer.getPullPipelineDepth() > 1 && lag > 0 && stride > 0) {
+            pipelineDepth = (int) Math.min(consumer.getPullPipelineDepth(), (lag + step - 1) / step);
+        }
+        while (pipelineDepth > 1 && (long) pipelineDepth * step > roomCount) {
+            pipelineDepth--;
+        }
+
+        batch = (int) Math.min(batch, Math.min(MAX_PULL_BATCH_SIZE, roomCount / pipelineDepth));
+        if (avgMsgSize > 0) {
+            batch = (int) Math.min(batch, roomSize / pipelineDepth / (long) Math.ceil(avgMsgSize));
+        }
+        this.batchSize = Math.max(1, batch);
+        this.batchSizeInBytes = consumer.getPullBatchSizeInBytes();
+        if (consumer.isAdaptivePullBatchSizeEnable()) {
+            this.batchSizeInBytes = (int) Math.max(this.batchSizeInBytes,
+                Math.min(Integer.MAX_VALUE, (long) this.batchSize * (long) Math.ceil(avgMsgSize)));
+        }
+        this.depth = pipelineDepth;
+    }
+
+    /**
+     * @return how many messages the last pull left behind, the pulls of a round start before the offset it ended at
+     * plus the lag
+     */
+    public synchronized long getLag() {
+        return lag;
+    }
+
+    /**
+     * @return the offset a pull from requestOffset is expected to continue at
+     */
+    public synchronized long expectedNextOffset(long requestOffset) {
+        return requestOffset + (strideCapped ? Math.min(batchSize, stride) : batchSize);
+    }
+
+    public synchronized void onPulled(long requestOffset, int requestBatchSize, PullResult pullResult, long pullRT) {
+        avgPullRT = avgPullRT == 0 ? pullRT : smooth(avgPullRT, pullRT);
+        lag = Math.max(0, pullResult.getMaxOffset() - pullResult.getNextBeginOffset());
+        if (pullResult.getPullStatus() != PullStatus.FOUND) {
+            return;
+        }
+        if (lag > 0) {
+            stride = pullResult.getNextBeginOffset() - requestOffset;
+            strideCapped = stride < requestBatchSize;
+        }
+        List<MessageExt> msgs = pullResult.getMsgFoundList();
+        if (msgs != null && !msgs.isEmpty()) {
+            long bodySize = 0;
+            for (MessageExt msg : msgs) {
+                bodySize += msg.getBody() == null ? 0 : msg.getBody().length;
+            }
+            double msgSize = (double) bodySize / msgs.size();
+            avgMsgSize = avgMsgSize == 0 ? msgSize : smooth(avgMsgSize, msgSize);
+            putCount += msgs.size();
+        }
+    }
+
+    private void sampleConsumeRate(long cachedCount, long now) {
+        if (lastSampleTimestamp == 0) {
+            lastSampleTimestamp = now;
+            return;
+        }
+        long interval = now - lastSampleTimestamp;
+        if (interval < CONSUME_RATE_SAMPLE_INTERVAL_MILLIS) {
+            return;
+        }
+        long consumedCount = Math.max(lastSampleConsumedCount, putCount - cachedCount);
+        double tps = (consumedCount - lastSampleConsumedCount) * 1000.0 / interval;
+        consumeTps = consumeTps == 0 ? tps : smooth(consumeTps, tps);
+        lastSampleConsumedCount = consumedCount;
+        lastSampleTimestamp = now;
+    }
+
+    private static double smooth(double average, double value) {
+        return average + SMOOTHING_FACTOR * (value - average);
+    }
+
+    public synchronized int getBatchSize() {
+        return batchSize;
+    }
+
+    public synchronized int getBatchSizeInBytes() {
+        return batchSizeInBytes;
+    }
+
+    public synchronized int getDepth() {
+        return depth;
+    }
+
+    public synchronized double getConsumeTps() {
+        return consumeTps;
+    }
+}
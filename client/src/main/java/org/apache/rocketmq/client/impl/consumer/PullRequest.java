@@ -25,6 +25,7 @@ public class PullRequest implements MessageRequest {
     private ProcessQueue processQueue;
     private long nextOffset;
     private boolean previouslyLocked = false;
+    private PullPipeline pullPipeline;
 
     public boolean isPreviouslyLocked() {
         return previouslyLocked;
@@ -103,6 +104,14 @@ public class PullRequest implements MessageRequest {
         this.processQueue = processQueue;
     }
 
+    public PullPipeline getPullPipeline() {
+        return pullPipeline;
+    }
+
+    public void setPullPipeline(PullPipeline pullPipeline) {
+        this.pullPipeline = pullPipeline;
+    }
+
     @Override
     public MessageRequestMode getMessageRequestMode() {
         return MessageRequestMode.PULL;
@@ -281,6 +281,10 @@ public class RebalancePushImpl extends RebalanceImpl {
 
     @Override
     public ProcessQueue createProcessQueue() {
+        if (!this.defaultMQPushConsumerImpl.isConsumeOrderly()
+            && this.defaultMQPushConsumerImpl.getDefaultMQPushConsumer().isLockFreeProcessQueueEnable()) {
+            return new ConcurrentProcessQueue();
+        }
         return new ProcessQueue();
     }
 
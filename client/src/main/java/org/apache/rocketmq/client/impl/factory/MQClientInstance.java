@@ -70,8 +70,10 @@ import org.apache.rocketmq.remoting.exception.RemotingException;
 import org.apache.rocketmq.remoting.netty.NettyClientConfig;
 import org.apache.rocketmq.remoting.protocol.NamespaceUtil;
 import org.apache.rocketmq.remoting.protocol.RemotingCommand;
+import org.apache.rocketmq.remoting.protocol.ResponseCode;
 import org.apache.rocketmq.remoting.protocol.body.ConsumeMessageDirectlyResult;
 import org.apache.rocketmq.remoting.protocol.body.ConsumerRunningInfo;
+import org.apache.rocketmq.remoting.protocol.body.TopicRouteChangeBody;
 import org.apache.rocketmq.remoting.protocol.heartbeat.ConsumerData;
 import org.apache.rocketmq.remoting.protocol.heartbeat.HeartbeatData;
 import org.apache.rocketmq.remoting.protocol.heartbeat.MessageModel;
@@ -111,6 +113,10 @@ public class MQClientInstance {
     private final MQAdminImpl mQAdminImpl;
     private final ConcurrentMap<String/* Topic */, TopicRouteData> topicRouteTable = new ConcurrentHashMap<>();
     private final ConcurrentMap<String/* Topic */, ConcurrentMap<MessageQueue, String/*brokerName*/>> topicEndPointsTable = new ConcurrentHashMap<>();
+    /**
+     * Versions of the routes in topicRouteTable, given by the name server when subscribing topic routes.
+     */
+    private final ConcurrentMap<String/* Topic */, Long> topicRouteVersionTable = new ConcurrentHashMap<>();
     private final Lock lockNamesrv = new ReentrantLock();
     private final Lock lockHeartbeat = new ReentrantLock();
 
@@ -357,11 +363,83 @@ public class MQClientInstance {
             }
         }
 
+        if (this.clientConfig.isEnableTopicRouteNotify() && this.subscribeTopicRoute(topicList)) {
+            return;
+        }
+
         for (String topic : topicList) {
             this.updateTopicRouteInfoFromNameServer(topic);
         }
     }
 
+    /**
+     * Takes the routes changed since the held versions in one request, instead of a request per topic, and have the
+     * name server push later changes.
+     *
+     * @return false if the routes have to be queried one by one
+     */
+    private boolean subscribeTopicRoute(final Set<String> topicList) {
+        try {
+            if (this.lockNamesrv.tryLock(LOCK_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                try {
+                    this.topicRouteVersionTable.keySet().retainAll(topicList);
+                    Map<String, Long> topicRouteVersionTable = new HashMap<>(topicList.size());
+                    for (String topic : topicList) {
+                        Long version = this.topicRouteVersionTable.get(topic);
+                        // take the route again if some producer or consumer misses it
+                        topicRouteVersionTable.put(topic, version == null || this.isNeedUpdateTopicRouteInfo(topic) ? 0L : version);
+                    }
+                    TopicRouteChangeBody changeBody = this.mQClientAPIImpl.subscribeTopicRoute(topicRouteVersionTable,
+                        this.clientConfig.getMqClientApiTimeout());
+                    this.updateTopicRouteInfo(changeBody);
+                    return true;
+                } catch (MQClientException e) {
+                    if (e.getResponseCode() != ResponseCode.REQUEST_CODE_NOT_SUPPORTED) {
+                        log.warn("subscribeTopicRoute Exception", e);
+                    }
+                } catch (RemotingException e) {
+                    log.warn("subscribeTopicRoute Exception", e);
+                } finally {
+                    this.lockNamesrv.unlock();
+                }
+            } else {
+                log.warn("subscribeTopicRoute tryLock timeout {}ms. [{}]", LOCK_TIMEOUT_MILLIS, this.clientId);
+            }
+        } catch (InterruptedException e) {
+            log.warn("subscribeTopicRoute Exception", e);
+        }
+        return false;
+    }
+
+    /**
+     * Applies the routes pushed by the name server.
+     */
+    public void onTopicRouteChanged(final TopicRouteChangeBody changeBody) {
+        try {
+            if (this.lockNamesrv.tryLock(LOCK_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                try {
+                    this.updateTopicRouteInfo(changeBody);
+                } finally {
+                    this.lockNamesrv.unlock();
+                }
+            } else {
+                log.warn("onTopicRouteChanged tryLock timeout {}ms. [{}]", LOCK_TIMEOUT_MILLIS, this.clientId);
+            }
+        } catch (InterruptedException e) {
+            log.warn("onTopicRouteChanged Exception", e);
+        }
+    }
+
+    private void updateTopicRouteInfo(final TopicRouteChangeBody changeBody) {
+        for (Entry<String, TopicRouteData> entry : changeBody.getTopicRouteTable().entrySet()) {
+            this.updateTopicRouteInfo(entry.getKey(), entry.getValue());
+            Long version = changeBody.getTopicRouteVersionTable().get(entry.getKey());
+            if (version != null) {
+                this.topicRouteVersionTable.put(entry.getKey(), version);
+            }
+        }
+    }
+
     public Map<MessageQueue, Long> parseOffsetTableFromBroker(Map<MessageQueue, Long> offsetTable, String namespace) {
         HashMap<MessageQueue, Long> newOffsetTable = new HashMap<>(offsetTable.size(), 1);
         if (StringUtils.isNotEmpty(namespace)) {
@@ -685,55 +763,7 @@ public class MQClientInstance {
                         topicRouteData = this.mQClientAPIImpl.getTopicRouteInfoFromNameServer(topic, clientConfig.getMqClientApiTimeout());
                     }
                     if (topicRouteData != null) {
-                        TopicRouteData old = this.topicRouteTable.get(topic);
-                        boolean changed = topicRouteData.topicRouteDataChanged(old);
-                        if (!changed) {
-                            changed = this.isNeedUpdateTopicRouteInfo(topic);
-                        } else {
-                            log.info("the topic[{}] route info changed, old[{}] ,new[{}]", topic, old, topicRouteData);
-                        }
-
-                        if (changed) {
-
-                            for (BrokerData bd : topicRouteData.getBrokerDatas()) {
-                                this.brokerAddrTable.put(bd.getBrokerName(), bd.getBrokerAddrs());
-                            }
-
-                            // Update endpoint map
-                            {
-                                ConcurrentMap<MessageQueue, String> mqEndPoints = topicRouteData2EndpointsForStaticTopic(topic, topicRouteData);
-                                if (!mqEndPoints.isEmpty()) {
-                                    topicEndPointsTable.put(topic, mqEndPoints);
-                                }
-                            }
-
-                            // Update Pub info
-                            {
-                                TopicPublishInfo publishInfo = topicRouteData2TopicPublishInfo(topic, topicRouteData);
-                                publishInfo.setHaveTopicRouterInfo(true);
-                                for (Entry<String, MQProducerInner> entry : this.producerTable.entrySet()) {
-                                    MQProducerInner impl = entry.getValue();
-                                    if (impl != null) {
-                                        impl.updateTopicPublishInfo(topic, publishInfo);
-                                    }
-                                }
-                            }
-
-                            // Update sub info
-                            if (!consumerTable.isEmpty()) {
-                                Set<MessageQueue> subscribeInfo = topicRouteData2TopicSubscribeInfo(topic, topicRouteData);
-                                for (Entry<String, MQConsumerInner> entry : this.consumerTable.entrySet()) {
-                                    MQConsumerInner impl = entry.getValue();
-                                    if (impl != null) {
-                                        impl.updateTopicSubscribeInfo(topic, subscribeInfo);
-                                    }
-                                }
-                            }
-                            TopicRouteData cloneTopicRouteData = new TopicRouteData(topicRouteData);
-                            log.info("topicRouteTable.put. Topic = {}, TopicRouteData[{}]", topic, cloneTopicRouteData);
-                            this.topicRouteTable.put(topic, cloneTopicRouteData);
-                            return true;
-                        }
+                        return this.updateTopicRouteInfo(topic, topicRouteData);
                     } else {
                         log.warn("updateTopicRouteInfoFromNameServer, getTopicRouteInfoFromNameServer return null, Topic: {}. [{}]", topic, this.clientId);
                     }
@@ -757,6 +787,62 @@ public class MQClientInstance {
         return false;
     }
 
+    /**
+     * Applies the route of the topic to the producers and consumers, if it changed or some of them miss it.
+     */
+    private boolean updateTopicRouteInfo(final String topic, final TopicRouteData topicRouteData) {
+        TopicRouteData old = this.topicRouteTable.get(topic);
+        boolean changed = topicRouteData.topicRouteDataChanged(old);
+        if (!changed) {
+            changed = this.isNeedUpdateTopicRouteInfo(topic);
+        } else {
+            log.info("the topic[{}] route info changed, old[{}] ,new[{}]", topic, old, topicRouteData);
+        }
+
+        if (changed) {
+
+            for (BrokerData bd : topicRouteData.getBrokerDatas()) {
+                this.brokerAddrTable.put(bd.getBrokerName(), bd.getBrokerAddrs());
+            }
+
+            // Update endpoint map
+            {
+                ConcurrentMap<MessageQueue, String> mqEndPoints = topicRouteData2EndpointsForStaticTopic(topic, topicRouteData);
+                if (!mqEndPoints.isEmpty()) {
+                    topicEndPointsTable.put(topic, mqEndPoints);
+                }
+            }
+
+            // Update Pub info
+            {
+                TopicPublishInfo publishInfo = topicRouteData2TopicPublishInfo(topic, topicRouteData);
+                publishInfo.setHaveTopicRouterInfo(true);
+                for (Entry<String, MQProducerInner> entry : this.producerTable.entrySet()) {
+                    MQProducerInner impl = entry.getValue();
+                    if (impl != null) {
+                        impl.updateTopicPublishInfo(topic, publishInfo);
+                    }
+                }
+            }
+
+            // Update sub info
+            if (!consumerTable.isEmpty()) {
+                Set<MessageQueue> subscribeInfo = topicRouteData2TopicSubscribeInfo(topic, topicRouteData);
+                for (Entry<String, MQConsumerInner> entry : this.consumerTable.entrySet()) {
+                    MQConsumerInner impl = entry.getValue();
+                    if (impl != null) {
+                        impl.updateTopicSubscribeInfo(topic, subscribeInfo);
+                    }
+                }
+            }
+            TopicRouteData cloneTopicRouteData = new TopicRouteData(topicRouteData);
+            log.info("topicRouteTable.put. Topic = {}, TopicRouteData[{}]", topic, cloneTopicRouteData);
+            this.topicRouteTable.put(topic, cloneTopicRouteData);
+            return true;
+        }
+        return false;
+    }
+
     private HeartbeatData prepareHeartbeatData(boolean isWithoutSub) {
         HeartbeatData heartbeatData = new HeartbeatData();
 
@@ -70,6 +70,8 @@ import org.apache.rocketmq.common.UtilAll;
 import org.apache.rocketmq.common.compression.CompressionType;
 import org.apache.rocketmq.common.compression.Compressor;
 import org.apache.rocketmq.common.compression.CompressorFactory;
+import org.apache.rocketmq.common.compression.ZstdCompressor;
+import org.apache.rocketmq.common.compression.ZstdDictionary;
 import org.apache.rocketmq.common.help.FAQUrl;
 import org.apache.rocketmq.common.message.Message;
 import org.apache.rocketmq.common.message.MessageAccessor;
@@ -118,7 +120,9 @@ public class DefaultMQProducerImpl implements MQProducerInner {
     // compression related
     private int compressLevel = Integer.parseInt(System.getProperty(MixAll.MESSAGE_COMPRESS_LEVEL, "5"));
     private CompressionType compressType = CompressionType.of(System.getProperty(MixAll.MESSAGE_COMPRESS_TYPE, "ZLIB"));
-    private final Compressor compressor = CompressorFactory.getCompressor(compressType);
+    private Compressor compressor = CompressorFactory.getCompressor(compressType);
+    private ZstdDictionary zstdDictionary;
+    private volatile ProduceAccumulator produceAccumulator;
 
     // backpressure related
     private Semaphore semaphoreAsyncSendNum;
@@ -229,6 +233,14 @@ public class DefaultMQProducerImpl implements MQProducerInner {
                     mQClientFactory.start();
                 }
 
+                if (this.defaultMQProducer.isAutoBatch()) {
+                    this.produceAccumulator = new ProduceAccumulator(this);
+                }
+
+                if (this.defaultMQProducer.getZstdDictionary() != null) {
+                    this.zstdDictionary = ZstdDictionary.register(this.defaultMQProducer.getZstdDictionary());
+                }
+
                 log.info("the producer [{}] start OK. sendMessageWithVIPChannel={}", this.defaultMQProducer.getProducerGroup(),
                     this.defaultMQProducer.isSendMessageWithVIPChannel());
                 this.serviceState = ServiceState.RUNNING;
@@ -268,6 +280,9 @@ public class DefaultMQProducerImpl implements MQProducerInner {
             case CREATE_JUST:
                 break;
             case RUNNING:
+                if (this.produceAccumulator != null) {
+                    this.produceAccumulator.shutdown();
+                }
                 this.mQClientFactory.unregisterProducer(this.defaultMQProducer.getProducerGroup());
                 this.defaultAsyncSenderExecutor.shutdown();
                 if (shutdownFactory) {
@@ -506,6 +521,16 @@ public class DefaultMQProducerImpl implements MQProducerInner {
     @Deprecated
     public void send(final Message msg, final SendCallback sendCallback, final long timeout)
         throws MQClientException, RemotingException, InterruptedException {
+        ProduceAccumulator produceAccumulator = this.produceAccumulator;
+        if (produceAccumulator != null && this.serviceState == ServiceState.RUNNING
+            && produceAccumulator.tryAppend(msg, sendCallback, timeout)) {
+            return;
+        }
+        sendAsyncImpl(msg, sendCallback, timeout);
+    }
+
+    void sendAsyncImpl(final Message msg, final SendCallback sendCallback, final long timeout)
+        throws MQClientException, InterruptedException {
         final long beginStartTime = System.currentTimeMillis();
         Runnable runnable = new Runnable() {
             @Override
@@ -775,7 +800,7 @@ public class DefaultMQProducerImpl implements MQProducerInner {
                 int sysFlag = 0;
                 boolean msgBodyCompressed = false;
                 if (this.tryToCompressMessage(msg)) {
-                    sysFlag |= MessageSysFlag.COMPRESSED_FLAG;
+                    sysFlag |= msg instanceof MessageBatch ? MessageSysFlag.BATCH_COMPRESSED_FLAG : MessageSysFlag.COMPRESSED_FLAG;
                     sysFlag |= compressType.getCompressionFlag();
                     msgBodyCompressed = true;
                 }
@@ -938,15 +963,19 @@ public class DefaultMQProducerImpl implements MQProducerInner {
     }
 
     private boolean tryToCompressMessage(final Message msg) {
-        if (msg instanceof MessageBatch) {
-            //batch does not support compressing right now
+        if (msg instanceof MessageBatch && !this.defaultMQProducer.isCompressBatchEnable()) {
             return false;
         }
         byte[] body = msg.getBody();
         if (body != null) {
             if (body.length >= this.defaultMQProducer.getCompressMsgBodyOverHowmuch()) {
                 try {
-                    byte[] data = compressor.compress(body, compressLevel);
+                    // the broker decompresses a batch, and it does not know the dictionaries of the applications
+                    boolean useDictionary = zstdDictionary != null && compressor instanceof ZstdCompressor
+                        && !(msg instanceof MessageBatch);
+                    byte[] data = useDictionary
+                        ? ((ZstdCompressor) compressor).compress(body, compressLevel, zstdDictionary)
+                        : compressor.compress(body, compressLevel);
                     if (data != null) {
                         msg.setBody(data);
                         return true;
@@ -1639,6 +1668,7 @@ public class DefaultMQProducerImpl implements MQProducerInner {
 
     public void setCompressType(CompressionType compressType) {
         this.compressType = compressType;
+        this.compressor = CompressorFactory.getCompressor(compressType);
     }
 
     public ServiceState getServiceState() {
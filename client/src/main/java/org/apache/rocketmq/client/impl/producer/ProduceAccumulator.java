@@ -0,0 +1,260 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.rocketmq.client.impl.producer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.apache.rocketmq.client.Validators;
+import org.apache.rocketmq.client.producer.DefaultMQProducer;
+import org.apache.rocketmq.client.producer.SendCallback;
+import org.apache.rocketmq.client.producer.SendResult;
+import org.apache.rocketmq.common.MixAll;
+import org.apache.rocketmq.common.ThreadFactoryImpl;
+import org.apache.rocketmq.common.message.Message;
+import org.apache.rocketmq.common.message.MessageBatch;
+import org.apache.rocketmq.common.message.MessageClientIDSetter;
+import org.apache.rocketmq.common.message.MessageConst;
+import org.apache.rocketmq.logging.org.slf4j.Logger;
+import org.apache.rocketmq.logging.org.slf4j.LoggerFactory;
+import org.apache.rocketmq.remoting.exception.RemotingTooMuchRequestException;
+
+/**
+ * Accumulates the asynchronously sent messages of a topic and sends them as one {@link MessageBatch} once
+ * {@link DefaultMQProducer#getBatchSize()} bytes are buffered or {@link DefaultMQProducer#getLingerMs()} passed since
+ * the first one. The queue of a batch is chosen when it is sent, so it goes through the usual fault tolerance and
+ * retries, and every message gets its own {@link SendResult}.
+ */
+public class ProduceAccumulator {
+    private static final Logger log = LoggerFactory.getLogger(ProduceAccumulator.class);
+
+    /**
+     * Rough size of the fields encoded along with the body of a message in a batch
+     */
+    private static final int MESSAGE_OVERHEAD = 64;
+
+    private final DefaultMQProducerImpl producerImpl;
+    private final ConcurrentMap<String/* topic */, Batch> batchTable = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService lingerScheduler;
+
+    private static class PendingMessage {
+        private final Message message;
+        private final SendCallback sendCallback;
+        private final long deadline;
+
+        PendingMessage(Message message, SendCallback sendCallback, long deadline) {
+            this.message = message;
+            this.sendCallback = sendCallback;
+            this.deadline = deadline;
+        }
+    }
+
+    private static class Batch {
+        private List<PendingMessage> messages = new ArrayList<>();
+        private int size;
+        /**
+         * Identifies the messages a linger task was scheduled for
+         */
+        private long generation;
+
+        private List<PendingMessage> drain() {
+            List<PendingMessage> drained = messages;
+            messages = new ArrayList<>();
+            size = 0;
+            generation++;
+            return drained;
+        }
+    }
+
+    public ProduceAccumulator(DefaultMQProducerImpl producerImpl) {
+        this.producerImpl = producerImpl;
+        this.lingerScheduler = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryImpl("ProducerLingerScheduler_", true));
+    }
+
+    /**
+     * @return false if the message has to be sent on its own
+     */
+    public boolean tryAppend(Message msg, SendCallback sendCallback, long timeout) {
+        DefaultMQProducer producer = producerImpl.getDefaultMQProducer();
+        if (sendCallback == null || !isBatchable(msg, producer)) {
+            return false;
+        }
+        int messageSize = msg.getBody().length + MESSAGE_OVERHEAD;
+        int batchSize = Math.min(producer.getBatchSize(), producer.getMaxMessageSize() / 2);
+        if (messageSize >= batchSize) {
+            return false;
+        }
+        try {
+            Validators.checkMessage(msg, producer);
+        } catch (Exception e) {
+            return false;
+        }
+        MessageClientIDSetter.setUniqID(msg);
+
+        Batch batch = batchTable.computeIfAbsent(msg.getTopic(), k -> new Batch());
+        List<PendingMessage> ready = null;
+        synchronized (batch) {
+            if (batch.size + messageSize > batchSize) {
+                ready = batch.drain();
+            }
+            batch.messages.add(new PendingMessage(msg, sendCallback, System.currentTimeMillis() + timeout));
+            batch.size += messageSize;
+            if (batch.messages.size() == 1) {
+                final long generation = batch.generation;
+                lingerScheduler.schedule(() -> flush(batch, generation), producer.getLingerMs(), TimeUnit.MILLISECONDS);
+            }
+        }
+        if (ready != null) {
+            send(ready);
+        }
+        return true;
+    }
+
+    private static boolean isBatchable(Message msg, DefaultMQProducer producer) {
+        if (msg instanceof MessageBatch || msg.getBody() == null || !msg.isWaitStoreMsgOK()) {
+            return false;
+        }
+        // keep compressing the larger bodies
+        if (msg.getBody().length > producer.getCompressMsgBodyOverHowmuch()) {
+            return false;
+        }
+        if (msg.getTopic() == null || msg.getTopic().startsWith(MixAll.RETRY_GROUP_TOPIC_PREFIX)) {
+            return false;
+        }
+        Map<String, String> properties = msg.getProperties();
+        return !properties.containsKey(MessageConst.PROPERTY_DELAY_TIME_LEVEL)
+            && !properties.containsKey(MessageConst.PROPERTY_TIMER_DELIVER_MS)
+            && !properties.containsKey(MessageConst.PROPERTY_TIMER_DELAY_SEC)
+            && !properties.containsKey(MessageConst.PROPERTY_TIMER_DELAY_MS)
+            && !properties.containsKey(MessageConst.PROPERTY_TRANSACTION_PREPARED);
+    }
+
+    private void flush(Batch batch, long generation) {
+        List<PendingMessage> ready;
+        synchronized (batch) {
+            if (batch.generation != generation || batch.messages.isEmpty()) {
+                return;
+            }
+            ready = batch.drain();
+        }
+        send(ready);
+    }
+
+    private void send(List<PendingMessage> pendingMessages) {
+        long deadline = Long.MAX_VALUE;
+        for (PendingMessage pendingMessage : pendingMessages) {
+            deadline = Math.min(deadline, pendingMessage.deadline);
+        }
+        long timeout = deadline - System.currentTimeMillis();
+        if (timeout <= 0) {
+            onException(pendingMessages, new RemotingTooMuchRequestException("DEFAULT ASYNC send call timeout"));
+            return;
+        }
+        try {
+            if (pendingMessages.size() == 1) {
+                PendingMessage pendingMessage = pendingMessages.get(0);
+                producerImpl.sendAsyncImpl(pendingMessage.message, pendingMessage.sendCallback, timeout);
+                return;
+            }
+            List<Message> messages = new ArrayList<>(pendingMessages.size());
+            for (PendingMessage pendingMessage : pendingMessages) {
+                messages.add(pendingMessage.message);
+            }
+            MessageBatch msgBatch = MessageBatch.generateFromList(messages);
+            MessageClientIDSetter.setUniqID(msgBatch);
+            msgBatch.setBody(msgBatch.encode());
+            producerImpl.sendAsyncImpl(msgBatch, new SendCallback() {
+                @Override
+                public void onSuccess(SendResult sendResult) {
+                    List<SendResult> sendResults = splitSendResult(sendResult, pendingMessages.size());
+                    for (int i = 0; i < pendingMessages.size(); i++) {
+                        try {
+                            pendingMessages.get(i).sendCallback.onSuccess(sendResults.get(i));
+                        } catch (Throwable e) {
+                            log.warn("execute the send callback of an accumulated message failed", e);
+                        }
+                    }
+                }
+
+                @Override
+                public void onException(Throwable e) {
+                    ProduceAccumulator.onException(pendingMessages, e);
+                }
+            }, timeout);
+        } catch (Throwable e) {
+            onException(pendingMessages, e);
+        }
+    }
+
+    private static void onException(List<PendingMessage> pendingMessages, Throwable e) {
+        for (PendingMessage pendingMessage : pendingMessages) {
+            try {
+                pendingMessage.sendCallback.onException(e);
+            } catch (Throwable t) {
+                log.warn("execute the send callback of an accumulated message failed", t);
+            }
+        }
+    }
+
+    /**
+     * The ids of a batch are joined by commas and its messages take consecutive offsets from the returned one.
+     */
+    static List<SendResult> splitSendResult(SendResult batchResult, int num) {
+        String[] msgIds = batchResult.getMsgId() == null ? null : batchResult.getMsgId().split(",");
+        String[] offsetMsgIds = batchResult.getOffsetMsgId() == null ? null : batchResult.getOffsetMsgId().split(",");
+        List<SendResult> sendResults = new ArrayList<>(num);
+        for (int i = 0; i < num; i++) {
+            SendResult sendResult = new SendResult(batchResult.getSendStatus(),
+                msgIds != null && msgIds.length == num ? msgIds[i] : batchResult.getMsgId(),
+                offsetMsgIds != null && offsetMsgIds.length == num ? offsetMsgIds[i] : batchResult.getOffsetMsgId(),
+                batchResult.getMessageQueue(), batchResult.getQueueOffset() + i);
+            sendResult.setTransactionId(batchResult.getTransactionId());
+            sendResult.setRegionId(batchResult.getRegionId());
+            sendResult.setTraceOn(batchResult.isTraceOn());
+            sendResults.add(sendResult);
+        }
+        return sendResults;
+    }
+
+    /**
+     * Sends everything accumulated so far.
+     */
+    public void flushAll() {
+        for (Batch batch : batchTable.values()) {
+            List<PendingMessage> ready;
+            synchronized (batch) {
+                if (batch.messages.isEmpty()) {
+                    continue;
+                }
+                ready = batch.drain();
+            }
+            send(ready);
+        }
+    }
+
+    public void shutdown() {
+        this.lingerScheduler.shutdown();
+        flushAll();
+    }
+}
@@ -35,6 +35,7 @@ import org.apache.rocketmq.client.trace.TraceDispatcher;
 import org.apache.rocketmq.client.trace.hook.EndTransactionTraceHookImpl;
 import org.apache.rocketmq.client.trace.hook.SendMessageTraceHookImpl;
 import org.apache.rocketmq.common.MixAll;
+import org.apache.rocketmq.common.compression.ZstdDictionary;
 import org.apache.rocketmq.common.message.Message;
 import org.apache.rocketmq.common.message.MessageBatch;
 import org.apache.rocketmq.common.message.MessageClientIDSetter;
@@ -151,6 +152,35 @@ public class DefaultMQProducer extends ClientConfig implements MQProducer {
      */
     private int backPressureForAsyncSendSize = 100 * 1024 * 1024;
 
+    /**
+     * Accumulate the messages sent asynchronously with a callback and send them in batches, see
+     * {@link #batchSize} and {@link #lingerMs}.
+     */
+    private boolean autoBatch = false;
+
+    /**
+     * On autoBatch, send the accumulated messages of a topic once their size reaches this many bytes
+     */
+    private int batchSize = 16 * 1024;
+
+    /**
+     * On autoBatch, the longest time in milliseconds a message waits for others to join its batch
+     */
+    private long lingerMs = 5;
+
+    /**
+     * Compress the body of a batch as a whole once it is larger than {@link #compressMsgBodyOverHowmuch}, the brokers
+     * have to support it.
+     */
+    private boolean compressBatchEnable = false;
+
+    /**
+     * Zstd dictionary trained on typical bodies, see {@link ZstdDictionary#train}, used if the compress type is zstd.
+     * The consumers have to register it with {@link ZstdDictionary#register} before they start. Batches compressed
+     * as a whole are decompressed by the broker, so they are compressed without the dictionary.
+     */
+    private byte[] zstdDictionary;
+
     /**
      * Default constructor.
      */
@@ -1155,4 +1185,44 @@ public class DefaultMQProducer extends ClientConfig implements MQProducer {
         defaultMQProducerImpl.setSemaphoreAsyncSendSize(backPressureForAsyncSendSize);
     }
 
+    public boolean isAutoBatch() {
+        return autoBatch;
+    }
+
+    public void setAutoBatch(boolean autoBatch) {
+        this.autoBatch = autoBatch;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public long getLingerMs() {
+        return lingerMs;
+    }
+
+    public void setLingerMs(long lingerMs) {
+        this.lingerMs = lingerMs;
+    }
+
+    public boolean isCompressBatchEnable() {
+        return compressBatchEnable;
+    }
+
+    public void setCompressBatchEnable(boolean compressBatchEnable) {
+        this.compressBatchEnable = compressBatchEnable;
+    }
+
+    public byte[] getZstdDictionary() {
+        return zstdDictionary;
+    }
+
+    public void setZstdDictionary(byte[] zstdDictionary) {
+        this.zstdDictionary = zstdDictionary;
+    }
+
 }
@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.client.impl.consumer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.apache.rocketmq.remoting.protocol.body.ProcessQueueInfo;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ConcurrentProcessQueueTest {
+
+    @Test
+    public void testRemoveMessage() {
+        ConcurrentProcessQueue pq = new ConcurrentProcessQueue();
+        // the offsets filtered out by the broker leave gaps
+        List<MessageExt> msgs = createMessageList(1000, 3);
+        assertThat(pq.putMessage(msgs)).isTrue();
+        assertThat(pq.getMsgCount().get()).isEqualTo(1000);
+        assertThat(pq.getMsgSize().get()).isEqualTo(1000 * 123);
+        assertThat(pq.getMaxSpan()).isEqualTo(999 * 3);
+
+        assertThat(pq.removeMessage(Collections.singletonList(msgs.get(1)))).isEqualTo(0);
+        assertThat(pq.containsMessage(msgs.get(1))).isFalse();
+        assertThat(pq.containsMessage(msgs.get(2))).isTrue();
+        assertThat(pq.removeMessage(Collections.singletonList(msgs.get(0)))).isEqualTo(6);
+        // removing twice changes nothing
+        assertThat(pq.removeMessage(Collections.singletonList(msgs.get(0)))).isEqualTo(6);
+        assertThat(pq.getMsgCount().get()).isEqualTo(998);
+
+        assertThat(pq.removeMessage(Collections.singletonList(msgs.get(999)))).isEqualTo(6);
+        assertThat(pq.getMaxSpan()).isEqualTo(998 * 3 - 6);
+        assertThat(pq.getMsgTreeMap()).hasSize(997);
+
+        ProcessQueueInfo info = new ProcessQueueInfo();
+        pq.fillProcessQueueInfo(info);
+        assertThat(info.getCachedMsgMinOffset()).isEqualTo(6);
+        assertThat(info.getCachedMsgMaxOffset()).isEqualTo(998 * 3);
+        assertThat(info.getCachedMsgCount()).isEqualTo(997);
+
+        assertThat(pq.removeMessage(msgs)).isEqualTo(999 * 3 + 1);
+        assertThat(pq.getMsgCount().get()).isZero();
+        assertThat(pq.getMsgSize().get()).isZero();
+        assertThat(pq.hasTempMessage()).isFalse();
+        assertThat(pq.getMaxSpan()).isZero();
+        assertThat(pq.removeMessage(msgs)).isEqualTo(-1);
+
+        // pulled again
+        pq.putMessage(msgs.subList(0, 1));
+        assertThat(pq.getMsgCount().get()).isZero();
+    }
+
+    @Test
+    public void testConcurrentRemove() throws Exception {
+        final ConcurrentProcessQueue pq = new ConcurrentProcessQueue();
+        final List<MessageExt> msgs = createMessageList(20000, 2);
+        final BlockingQueue<MessageExt> consumeQueue = new LinkedBlockingQueue<>();
+        final AtomicLong maxCommitOffset = new AtomicLong(-1);
+        final int consumerNum = 8;
+        final CountDownLatch latch = new CountDownLatch(consumerNum);
+        for (int i = 0; i < consumerNum; i++) {
+            new Thread(() -> {
+                try {
+                    MessageExt msg;
+                    while ((msg = consumeQueue.poll(1, TimeUnit.SECONDS)) != null) {
+                        long offset = pq.removeMessage(Collections.singletonList(msg));
+                        maxCommitOffset.accumulateAndGet(offset, Math::max);
+                    }
+                } catch (InterruptedException ignored) {
+                } finally {
+                    latch.countDown();
+                }
+            }).start();
+        }
+
+        for (int i = 0; i < msgs.size(); i += 32) {
+            List<MessageExt> batch = msgs.subList(i, i + 32);
+            pq.putMessage(batch);
+            List<MessageExt> shuffled = new ArrayList<>(batch);
+            Collections.shuffle(shuffled);
+            consumeQueue.addAll(shuffled);
+        }
+
+        assertThat(latch.await(60, TimeUnit.SECONDS)).isTrue();
+        assertThat(pq.getMsgCount().get()).isZero();
+        assertThat(pq.getMsgSize().get()).isZero();
+        assertThat(pq.getMaxSpan()).isZero();
+        assertThat(maxCommitOffset.get()).isEqualTo(19999 * 2 + 1);
+    }
+
+    private List<MessageExt> createMessageList(int count, int offsetStep) {
+        List<MessageExt> messageExtList = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            MessageExt messageExt = new MessageExt();
+            messageExt.setQueueOffset((long) i * offsetStep);
+            messageExt.setBody(new byte[123]);
+            messageExtList.add(messageExt);
+        }
+        return messageExtList;
+    }
+}
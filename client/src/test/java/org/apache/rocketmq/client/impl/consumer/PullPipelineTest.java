@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.rocketmq.client.impl.consumer;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.rocketmq.client.consumer.DefaultMQPushConsumer;
+import org.apache.rocketmq.client.consumer.PullResult;
+import org.apache.rocketmq.client.consumer.PullStatus;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PullPipelineTest {
+
+    @Test
+    public void testPlanDisabled() {
+        DefaultMQPushConsumer consumer = new DefaultMQPushConsumer("testGroup");
+        PullPipeline pullPipeline = new PullPipeline();
+        pullPipeline.onPulled(0, 32, createPullResult(0, 32, 10000, 100), 10);
+        pullPipeline.plan(consumer, new ProcessQueue(), true, 1000);
+        assertThat(pullPipeline.getBatchSize()).isEqualTo(consumer.getPullBatchSize());
+        assertThat(pullPipeline.getBatchSizeInBytes()).isEqualTo(consumer.getPullBatchSizeInBytes());
+        assertThat(pullPipeline.getDepth()).isEqualTo(1);
+    }
+
+    @Test
+    public void testPipelineDepth() {
+        DefaultMQPushConsumer consumer = new DefaultMQPushConsumer("testGroup");
+        consumer.setPullPipelineDepth(4);
+        consumer.setPullBatchSize(64);
+        PullPipeline pullPipeline = new PullPipeline();
+        pullPipeline.plan(consumer, new ProcessQueue(), true, 1000);
+        assertThat(pullPipeline.getDepth()).isEqualTo(1);
+
+        // the broker returns 32 messages at most
+        pullPipeline.onPulled(0, 64, createPullResult(0, 32, 10000, 100), 10);
+        pullPipeline.plan(consumer, new ProcessQueue(), true, 1000);
+        assertThat(pullPipeline.getDepth()).isEqualTo(4);
+        assertThat(pullPipeline.expectedNextOffset(32)).isEqualTo(64);
+        pullPipeline.plan(consumer, new ProcessQueue(), false, 1000);
+        assertThat(pullPipeline.getDepth()).isEqualTo(1);
+
+        // only two pulls are left to catch up
+        pullPipeline.onPulled(32, 64, createPullResult(32, 32, 128, 100), 10);
+        pullPipeline.plan(consumer, new ProcessQueue(), true, 1000);
+        assertThat(pullPipeline.getDepth()).isEqualTo(2);
+
+        pullPipeline.onPulled(64, 64, createPullResult(64, 64, 128, 100), 10);
+        pullPipeline.plan(consumer, new ProcessQueue(), true, 1000);
+        assertThat(pullPipeline.getDepth()).isEqualTo(1);
+    }
+
+    @Test
+    public void testPipelineDepthWithLargerBatch() {
+        DefaultMQPushConsumer consumer = new DefaultMQPushConsumer("testGroup");
+        consumer.setPullPipelineDepth(4);
+        consumer.setPullBatchSize(32);
+        PullPipeline pullPipeline = new PullPipeline();
+        pullPipeline.onPulled(0, 32, createPullResult(0, 32, 96, 100), 10);
+
+        // the last pull was not cut short, so each pull advances by the whole batch
+        consumer.setPullBatchSize(64);
+        pullPipeline.plan(consumer, new ProcessQueue(), true, 1000);
+        assertThat(pullPipeline.getBatchSize()).isEqualTo(64);
+        assertThat(pullPipeline.expectedNextOffset(32)).isEqualTo(96);
+        assertThat(pullPipeline.getDepth()).isEqualTo(1);
+    }
+
+    @Test
+    public void testAdaptiveBatchSize() {
+        DefaultMQPushConsumer consumer = new DefaultMQPushConsumer("testGroup");
+        consumer.setAdaptivePullBatchSizeEnable(true);
+        consumer.setPullThresholdForQueue(10000);
+        consumer.setPullThresholdSizeForQueue(1);
+        PullPipeline pullPipeline = new PullPipeline();
+        ProcessQueue processQueue = new ProcessQueue();
+        pullPipeline.plan(consumer, processQueue, false, 1000);
+        assertThat(pullPipeline.getBatchSize()).isEqualTo(32);
+
+        // the consumers keep up with a lagging queue
+        pullPipeline.onPulled(0, 32, createPullResult(0, 32, 100000, 1024), 10);
+        pullPipeline.plan(consumer, processQueue, false, 1000);
+        assertThat(pullPipeline.getBatchSize()).isEqualTo(64);
+        assertThat(pullPipeline.getBatchSizeInBytes()).isEqualTo(consumer.getPullBatchSizeInBytes());
+        pullPipeline.plan(consumer, processQueue, false, 1000);
+        assertThat(pullPipeline.getBatchSize()).isEqualTo(128);
+
+        // no more than pullThresholdSizeForQueue
+        for (int i = 0; i < 8; i++) {
+            pullPipeline.plan(consumer, processQueue, false, 1000);
+        }
+        assertThat(pullPipeline.getBatchSize()).isEqualTo(1024);
+        assertThat(pullPipeline.getBatchSizeInBytes()).isEqualTo(1024 * 1024);
+        processQueue.putMessage(createPullResult(0, 512, 100000, 1024).getMsgFoundList());
+        pullPipeline.plan(consumer, processQueue, false, 1000);
+        assertThat(pullPipeline.getBatchSize()).isEqualTo(512);
+    }
+
+    private static PullResult createPullResult(long offset, int count, long maxOffset, int bodySize) {
+        List<MessageExt> msgs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            MessageExt msg = new MessageExt();
+            msg.setQueueOffset(offset + i);
+            msg.setBody(new byte[bodySize]);
+            msgs.add(msg);
+        }
+        return new PullResult(PullStatus.FOUND, offset + count, 0, maxOffset, msgs);
+    }
+}
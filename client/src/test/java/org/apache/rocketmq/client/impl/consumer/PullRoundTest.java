@@ -0,0 +1,207 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.rocketmq.client.impl.consumer;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.apache.rocketmq.client.consumer.DefaultMQPushConsumer;
+import org.apache.rocketmq.client.consumer.PullCallback;
+import org.apache.rocketmq.client.consumer.PullResult;
+import org.apache.rocketmq.client.consumer.PullStatus;
+import org.apache.rocketmq.client.consumer.store.OffsetStore;
+import org.apache.rocketmq.client.exception.MQClientException;
+import org.apache.rocketmq.client.impl.CommunicationMode;
+import org.apache.rocketmq.client.impl.factory.MQClientInstance;
+import org.apache.rocketmq.client.stat.ConsumerStatsManager;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.apache.rocketmq.common.message.MessageQueue;
+import org.apache.rocketmq.remoting.protocol.heartbeat.SubscriptionData;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PullRoundTest {
+    private static final String TOPIC = "FooBar";
+
+    private DefaultMQPushConsumer pushConsumer;
+    private DefaultMQPushConsumerImpl pushConsumerImpl;
+    private PullAPIWrapper pullAPIWrapper;
+    private PullMessageService pullMessageService;
+    private PullRequest pullRequest;
+    private PullPipeline pullPipeline;
+    private SubscriptionData subscriptionData;
+    private final List<Long> pullOffsets = new ArrayList<>();
+    private final List<PullCallback> pullCallbacks = new ArrayList<>();
+
+    @Before
+    public void init() throws Exception {
+        pushConsumer = new DefaultMQPushConsumer("FooBarGroup");
+        pushConsumer.setPullPipelineDepth(4);
+        pushConsumerImpl = new DefaultMQPushConsumerImpl(pushConsumer, null);
+
+        MQClientInstance mQClientFactory = mock(MQClientInstance.class);
+        pullMessageService = mock(PullMessageService.class);
+        when(mQClientFactory.getPullMessageService()).thenReturn(pullMessageService);
+        when(mQClientFactory.getConsumerStatsManager()).thenReturn(mock(ConsumerStatsManager.class));
+        pushConsumerImpl.setmQClientFactory(mQClientFactory);
+        pushConsumerImpl.setOffsetStore(mock(OffsetStore.class));
+        pushConsumerImpl.setConsumeMessageService(mock(ConsumeMessageService.class));
+
+        pullAPIWrapper = mock(PullAPIWrapper.class);
+        when(pullAPIWrapper.processPullResult(any(MessageQueue.class), any(PullResult.class), any(SubscriptionData.class)))
+            .thenAnswer(invocation -> invocation.getArgument(1));
+        doAnswer(invocation -> {
+            pullOffsets.add(invocation.getArgument(4));
+            pullCallbacks.add(invocation.getArgument(12));
+            return null;
+        }).when(pullAPIWrapper).pullKernelImpl(any(MessageQueue.class), any(), anyString(), anyLong(), anyLong(),
+            anyInt(), anyInt(), anyInt(), anyLong(), anyLong(), anyLong(), any(CommunicationMode.class), any(PullCallback.class));
+        FieldUtils.writeDeclaredField(pushConsumerImpl, "pullAPIWrapper", pullAPIWrapper, true);
+
+        pullRequest = new PullRequest();
+        pullRequest.setConsumerGroup(pushConsumer.getConsumerGroup());
+        pullRequest.setMessageQueue(new MessageQueue(TOPIC, "BrokerA", 0));
+        pullRequest.setProcessQueue(new ProcessQueue());
+        pullRequest.setNextOffset(32);
+        subscriptionData = new SubscriptionData(TOPIC, SubscriptionData.SUB_ALL);
+
+        // the queue lags far behind, each pull is expected to advance by a whole batch
+        pullPipeline = new PullPipeline();
+        pullPipeline.onPulled(0, 32, createPullResult(PullStatus.FOUND, 0, 32, 10000), 10);
+        pullPipeline.plan(pushConsumer, pullRequest.getProcessQueue(), true, 1000);
+        assertThat(pullPipeline.getDepth()).isEqualTo(4);
+    }
+
+    @Test
+    public void testOutOfOrderCompletion() {
+        startRound();
+        assertThat(pullOffsets).containsExactly(32L, 64L, 96L, 128L);
+
+        complete(2, createPullResult(PullStatus.FOUND, 96, 32, 10000));
+        complete(1, createPullResult(PullStatus.FOUND, 64, 32, 10000));
+        assertThat(pullRequest.getNextOffset()).isEqualTo(32);
+        complete(0, createPullResult(PullStatus.FOUND, 32, 32, 10000));
+        assertThat(pullRequest.getNextOffset()).isEqualTo(128);
+        verify(pullMessageService, never()).executePullRequestImmediately(pullRequest);
+
+        complete(3, createPullResult(PullStatus.FOUND, 128, 32, 10000));
+        assertThat(pullRequest.getNextOffset()).isEqualTo(160);
+        assertThat(pullRequest.getProcessQueue().getMsgCount().get()).isEqualTo(128);
+        verify(pullMessageService).executePullRequestImmediately(pullRequest);
+    }
+
+    @Test
+    public void testMismatchedStartOffset() {
+        startRound();
+
+        // the broker returns less than a batch, the later pulls start at the wrong offset
+        complete(0, createPullResult(PullStatus.FOUND, 32, 16, 10000));
+        complete(1, createPullResult(PullStatus.FOUND, 64, 32, 10000));
+        complete(3, createPullResult(PullStatus.FOUND, 128, 32, 10000));
+        complete(2, createPullResult(PullStatus.FOUND, 96, 32, 10000));
+        assertThat(pullRequest.getNextOffset()).isEqualTo(48);
+        assertThat(pullRequest.getProcessQueue().getMsgCount().get()).isEqualTo(16);
+        verify(pullMessageService).executePullRequestImmediately(pullRequest);
+    }
+
+    @Test
+    public void testExceptionMidRound() {
+        startRound();
+
+        complete(0, createPullResult(PullStatus.FOUND, 32, 32, 10000));
+        pullCallbacks.get(1).onException(new MQClientException("pull failed", null));
+        complete(2, createPullResult(PullStatus.FOUND, 96, 32, 10000));
+        complete(3, createPullResult(PullStatus.FOUND, 128, 32, 10000));
+        assertThat(pullRequest.getNextOffset()).isEqualTo(64);
+        assertThat(pullRequest.getProcessQueue().getMsgCount().get()).isEqualTo(32);
+        verify(pullMessageService).executePullRequestLater(pullRequest, pushConsumer.getPullTimeDelayMillsWhenException());
+        verify(pullMessageService, never()).executePullRequestImmediately(pullRequest);
+    }
+
+    @Test
+    public void testExceptionOnSend() throws Exception {
+        doThrow(new MQClientException("no route", null)).when(pullAPIWrapper).pullKernelImpl(any(MessageQueue.class),
+            any(), anyString(), anyLong(), eq(96L), anyInt(), anyInt(), anyInt(), anyLong(), anyLong(), anyLong(),
+            any(CommunicationMode.class), any(PullCallback.class));
+        startRound();
+        assertThat(pullOffsets).containsExactly(32L, 64L);
+
+        complete(1, createPullResult(PullStatus.FOUND, 64, 32, 10000));
+        complete(0, createPullResult(PullStatus.FOUND, 32, 32, 10000));
+        assertThat(pullRequest.getNextOffset()).isEqualTo(96);
+        verify(pullMessageService).executePullRequestLater(pullRequest, pushConsumer.getPullTimeDelayMillsWhenException());
+    }
+
+    @Test
+    public void testOffsetIllegal() {
+        startRound();
+
+        complete(1, createPullResult(PullStatus.FOUND, 64, 32, 10000));
+        complete(0, new PullResult(PullStatus.OFFSET_ILLEGAL, 0, 0, 10000, null));
+        complete(2, createPullResult(PullStatus.FOUND, 96, 32, 10000));
+        complete(3, createPullResult(PullStatus.FOUND, 128, 32, 10000));
+        assertThat(pullRequest.getNextOffset()).isEqualTo(0);
+        assertThat(pullRequest.getProcessQueue().isDropped()).isTrue();
+        assertThat(pullRequest.getProcessQueue().getMsgCount().get()).isEqualTo(0);
+        verify(pullMessageService).executeTaskLater(any(Runnable.class), anyLong());
+        verify(pullMessageService, never()).executePullRequestImmediately(pullRequest);
+        verify(pullMessageService, never()).executePullRequestLater(any(PullRequest.class), anyLong());
+    }
+
+    @Test
+    public void testNoPullPastTheEnd() {
+        pullPipeline.onPulled(32, 32, createPullResult(PullStatus.FOUND, 32, 32, 128), 10);
+        pullRequest.setNextOffset(64);
+        pullPipeline.plan(pushConsumer, pullRequest.getProcessQueue(), true, 1000);
+        startRound();
+        assertThat(pullOffsets).containsExactly(64L, 96L);
+    }
+
+    private void startRound() {
+        pushConsumerImpl.new PullRound(pullRequest, subscriptionData, pullPipeline).start(null, 0, 0);
+    }
+
+    private void complete(int index, PullResult pullResult) {
+        pullCallbacks.get(index).onSuccess(pullResult);
+    }
+
+    private static PullResult createPullResult(PullStatus pullStatus, long offset, int count, long maxOffset) {
+        List<MessageExt> msgs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            MessageExt msg = new MessageExt();
+            msg.setTopic(TOPIC);
+            msg.setQueueOffset(offset + i);
+            msg.setBody(new byte[100]);
+            msgs.add(msg);
+        }
+        return new PullResult(pullStatus, offset + count, 0, maxOffset, msgs);
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.rocketmq.client.impl.consumer;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.rocketmq.common.utils.ThreadUtils;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class VirtualThreadConsumeExecutorTest {
+
+    @Test
+    public void testCreate() {
+        VirtualThreadConsumeExecutor executor = VirtualThreadConsumeExecutor.create("ConsumeMessageVirtualThread_", 0);
+        if (ThreadUtils.newVirtualThreadPerTaskExecutor("Probe_") == null) {
+            assertThat(executor).isNull();
+        } else {
+            assertThat(executor).isNotNull();
+            assertThat(executor.getMaxConcurrency()).isEqualTo(1);
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testMaxConcurrency() throws Exception {
+        // a thread per task, as the virtual thread executor does
+        VirtualThreadConsumeExecutor executor = new VirtualThreadConsumeExecutor(Executors.newCachedThreadPool(), 4);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final CountDownLatch latch = new CountDownLatch(64);
+        for (int i = 0; i < 64; i++) {
+            executor.submit(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException ignored) {
+                }
+                running.decrementAndGet();
+                latch.countDown();
+            });
+        }
+        assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(maxRunning.get()).isBetween(1, 4);
+
+        ThreadUtils.shutdownGracefully(executor, 1, TimeUnit.SECONDS);
+        assertThat(executor.isTerminated()).isTrue();
+    }
+}
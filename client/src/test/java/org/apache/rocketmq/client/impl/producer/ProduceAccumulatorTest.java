@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.rocketmq.client.impl.producer;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.apache.rocketmq.client.producer.DefaultMQProducer;
+import org.apache.rocketmq.client.producer.SendCallback;
+import org.apache.rocketmq.client.producer.SendResult;
+import org.apache.rocketmq.client.producer.SendStatus;
+import org.apache.rocketmq.common.message.Message;
+import org.apache.rocketmq.common.message.MessageBatch;
+import org.apache.rocketmq.common.message.MessageQueue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ProduceAccumulatorTest {
+    @Mock
+    private DefaultMQProducerImpl producerImpl;
+
+    private final DefaultMQProducer producer = new DefaultMQProducer("ProduceAccumulatorTestGroup");
+    private final List<SendResult> sendResults = new CopyOnWriteArrayList<>();
+    private final SendCallback sendCallback = new SendCallback() {
+        @Override
+        public void onSuccess(SendResult sendResult) {
+            sendResults.add(sendResult);
+        }
+
+        @Override
+        public void onException(Throwable e) {
+        }
+    };
+    private ProduceAccumulator produceAccumulator;
+
+    @Before
+    public void init() {
+        producer.setBatchSize(1024);
+        producer.setLingerMs(60 * 1000);
+        when(producerImpl.getDefaultMQProducer()).thenReturn(producer);
+        produceAccumulator = new ProduceAccumulator(producerImpl);
+    }
+
+    @After
+    public void terminate() {
+        produceAccumulator.shutdown();
+    }
+
+    @Test
+    public void testFlushOnBatchSize() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            assertThat(produceAccumulator.tryAppend(new Message("FooBar", new byte[400]), sendCallback, 3000)).isTrue();
+        }
+        ArgumentCaptor<Message> messageCaptor = ArgumentCaptor.forClass(Message.class);
+        ArgumentCaptor<SendCallback> callbackCaptor = ArgumentCaptor.forClass(SendCallback.class);
+        verify(producerImpl).sendAsyncImpl(messageCaptor.capture(), callbackCaptor.capture(), anyLong());
+        assertThat(messageCaptor.getValue()).isInstanceOf(MessageBatch.class);
+
+        SendResult batchResult = new SendResult(SendStatus.SEND_OK, "a,b", "oa,ob",
+            new MessageQueue("FooBar", "broker-a", 0), 100L);
+        callbackCaptor.getValue().onSuccess(batchResult);
+        assertThat(sendResults).hasSize(2);
+        assertThat(sendResults.get(1).getMsgId()).isEqualTo("b");
+        assertThat(sendResults.get(1).getOffsetMsgId()).isEqualTo("ob");
+        assertThat(sendResults.get(1).getQueueOffset()).isEqualTo(101L);
+
+        // the last message goes on its own
+        produceAccumulator.flushAll();
+        verify(producerImpl, times(2)).sendAsyncImpl(messageCaptor.capture(), any(SendCallback.class), anyLong());
+        assertThat(messageCaptor.getValue()).isNotInstanceOf(MessageBatch.class);
+    }
+
+    @Test
+    public void testNotBatchable() {
+        Message delayMessage = new Message("FooBar", new byte[10]);
+        delayMessage.setDelayTimeLevel(3);
+        assertThat(produceAccumulator.tryAppend(delayMessage, sendCallback, 3000)).isFalse();
+        assertThat(produceAccumulator.tryAppend(new Message("FooBar", new byte[4096 + 1]), sendCallback, 3000)).isFalse();
+        assertThat(produceAccumulator.tryAppend(new Message("FooBar", new byte[10]), null, 3000)).isFalse();
+    }
+}
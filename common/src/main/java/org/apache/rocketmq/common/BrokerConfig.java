@@ -179,6 +179,12 @@ public class BrokerConfig extends BrokerIdentity {
 
     private boolean forceRegister = true;
 
+    /**
+     * Register only the topic configs changed since the last registration to name servers supporting it, name servers
+     * missing the previous registration get all the topic configs.
+     */
+    private boolean enableDeltaRegister = false;
+
     /**
      * This configurable item defines interval of topics registration of broker to name server. Allowing values are
      * between 10,000 and 60,000 milliseconds.
@@ -308,6 +314,19 @@ public class BrokerConfig extends BrokerIdentity {
 
     private long consumerOffsetUpdateVersionStep = 500;
 
+    /**
+     * Keep consumer offsets in primitive arrays keyed by interned topic@group, and persist only the dirty entries
+     * to an append-only log instead of re-encoding the whole json table on every persist. The json file is only
+     * refreshed on compaction and on shutdown, so switching this off after a crash reloads the offsets as of the last
+     * compaction.
+     */
+    private boolean enableCompactConsumerOffset = false;
+
+    /**
+     * The append-only consumer offset log is compacted into a snapshot once it grows beyond this size.
+     */
+    private long consumerOffsetLogCompactSize = 64 * 1024 * 1024;
+
     private long delayOffsetUpdateVersionStep = 200;
 
     /**
@@ -1037,6 +1056,14 @@ public class BrokerConfig extends BrokerIdentity {
         this.forceRegister = forceRegister;
     }
 
+    public boolean isEnableDeltaRegister() {
+        return enableDeltaRegister;
+    }
+
+    public void setEnableDeltaRegister(boolean enableDeltaRegister) {
+        this.enableDeltaRegister = enableDeltaRegister;
+    }
+
     public int getHeartbeatThreadPoolQueueCapacity() {
         return heartbeatThreadPoolQueueCapacity;
     }
@@ -1301,6 +1328,22 @@ public class BrokerConfig extends BrokerIdentity {
         this.consumerOffsetUpdateVersionStep = consumerOffsetUpdateVersionStep;
     }
 
+    public boolean isEnableCompactConsumerOffset() {
+        return enableCompactConsumerOffset;
+    }
+
+    public void setEnableCompactConsumerOffset(boolean enableCompactConsumerOffset) {
+        this.enableCompactConsumerOffset = enableCompactConsumerOffset;
+    }
+
+    public long getConsumerOffsetLogCompactSize() {
+        return consumerOffsetLogCompactSize;
+    }
+
+    public void setConsumerOffsetLogCompactSize(long consumerOffsetLogCompactSize) {
+        this.consumerOffsetLogCompactSize = consumerOffsetLogCompactSize;
+    }
+
     public long getDelayOffsetUpdateVersionStep() {
         return delayOffsetUpdateVersionStep;
     }
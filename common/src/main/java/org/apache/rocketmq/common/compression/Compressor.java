@@ -39,4 +39,14 @@ public interface Compressor {
      * @throws IOException
      */
     byte[] decompress(byte[] src) throws IOException;
+
+    /**
+     * Decompress message by different compressor, and give up once the decompressed data exceeds maxLength.
+     *
+     * @param src bytes ready to decompress
+     * @param maxLength max length of the decompressed data
+     * @return decompressed byte data
+     * @throws IOException if the data is corrupted or longer than maxLength
+     */
+    byte[] decompress(byte[] src, int maxLength) throws IOException;
 }
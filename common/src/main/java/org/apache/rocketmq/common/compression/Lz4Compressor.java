@@ -53,6 +53,11 @@ public class Lz4Compressor implements Compressor {
 
     @Override
     public byte[] decompress(byte[] src) throws IOException {
+        return decompress(src, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public byte[] decompress(byte[] src, int maxLength) throws IOException {
         byte[] result = src;
         byte[] uncompressData = new byte[src.length];
         ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(src);
@@ -65,6 +70,9 @@ public class Lz4Compressor implements Compressor {
                 if (len <= 0) {
                     break;
                 }
+                if ((long) resultOutputStream.size() + len > maxLength) {
+                    throw new IOException("The decompressed data exceeds " + maxLength + " bytes");
+                }
                 resultOutputStream.write(uncompressData, 0, len);
             }
             resultOutputStream.flush();
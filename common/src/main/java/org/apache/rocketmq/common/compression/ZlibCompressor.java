@@ -57,6 +57,11 @@ public class ZlibCompressor implements Compressor {
 
     @Override
     public byte[] decompress(byte[] src) throws IOException {
+        return decompress(src, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public byte[] decompress(byte[] src, int maxLength) throws IOException {
         byte[] result = src;
         byte[] uncompressData = new byte[src.length];
         ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(src);
@@ -69,6 +74,9 @@ public class ZlibCompressor implements Compressor {
                 if (len <= 0) {
                     break;
                 }
+                if ((long) byteArrayOutputStream.size() + len > maxLength) {
+                    throw new IOException("The decompressed data exceeds " + maxLength + " bytes");
+                }
                 byteArrayOutputStream.write(uncompressData, 0, len);
             }
             byteArrayOutputStream.flush();
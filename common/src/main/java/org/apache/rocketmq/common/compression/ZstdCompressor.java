@@ -17,6 +17,7 @@
 
 package org.apache.rocketmq.common.compression;
 
+import com.github.luben.zstd.Zstd;
 import com.github.luben.zstd.ZstdInputStream;
 import com.github.luben.zstd.ZstdOutputStream;
 import java.io.ByteArrayInputStream;
@@ -31,10 +32,20 @@ public class ZstdCompressor implements Compressor {
 
     @Override
     public byte[] compress(byte[] src, int level) throws IOException {
+        return compress(src, level, null);
+    }
+
+    /**
+     * @param dictionary null to compress without a dictionary
+     */
+    public byte[] compress(byte[] src, int level, ZstdDictionary dictionary) throws IOException {
         byte[] result = src;
         ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream(src.length);
         ZstdOutputStream outputStream = new ZstdOutputStream(byteArrayOutputStream, level);
         try {
+            if (dictionary != null) {
+                outputStream.setDict(dictionary.getCompressDict(level));
+            }
             outputStream.write(src);
             outputStream.flush();
             outputStream.close();
@@ -53,6 +64,11 @@ public class ZstdCompressor implements Compressor {
 
     @Override
     public byte[] decompress(byte[] src) throws IOException {
+        return decompress(src, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public byte[] decompress(byte[] src, int maxLength) throws IOException {
         byte[] result = src;
         byte[] uncompressData = new byte[src.length];
         ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(src);
@@ -60,11 +76,22 @@ public class ZstdCompressor implements Compressor {
         ByteArrayOutputStream resultOutputStream = new ByteArrayOutputStream(src.length);
 
         try {
+            long dictId = Zstd.getDictIdFromFrame(src);
+            if (dictId != 0) {
+                ZstdDictionary dictionary = ZstdDictionary.get(dictId);
+                if (dictionary == null) {
+                    throw new IOException("Unknown zstd dictionary " + dictId + ", it should be registered first");
+                }
+                zstdInputStream.setDict(dictionary.getDecompressDict());
+            }
             while (true) {
                 int len = zstdInputStream.read(uncompressData, 0, uncompressData.length);
                 if (len <= 0) {
                     break;
                 }
+                if ((long) resultOutputStream.size() + len > maxLength) {
+                    throw new IOException("The decompressed data exceeds " + maxLength + " bytes");
+                }
                 resultOutputStream.write(uncompressData, 0, len);
             }
             resultOutputStream.flush();
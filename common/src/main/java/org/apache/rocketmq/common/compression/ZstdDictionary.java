@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.rocketmq.common.compression;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdDictTrainer;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A zstd dictionary trained on sample bodies, which makes small bodies of the same shape compress well.
+ *
+ * <p>Frames compressed with a dictionary carry its id, and {@link ZstdCompressor} decompresses them with the
+ * dictionary registered under that id, so every client consuming such messages has to {@link #register} the
+ * dictionaries the producers use.
+ */
+public class ZstdDictionary {
+    private static final ConcurrentMap<Long/* dictionary id */, ZstdDictionary> DICTIONARY_TABLE = new ConcurrentHashMap<>();
+
+    private final long id;
+    private final byte[] content;
+    private final ConcurrentMap<Integer/* level */, ZstdDictCompress> compressDictTable = new ConcurrentHashMap<>();
+    private volatile ZstdDictDecompress decompressDict;
+
+    private ZstdDictionary(long id, byte[] content) {
+        this.id = id;
+        this.content = content;
+    }
+
+    /**
+     * Registers a dictionary, registering the same one again returns the existing instance.
+     */
+    public static ZstdDictionary register(byte[] content) {
+        long id = Zstd.getDictIdFromDict(content);
+        if (id == 0) {
+            throw new IllegalArgumentException("Not a zstd dictionary, or it has no id");
+        }
+        return DICTIONARY_TABLE.computeIfAbsent(id, k -> new ZstdDictionary(id, content));
+    }
+
+    public static ZstdDictionary get(long id) {
+        return DICTIONARY_TABLE.get(id);
+    }
+
+    /**
+     * Trains a dictionary of at most dictSize bytes, a few thousand samples of typical bodies are usually enough.
+     */
+    public static byte[] train(List<byte[]> samples, int dictSize) {
+        int samplesSize = 0;
+        for (byte[] sample : samples) {
+            samplesSize += sample.length;
+        }
+        ZstdDictTrainer trainer = new ZstdDictTrainer(samplesSize, dictSize);
+        for (byte[] sample : samples) {
+            trainer.addSample(sample);
+        }
+        return trainer.trainSamples();
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public byte[] getContent() {
+        return content;
+    }
+
+    ZstdDictCompress getCompressDict(int level) {
+        return compressDictTable.computeIfAbsent(level, k -> new ZstdDictCompress(content, level));
+    }
+
+    ZstdDictDecompress getDecompressDict() {
+        if (decompressDict == null) {
+            synchronized (this) {
+                if (decompressDict == null) {
+                    decompressDict = new ZstdDictDecompress(content);
+                }
+            }
+        }
+        return decompressDict;
+    }
+}
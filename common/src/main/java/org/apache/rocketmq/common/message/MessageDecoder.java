@@ -746,7 +746,8 @@ public class MessageDecoder {
             messageClientExt.setBornHost(messageExt.getBornHost());
             messageClientExt.setBornTimestamp(messageExt.getBornTimestamp());
             messageClientExt.setStoreTimestamp(messageExt.getStoreTimestamp());
-            messageClientExt.setSysFlag(messageExt.getSysFlag());
+            // a compressed inner batch is decompressed as a whole before being unwrapped
+            messageClientExt.setSysFlag(MessageSysFlag.clearCompressedFlag(messageExt.getSysFlag()));
             messageClientExt.setCommitLogOffset(messageExt.getCommitLogOffset());
             messageClientExt.setWaitStoreMsgOK(messageExt.isWaitStoreMsgOK());
             list.add(messageClientExt);
@@ -82,6 +82,23 @@ public class NamesrvConfig {
 
     private int waitSecondsForService = 45;
 
+    /**
+     * Cache the encoded route of each topic until a change of the topic or of its brokers, so that route queries
+     * mostly skip the route table lock
+     */
+    private volatile boolean enableTopicRouteCache = false;
+
+    /**
+     * Accept subscriptions of clients to topic routes and push them the changed routes, instead of having them poll
+     * each route
+     */
+    private volatile boolean enableTopicRouteNotify = false;
+
+    /**
+     * Interval of checking the subscribed routes for changes
+     */
+    private long topicRouteNotifyInterval = 1000;
+
     public boolean isOrderMessageEnable() {
         return orderMessageEnable;
     }
@@ -241,4 +258,28 @@ public class NamesrvConfig {
     public void setWaitSecondsForService(int waitSecondsForService) {
         this.waitSecondsForService = waitSecondsForService;
     }
+
+    public boolean isEnableTopicRouteCache() {
+        return enableTopicRouteCache;
+    }
+
+    public void setEnableTopicRouteCache(boolean enableTopicRouteCache) {
+        this.enableTopicRouteCache = enableTopicRouteCache;
+    }
+
+    public boolean isEnableTopicRouteNotify() {
+        return enableTopicRouteNotify;
+    }
+
+    public void setEnableTopicRouteNotify(boolean enableTopicRouteNotify) {
+        this.enableTopicRouteNotify = enableTopicRouteNotify;
+    }
+
+    public long getTopicRouteNotifyInterval() {
+        return topicRouteNotifyInterval;
+    }
+
+    public void setTopicRouteNotifyInterval(long topicRouteNotifyInterval) {
+        this.topicRouteNotifyInterval = topicRouteNotifyInterval;
+    }
 }
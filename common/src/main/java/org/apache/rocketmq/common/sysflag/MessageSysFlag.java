@@ -26,7 +26,7 @@ public class MessageSysFlag {
      * | bit    | 7 | 6 | 5         | 4        | 3           | 2                | 1                | 0                |
      * |--------|---|---|-----------|----------|-------------|------------------|------------------|------------------|
      * | byte 1 |   |   | STOREHOST | BORNHOST | TRANSACTION | TRANSACTION      | MULTI_TAGS       | COMPRESSED       |
-     * | byte 2 |   |   |           |          |             | COMPRESSION_TYPE | COMPRESSION_TYPE | COMPRESSION_TYPE |
+     * | byte 2 |   |   |           |          | BATCH_COMP  | COMPRESSION_TYPE | COMPRESSION_TYPE | COMPRESSION_TYPE |
      * | byte 3 |   |   |           |          |             |                  |                  |                  |
      * | byte 4 |   |   |           |          |             |                  |                  |                  |
      */
@@ -47,6 +47,10 @@ public class MessageSysFlag {
     public final static int COMPRESSION_ZSTD_TYPE = 0x2 << 8;
     public final static int COMPRESSION_ZLIB_TYPE = 0x3 << 8;
     public final static int COMPRESSION_TYPE_COMPARATOR = 0x7 << 8;
+    /**
+     * The body of a batch request is compressed as a whole, only sent to the broker and never stored
+     */
+    public final static int BATCH_COMPRESSED_FLAG = 0x1 << 11;
 
     public static int getTransactionValue(final int flag) {
         return flag & TRANSACTION_ROLLBACK_TYPE;
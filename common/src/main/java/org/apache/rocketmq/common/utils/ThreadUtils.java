@@ -71,6 +71,27 @@ public final class ThreadUtils {
         return new ThreadFactoryImpl(String.format("%s_%d_", processName, threads), isDaemon);
     }
 
+    /**
+     * Create an executor starting a new virtual thread for each task, virtual threads are looked up reflectively
+     * since they need JDK 21.
+     *
+     * @param processName The name prefix of the threads
+     * @return The executor, or null if virtual threads are not supported by the running JVM
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor(String processName) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, processName, 0L);
+            ThreadFactory threadFactory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                .invoke(null, threadFactory);
+        } catch (Throwable e) {
+            LOGGER.warn("Virtual threads are not supported by the running JVM, {}", e.toString());
+            return null;
+        }
+    }
+
     /**
      * Create a new thread
      *
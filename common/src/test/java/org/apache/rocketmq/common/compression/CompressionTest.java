@@ -19,12 +19,15 @@ package org.apache.rocketmq.common.compression;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.junit.Before;
 import org.junit.Test;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 public class CompressionTest {
 
@@ -99,6 +102,44 @@ public class CompressionTest {
         }
     }
 
+    @Test
+    public void testCompressionZstdDictionary() throws IOException {
+        Random random = new Random();
+        List<byte[]> samples = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            samples.add(randomJson(random));
+        }
+        ZstdDictionary dictionary = ZstdDictionary.register(ZstdDictionary.train(samples, 4096));
+        assertThat(ZstdDictionary.get(dictionary.getId())).isSameAs(dictionary);
+
+        ZstdCompressor compressor = (ZstdCompressor) zstd;
+        byte[] srcBytes = randomJson(random);
+        byte[] compressed = compressor.compress(srcBytes, level, dictionary);
+        assertThat(compressed.length).isLessThan(compressor.compress(srcBytes, level).length);
+        assertThat(zstd.decompress(compressed)).isEqualTo(srcBytes);
+    }
+
+    private static byte[] randomJson(Random random) {
+        String json = "{\"orderId\":" + random.nextInt(1000000)
+            + ",\"userName\":\"" + RandomStringUtils.randomAlphabetic(8)
+            + "\",\"status\":\"" + (random.nextBoolean() ? "CREATED" : "PAID")
+            + "\",\"amount\":" + random.nextInt(10000)
+            + ",\"currency\":\"USD\",\"shippingAddress\":{\"country\":\"US\",\"city\":\""
+            + RandomStringUtils.randomAlphabetic(6) + "\"}}";
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testDecompressMaxLength() throws IOException {
+        byte[] srcBytes = new byte[1024 * 1024];
+        for (Compressor compressor : new Compressor[] {zstd, zlib, lz4}) {
+            byte[] compressed = compressor.compress(srcBytes, level);
+            assertThat(compressor.decompress(compressed, srcBytes.length)).isEqualTo(srcBytes);
+            assertThatThrownBy(() -> compressor.decompress(compressed, srcBytes.length - 1))
+                .isInstanceOf(IOException.class);
+        }
+    }
+
     @Test(expected = RuntimeException.class)
     public void testCompressionUnsupportedType() {
         CompressionType.of("snappy");
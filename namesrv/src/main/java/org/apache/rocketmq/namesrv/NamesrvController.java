@@ -40,6 +40,7 @@ import org.apache.rocketmq.namesrv.processor.DefaultRequestProcessor;
 import org.apache.rocketmq.namesrv.route.ZoneRouteRPCHook;
 import org.apache.rocketmq.namesrv.routeinfo.BrokerHousekeepingService;
 import org.apache.rocketmq.namesrv.routeinfo.RouteInfoManager;
+import org.apache.rocketmq.namesrv.routeinfo.TopicRouteNotifyManager;
 import org.apache.rocketmq.remoting.Configuration;
 import org.apache.rocketmq.remoting.RemotingClient;
 import org.apache.rocketmq.remoting.RemotingServer;
@@ -70,6 +71,7 @@ public class NamesrvController {
 
     private final KVConfigManager kvConfigManager;
     private final RouteInfoManager routeInfoManager;
+    private final TopicRouteNotifyManager topicRouteNotifyManager;
 
     private RemotingClient remotingClient;
     private RemotingServer remotingServer;
@@ -96,6 +98,7 @@ public class NamesrvController {
         this.kvConfigManager = new KVConfigManager(this);
         this.brokerHousekeepingService = new BrokerHousekeepingService(this);
         this.routeInfoManager = new RouteInfoManager(namesrvConfig, this);
+        this.topicRouteNotifyManager = new TopicRouteNotifyManager(this);
         this.configuration = new Configuration(LOGGER, this.namesrvConfig, this.nettyServerConfig);
         this.configuration.setStorePathFromConfig(this.namesrvConfig, "configStorePath");
     }
@@ -122,6 +125,16 @@ public class NamesrvController {
         this.scheduledExecutorService.scheduleAtFixedRate(NamesrvController.this.kvConfigManager::printAllPeriodically,
             1, 10, TimeUnit.MINUTES);
 
+        this.scheduledExecutorService.scheduleAtFixedRate(() -> {
+            try {
+                if (NamesrvController.this.namesrvConfig.isEnableTopicRouteNotify()) {
+                    NamesrvController.this.topicRouteNotifyManager.notifyChangedRoutes();
+                }
+            } catch (Throwable e) {
+                LOGGER.error("notifyChangedRoutes error.", e);
+            }
+        }, 1000, this.namesrvConfig.getTopicRouteNotifyInterval(), TimeUnit.MILLISECONDS);
+
         this.scheduledExecutorService.scheduleAtFixedRate(() -> {
             try {
                 NamesrvController.this.printWaterMark();
@@ -221,6 +234,7 @@ public class NamesrvController {
             // Support get route info only temporarily
             ClientRequestProcessor clientRequestProcessor = new ClientRequestProcessor(this);
             this.remotingServer.registerProcessor(RequestCode.GET_ROUTEINFO_BY_TOPIC, clientRequestProcessor, this.clientRequestExecutor);
+            this.remotingServer.registerProcessor(RequestCode.SUBSCRIBE_TOPIC_ROUTE, clientRequestProcessor, this.clientRequestExecutor);
 
             this.remotingServer.registerDefaultProcessor(new DefaultRequestProcessor(this), this.defaultExecutor);
         }
@@ -279,6 +293,10 @@ public class NamesrvController {
         return routeInfoManager;
     }
 
+    public TopicRouteNotifyManager getTopicRouteNotifyManager() {
+        return topicRouteNotifyManager;
+    }
+
     public RemotingServer getRemotingServer() {
         return remotingServer;
     }
@@ -17,7 +17,6 @@
 
 package org.apache.rocketmq.namesrv.processor;
 
-import com.alibaba.fastjson.serializer.SerializerFeature;
 import io.netty.channel.ChannelHandlerContext;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -28,10 +27,14 @@ import org.apache.rocketmq.common.namesrv.NamesrvUtil;
 import org.apache.rocketmq.logging.org.slf4j.Logger;
 import org.apache.rocketmq.logging.org.slf4j.LoggerFactory;
 import org.apache.rocketmq.namesrv.NamesrvController;
+import org.apache.rocketmq.namesrv.routeinfo.RouteInfoManager;
 import org.apache.rocketmq.remoting.exception.RemotingCommandException;
 import org.apache.rocketmq.remoting.netty.NettyRequestProcessor;
 import org.apache.rocketmq.remoting.protocol.RemotingCommand;
+import org.apache.rocketmq.remoting.protocol.RequestCode;
 import org.apache.rocketmq.remoting.protocol.ResponseCode;
+import org.apache.rocketmq.remoting.protocol.body.TopicRouteChangeBody;
+import org.apache.rocketmq.remoting.protocol.body.TopicRouteSubscriptionBody;
 import org.apache.rocketmq.remoting.protocol.header.namesrv.GetRouteInfoRequestHeader;
 import org.apache.rocketmq.remoting.protocol.route.TopicRouteData;
 
@@ -52,9 +55,34 @@ public class ClientRequestProcessor implements NettyRequestProcessor {
     @Override
     public RemotingCommand processRequest(final ChannelHandlerContext ctx,
         final RemotingCommand request) throws Exception {
+        if (request.getCode() == RequestCode.SUBSCRIBE_TOPIC_ROUTE) {
+            return this.subscribeTopicRoute(ctx, request);
+        }
         return this.getRouteInfoByTopic(ctx, request);
     }
 
+    public RemotingCommand subscribeTopicRoute(ChannelHandlerContext ctx, RemotingCommand request) {
+        final RemotingCommand response = RemotingCommand.createResponseCommand(null);
+        if (!this.namesrvController.getNamesrvConfig().isEnableTopicRouteNotify()) {
+            response.setCode(ResponseCode.REQUEST_CODE_NOT_SUPPORTED);
+            response.setRemark("topic route notify is disabled");
+            return response;
+        }
+        if (request.getBody() == null) {
+            response.setCode(ResponseCode.SYSTEM_ERROR);
+            response.setRemark("subscribe topic route without body");
+            return response;
+        }
+
+        TopicRouteSubscriptionBody subscriptionBody = TopicRouteSubscriptionBody.decode(request.getBody(), TopicRouteSubscriptionBody.class);
+        TopicRouteChangeBody changeBody = this.namesrvController.getTopicRouteNotifyManager()
+            .subscribe(ctx.channel(), subscriptionBody.getTopicRouteVersionTable());
+        response.setBody(changeBody.encode());
+        response.setCode(ResponseCode.SUCCESS);
+        response.setRemark(null);
+        return response;
+    }
+
     public RemotingCommand getRouteInfoByTopic(ChannelHandlerContext ctx,
         RemotingCommand request) throws RemotingCommandException {
         final RemotingCommand response = RemotingCommand.createResponseCommand(null);
@@ -70,31 +98,31 @@ public class ClientRequestProcessor implements NettyRequestProcessor {
             return response;
         }
 
-        TopicRouteData topicRouteData = this.namesrvController.getRouteInfoManager().pickupTopicRouteData(requestHeader.getTopic());
+        Boolean standardJsonOnly = requestHeader.getAcceptStandardJsonOnly();
+        boolean standardJson = request.getVersion() >= MQVersion.Version.V4_9_4.ordinal() || null != standardJsonOnly && standardJsonOnly;
+        byte[] content = null;
+        if (this.namesrvController.getNamesrvConfig().isEnableTopicRouteCache()
+            && !this.namesrvController.getNamesrvConfig().isOrderMessageEnable()) {
+            content = this.namesrvController.getRouteInfoManager().pickupTopicRouteDataBytes(requestHeader.getTopic(), standardJson);
+        } else {
+            TopicRouteData topicRouteData = this.namesrvController.getRouteInfoManager().pickupTopicRouteData(requestHeader.getTopic());
+            if (topicRouteData != null) {
+                if (this.namesrvController.getNamesrvConfig().isOrderMessageEnable()) {
+                    String orderTopicConf =
+                        this.namesrvController.getKvConfigManager().getKVConfig(NamesrvUtil.NAMESPACE_ORDER_TOPIC_CONFIG,
+                            requestHeader.getTopic());
+                    topicRouteData.setOrderTopicConf(orderTopicConf);
+                }
+                content = RouteInfoManager.encodeTopicRouteData(topicRouteData, standardJson);
+            }
+        }
 
-        if (topicRouteData != null) {
+        if (content != null) {
             //topic route info register success ,so disable namesrvReady check
             if (needCheckNamesrvReady.get()) {
                 needCheckNamesrvReady.set(false);
             }
 
-            if (this.namesrvController.getNamesrvConfig().isOrderMessageEnable()) {
-                String orderTopicConf =
-                    this.namesrvController.getKvConfigManager().getKVConfig(NamesrvUtil.NAMESPACE_ORDER_TOPIC_CONFIG,
-                        requestHeader.getTopic());
-                topicRouteData.setOrderTopicConf(orderTopicConf);
-            }
-
-            byte[] content;
-            Boolean standardJsonOnly = requestHeader.getAcceptStandardJsonOnly();
-            if (request.getVersion() >= MQVersion.Version.V4_9_4.ordinal() || null != standardJsonOnly && standardJsonOnly) {
-                content = topicRouteData.encode(SerializerFeature.BrowserCompatible,
-                    SerializerFeature.QuoteFieldNames, SerializerFeature.SkipTransientField,
-                    SerializerFeature.MapSortField);
-            } else {
-                content = topicRouteData.encode();
-            }
-
             response.setBody(content);
             response.setCode(ResponseCode.SUCCESS);
             response.setRemark(null);
@@ -43,6 +43,7 @@ import org.apache.rocketmq.remoting.protocol.body.BrokerMemberGroup;
 import org.apache.rocketmq.remoting.protocol.body.GetBrokerMemberGroupResponseBody;
 import org.apache.rocketmq.remoting.protocol.body.GetRemoteClientConfigBody;
 import org.apache.rocketmq.remoting.protocol.body.RegisterBrokerBody;
+import org.apache.rocketmq.remoting.protocol.body.RegisterBrokerDeltaBody;
 import org.apache.rocketmq.remoting.protocol.body.TopicConfigSerializeWrapper;
 import org.apache.rocketmq.remoting.protocol.body.TopicList;
 import org.apache.rocketmq.remoting.protocol.header.GetBrokerMemberGroupRequestHeader;
@@ -98,6 +99,8 @@ public class DefaultRequestProcessor implements NettyRequestProcessor {
                 return this.queryBrokerTopicConfig(ctx, request);
             case RequestCode.REGISTER_BROKER:
                 return this.registerBroker(ctx, request);
+            case RequestCode.REGISTER_BROKER_DELTA:
+                return this.registerBrokerDelta(ctx, request);
             case RequestCode.UNREGISTER_BROKER:
                 return this.unregisterBroker(ctx, request);
             case RequestCode.BROKER_HEARTBEAT:
@@ -267,6 +270,57 @@ public class DefaultRequestProcessor implements NettyRequestProcessor {
         return response;
     }
 
+    public RemotingCommand registerBrokerDelta(ChannelHandlerContext ctx,
+        RemotingCommand request) throws RemotingCommandException {
+        final RemotingCommand response = RemotingCommand.createResponseCommand(RegisterBrokerResponseHeader.class);
+        final RegisterBrokerResponseHeader responseHeader = (RegisterBrokerResponseHeader) response.readCustomHeader();
+        final RegisterBrokerRequestHeader requestHeader =
+            (RegisterBrokerRequestHeader) request.decodeCommandCustomHeader(RegisterBrokerRequestHeader.class);
+
+        if (!checksum(ctx, request, requestHeader)) {
+            response.setCode(ResponseCode.SYSTEM_ERROR);
+            response.setRemark("crc32 not match");
+            return response;
+        }
+        if (request.getBody() == null) {
+            response.setCode(ResponseCode.SYSTEM_ERROR);
+            response.setRemark("register broker delta without body");
+            return response;
+        }
+
+        RegisterBrokerDeltaBody deltaBody = RegisterBrokerDeltaBody.decode(request.getBody(), RegisterBrokerDeltaBody.class);
+        RegisterBrokerResult result = this.namesrvController.getRouteInfoManager().registerBrokerDelta(
+            requestHeader.getClusterName(),
+            requestHeader.getBrokerAddr(),
+            requestHeader.getBrokerName(),
+            requestHeader.getBrokerId(),
+            requestHeader.getHaServerAddr(),
+            request.getExtFields().get(MixAll.ZONE_NAME),
+            requestHeader.getHeartbeatTimeoutMillis(),
+            requestHeader.getEnableActingMaster(),
+            deltaBody,
+            ctx.channel()
+        );
+
+        if (result == null) {
+            response.setCode(ResponseCode.BROKER_FULL_REGISTER_REQUIRED);
+            response.setRemark("register all topic configs");
+            return response;
+        }
+
+        responseHeader.setHaServerAddr(result.getHaServerAddr());
+        responseHeader.setMasterAddr(result.getMasterAddr());
+
+        if (this.namesrvController.getNamesrvConfig().isReturnOrderTopicConfigToBroker()) {
+            byte[] jsonValue = this.namesrvController.getKvConfigManager().getKVListByNamespace(NamesrvUtil.NAMESPACE_ORDER_TOPIC_CONFIG);
+            response.setBody(jsonValue);
+        }
+
+        response.setCode(ResponseCode.SUCCESS);
+        response.setRemark(null);
+        return response;
+    }
+
     private TopicConfigSerializeWrapper extractRegisterTopicConfigFromRequest(final RemotingCommand request) {
         TopicConfigSerializeWrapper topicConfigWrapper;
         if (request.getBody() != null) {
@@ -35,15 +35,18 @@ public class BrokerHousekeepingService implements ChannelEventListener {
     @Override
     public void onChannelClose(String remoteAddr, Channel channel) {
         this.namesrvController.getRouteInfoManager().onChannelDestroy(channel);
+        this.namesrvController.getTopicRouteNotifyManager().unsubscribe(channel);
     }
 
     @Override
     public void onChannelException(String remoteAddr, Channel channel) {
         this.namesrvController.getRouteInfoManager().onChannelDestroy(channel);
+        this.namesrvController.getTopicRouteNotifyManager().unsubscribe(channel);
     }
 
     @Override
     public void onChannelIdle(String remoteAddr, Channel channel) {
         this.namesrvController.getRouteInfoManager().onChannelDestroy(channel);
+        this.namesrvController.getTopicRouteNotifyManager().unsubscribe(channel);
     }
 }
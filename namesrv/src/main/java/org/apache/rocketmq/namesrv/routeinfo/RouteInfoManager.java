@@ -16,6 +16,7 @@
  */
 package org.apache.rocketmq.namesrv.routeinfo;
 
+import com.alibaba.fastjson.serializer.SerializerFeature;
 import com.google.common.collect.Sets;
 import io.netty.channel.Channel;
 import java.util.ArrayList;
@@ -27,9 +28,11 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import org.apache.commons.lang3.StringUtils;
@@ -54,6 +57,7 @@ import org.apache.rocketmq.remoting.protocol.RemotingCommand;
 import org.apache.rocketmq.remoting.protocol.RequestCode;
 import org.apache.rocketmq.remoting.protocol.body.BrokerMemberGroup;
 import org.apache.rocketmq.remoting.protocol.body.ClusterInfo;
+import org.apache.rocketmq.remoting.protocol.body.RegisterBrokerDeltaBody;
 import org.apache.rocketmq.remoting.protocol.body.TopicConfigAndMappingSerializeWrapper;
 import org.apache.rocketmq.remoting.protocol.body.TopicConfigSerializeWrapper;
 import org.apache.rocketmq.remoting.protocol.body.TopicList;
@@ -76,6 +80,19 @@ public class RouteInfoManager {
     private final Map<BrokerAddrInfo/* brokerAddr */, List<String>/* Filter Server */> filterServerTable;
     private final Map<String/* topic */, Map<String/*brokerName*/, TopicQueueMappingInfo>> topicQueueMappingInfoTable;
 
+    /**
+     * Routes built since the last change of their topic or brokers. Writers bump the version after changing the
+     * tables and then invalidate, readers only keep what they built if no version went by meanwhile.
+     */
+    private final ConcurrentMap<String/* topic */, EncodedTopicRoute> topicRouteCache = new ConcurrentHashMap<>(1024);
+    private final AtomicLong routeVersion = new AtomicLong(System.currentTimeMillis());
+    /**
+     * Route versions handed to subscribing clients, see {@link #getTopicRouteVersion(String)}. Starting from the
+     * startup time keeps a restarted name server from reusing versions.
+     */
+    private final ConcurrentMap<String/* topic */, Long/* version */> topicRouteVersionTable = new ConcurrentHashMap<>(1024);
+    private volatile long allTopicRoutesVersion = this.routeVersion.get();
+
     private final BatchUnregistrationService unRegisterService;
 
     private final NamesrvController namesrvController;
@@ -137,6 +154,7 @@ public class RouteInfoManager {
                 }
 
                 this.topicQueueTable.put(topic, queueDataMap);
+                invalidateTopicRoute(topic);
                 log.info("Register topic route:{}, {}", topic, queueDatas);
             }
         } catch (Exception e) {
@@ -150,6 +168,7 @@ public class RouteInfoManager {
         try {
             this.lock.writeLock().lockInterruptibly();
             this.topicQueueTable.remove(topic);
+            removeTopicRoute(topic);
         } catch (Exception e) {
             log.error("deleteTopic Exception", e);
         } finally {
@@ -177,6 +196,9 @@ public class RouteInfoManager {
                 if (queueDataMap.isEmpty()) {
                     log.info("deleteTopic, remove the topic all queue {} {}", clusterName, topic);
                     this.topicQueueTable.remove(topic);
+                    removeTopicRoute(topic);
+                } else {
+                    invalidateTopicRoute(topic);
                 }
             }
         } catch (Exception e) {
@@ -244,6 +266,8 @@ public class RouteInfoManager {
             }
 
             boolean isOldVersionBroker = enableActingMaster == null;
+            boolean brokerChanged = brokerData.isEnableActingMaster() != (!isOldVersionBroker && enableActingMaster)
+                || !Objects.equals(brokerData.getZoneName(), zoneName);
             brokerData.setEnableActingMaster(!isOldVersionBroker && enableActingMaster);
             brokerData.setZoneName(zoneName);
 
@@ -261,7 +285,7 @@ public class RouteInfoManager {
 
             //Switch slave to master: first remove <1, IP:PORT> in namesrv, then add <0, IP:PORT>
             //The same IP:PORT must only have one record in brokerAddrTable
-            brokerAddrsMap.entrySet().removeIf(item -> null != brokerAddr && brokerAddr.equals(item.getValue()) && brokerId != item.getKey());
+            brokerChanged |= brokerAddrsMap.entrySet().removeIf(item -> null != brokerAddr && brokerAddr.equals(item.getValue()) && brokerId != item.getKey());
 
             //If Local brokerId stateVersion bigger than the registering one,
             String oldBrokerAddr = brokerAddrsMap.get(brokerId);
@@ -277,6 +301,9 @@ public class RouteInfoManager {
                             clusterName, brokerName, brokerId, oldBrokerAddr, oldStateVersion, brokerAddr, newStateVersion);
                         //Remove the rejected brokerAddr from brokerLiveTable.
                         brokerLiveTable.remove(new BrokerAddrInfo(clusterName, brokerAddr));
+                        if (brokerChanged) {
+                            invalidateAllTopicRoutes();
+                        }
                         return result;
                     }
                 }
@@ -285,11 +312,15 @@ public class RouteInfoManager {
             if (!brokerAddrsMap.containsKey(brokerId) && topicConfigWrapper.getTopicConfigTable().size() == 1) {
                 log.warn("Can't register topicConfigWrapper={} because broker[{}]={} has not registered.",
                     topicConfigWrapper.getTopicConfigTable(), brokerId, brokerAddr);
+                if (brokerChanged) {
+                    invalidateAllTopicRoutes();
+                }
                 return null;
             }
 
             String oldAddr = brokerAddrsMap.put(brokerId, brokerAddr);
             registerFirst = registerFirst || (StringUtils.isEmpty(oldAddr));
+            brokerChanged |= !Objects.equals(oldAddr, brokerAddr);
 
             boolean isMaster = MixAll.MASTER_ID == brokerId;
             boolean isPrimeSlave = !isOldVersionBroker && !isMaster
@@ -309,7 +340,9 @@ public class RouteInfoManager {
                                 // Wipe write perm for prime slave
                                 topicConfig.setPerm(topicConfig.getPerm() & (~PermName.PERM_WRITE));
                             }
-                            this.createAndUpdateQueueData(brokerName, topicConfig);
+                            if (this.createAndUpdateQueueData(brokerName, topicConfig)) {
+                                invalidateTopicRoute(topicConfig.getTopicName());
+                            }
                         }
                     }
                 }
@@ -325,6 +358,7 @@ public class RouteInfoManager {
                         //Note asset brokerName equal entry.getValue().getBname()
                         //here use the mappingDetail.bname
                         topicQueueMappingInfoTable.get(entry.getKey()).put(entry.getValue().getBname(), entry.getValue());
+                        invalidateTopicRoute(entry.getKey());
                     }
                 }
             }
@@ -342,11 +376,18 @@ public class RouteInfoManager {
             }
 
             if (filterServerList != null) {
+                List<String> prevFilterServerList;
                 if (filterServerList.isEmpty()) {
-                    this.filterServerTable.remove(brokerAddrInfo);
+                    prevFilterServerList = this.filterServerTable.remove(brokerAddrInfo);
                 } else {
-                    this.filterServerTable.put(brokerAddrInfo, filterServerList);
+                    prevFilterServerList = this.filterServerTable.put(brokerAddrInfo, filterServerList);
                 }
+                brokerChanged |= filterServerList.isEmpty() ? prevFilterServerList != null
+                    : !filterServerList.equals(prevFilterServerList);
+            }
+
+            if (brokerChanged) {
+                invalidateAllTopicRoutes();
             }
 
             if (MixAll.MASTER_ID != brokerId) {
@@ -367,6 +408,8 @@ public class RouteInfoManager {
             }
         } catch (Exception e) {
             log.error("registerBroker Exception", e);
+            // the tables may be half updated
+            invalidateAllTopicRoutes();
         } finally {
             this.lock.writeLock().unlock();
         }
@@ -374,6 +417,82 @@ public class RouteInfoManager {
         return result;
     }
 
+    /**
+     * Applies the topic configs a broker changed since it registered the base data version of the delta.
+     *
+     * @return null if the broker has to register all its topic configs, e.g. this name server does not hold the base
+     * data version because it restarted or missed a registration
+     */
+    public RegisterBrokerResult registerBrokerDelta(
+        final String clusterName,
+        final String brokerAddr,
+        final String brokerName,
+        final long brokerId,
+        final String haServerAddr,
+        final String zoneName,
+        final Long timeoutMillis,
+        final Boolean enableActingMaster,
+        final RegisterBrokerDeltaBody deltaBody,
+        final Channel channel) {
+        try {
+            this.lock.writeLock().lockInterruptibly();
+            try {
+                BrokerLiveInfo brokerLiveInfo = this.brokerLiveTable.get(new BrokerAddrInfo(clusterName, brokerAddr));
+                BrokerData brokerData = this.brokerAddrTable.get(brokerName);
+                if (brokerLiveInfo == null || brokerData == null
+                    || !brokerAddr.equals(brokerData.getBrokerAddrs().get(brokerId))
+                    || !brokerLiveInfo.getDataVersion().equals(deltaBody.getBaseDataVersion())) {
+                    log.info("registerBrokerDelta, base version not matched, require full registration, {} {} {}",
+                        clusterName, brokerAddr, deltaBody.getBaseDataVersion());
+                    return null;
+                }
+
+                boolean isMaster = MixAll.MASTER_ID == brokerId;
+                boolean isPrimeSlave = enableActingMaster != null && !isMaster
+                    && brokerId == Collections.min(brokerData.getBrokerAddrs().keySet());
+                if (isMaster || isPrimeSlave) {
+                    for (String topic : deltaBody.getRemovedTopics()) {
+                        removeTopicOfBroker(brokerName, topic);
+                    }
+                }
+
+                // the write lock is reentrant, the changed configs are registered as usual
+                return registerBroker(clusterName, brokerAddr, brokerName, brokerId, haServerAddr, zoneName,
+                    timeoutMillis, enableActingMaster, deltaBody.getTopicConfigSerializeWrapper(),
+                    deltaBody.getFilterServerList(), channel);
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+        } catch (Exception e) {
+            log.error("registerBrokerDelta Exception", e);
+        }
+        return null;
+    }
+
+    private void removeTopicOfBroker(final String brokerName, final String topic) {
+        boolean changed = false;
+        Map<String, QueueData> queueDataMap = this.topicQueueTable.get(topic);
+        if (queueDataMap != null && queueDataMap.remove(brokerName) != null) {
+            log.info("registerBrokerDelta, remove one broker's topic {} {}", brokerName, topic);
+            if (queueDataMap.isEmpty()) {
+                this.topicQueueTable.remove(topic);
+            }
+            changed = true;
+        }
+        Map<String, TopicQueueMappingInfo> mappingInfoMap = this.topicQueueMappingInfoTable.get(topic);
+        if (mappingInfoMap != null && mappingInfoMap.remove(brokerName) != null) {
+            if (mappingInfoMap.isEmpty()) {
+                this.topicQueueMappingInfoTable.remove(topic);
+            }
+            changed = true;
+        }
+        if (changed && this.topicQueueTable.containsKey(topic)) {
+            invalidateTopicRoute(topic);
+        } else if (changed) {
+            removeTopicRoute(topic);
+        }
+    }
+
     public BrokerMemberGroup getBrokerMemberGroup(String clusterName, String brokerName) {
         BrokerMemberGroup groupMember = new BrokerMemberGroup(clusterName, brokerName);
         try {
@@ -430,7 +549,10 @@ public class RouteInfoManager {
         }
     }
 
-    private void createAndUpdateQueueData(final String brokerName, final TopicConfig topicConfig) {
+    /**
+     * @return true if the route of the topic changed
+     */
+    private boolean createAndUpdateQueueData(final String brokerName, final TopicConfig topicConfig) {
         QueueData queueData = new QueueData();
         queueData.setBrokerName(brokerName);
         queueData.setWriteQueueNums(topicConfig.getWriteQueueNums());
@@ -444,16 +566,20 @@ public class RouteInfoManager {
             queueDataMap.put(brokerName, queueData);
             this.topicQueueTable.put(topicConfig.getTopicName(), queueDataMap);
             log.info("new topic registered, {} {}", topicConfig.getTopicName(), queueData);
+            return true;
         } else {
             final QueueData existedQD = queueDataMap.get(brokerName);
             if (existedQD == null) {
                 queueDataMap.put(brokerName, queueData);
+                return true;
             } else if (!existedQD.equals(queueData)) {
                 log.info("topic changed, {} OLD: {} NEW: {}", topicConfig.getTopicName(), existedQD,
                     queueData);
                 queueDataMap.put(brokerName, queueData);
+                return true;
             }
         }
+        return false;
     }
 
     public int wipeWritePermOfBrokerByLock(final String brokerName) {
@@ -505,6 +631,7 @@ public class RouteInfoManager {
                     break;
             }
             qd.setPerm(perm);
+            invalidateTopicRoute(entry.getKey());
             topicCnt++;
         }
         return topicCnt;
@@ -594,6 +721,7 @@ public class RouteInfoManager {
             }
 
             cleanTopicByUnRegisterRequests(removedBroker, reducedBroker);
+            invalidateAllTopicRoutes();
 
             if (!needNotifyBrokerMap.isEmpty() && namesrvConfig.isNotifyMinBrokerIdChanged()) {
                 notifyMinBrokerIdChanged(needNotifyBrokerMap);
@@ -623,6 +751,7 @@ public class RouteInfoManager {
             if (queueDataMap.isEmpty()) {
                 log.debug("removeTopicByBrokerName, remove the topic all queue {}", topic);
                 itMap.remove();
+                this.topicRouteVersionTable.remove(topic);
             }
 
             for (final String brokerName : reducedBroker) {
@@ -756,6 +885,85 @@ public class RouteInfoManager {
         return null;
     }
 
+    /**
+     * Same route as {@link #pickupTopicRouteData(String)}, encoded, and served from the route cache until the topic or
+     * one of its brokers changes.
+     *
+     * @return the encoded route, or null if the topic has no route
+     */
+    public byte[] pickupTopicRouteDataBytes(final String topic, final boolean standardJson) {
+        EncodedTopicRoute route = this.topicRouteCache.get(topic);
+        if (route == null) {
+            long version = this.routeVersion.get();
+            TopicRouteData topicRouteData = pickupTopicRouteData(topic);
+            if (topicRouteData == null) {
+                return null;
+            }
+            route = new EncodedTopicRoute(topicRouteData);
+            this.topicRouteCache.put(topic, route);
+            if (this.routeVersion.get() != version) {
+                // the tables changed while building, the route may be stale
+                this.topicRouteCache.remove(topic, route);
+            }
+        }
+        return route.encode(standardJson);
+    }
+
+    public static byte[] encodeTopicRouteData(TopicRouteData topicRouteData, boolean standardJson) {
+        if (standardJson) {
+            return topicRouteData.encode(SerializerFeature.BrowserCompatible,
+                SerializerFeature.QuoteFieldNames, SerializerFeature.SkipTransientField,
+                SerializerFeature.MapSortField);
+        }
+        return topicRouteData.encode();
+    }
+
+    /**
+     * @return the version of the route of the topic, changes whenever the route may have changed. Read it before
+     * picking up the route, the route is then at least as new as the version.
+     */
+    public long getTopicRouteVersion(final String topic) {
+        Long version = this.topicRouteVersionTable.get(topic);
+        return version == null ? this.allTopicRoutesVersion : Math.max(version, this.allTopicRoutesVersion);
+    }
+
+    //testable
+    int getTopicRouteVersionNum() {
+        return this.topicRouteVersionTable.size();
+    }
+
+    /**
+     * @return the version of all routes, changes whenever any route may have changed
+     */
+    public long getRouteVersion() {
+        return this.routeVersion.get();
+    }
+
+    /**
+     * Versions of single topics are only kept for route notify, other topics go with the version of all routes.
+     */
+    private void invalidateTopicRoute(final String topic) {
+        long version = this.routeVersion.incrementAndGet();
+        if (this.namesrvConfig.isEnableTopicRouteNotify()) {
+            this.topicRouteVersionTable.merge(topic, version, Math::max);
+        }
+        this.topicRouteCache.remove(topic);
+    }
+
+    /**
+     * Invalidates the route of a topic that is gone, the version of all routes stands for it from then on.
+     */
+    private void removeTopicRoute(final String topic) {
+        this.routeVersion.incrementAndGet();
+        this.topicRouteVersionTable.remove(topic);
+        this.topicRouteCache.remove(topic);
+    }
+
+    private void invalidateAllTopicRoutes() {
+        this.allTopicRoutesVersion = this.routeVersion.incrementAndGet();
+        this.topicRouteCache.clear();
+    }
+
     public void scanNotActiveBroker() {
         try {
             log.info("start scanNotActiveBroker");
@@ -1232,3 +1440,34 @@ class BrokerStatusChangeInfo {
         this.haBrokerAddr = haBrokerAddr;
     }
 }
+
+class EncodedTopicRoute {
+    private final TopicRouteData topicRouteData;
+    private volatile byte[] content;
+    private volatile byte[] standardJsonContent;
+
+    EncodedTopicRoute(TopicRouteData topicRouteData) {
+        if (topicRouteData.getTopicQueueMappingByBroker() != null) {
+            // detach from the mapping table, which is updated in place
+            topicRouteData.setTopicQueueMappingByBroker(new HashMap<>(topicRouteData.getTopicQueueMappingByBroker()));
+        }
+        this.topicRouteData = topicRouteData;
+    }
+
+    byte[] encode(boolean standardJson) {
+        if (standardJson) {
+            byte[] bytes = standardJsonContent;
+            if (bytes == null) {
+                bytes = RouteInfoManager.encodeTopicRouteData(topicRouteData, true);
+                standardJsonContent = bytes;
+            }
+            return bytes;
+        }
+        byte[] bytes = content;
+        if (bytes == null) {
+            bytes = RouteInfoManager.encodeTopicRouteData(topicRouteData, false);
+            content = bytes;
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.rocketmq.namesrv.routeinfo;
+
+import io.netty.channel.Channel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.apache.rocketmq.common.Pair;
+import org.apache.rocketmq.common.constant.LoggerName;
+import org.apache.rocketmq.common.namesrv.NamesrvUtil;
+import org.apache.rocketmq.logging.org.slf4j.Logger;
+import org.apache.rocketmq.logging.org.slf4j.LoggerFactory;
+import org.apache.rocketmq.namesrv.NamesrvController;
+import org.apache.rocketmq.remoting.common.RemotingHelper;
+import org.apache.rocketmq.remoting.protocol.RemotingCommand;
+import org.apache.rocketmq.remoting.protocol.RequestCode;
+import org.apache.rocketmq.remoting.protocol.body.TopicRouteChangeBody;
+import org.apache.rocketmq.remoting.protocol.route.TopicRouteData;
+
+/**
+ * Subscriptions of client connections to topic routes. A client subscribes with the route versions it holds and gets
+ * the routes changed since in the response, later changes are pushed on the connection by
+ * {@link #notifyChangedRoutes()}. Each subscription replaces the previous one of the connection.
+ */
+public class TopicRouteNotifyManager {
+    private static final Logger log = LoggerFactory.getLogger(LoggerName.NAMESRV_LOGGER_NAME);
+    private static final long NOTIFY_TIMEOUT_MILLIS = 3000;
+
+    private final NamesrvController namesrvController;
+    /**
+     * Subscribed topics of each connection, with the route versions the client holds.
+     */
+    private final ConcurrentMap<Channel, ConcurrentMap<String/* topic */, Long/* version */>> subscriptionTable =
+        new ConcurrentHashMap<>(1024);
+    private long lastNotifiedRouteVersion = -1;
+
+    public TopicRouteNotifyManager(NamesrvController namesrvController) {
+        this.namesrvController = namesrvController;
+    }
+
+    /**
+     * @return the routes changed since the versions the client holds
+     */
+    public TopicRouteChangeBody subscribe(final Channel channel, final Map<String, Long> topicRouteVersionTable) {
+        ConcurrentMap<String, Long> subscription = new ConcurrentHashMap<>(topicRouteVersionTable.size());
+        for (Map.Entry<String, Long> entry : topicRouteVersionTable.entrySet()) {
+            subscription.put(entry.getKey(), entry.getValue() == null ? 0L : entry.getValue());
+        }
+        TopicRouteChangeBody changeBody = collectChangedRoutes(subscription, new HashMap<>());
+        this.subscriptionTable.put(channel, subscription);
+        if (!channel.isActive()) {
+            this.subscriptionTable.remove(channel);
+        }
+        return changeBody;
+    }
+
+    public void unsubscribe(final Channel channel) {
+        if (channel != null) {
+            this.subscriptionTable.remove(channel);
+        }
+    }
+
+    public int subscriptionNum() {
+        return this.subscriptionTable.size();
+    }
+
+    /**
+     * Pushes the changed routes to each subscribing connection, called periodically. A client missing a push gets the
+     * route when it subscribes again.
+     */
+    public void notifyChangedRoutes() {
+        if (this.subscriptionTable.isEmpty()) {
+            return;
+        }
+        long routeVersion = this.namesrvController.getRouteInfoManager().getRouteVersion();
+        if (routeVersion == this.lastNotifiedRouteVersion) {
+            return;
+        }
+
+        Map<String, Pair<Long, TopicRouteData>> routeCache = new HashMap<>();
+        for (Map.Entry<Channel, ConcurrentMap<String, Long>> entry : this.subscriptionTable.entrySet()) {
+            TopicRouteChangeBody changeBody = collectChangedRoutes(entry.getValue(), routeCache);
+            if (changeBody.getTopicRouteTable().isEmpty()) {
+                continue;
+            }
+            RemotingCommand request = RemotingCommand.createRequestCommand(RequestCode.NOTIFY_TOPIC_ROUTE_CHANGED, null);
+            request.setBody(changeBody.encode());
+            try {
+                this.namesrvController.getRemotingServer().invokeOneway(entry.getKey(), request, NOTIFY_TIMEOUT_MILLIS);
+            } catch (Exception e) {
+                log.warn("notify topic route changed to {} failed, topics: {}",
+                    RemotingHelper.parseChannelRemoteAddr(entry.getKey()), changeBody.getTopicRouteTable().keySet(), e);
+            }
+        }
+        this.lastNotifiedRouteVersion = routeVersion;
+    }
+
+    private TopicRouteChangeBody collectChangedRoutes(final Map<String, Long> subscription,
+        final Map<String, Pair<Long, TopicRouteData>> routeCache) {
+        TopicRouteChangeBody changeBody = new TopicRouteChangeBody();
+        RouteInfoManager routeInfoManager = this.namesrvController.getRouteInfoManager();
+        for (Map.Entry<String, Long> entry : subscription.entrySet()) {
+            String topic = entry.getKey();
+            Pair<Long, TopicRouteData> route = routeCache.get(topic);
+            if (route == null) {
+                // the version goes first, the route picked up after is at least as new
+                long version = routeInfoManager.getTopicRouteVersion(topic);
+                if (version == entry.getValue()) {
+                    continue;
+                }
+                route = new Pair<>(version, pickupTopicRouteData(topic));
+                routeCache.put(topic, route);
+            }
+            if (route.getObject1() == entry.getValue().longValue()) {
+                continue;
+            }
+            entry.setValue(route.getObject1());
+            if (route.getObject2() != null) {
+                changeBody.getTopicRouteTable().put(topic, route.getObject2());
+                changeBody.getTopicRouteVersionTable().put(topic, route.getObject1());
+            }
+        }
+        return changeBody;
+    }
+
+    private TopicRouteData pickupTopicRouteData(final String topic) {
+        TopicRouteData topicRouteData = this.namesrvController.getRouteInfoManager().pickupTopicRouteData(topic);
+        if (topicRouteData != null && this.namesrvController.getNamesrvConfig().isOrderMessageEnable()) {
+            topicRouteData.setOrderTopicConf(this.namesrvController.getKvConfigManager()
+                .getKVConfig(NamesrvUtil.NAMESPACE_ORDER_TOPIC_CONFIG, topic));
+        }
+        return topicRouteData;
+    }
+}
@@ -132,6 +132,15 @@ public class GetRouteInfoBenchmark {
         routeInfoManager.pickupTopicRouteData(topicList[new Random().nextInt(40000)]);
     }
 
+    @Benchmark
+    @Fork(value = 2)
+    @Measurement(iterations = 10, time = 10)
+    @Warmup(iterations = 10, time = 1)
+    @Threads(4)
+    public void pickupTopicRouteDataBytes() {
+        routeInfoManager.pickupTopicRouteDataBytes(topicList[new Random().nextInt(40000)], true);
+    }
+
     public static void main(String[] args) throws Exception {
         org.openjdk.jmh.Main.main(args);
     }
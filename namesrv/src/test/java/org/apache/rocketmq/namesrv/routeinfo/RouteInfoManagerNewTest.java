@@ -32,6 +32,7 @@ import org.apache.rocketmq.common.constant.PermName;
 import org.apache.rocketmq.common.namesrv.NamesrvConfig;
 import org.apache.rocketmq.remoting.protocol.DataVersion;
 import org.apache.rocketmq.remoting.protocol.body.ClusterInfo;
+import org.apache.rocketmq.remoting.protocol.body.RegisterBrokerDeltaBody;
 import org.apache.rocketmq.remoting.protocol.body.TopicConfigSerializeWrapper;
 import org.apache.rocketmq.remoting.protocol.body.TopicList;
 import org.apache.rocketmq.remoting.protocol.header.namesrv.UnRegisterBrokerRequestHeader;
@@ -624,6 +625,71 @@ public class RouteInfoManagerNewTest {
             .containsValues(BrokerBasicInfo.defaultBroker().brokerAddr, BrokerBasicInfo.slaveBroker().brokerAddr);
     }
 
+    @Test
+    public void pickupTopicRouteDataBytes() {
+        registerBrokerWithNormalTopic(BrokerBasicInfo.defaultBroker(), "TestTopic");
+        assertThat(routeInfoManager.pickupTopicRouteDataBytes("NotExistTopic", false)).isNull();
+
+        byte[] content = routeInfoManager.pickupTopicRouteDataBytes("TestTopic", false);
+        assertThat(content).isEqualTo(routeInfoManager.pickupTopicRouteData("TestTopic").encode());
+        assertThat(routeInfoManager.pickupTopicRouteDataBytes("TestTopic", false)).isSameAs(content);
+
+        // a heartbeat does not change the route
+        registerBrokerWithNormalTopic(BrokerBasicInfo.defaultBroker(), "TestTopic");
+        assertThat(routeInfoManager.pickupTopicRouteDataBytes("TestTopic", false)).isSameAs(content);
+
+        routeInfoManager.wipeWritePermOfBrokerByLock(DEFAULT_BROKER);
+        content = routeInfoManager.pickupTopicRouteDataBytes("TestTopic", false);
+        TopicRouteData topicRouteData = TopicRouteData.decode(content, TopicRouteData.class);
+        assertThat(topicRouteData.getQueueDatas().get(0).getPerm()).isEqualTo(PermName.PERM_READ);
+
+        registerBrokerWithNormalTopic(BrokerBasicInfo.slaveBroker(), "TestTopic");
+        content = routeInfoManager.pickupTopicRouteDataBytes("TestTopic", false);
+        topicRouteData = TopicRouteData.decode(content, TopicRouteData.class);
+        assertThat(topicRouteData.getBrokerDatas().get(0).getBrokerAddrs()).containsKeys(0L, 1L);
+
+        routeInfoManager.deleteTopic("TestTopic");
+        assertThat(routeInfoManager.pickupTopicRouteDataBytes("TestTopic", false)).isNull();
+    }
+
+    @Test
+    public void registerBrokerDelta() {
+        BrokerBasicInfo brokerInfo = BrokerBasicInfo.defaultBroker();
+        registerBrokerWithNormalTopic(brokerInfo, "TestTopic", "TestTopic1");
+        DataVersion dataVersion = new DataVersion();
+        dataVersion.assignNewOne(brokerInfo.dataVersion);
+        dataVersion.nextVersion();
+
+        RegisterBrokerDeltaBody deltaBody = new RegisterBrokerDeltaBody();
+        deltaBody.setBaseDataVersion(brokerInfo.dataVersion);
+        deltaBody.getTopicConfigSerializeWrapper().setDataVersion(dataVersion);
+        deltaBody.getTopicConfigSerializeWrapper().getTopicConfigTable().put("TestTopic2", new TopicConfig("TestTopic2", 8, 8));
+        deltaBody.getRemovedTopics().add("TestTopic1");
+
+        assertThat(registerBrokerDelta(brokerInfo, deltaBody)).isNotNull();
+        assertThat(routeInfoManager.pickupTopicRouteData("TestTopic")).isNotNull();
+        assertThat(routeInfoManager.pickupTopicRouteData("TestTopic1")).isNull();
+        assertThat(routeInfoManager.pickupTopicRouteData("TestTopic2").getQueueDatas().get(0).getWriteQueueNums()).isEqualTo(8);
+
+        // the base version is not the registered one anymore
+        assertThat(registerBrokerDelta(brokerInfo, deltaBody)).isNull();
+        assertThat(registerBrokerDelta(BrokerBasicInfo.slaveBroker(), deltaBody)).isNull();
+    }
+
+    private RegisterBrokerResult registerBrokerDelta(BrokerBasicInfo brokerInfo, RegisterBrokerDeltaBody deltaBody) {
+        return routeInfoManager.registerBrokerDelta(
+            brokerInfo.clusterName,
+            brokerInfo.brokerAddr,
+            brokerInfo.brokerName,
+            brokerInfo.brokerId,
+            brokerInfo.haAddr,
+            "",
+            null,
+            brokerInfo.enableActingMaster,
+            deltaBody,
+            mock(Channel.class));
+    }
+
     private RegisterBrokerResult registerBrokerWithNormalTopic(BrokerBasicInfo brokerInfo, String... topics) {
         ConcurrentHashMap<String, TopicConfig> topicConfigConcurrentHashMap = new ConcurrentHashMap<>();
         TopicConfig baseTopic = new TopicConfig("baseTopic");
@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.rocketmq.namesrv.routeinfo;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.rocketmq.common.constant.PermName;
+import org.apache.rocketmq.common.namesrv.NamesrvConfig;
+import org.apache.rocketmq.namesrv.NamesrvController;
+import org.apache.rocketmq.remoting.RemotingServer;
+import org.apache.rocketmq.remoting.protocol.RemotingCommand;
+import org.apache.rocketmq.remoting.protocol.RequestCode;
+import org.apache.rocketmq.remoting.protocol.body.TopicRouteChangeBody;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TopicRouteNotifyManagerTest extends RouteInfoManagerTestBase {
+    private RouteInfoManager routeInfoManager;
+    private RemotingServer remotingServer;
+    private TopicRouteNotifyManager topicRouteNotifyManager;
+
+    @Before
+    public void setup() {
+        NamesrvConfig namesrvConfig = new NamesrvConfig();
+        namesrvConfig.setEnableTopicRouteNotify(true);
+        routeInfoManager = new RouteInfoManager(namesrvConfig, null);
+        registerCluster(routeInfoManager, "cluster", "broker", 1, 1, "topic", 2);
+        remotingServer = mock(RemotingServer.class);
+        NamesrvController namesrvController = mock(NamesrvController.class);
+        when(namesrvController.getRouteInfoManager()).thenReturn(routeInfoManager);
+        when(namesrvController.getNamesrvConfig()).thenReturn(namesrvConfig);
+        when(namesrvController.getRemotingServer()).thenReturn(remotingServer);
+        topicRouteNotifyManager = new TopicRouteNotifyManager(namesrvController);
+    }
+
+    @Test
+    public void testSubscribeAndNotify() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        Map<String, Long> topicRouteVersionTable = new HashMap<>();
+        topicRouteVersionTable.put("topic-0", 0L);
+        topicRouteVersionTable.put("topic-1", 0L);
+        topicRouteVersionTable.put("NotExistTopic", 0L);
+
+        TopicRouteChangeBody changeBody = topicRouteNotifyManager.subscribe(channel, topicRouteVersionTable);
+        assertThat(changeBody.getTopicRouteTable()).containsOnlyKeys("topic-0", "topic-1");
+        assertThat(changeBody.getTopicRouteVersionTable().get("topic-0"))
+            .isEqualTo(routeInfoManager.getTopicRouteVersion("topic-0"));
+
+        // nothing changed since the held versions
+        topicRouteVersionTable.putAll(changeBody.getTopicRouteVersionTable());
+        assertThat(topicRouteNotifyManager.subscribe(channel, topicRouteVersionTable).getTopicRouteTable()).isEmpty();
+        topicRouteNotifyManager.notifyChangedRoutes();
+        verify(remotingServer, never()).invokeOneway(any(), any(), anyLong());
+
+        routeInfoManager.wipeWritePermOfBrokerByLock("broker-0");
+        topicRouteNotifyManager.notifyChangedRoutes();
+        ArgumentCaptor<RemotingCommand> requestCaptor = ArgumentCaptor.forClass(RemotingCommand.class);
+        verify(remotingServer).invokeOneway(eq(channel), requestCaptor.capture(), anyLong());
+        RemotingCommand request = requestCaptor.getValue();
+        assertThat(request.getCode()).isEqualTo(RequestCode.NOTIFY_TOPIC_ROUTE_CHANGED);
+        changeBody = TopicRouteChangeBody.decode(request.getBody(), TopicRouteChangeBody.class);
+        assertThat(changeBody.getTopicRouteTable()).containsOnlyKeys("topic-0", "topic-1");
+        assertThat(changeBody.getTopicRouteTable().get("topic-0").getQueueDatas().get(0).getPerm()).isEqualTo(PermName.PERM_READ);
+
+        // pushed once only
+        topicRouteNotifyManager.notifyChangedRoutes();
+        verify(remotingServer, times(1)).invokeOneway(any(), any(), anyLong());
+
+        topicRouteNotifyManager.unsubscribe(channel);
+        assertThat(topicRouteNotifyManager.subscriptionNum()).isZero();
+    }
+
+    @Test
+    public void testTopicRouteVersionTable() {
+        assertThat(routeInfoManager.getTopicRouteVersionNum()).isEqualTo(2);
+        routeInfoManager.deleteTopic("topic-0");
+        assertThat(routeInfoManager.getTopicRouteVersionNum()).isEqualTo(1);
+
+        // only kept for route notify
+        RouteInfoManager notifyDisabled = new RouteInfoManager(new NamesrvConfig(), null);
+        registerCluster(notifyDisabled, "cluster", "broker", 1, 1, "topic", 2);
+        notifyDisabled.wipeWritePermOfBrokerByLock("broker-0");
+        assertThat(notifyDisabled.getTopicRouteVersionNum()).isZero();
+    }
+}
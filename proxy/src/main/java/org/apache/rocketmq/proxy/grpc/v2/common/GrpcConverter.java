@@ -28,7 +28,7 @@ import apache.rocketmq.v2.MessageQueue;
 import apache.rocketmq.v2.MessageType;
 import apache.rocketmq.v2.Resource;
 import apache.rocketmq.v2.SystemProperties;
-import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
 import com.google.protobuf.util.Timestamps;
 import java.net.SocketAddress;
 import java.util.Arrays;
@@ -105,7 +105,8 @@ public class GrpcConverter {
             .setTopic(topic)
             .putAllUserProperties(userProperties)
             .setSystemProperties(systemProperties)
-            .setBody(ByteString.copyFrom(messageExt.getBody()))
+            // the body is freshly decoded and never modified afterwards, so it is safe to share
+            .setBody(UnsafeByteOperations.unsafeWrap(messageExt.getBody()))
             .build();
     }
 
@@ -22,6 +22,7 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import org.apache.rocketmq.broker.pagecache.ManyMessageTransfer;
 import org.apache.rocketmq.proxy.config.ConfigurationManager;
 import org.apache.rocketmq.remoting.protocol.RemotingCommand;
 
@@ -42,6 +43,14 @@ public class InvocationChannel extends SimpleChannel {
                 context.handle(responseCommand);
             }
             inFlightRequestMap.remove(responseCommand.getOpaque());
+        } else if (msg instanceof ManyMessageTransfer && ((ManyMessageTransfer) msg).getResponse() != null) {
+            // the messages are read before the writer releases them on completion of the returned future
+            ManyMessageTransfer transfer = (ManyMessageTransfer) msg;
+            RemotingCommand responseCommand = transfer.getResponse();
+            InvocationContextInterface context = inFlightRequestMap.remove(responseCommand.getOpaque());
+            if (null != context) {
+                context.handle(responseCommand, transfer.getGetMessageResult());
+            }
         }
         return super.writeAndFlush(msg);
     }
@@ -17,10 +17,25 @@
 
 package org.apache.rocketmq.proxy.service.channel;
 
+import java.nio.ByteBuffer;
 import org.apache.rocketmq.remoting.protocol.RemotingCommand;
+import org.apache.rocketmq.store.GetMessageResult;
 
 public interface InvocationContextInterface {
     void handle(RemotingCommand remotingCommand);
 
+    /**
+     * Handles a response whose messages are transferred from the page cache instead of carried in the body. The
+     * buffers are only valid until this method returns, by default they are copied into the body.
+     */
+    default void handle(RemotingCommand remotingCommand, GetMessageResult getMessageResult) {
+        ByteBuffer body = ByteBuffer.allocate(getMessageResult.getBufferTotalSize());
+        for (ByteBuffer byteBuffer : getMessageResult.getMessageBufferList()) {
+            body.put(byteBuffer.slice());
+        }
+        remotingCommand.setBody(body.array());
+        handle(remotingCommand);
+    }
+
     boolean expired(long expiredTimeSec);
 }
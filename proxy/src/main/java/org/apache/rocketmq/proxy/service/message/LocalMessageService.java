@@ -71,6 +71,7 @@ import org.apache.rocketmq.remoting.protocol.header.QueryConsumerOffsetRequestHe
 import org.apache.rocketmq.remoting.protocol.header.SendMessageRequestHeader;
 import org.apache.rocketmq.remoting.protocol.header.SendMessageResponseHeader;
 import org.apache.rocketmq.remoting.protocol.header.UpdateConsumerOffsetRequestHeader;
+import org.apache.rocketmq.store.GetMessageResult;
 import org.apache.rocketmq.logging.org.slf4j.Logger;
 import org.apache.rocketmq.logging.org.slf4j.LoggerFactory;
 
@@ -196,7 +197,7 @@ public class LocalMessageService implements MessageService {
         RemotingCommand request = LocalRemotingCommand.createRequestCommand(RequestCode.POP_MESSAGE, requestHeader);
         CompletableFuture<RemotingCommand> future = new CompletableFuture<>();
         SimpleChannel channel = channelManager.createInvocationChannel(ctx);
-        InvocationContext invocationContext = new InvocationContext(future);
+        PopInvocationContext invocationContext = new PopInvocationContext(future);
         channel.registerInvocationContext(request.getOpaque(), invocationContext);
         ChannelHandlerContext simpleChannelHandlerContext = channel.getChannelHandlerContext();
         try {
@@ -216,6 +217,10 @@ public class LocalMessageService implements MessageService {
             switch (r.getCode()) {
                 case ResponseCode.SUCCESS:
                     popStatus = PopStatus.FOUND;
+                    if (invocationContext.getMessageExtList() != null) {
+                        messageExtList = invocationContext.getMessageExtList();
+                        break;
+                    }
                     ByteBuffer byteBuffer = ByteBuffer.wrap(r.getBody());
                     messageExtList = MessageDecoder.decodesBatch(
                         byteBuffer,
@@ -414,4 +419,30 @@ public class LocalMessageService implements MessageService {
         long timeoutMillis) {
         throw new NotImplementedException("requestOneway is not implemented in LocalMessageService");
     }
+
+    /**
+     * Decodes the popped messages straight from the page cache buffers when the broker transfers them without
+     * copying, instead of assembling them into a response body first.
+     */
+    protected static class PopInvocationContext extends InvocationContext {
+        private volatile List<MessageExt> messageExtList;
+
+        public PopInvocationContext(CompletableFuture<RemotingCommand> resp) {
+            super(resp);
+        }
+
+        @Override
+        public void handle(RemotingCommand remotingCommand, GetMessageResult getMessageResult) {
+            List<MessageExt> messageExtList = new ArrayList<>(getMessageResult.getMessageBufferList().size());
+            for (ByteBuffer byteBuffer : getMessageResult.getMessageBufferList()) {
+                messageExtList.addAll(MessageDecoder.decodesBatch(byteBuffer.slice(), true, false, true));
+            }
+            this.messageExtList = messageExtList;
+            handle(remotingCommand);
+        }
+
+        public List<MessageExt> getMessageExtList() {
+            return messageExtList;
+        }
+    }
 }
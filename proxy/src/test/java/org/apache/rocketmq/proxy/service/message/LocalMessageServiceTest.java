@@ -27,6 +27,7 @@ import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import org.apache.rocketmq.broker.BrokerController;
+import org.apache.rocketmq.broker.pagecache.ManyMessageTransfer;
 import org.apache.rocketmq.broker.processor.AckMessageProcessor;
 import org.apache.rocketmq.broker.processor.ChangeInvisibleTimeProcessor;
 import org.apache.rocketmq.broker.processor.EndTransactionProcessor;
@@ -69,6 +70,8 @@ import org.apache.rocketmq.remoting.protocol.header.PopMessageRequestHeader;
 import org.apache.rocketmq.remoting.protocol.header.PopMessageResponseHeader;
 import org.apache.rocketmq.remoting.protocol.header.SendMessageRequestHeader;
 import org.apache.rocketmq.remoting.protocol.header.SendMessageResponseHeader;
+import org.apache.rocketmq.store.GetMessageResult;
+import org.apache.rocketmq.store.SelectMappedBufferResult;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -330,6 +333,54 @@ public class LocalMessageServiceTest extends InitConfigTest {
         }
     }
 
+    @Test
+    public void testPopMessageTransferFromPageCache() throws Exception {
+        long popTime = System.currentTimeMillis();
+        long startOffset = 100L;
+        List<MessageExt> messageExtList = new ArrayList<>();
+        GetMessageResult getMessageResult = new GetMessageResult();
+        for (int i = 0; i < 2; i++) {
+            MessageExt messageExt = buildMessageExt(topic, 0, startOffset + i);
+            messageExtList.add(messageExt);
+            byte[] data = MessageDecoder.encode(messageExt, false);
+            getMessageResult.addMessage(new SelectMappedBufferResult(0, ByteBuffer.wrap(data), data.length, null));
+        }
+        StringBuilder startOffsetStringBuilder = new StringBuilder();
+        StringBuilder messageOffsetStringBuilder = new StringBuilder();
+        ExtraInfoUtil.buildStartOffsetInfo(startOffsetStringBuilder, false, queueId, startOffset);
+        ExtraInfoUtil.buildMsgOffsetInfo(messageOffsetStringBuilder, false, queueId, Arrays.asList(startOffset, startOffset + 1));
+        PopMessageRequestHeader requestHeader = new PopMessageRequestHeader();
+        requestHeader.setInvisibleTime(3000L);
+        Mockito.when(popMessageProcessorMock.processRequest(Mockito.any(SimpleChannelHandlerContext.class), Mockito.any(RemotingCommand.class)))
+            .thenAnswer(invocation -> {
+                SimpleChannelHandlerContext simpleChannelHandlerContext = invocation.getArgument(0);
+                RemotingCommand request = invocation.getArgument(1);
+                RemotingCommand response = RemotingCommand.createResponseCommand(PopMessageResponseHeader.class);
+                response.setOpaque(request.getOpaque());
+                response.setCode(ResponseCode.SUCCESS);
+                PopMessageResponseHeader responseHeader = (PopMessageResponseHeader) response.readCustomHeader();
+                responseHeader.setStartOffsetInfo(startOffsetStringBuilder.toString());
+                responseHeader.setMsgOffsetInfo(messageOffsetStringBuilder.toString());
+                responseHeader.setInvisibleTime(requestHeader.getInvisibleTime());
+                responseHeader.setPopTime(popTime);
+                responseHeader.setRestNum(0L);
+                responseHeader.setReviveQid(1);
+                simpleChannelHandlerContext.writeAndFlush(new ManyMessageTransfer(response,
+                    response.encodeHeader(getMessageResult.getBufferTotalSize()), getMessageResult));
+                return null;
+            });
+        MessageQueue messageQueue = new MessageQueue(topic, brokerName, queueId);
+        PopResult popResult = localMessageService.popMessage(proxyContext, new AddressableMessageQueue(messageQueue, ""), requestHeader, 1000L).get();
+        assertThat(popResult.getPopStatus()).isEqualTo(PopStatus.FOUND);
+        assertThat(popResult.getPopTime()).isEqualTo(popTime);
+        assertThat(popResult.getMsgFoundList().size()).isEqualTo(messageExtList.size());
+        for (int i = 0; i < popResult.getMsgFoundList().size(); i++) {
+            assertMessageExt(popResult.getMsgFoundList().get(i), messageExtList.get(i));
+        }
+        // the page cache buffers are left untouched for the writer to release
+        assertThat(getMessageResult.getMessageBufferList().get(0).position()).isEqualTo(0);
+    }
+
     @Test
     public void testPopMessagePollingTimeout() throws Exception {
         RemotingCommand remotingCommand = RemotingCommand.createResponseCommand(ResponseCode.POLLING_TIMEOUT, "");
@@ -18,12 +18,14 @@ package org.apache.rocketmq.remoting.metrics;
 
 public class RemotingMetricsConstant {
     public static final String HISTOGRAM_RPC_LATENCY = "rocketmq_rpc_latency";
+    public static final String HISTOGRAM_RPC_STAGE_LATENCY = "rocketmq_rpc_stage_latency";
 
     public static final String LABEL_PROTOCOL_TYPE = "protocol_type";
     public static final String LABEL_REQUEST_CODE = "request_code";
     public static final String LABEL_RESPONSE_CODE = "response_code";
     public static final String LABEL_IS_LONG_POLLING = "is_long_polling";
     public static final String LABEL_RESULT = "result";
+    public static final String LABEL_STAGE = "stage";
 
     public static final String PROTOCOL_TYPE_REMOTING = "remoting";
 
@@ -29,12 +29,19 @@ import io.opentelemetry.sdk.metrics.View;
 import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 import org.apache.rocketmq.common.Pair;
 import org.apache.rocketmq.common.metrics.NopLongHistogram;
+import org.apache.rocketmq.remoting.common.RemotingHelper;
+import org.apache.rocketmq.remoting.netty.NettySystemConfig;
+import org.apache.rocketmq.remoting.protocol.RemotingCommand;
 
 import static org.apache.rocketmq.remoting.metrics.RemotingMetricsConstant.HISTOGRAM_RPC_LATENCY;
+import static org.apache.rocketmq.remoting.metrics.RemotingMetricsConstant.HISTOGRAM_RPC_STAGE_LATENCY;
 import static org.apache.rocketmq.remoting.metrics.RemotingMetricsConstant.LABEL_PROTOCOL_TYPE;
+import static org.apache.rocketmq.remoting.metrics.RemotingMetricsConstant.LABEL_REQUEST_CODE;
+import static org.apache.rocketmq.remoting.metrics.RemotingMetricsConstant.LABEL_STAGE;
 import static org.apache.rocketmq.remoting.metrics.RemotingMetricsConstant.PROTOCOL_TYPE_REMOTING;
 import static org.apache.rocketmq.remoting.metrics.RemotingMetricsConstant.RESULT_CANCELED;
 import static org.apache.rocketmq.remoting.metrics.RemotingMetricsConstant.RESULT_SUCCESS;
@@ -42,6 +49,8 @@ import static org.apache.rocketmq.remoting.metrics.RemotingMetricsConstant.RESUL
 
 public class RemotingMetricsManager {
     public static LongHistogram rpcLatency = new NopLongHistogram();
+    public static LongHistogram rpcStageLatency = new NopLongHistogram();
+    public static final RpcStageLatencyStats RPC_STAGE_LATENCY_STATS = new RpcStageLatencyStats();
     public static Supplier<AttributesBuilder> attributesBuilderSupplier;
 
     public static AttributesBuilder newAttributesBuilder() {
@@ -59,6 +68,31 @@ public class RemotingMetricsManager {
             .setUnit("milliseconds")
             .ofLongs()
             .build();
+        rpcStageLatency = meter.histogramBuilder(HISTOGRAM_RPC_STAGE_LATENCY)
+            .setDescription("Rpc latency by stage")
+            .setUnit("microseconds")
+            .ofLongs()
+            .build();
+    }
+
+    /**
+     * Records the time since the previous stage of the request, if enabled by
+     * {@link NettySystemConfig#COM_ROCKETMQ_REMOTING_RPC_STAGE_LATENCY_ENABLE}.
+     */
+    public static void recordRpcStage(RemotingCommand request, RpcStageLatencyStats.Stage stage) {
+        if (!NettySystemConfig.rpcStageLatencyEnable || request.getProcessTimer() == null) {
+            return;
+        }
+        long now = request.getProcessTimer().elapsed(TimeUnit.MICROSECONDS);
+        long micros = now - request.getStageBeginMicros();
+        request.setStageBeginMicros(now);
+        RPC_STAGE_LATENCY_STATS.record(request.getCode(), stage, micros);
+        if (!(rpcStageLatency instanceof NopLongHistogram)) {
+            rpcStageLatency.record(micros, newAttributesBuilder()
+                .put(LABEL_REQUEST_CODE, RemotingHelper.getRequestCodeDesc(request.getCode()))
+                .put(LABEL_STAGE, stage.getLabel())
+                .build());
+        }
     }
 
     public static List<Pair<InstrumentSelector, View>> getMetricsView() {
@@ -80,7 +114,29 @@ public class RemotingMetricsManager {
         View view = View.builder()
             .setAggregation(Aggregation.explicitBucketHistogram(rpcCostTimeBuckets))
             .build();
-        return Lists.newArrayList(new Pair<>(selector, view));
+
+        List<Double> rpcStageCostTimeBuckets = Arrays.asList(
+            (double) TimeUnit.MICROSECONDS.toMicros(10),
+            (double) TimeUnit.MICROSECONDS.toMicros(50),
+            (double) TimeUnit.MICROSECONDS.toMicros(100),
+            (double) TimeUnit.MICROSECONDS.toMicros(500),
+            (double) TimeUnit.MILLISECONDS.toMicros(1),
+            (double) TimeUnit.MILLISECONDS.toMicros(5),
+            (double) TimeUnit.MILLISECONDS.toMicros(10),
+            (double) TimeUnit.MILLISECONDS.toMicros(50),
+            (double) TimeUnit.MILLISECONDS.toMicros(100),
+            (double) TimeUnit.MILLISECONDS.toMicros(500),
+            (double) TimeUnit.SECONDS.toMicros(1),
+            (double) TimeUnit.SECONDS.toMicros(3)
+        );
+        InstrumentSelector stageSelector = InstrumentSelector.builder()
+            .setType(InstrumentType.HISTOGRAM)
+            .setName(HISTOGRAM_RPC_STAGE_LATENCY)
+            .build();
+        View stageView = View.builder()
+            .setAggregation(Aggregation.explicitBucketHistogram(rpcStageCostTimeBuckets))
+            .build();
+        return Lists.newArrayList(new Pair<>(selector, view), new Pair<>(stageSelector, stageView));
     }
 
     public static String getWriteAndFlushResult(Future<?> future) {
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.rocketmq.remoting.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Latency of every stage a request goes through on the serving side, by request code, in microseconds. The values
+ * are kept for a window, the last complete window being available for inspection.
+ */
+public class RpcStageLatencyStats {
+    public enum Stage {
+        /**
+         * Reading the frame into a command
+         */
+        DECODE,
+        /**
+         * Waiting in the queue of the processor executor
+         */
+        QUEUE,
+        /**
+         * Running the hooks and the processor
+         */
+        EXECUTE,
+        /**
+         * Waiting for the response of a processor completing asynchronously
+         */
+        AWAIT,
+        /**
+         * Writing the response until it is flushed to the socket
+         */
+        FLUSH;
+
+        private final String label = name().toLowerCase();
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private static final Stage[] STAGES = Stage.values();
+
+    private final ConcurrentMap<Integer, LatencyHistogram[]> histogramTable = new ConcurrentHashMap<>();
+    private volatile Map<Integer, LatencyHistogram.Snapshot[]> lastWindow = Collections.emptyMap();
+    private long windowBeginMillis = System.currentTimeMillis();
+
+    public void record(int code, Stage stage, long micros) {
+        LatencyHistogram[] histograms = histogramTable.get(code);
+        if (histograms == null) {
+            histograms = histogramTable.computeIfAbsent(code, k -> {
+                LatencyHistogram[] array = new LatencyHistogram[STAGES.length];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = new LatencyHistogram();
+                }
+                return array;
+            });
+        }
+        histograms[stage.ordinal()].record(micros);
+    }
+
+    /**
+     * Closes the current window if it is older than the given interval.
+     *
+     * @return true if a window was closed
+     */
+    public synchronized boolean rollIfNecessary(long windowMillis) {
+        long now = System.currentTimeMillis();
+        if (now - windowBeginMillis < windowMillis) {
+            return false;
+        }
+        windowBeginMillis = now;
+        Map<Integer, LatencyHistogram.Snapshot[]> window = new TreeMap<>();
+        for (Map.Entry<Integer, LatencyHistogram[]> entry : histogramTable.entrySet()) {
+            LatencyHistogram.Snapshot[] snapshots = new LatencyHistogram.Snapshot[STAGES.length];
+            long totalCount = 0;
+            for (int i = 0; i < snapshots.length; i++) {
+                snapshots[i] = entry.getValue()[i].snapshotAndReset();
+                totalCount += snapshots[i].getTotalCount();
+            }
+            if (totalCount > 0) {
+                window.put(entry.getKey(), snapshots);
+            }
+        }
+        lastWindow = window;
+        return true;
+    }
+
+    /**
+     * @return the last complete window by request code, ordered by code
+     */
+    public Map<Integer, LatencyHistogram.Snapshot[]> getLastWindow() {
+        return lastWindow;
+    }
+
+    /**
+     * Describes the stages recorded for a request code, e.g.
+     * {@code queue: count=100, p50=12, p99=180, p999=950, max=1021}.
+     */
+    public static String toString(LatencyHistogram.Snapshot[] snapshots) {
+        StringBuilder sb = new StringBuilder();
+        for (Stage stage : STAGES) {
+            LatencyHistogram.Snapshot snapshot = snapshots[stage.ordinal()];
+            if (snapshot.getTotalCount() == 0) {
+                continue;
+            }
+            if (sb.length() > 0) {
+                sb.append("; ");
+            }
+            sb.append(stage.getLabel())
+                .append(": count=").append(snapshot.getTotalCount())
+                .append(", p50=").append(snapshot.getValueAtPercentile(50))
+                .append(", p99=").append(snapshot.getValueAtPercentile(99))
+                .append(", p999=").append(snapshot.getValueAtPercentile(99.9))
+                .append(", max=").append(snapshot.getMax());
+        }
+        return sb.toString();
+    }
+}
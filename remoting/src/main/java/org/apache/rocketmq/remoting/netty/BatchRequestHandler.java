@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.rocketmq.remoting.netty;
+
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.rocketmq.remoting.protocol.RemotingCommand;
+
+/**
+ * Coalesces the small requests written to a channel within a window into one batch envelope, see
+ * {@link RemotingCommand#createBatchCommand}. Only used once the peer announced it decodes envelopes; the handler
+ * state is confined to the executor of the channel.
+ */
+public class BatchRequestHandler extends ChannelOutboundHandlerAdapter {
+    /**
+     * Larger requests are not worth copying into an envelope.
+     */
+    private static final int MAX_BATCH_BODY_SIZE = 4 * 1024;
+
+    private final long windowMicros;
+    private final int maxNum;
+
+    private final List<RemotingCommand> pendingRequests = new ArrayList<>();
+    private final List<ChannelPromise> pendingPromises = new ArrayList<>();
+    private boolean flushScheduled = false;
+
+    public BatchRequestHandler(long windowMicros, int maxNum) {
+        this.windowMicros = windowMicros;
+        this.maxNum = maxNum;
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (msg instanceof RemotingCommand && isBatchable(ctx, (RemotingCommand) msg)) {
+            pendingRequests.add((RemotingCommand) msg);
+            pendingPromises.add(promise);
+            if (pendingRequests.size() >= maxNum) {
+                writePending(ctx);
+            }
+            return;
+        }
+        // keep the order of the writes
+        writePending(ctx);
+        ctx.write(msg, promise);
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+        if (pendingRequests.isEmpty()) {
+            ctx.flush();
+            return;
+        }
+        if (flushScheduled) {
+            return;
+        }
+        flushScheduled = true;
+        Runnable flushTask = () -> {
+            flushScheduled = false;
+            writePending(ctx);
+            ctx.flush();
+        };
+        if (windowMicros > 0) {
+            ctx.executor().schedule(flushTask, windowMicros, TimeUnit.MICROSECONDS);
+        } else {
+            // the writes already queued on the executor join the batch
+            ctx.executor().execute(flushTask);
+        }
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        writePending(ctx);
+        ctx.close(promise);
+    }
+
+    private boolean isBatchable(ChannelHandlerContext ctx, RemotingCommand cmd) {
+        if (cmd.isResponseType() || cmd.isBatchRPC()) {
+            return false;
+        }
+        if (cmd.getBody() != null && cmd.getBody().length > MAX_BATCH_BODY_SIZE) {
+            return false;
+        }
+        NettyCodecContext context = NettyCodecContext.get(ctx.channel());
+        return context != null && context.isPeerSupportBatch();
+    }
+
+    private void writePending(ChannelHandlerContext ctx) {
+        if (pendingRequests.isEmpty()) {
+            return;
+        }
+        if (pendingRequests.size() == 1) {
+            ctx.write(pendingRequests.get(0), pendingPromises.get(0));
+        } else {
+            RemotingCommand batch = RemotingCommand.createBatchCommand(pendingRequests, false);
+            final ChannelPromise[] promises = pendingPromises.toArray(new ChannelPromise[0]);
+            ChannelPromise batchPromise = ctx.newPromise();
+            batchPromise.addListener((ChannelFutureListener) future -> {
+                for (ChannelPromise promise : promises) {
+                    if (future.isSuccess()) {
+                        promise.trySuccess();
+                    } else if (future.isCancelled()) {
+                        promise.cancel(false);
+                    } else {
+                        promise.tryFailure(future.cause());
+                    }
+                }
+            });
+            ctx.write(batch, batchPromise);
+        }
+        pendingRequests.clear();
+        pendingPromises.clear();
+    }
+}
@@ -39,7 +39,11 @@ public class NettyClientConfig {
 
     private int clientSocketSndBufSize = NettySystemConfig.socketSndbufSize;
     private int clientSocketRcvBufSize = NettySystemConfig.socketRcvbufSize;
-    private boolean clientPooledByteBufAllocatorEnable = false;
+    private boolean clientPooledByteBufAllocatorEnable = NettySystemConfig.NETTY_POOLED_BYTE_BUF_ALLOCATOR_ENABLE;
+    /**
+     * Use the epoll transport on Linux when the native library is available, falling back to NIO otherwise
+     */
+    private boolean useEpollNativeSelector = NettySystemConfig.clientUseEpollNativeSelector;
     private boolean clientCloseSocketIfTimeout = NettySystemConfig.clientCloseSocketIfTimeout;
 
     private boolean useTLS = Boolean.parseBoolean(System.getProperty(TLS_ENABLE,
@@ -53,6 +57,14 @@ public class NettyClientConfig {
     private boolean disableCallbackExecutor = false;
     private boolean disableNettyWorkerGroup = false;
 
+    /**
+     * Coalesce the small requests written to a connection within the window into one batch envelope, the window 0
+     * only batching the requests already queued on the connection
+     */
+    private boolean enableBatchRequest = false;
+    private long batchRequestWindowMicros = 0;
+    private int batchRequestMaxNum = 32;
+
     public boolean isClientCloseSocketIfTimeout() {
         return clientCloseSocketIfTimeout;
     }
@@ -188,4 +200,36 @@ public class NettyClientConfig {
     public void setSocksProxyConfig(String socksProxyConfig) {
         this.socksProxyConfig = socksProxyConfig;
     }
+
+    public boolean isUseEpollNativeSelector() {
+        return useEpollNativeSelector;
+    }
+
+    public void setUseEpollNativeSelector(boolean useEpollNativeSelector) {
+        this.useEpollNativeSelector = useEpollNativeSelector;
+    }
+
+    public boolean isEnableBatchRequest() {
+        return enableBatchRequest;
+    }
+
+    public void setEnableBatchRequest(boolean enableBatchRequest) {
+        this.enableBatchRequest = enableBatchRequest;
+    }
+
+    public long getBatchRequestWindowMicros() {
+        return batchRequestWindowMicros;
+    }
+
+    public void setBatchRequestWindowMicros(long batchRequestWindowMicros) {
+        this.batchRequestWindowMicros = batchRequestWindowMicros;
+    }
+
+    public int getBatchRequestMaxNum() {
+        return batchRequestMaxNum;
+    }
+
+    public void setBatchRequestMaxNum(int batchRequestMaxNum) {
+        this.batchRequestMaxNum = batchRequestMaxNum;
+    }
 }
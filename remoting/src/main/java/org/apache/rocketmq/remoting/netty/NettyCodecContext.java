@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.rocketmq.remoting.netty;
+
+import io.netty.channel.Channel;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+import org.apache.rocketmq.remoting.protocol.RocketMQV2Serializable;
+
+/**
+ * Codec state of a connection: whether the peer decodes ROCKETMQ_V2 headers and batch envelopes, and the header
+ * dictionaries of both directions. The encoder and the decoder of a channel each run on a single thread, so the
+ * dictionaries they own are not shared.
+ */
+public class NettyCodecContext {
+    private static final AttributeKey<NettyCodecContext> CODEC_CONTEXT_KEY = AttributeKey.valueOf("CodecContext");
+
+    private volatile boolean peerSupportV2 = false;
+    private volatile boolean peerSupportBatch = false;
+    private RocketMQV2Serializable.EncodeDictionary encodeDictionary;
+    private RocketMQV2Serializable.DecodeDictionary decodeDictionary;
+
+    /**
+     * @return the context of the channel, or null if nothing was negotiated on it yet
+     */
+    public static NettyCodecContext get(Channel channel) {
+        return channel.attr(CODEC_CONTEXT_KEY).get();
+    }
+
+    public static NettyCodecContext getOrCreate(Channel channel) {
+        Attribute<NettyCodecContext> attr = channel.attr(CODEC_CONTEXT_KEY);
+        NettyCodecContext context = attr.get();
+        if (context == null) {
+            context = new NettyCodecContext();
+            NettyCodecContext old = attr.setIfAbsent(context);
+            if (old != null) {
+                context = old;
+            }
+        }
+        return context;
+    }
+
+    public boolean isPeerSupportV2() {
+        return peerSupportV2;
+    }
+
+    public void markPeerSupportV2() {
+        this.peerSupportV2 = true;
+    }
+
+    public boolean isPeerSupportBatch() {
+        return peerSupportBatch;
+    }
+
+    public void markPeerSupportBatch() {
+        this.peerSupportBatch = true;
+    }
+
+    /**
+     * Only called by the encoder of the channel.
+     */
+    public RocketMQV2Serializable.EncodeDictionary encodeDictionary() {
+        if (encodeDictionary == null) {
+            encodeDictionary = new RocketMQV2Serializable.EncodeDictionary();
+        }
+        return encodeDictionary;
+    }
+
+    /**
+     * Only called by the decoder of the channel.
+     */
+    public RocketMQV2Serializable.DecodeDictionary decodeDictionary() {
+        if (decodeDictionary == null) {
+            decodeDictionary = new RocketMQV2Serializable.DecodeDictionary();
+        }
+        return decodeDictionary;
+    }
+}
@@ -24,7 +24,11 @@ import org.apache.rocketmq.common.constant.LoggerName;
 import org.apache.rocketmq.logging.org.slf4j.Logger;
 import org.apache.rocketmq.logging.org.slf4j.LoggerFactory;
 import org.apache.rocketmq.remoting.common.RemotingHelper;
+import org.apache.rocketmq.remoting.metrics.RemotingMetricsManager;
+import org.apache.rocketmq.remoting.metrics.RpcStageLatencyStats;
 import org.apache.rocketmq.remoting.protocol.RemotingCommand;
+import org.apache.rocketmq.remoting.protocol.RocketMQV2Serializable;
+import org.apache.rocketmq.remoting.protocol.SerializeType;
 
 public class NettyDecoder extends LengthFieldBasedFrameDecoder {
     private static final Logger log = LoggerFactory.getLogger(LoggerName.ROCKETMQ_REMOTING_NAME);
@@ -32,10 +36,19 @@ public class NettyDecoder extends LengthFieldBasedFrameDecoder {
     private static final int FRAME_MAX_LENGTH =
         Integer.parseInt(System.getProperty("com.rocketmq.remoting.frameMaxLength", "16777216"));
 
+    private NettyCodecContext codecContext;
+
     public NettyDecoder() {
         super(FRAME_MAX_LENGTH, 0, 4, 0, 4);
     }
 
+    private NettyCodecContext codecContext(ChannelHandlerContext ctx) {
+        if (codecContext == null) {
+            codecContext = NettyCodecContext.getOrCreate(ctx.channel());
+        }
+        return codecContext;
+    }
+
     @Override
     public Object decode(ChannelHandlerContext ctx, ByteBuf in) throws Exception {
         ByteBuf frame = null;
@@ -45,8 +58,21 @@ public class NettyDecoder extends LengthFieldBasedFrameDecoder {
             if (null == frame) {
                 return null;
             }
-            RemotingCommand cmd = RemotingCommand.decode(frame);
+            RocketMQV2Serializable.DecodeDictionary dictionary = null;
+            if (RemotingCommand.getProtocolType(frame.getInt(frame.readerIndex())) == SerializeType.ROCKETMQ_V2) {
+                dictionary = codecContext(ctx).decodeDictionary();
+            }
+            RemotingCommand cmd = RemotingCommand.decode(frame, dictionary);
+            if (cmd.isSerializeV2Supported() && (codecContext == null || !codecContext.isPeerSupportV2())) {
+                codecContext(ctx).markPeerSupportV2();
+            }
+            if (cmd.isBatchSupported() && (codecContext == null || !codecContext.isPeerSupportBatch())) {
+                codecContext(ctx).markPeerSupportBatch();
+            }
             cmd.setProcessTimer(timer);
+            if (!cmd.isResponseType() && !cmd.isBatchRPC()) {
+                RemotingMetricsManager.recordRpcStage(cmd, RpcStageLatencyStats.Stage.DECODE);
+            }
             return cmd;
         } catch (Exception e) {
             log.error("decode exception, " + RemotingHelper.parseChannelRemoteAddr(ctx.channel()), e);
@@ -25,6 +25,8 @@ import org.apache.rocketmq.logging.org.slf4j.Logger;
 import org.apache.rocketmq.logging.org.slf4j.LoggerFactory;
 import org.apache.rocketmq.remoting.common.RemotingHelper;
 import org.apache.rocketmq.remoting.protocol.RemotingCommand;
+import org.apache.rocketmq.remoting.protocol.RocketMQV2Serializable;
+import org.apache.rocketmq.remoting.protocol.SerializeType;
 
 @ChannelHandler.Sharable
 public class NettyEncoder extends MessageToByteEncoder<RemotingCommand> {
@@ -34,7 +36,17 @@ public class NettyEncoder extends MessageToByteEncoder<RemotingCommand> {
     public void encode(ChannelHandlerContext ctx, RemotingCommand remotingCommand, ByteBuf out)
         throws Exception {
         try {
-            remotingCommand.fastEncodeHeader(out);
+            RocketMQV2Serializable.EncodeDictionary dictionary = null;
+            if (remotingCommand.getSerializeTypeCurrentRPC() == SerializeType.ROCKETMQ_V2) {
+                NettyCodecContext context = NettyCodecContext.get(ctx.channel());
+                if (context != null && context.isPeerSupportV2()) {
+                    dictionary = context.encodeDictionary();
+                }
+            }
+            // let the peer know it can answer in ROCKETMQ_V2 and send batch envelopes
+            remotingCommand.markSerializeV2Supported();
+            remotingCommand.markBatchSupported();
+            remotingCommand.fastEncodeHeader(out, dictionary);
             byte[] body = remotingCommand.getBody();
             if (body != null) {
                 out.writeBytes(body);
@@ -21,17 +21,17 @@ import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslHandler;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
 import io.netty.util.concurrent.Future;
 import io.opentelemetry.api.common.AttributesBuilder;
 import java.net.SocketAddress;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map.Entry;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
@@ -42,6 +42,7 @@ import javax.annotation.Nullable;
 import org.apache.rocketmq.common.AbortProcessException;
 import org.apache.rocketmq.common.Pair;
 import org.apache.rocketmq.common.ServiceThread;
+import org.apache.rocketmq.common.ThreadFactoryImpl;
 import org.apache.rocketmq.common.UtilAll;
 import org.apache.rocketmq.common.constant.LoggerName;
 import org.apache.rocketmq.logging.org.slf4j.Logger;
@@ -51,10 +52,12 @@ import org.apache.rocketmq.remoting.InvokeCallback;
 import org.apache.rocketmq.remoting.RPCHook;
 import org.apache.rocketmq.remoting.common.RemotingHelper;
 import org.apache.rocketmq.remoting.common.SemaphoreReleaseOnlyOnce;
+import org.apache.rocketmq.remoting.exception.RemotingCommandException;
 import org.apache.rocketmq.remoting.exception.RemotingSendRequestException;
 import org.apache.rocketmq.remoting.exception.RemotingTimeoutException;
 import org.apache.rocketmq.remoting.exception.RemotingTooMuchRequestException;
 import org.apache.rocketmq.remoting.metrics.RemotingMetricsManager;
+import org.apache.rocketmq.remoting.metrics.RpcStageLatencyStats;
 import org.apache.rocketmq.remoting.protocol.RemotingCommand;
 import org.apache.rocketmq.remoting.protocol.RemotingSysResponseCode;
 
@@ -86,8 +89,12 @@ public abstract class NettyRemotingAbstract {
     /**
      * This map caches all on-going requests.
      */
-    protected final ConcurrentMap<Integer /* opaque */, ResponseFuture> responseTable =
-        new ConcurrentHashMap<>(256);
+    protected final ResponseTable responseTable = new ResponseTable();
+
+    /**
+     * Expires asynchronous requests at their deadline instead of {@link #scanResponseTable()}, null if disabled.
+     */
+    private final HashedWheelTimer responseTimeoutTimer;
 
     /**
      * This container holds all processors per request code, aka, for each incoming request, we may look up the
@@ -128,8 +135,12 @@ public abstract class NettyRemotingAbstract {
      * @param permitsAsync Number of permits for asynchronous requests.
      */
     public NettyRemotingAbstract(final int permitsOneway, final int permitsAsync) {
-        this.semaphoreOneway = new Semaphore(permitsOneway, true);
-        this.semaphoreAsync = new Semaphore(permitsAsync, true);
+        this.semaphoreOneway = new Semaphore(permitsOneway, NettySystemConfig.semaphoreFair);
+        this.semaphoreAsync = new Semaphore(permitsAsync, NettySystemConfig.semaphoreFair);
+        this.responseTimeoutTimer = NettySystemConfig.responseTimeoutWheelEnable
+            ? new HashedWheelTimer(new ThreadFactoryImpl("ResponseTimeoutTimer_", true),
+                NettySystemConfig.responseTimeoutWheelTickMillis, TimeUnit.MILLISECONDS, 512)
+            : null;
     }
 
     /**
@@ -214,8 +225,10 @@ public abstract class NettyRemotingAbstract {
         }
         response.setOpaque(request.getOpaque());
         response.markResponseType();
+        RemotingMetricsManager.recordRpcStage(request, RpcStageLatencyStats.Stage.AWAIT);
         try {
             channel.writeAndFlush(response).addListener((ChannelFutureListener) future -> {
+                RemotingMetricsManager.recordRpcStage(request, RpcStageLatencyStats.Stage.FLUSH);
                 if (future.isSuccess()) {
                     log.debug("Response[request code: {}, response code: {}, opaque: {}] is written to channel{}",
                         request.getCode(), response.getCode(), response.getOpaque(), channel);
@@ -245,6 +258,11 @@ public abstract class NettyRemotingAbstract {
      * @param cmd request command.
      */
     public void processRequestCommand(final ChannelHandlerContext ctx, final RemotingCommand cmd) {
+        if (cmd.isBatchRPC()) {
+            processBatchRequestCommand(ctx, cmd);
+            return;
+        }
+
         final Pair<NettyRequestProcessor, ExecutorService> matched = this.processorTable.get(cmd.getCode());
         final Pair<NettyRequestProcessor, ExecutorService> pair = null == matched ? this.defaultRequestProcessorPair : matched;
         final int opaque = cmd.getOpaque();
@@ -296,54 +314,208 @@ public abstract class NettyRemotingAbstract {
     private Runnable buildProcessRequestHandler(ChannelHandlerContext ctx, RemotingCommand cmd,
         Pair<NettyRequestProcessor, ExecutorService> pair, int opaque) {
         return () -> {
-            Exception exception = null;
-            RemotingCommand response;
+            RemotingMetricsManager.recordRpcStage(cmd, RpcStageLatencyStats.Stage.QUEUE);
+            RemotingCommand response = processRequest(ctx, cmd, pair.getObject1(), opaque);
+            RemotingMetricsManager.recordRpcStage(cmd, RpcStageLatencyStats.Stage.EXECUTE);
+            writeResponse(ctx.channel(), cmd, response);
+        };
+    }
 
+    /**
+     * Runs the hooks and the processor in the current thread.
+     *
+     * @return the response to write, or null if there is none
+     */
+    private RemotingCommand processRequest(ChannelHandlerContext ctx, RemotingCommand cmd,
+        NettyRequestProcessor processor, int opaque) {
+        Exception exception = null;
+        RemotingCommand response;
+
+        try {
+            String remoteAddr = RemotingHelper.parseChannelRemoteAddr(ctx.channel());
             try {
-                String remoteAddr = RemotingHelper.parseChannelRemoteAddr(ctx.channel());
-                try {
-                    doBeforeRpcHooks(remoteAddr, cmd);
-                } catch (AbortProcessException e) {
-                    throw e;
-                } catch (Exception e) {
-                    exception = e;
-                }
+                doBeforeRpcHooks(remoteAddr, cmd);
+            } catch (AbortProcessException e) {
+                throw e;
+            } catch (Exception e) {
+                exception = e;
+            }
 
-                if (exception == null) {
-                    response = pair.getObject1().processRequest(ctx, cmd);
-                } else {
-                    response = RemotingCommand.createResponseCommand(RemotingSysResponseCode.SYSTEM_ERROR, null);
-                }
+            if (exception == null) {
+                response = processor.processRequest(ctx, cmd);
+            } else {
+                response = RemotingCommand.createResponseCommand(RemotingSysResponseCode.SYSTEM_ERROR, null);
+            }
 
-                try {
-                    doAfterRpcHooks(remoteAddr, cmd, response);
-                } catch (AbortProcessException e) {
-                    throw e;
-                } catch (Exception e) {
-                    exception = e;
-                }
+            try {
+                doAfterRpcHooks(remoteAddr, cmd, response);
+            } catch (AbortProcessException e) {
+                throw e;
+            } catch (Exception e) {
+                exception = e;
+            }
 
-                if (exception != null) {
-                    throw exception;
-                }
+            if (exception != null) {
+                throw exception;
+            }
 
-                writeResponse(ctx.channel(), cmd, response);
-            } catch (AbortProcessException e) {
-                response = RemotingCommand.createResponseCommand(e.getResponseCode(), e.getErrorMessage());
+            return response;
+        } catch (AbortProcessException e) {
+            response = RemotingCommand.createResponseCommand(e.getResponseCode(), e.getErrorMessage());
+            response.setOpaque(opaque);
+            return response;
+        } catch (Throwable e) {
+            log.error("process request exception", e);
+            log.error(cmd.toString());
+
+            if (!cmd.isOnewayRPC()) {
+                response = RemotingCommand.createResponseCommand(RemotingSysResponseCode.SYSTEM_ERROR,
+                    UtilAll.exceptionSimpleDesc(e));
                 response.setOpaque(opaque);
-                writeResponse(ctx.channel(), cmd, response);
-            } catch (Throwable e) {
-                log.error("process request exception", e);
-                log.error(cmd.toString());
-
-                if (!cmd.isOnewayRPC()) {
-                    response = RemotingCommand.createResponseCommand(RemotingSysResponseCode.SYSTEM_ERROR,
-                        UtilAll.exceptionSimpleDesc(e));
-                    response.setOpaque(opaque);
-                    writeResponse(ctx.channel(), cmd, response);
+                return response;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Process a batch envelope: its sub requests are grouped by request code, each group runs one request after
+     * another in a single task on the executor registered for its code, and the responses available when they return
+     * go back in a single envelope per group. Sub requests answered later by their processor, e.g. suspended pulls, are
+     * answered on their own.
+     */
+    private void processBatchRequestCommand(final ChannelHandlerContext ctx, final RemotingCommand cmd) {
+        final List<RemotingCommand> requests;
+        try {
+            requests = cmd.decodeBatchCommands();
+        } catch (RemotingCommandException e) {
+            log.error("decode batch request exception, " + RemotingHelper.parseChannelRemoteAddr(ctx.channel()), e);
+            RemotingHelper.closeChannel(ctx.channel());
+            return;
+        }
+        if (requests.isEmpty()) {
+            return;
+        }
+        Map<Integer/* request code */, List<RemotingCommand>> groups = new LinkedHashMap<>();
+        for (RemotingCommand request : requests) {
+            request.setProcessTimer(cmd.getProcessTimer());
+            request.setStageBeginMicros(cmd.getStageBeginMicros());
+            groups.computeIfAbsent(request.getCode(), k -> new ArrayList<>()).add(request);
+        }
+
+        for (List<RemotingCommand> group : groups.values()) {
+            // the expired tasks are answered by their request, which must only hold the sub requests of the group
+            RemotingCommand groupCmd = cmd;
+            if (groups.size() > 1) {
+                groupCmd = RemotingCommand.createBatchCommand(group, false);
+                groupCmd.setOpaque(cmd.getOpaque());
+            }
+            processBatchRequestGroup(ctx, groupCmd, group);
+        }
+    }
+
+    private void processBatchRequestGroup(final ChannelHandlerContext ctx, final RemotingCommand cmd,
+        final List<RemotingCommand> requests) {
+        final Pair<NettyRequestProcessor, ExecutorService> matched = this.processorTable.get(requests.get(0).getCode());
+        final Pair<NettyRequestProcessor, ExecutorService> pair = null == matched ? this.defaultRequestProcessorPair : matched;
+        if (pair == null || pair.getObject1().rejectRequest()) {
+            // answered one by one
+            for (RemotingCommand request : requests) {
+                processRequestCommand(ctx, request);
+            }
+            return;
+        }
+
+        Runnable run = () -> {
+            List<RemotingCommand> respondedRequests = new ArrayList<>(requests.size());
+            List<RemotingCommand> responses = new ArrayList<>(requests.size());
+            for (RemotingCommand request : requests) {
+                RemotingMetricsManager.recordRpcStage(request, RpcStageLatencyStats.Stage.QUEUE);
+                RemotingCommand response = processBatchSubRequest(ctx, request);
+                RemotingMetricsManager.recordRpcStage(request, RpcStageLatencyStats.Stage.EXECUTE);
+                if (response == null) {
+                    continue;
+                }
+                if (request.isOnewayRPC()) {
+                    writeResponse(ctx.channel(), request, response);
+                    continue;
                 }
+                response.setOpaque(request.getOpaque());
+                response.markResponseType();
+                respondedRequests.add(request);
+                responses.add(response);
             }
+            writeBatchResponse(ctx.channel(), cmd, respondedRequests, responses);
         };
+
+        try {
+            pair.getObject2().submit(new RequestTask(run, ctx.channel(), cmd));
+        } catch (RejectedExecutionException e) {
+            log.warn(RemotingHelper.parseChannelRemoteAddr(ctx.channel())
+                + ", too many requests and system thread pool busy, RejectedExecutionException "
+                + pair.getObject2().toString()
+                + " batch of " + requests.size() + " requests");
+            for (RemotingCommand request : requests) {
+                final RemotingCommand response = RemotingCommand.createResponseCommand(RemotingSysResponseCode.SYSTEM_BUSY,
+                    "[OVERLOAD]system busy, start flow control for a while");
+                writeResponse(ctx.channel(), request, response);
+            }
+        }
+    }
+
+    private RemotingCommand processBatchSubRequest(ChannelHandlerContext ctx, RemotingCommand request) {
+        final Pair<NettyRequestProcessor, ExecutorService> matched = this.processorTable.get(request.getCode());
+        final Pair<NettyRequestProcessor, ExecutorService> pair = null == matched ? this.defaultRequestProcessorPair : matched;
+        if (pair == null) {
+            String error = " request type " + request.getCode() + " not supported";
+            log.error(RemotingHelper.parseChannelRemoteAddr(ctx.channel()) + error);
+            return RemotingCommand.createResponseCommand(RemotingSysResponseCode.REQUEST_CODE_NOT_SUPPORTED, error);
+        }
+        if (pair.getObject1().rejectRequest()) {
+            return RemotingCommand.createResponseCommand(RemotingSysResponseCode.SYSTEM_BUSY,
+                "[REJECTREQUEST]system busy, start flow control for a while");
+        }
+        return processRequest(ctx, request, pair.getObject1(), request.getOpaque());
+    }
+
+    private static void writeBatchResponse(Channel channel, RemotingCommand batch, List<RemotingCommand> requests,
+        List<RemotingCommand> responses) {
+        if (responses.isEmpty()) {
+            return;
+        }
+        if (responses.size() == 1) {
+            writeResponse(channel, requests.get(0), responses.get(0));
+            return;
+        }
+        RemotingCommand response = RemotingCommand.createBatchCommand(responses, true);
+        response.setOpaque(batch.getOpaque());
+        try {
+            channel.writeAndFlush(response).addListener((ChannelFutureListener) future -> {
+                if (!future.isSuccess()) {
+                    log.error("Failed to write batch response[size: {}, opaque: {}] to channel{}",
+                        responses.size(), response.getOpaque(), channel, future.cause());
+                }
+                String result = RemotingMetricsManager.getWriteAndFlushResult(future);
+                for (int i = 0; i < requests.size(); i++) {
+                    RemotingMetricsManager.recordRpcStage(requests.get(i), RpcStageLatencyStats.Stage.FLUSH);
+                    recordRpcLatency(requests.get(i), responses.get(i), result);
+                }
+            });
+        } catch (Throwable e) {
+            log.error("process batch request over, but response failed", e);
+            for (int i = 0; i < requests.size(); i++) {
+                recordRpcLatency(requests.get(i), responses.get(i), RESULT_WRITE_CHANNEL_FAILED);
+            }
+        }
+    }
+
+    private static void recordRpcLatency(RemotingCommand request, RemotingCommand response, String result) {
+        AttributesBuilder attributesBuilder = RemotingMetricsManager.newAttributesBuilder()
+            .put(LABEL_IS_LONG_POLLING, request.isSuspended())
+            .put(LABEL_REQUEST_CODE, RemotingHelper.getRequestCodeDesc(request.getCode()))
+            .put(LABEL_RESPONSE_CODE, RemotingHelper.getResponseCodeDesc(response.getCode()))
+            .put(LABEL_RESULT, result);
+        RemotingMetricsManager.rpcLatency.record(request.getProcessTimer().elapsed(TimeUnit.MILLISECONDS), attributesBuilder.build());
     }
 
     /**
@@ -353,13 +525,23 @@ public abstract class NettyRemotingAbstract {
      * @param cmd response command instance.
      */
     public void processResponseCommand(ChannelHandlerContext ctx, RemotingCommand cmd) {
+        if (cmd.isBatchRPC()) {
+            try {
+                for (RemotingCommand response : cmd.decodeBatchCommands()) {
+                    processResponseCommand(ctx, response);
+                }
+            } catch (RemotingCommandException e) {
+                log.error("decode batch response exception, " + RemotingHelper.parseChannelRemoteAddr(ctx.channel()), e);
+            }
+            return;
+        }
+
         final int opaque = cmd.getOpaque();
-        final ResponseFuture responseFuture = responseTable.get(opaque);
+        final ResponseFuture responseFuture = responseTable.remove(opaque);
         if (responseFuture != null) {
+            responseFuture.cancelTimeout();
             responseFuture.setResponseCommand(cmd);
 
-            responseTable.remove(opaque);
-
             if (responseFuture.getInvokeCallback() != null) {
                 executeInvokeCallback(responseFuture);
             } else {
@@ -441,15 +623,15 @@ public abstract class NettyRemotingAbstract {
      * </p>
      */
     public void scanResponseTable() {
+        if (this.responseTimeoutTimer != null) {
+            // expired by the timer, synchronous requests remove themselves
+            return;
+        }
         final List<ResponseFuture> rfList = new LinkedList<>();
-        Iterator<Entry<Integer, ResponseFuture>> it = this.responseTable.entrySet().iterator();
-        while (it.hasNext()) {
-            Entry<Integer, ResponseFuture> next = it.next();
-            ResponseFuture rep = next.getValue();
-
-            if ((rep.getBeginTimestamp() + rep.getTimeoutMillis() + 1000) <= System.currentTimeMillis()) {
+        for (ResponseFuture rep : this.responseTable.values()) {
+            if ((rep.getBeginTimestamp() + rep.getTimeoutMillis() + 1000) <= System.currentTimeMillis()
+                && this.responseTable.remove(rep.getOpaque(), rep)) {
                 rep.release();
-                it.remove();
                 rfList.add(rep);
                 log.warn("remove timeout request, " + rep);
             }
@@ -519,6 +701,7 @@ public abstract class NettyRemotingAbstract {
 
             final ResponseFuture responseFuture = new ResponseFuture(channel, opaque, timeoutMillis - costTime, invokeCallback, once);
             this.responseTable.put(opaque, responseFuture);
+            this.scheduleResponseTimeout(responseFuture);
             try {
                 channel.writeAndFlush(request).addListener((ChannelFutureListener) f -> {
                     if (f.isSuccess()) {
@@ -549,9 +732,34 @@ public abstract class NettyRemotingAbstract {
         }
     }
 
+    private void scheduleResponseTimeout(final ResponseFuture responseFuture) {
+        if (this.responseTimeoutTimer == null) {
+            return;
+        }
+        Timeout timeout = this.responseTimeoutTimer.newTimeout(t -> {
+            if (this.responseTable.remove(responseFuture.getOpaque(), responseFuture)) {
+                responseFuture.release();
+                log.warn("remove timeout request, " + responseFuture);
+                try {
+                    executeInvokeCallback(responseFuture);
+                } catch (Throwable e) {
+                    log.warn("responseTimeoutTimer, operationComplete Exception", e);
+                }
+            }
+        }, Math.max(responseFuture.getTimeoutMillis(), 0), TimeUnit.MILLISECONDS);
+        responseFuture.setTimeout(timeout);
+    }
+
+    protected void stopResponseTimeoutTimer() {
+        if (this.responseTimeoutTimer != null) {
+            this.responseTimeoutTimer.stop();
+        }
+    }
+
     private void requestFail(final int opaque) {
         ResponseFuture responseFuture = responseTable.remove(opaque);
         if (responseFuture != null) {
+            responseFuture.cancelTimeout();
             responseFuture.setSendRequestOK(false);
             responseFuture.putResponse(null);
             try {
@@ -570,12 +778,9 @@ public abstract class NettyRemotingAbstract {
      * @param channel the channel which is close already
      */
     protected void failFast(final Channel channel) {
-        for (Entry<Integer, ResponseFuture> entry : responseTable.entrySet()) {
-            if (entry.getValue().getChannel() == channel) {
-                Integer opaque = entry.getKey();
-                if (opaque != null) {
-                    requestFail(opaque);
-                }
+        for (ResponseFuture responseFuture : responseTable.values()) {
+            if (responseFuture.getChannel() == channel) {
+                requestFail(responseFuture.getOpaque());
             }
         }
     }
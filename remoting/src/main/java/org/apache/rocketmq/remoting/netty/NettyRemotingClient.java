@@ -31,6 +31,9 @@ import io.netty.channel.ChannelPromise;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollSocketChannel;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioSocketChannel;
@@ -71,6 +74,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.rocketmq.common.Pair;
 import org.apache.rocketmq.common.ThreadFactoryImpl;
 import org.apache.rocketmq.common.constant.LoggerName;
+import org.apache.rocketmq.common.utils.NetworkUtil;
 import org.apache.rocketmq.logging.org.slf4j.Logger;
 import org.apache.rocketmq.logging.org.slf4j.LoggerFactory;
 import org.apache.rocketmq.remoting.ChannelEventListener;
@@ -147,7 +151,7 @@ public class NettyRemotingClient extends NettyRemotingAbstract implements Remoti
         if (eventLoopGroup != null) {
             this.eventLoopGroupWorker = eventLoopGroup;
         } else {
-            this.eventLoopGroupWorker = new NioEventLoopGroup(1, new ThreadFactoryImpl("NettyClientSelector_"));
+            this.eventLoopGroupWorker = buildEventLoopGroupWorker();
         }
         this.defaultEventExecutorGroup = eventExecutorGroup;
 
@@ -164,6 +168,27 @@ public class NettyRemotingClient extends NettyRemotingAbstract implements Remoti
         }
     }
 
+    private EventLoopGroup buildEventLoopGroupWorker() {
+        if (useEpoll()) {
+            return new EpollEventLoopGroup(1, new ThreadFactoryImpl("NettyClientEPOLLSelector_"));
+        } else {
+            return new NioEventLoopGroup(1, new ThreadFactoryImpl("NettyClientSelector_"));
+        }
+    }
+
+    private boolean useEpoll() {
+        return NetworkUtil.isLinuxPlatform()
+            && nettyClientConfig.isUseEpollNativeSelector()
+            && Epoll.isAvailable();
+    }
+
+    /**
+     * The channel type has to match the worker group, which may also be passed in by the caller.
+     */
+    private Class<? extends SocketChannel> socketChannelClass() {
+        return eventLoopGroupWorker instanceof EpollEventLoopGroup ? EpollSocketChannel.class : NioSocketChannel.class;
+    }
+
     private static int initValueIndex() {
         Random r = new Random();
         return r.nextInt(999);
@@ -185,7 +210,7 @@ public class NettyRemotingClient extends NettyRemotingAbstract implements Remoti
                 nettyClientConfig.getClientWorkerThreads(),
                 new ThreadFactoryImpl("NettyClientWorkerThread_"));
         }
-        Bootstrap handler = this.bootstrap.group(this.eventLoopGroupWorker).channel(NioSocketChannel.class)
+        Bootstrap handler = this.bootstrap.group(this.eventLoopGroupWorker).channel(socketChannelClass())
             .option(ChannelOption.TCP_NODELAY, true)
             .option(ChannelOption.SO_KEEPALIVE, false)
             .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, nettyClientConfig.getConnectTimeoutMillis())
@@ -208,6 +233,7 @@ public class NettyRemotingClient extends NettyRemotingAbstract implements Remoti
                         new IdleStateHandler(0, 0, nettyClientConfig.getClientChannelMaxIdleTimeSeconds()),
                         new NettyConnectManageHandler(),
                         new NettyClientHandler());
+                    addBatchRequestHandler(ch.pipeline());
                 }
             });
         if (nettyClientConfig.getClientSocketSndBufSize() > 0) {
@@ -297,7 +323,7 @@ public class NettyRemotingClient extends NettyRemotingAbstract implements Remoti
 
     private Bootstrap createBootstrap(final SocksProxyConfig proxy) {
         Bootstrap bootstrap = new Bootstrap();
-        bootstrap.group(this.eventLoopGroupWorker).channel(NioSocketChannel.class)
+        bootstrap.group(this.eventLoopGroupWorker).channel(socketChannelClass())
             .option(ChannelOption.TCP_NODELAY, true)
             .option(ChannelOption.SO_KEEPALIVE, false)
             .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, nettyClientConfig.getConnectTimeoutMillis())
@@ -332,6 +358,7 @@ public class NettyRemotingClient extends NettyRemotingAbstract implements Remoti
                         new IdleStateHandler(0, 0, nettyClientConfig.getClientChannelMaxIdleTimeSeconds()),
                         new NettyConnectManageHandler(),
                         new NettyClientHandler());
+                    addBatchRequestHandler(ch.pipeline());
                 }
             });
 
@@ -347,10 +374,19 @@ public class NettyRemotingClient extends NettyRemotingAbstract implements Remoti
         return address.split(":");
     }
 
+    private void addBatchRequestHandler(ChannelPipeline pipeline) {
+        if (nettyClientConfig.isEnableBatchRequest()) {
+            pipeline.addLast(nettyClientConfig.isDisableNettyWorkerGroup() ? null : defaultEventExecutorGroup,
+                new BatchRequestHandler(nettyClientConfig.getBatchRequestWindowMicros(),
+                    nettyClientConfig.getBatchRequestMaxNum()));
+        }
+    }
+
     @Override
     public void shutdown() {
         try {
             this.timer.stop();
+            this.stopResponseTimeoutTimer();
 
             for (String addr : this.channelTables.keySet()) {
                 this.closeChannel(addr, this.channelTables.get(addr).getChannel());
@@ -46,6 +46,7 @@ import io.netty.util.concurrent.DefaultEventExecutorGroup;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.security.cert.CertificateException;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -69,12 +70,16 @@ import org.apache.rocketmq.remoting.common.TlsMode;
 import org.apache.rocketmq.remoting.exception.RemotingSendRequestException;
 import org.apache.rocketmq.remoting.exception.RemotingTimeoutException;
 import org.apache.rocketmq.remoting.exception.RemotingTooMuchRequestException;
+import org.apache.rocketmq.remoting.metrics.LatencyHistogram;
+import org.apache.rocketmq.remoting.metrics.RemotingMetricsManager;
+import org.apache.rocketmq.remoting.metrics.RpcStageLatencyStats;
 import org.apache.rocketmq.remoting.protocol.RemotingCommand;
 
 @SuppressWarnings("NullableProblems")
 public class NettyRemotingServer extends NettyRemotingAbstract implements RemotingServer {
     private static final Logger log = LoggerFactory.getLogger(LoggerName.ROCKETMQ_REMOTING_NAME);
     private static final Logger TRAFFIC_LOGGER = LoggerFactory.getLogger(LoggerName.ROCKETMQ_TRAFFIC_NAME);
+    private static final long RPC_STAGE_LATENCY_WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(1);
 
     private final ServerBootstrap serverBootstrap;
     private final EventLoopGroup eventLoopGroupSelector;
@@ -236,6 +241,7 @@ public class NettyRemotingServer extends NettyRemotingAbstract implements Remoti
         scheduledExecutorService.scheduleWithFixedDelay(() -> {
             try {
                 NettyRemotingServer.this.printRemotingCodeDistribution();
+                NettyRemotingServer.this.printRpcStageLatency();
             } catch (Throwable e) {
                 TRAFFIC_LOGGER.error("NettyRemotingServer print remoting code distribution exception", e);
             }
@@ -287,6 +293,7 @@ public class NettyRemotingServer extends NettyRemotingAbstract implements Remoti
     public void shutdown() {
         try {
             this.timer.stop();
+            this.stopResponseTimeoutTimer();
 
             this.eventLoopGroupBoss.shutdownGracefully();
 
@@ -410,6 +417,18 @@ public class NettyRemotingServer extends NettyRemotingAbstract implements Remoti
         }
     }
 
+    private void printRpcStageLatency() {
+        if (!NettySystemConfig.rpcStageLatencyEnable
+            || !RemotingMetricsManager.RPC_STAGE_LATENCY_STATS.rollIfNecessary(RPC_STAGE_LATENCY_WINDOW_MILLIS)) {
+            return;
+        }
+        for (Map.Entry<Integer, LatencyHistogram.Snapshot[]> entry
+            : RemotingMetricsManager.RPC_STAGE_LATENCY_STATS.getLastWindow().entrySet()) {
+            TRAFFIC_LOGGER.info("RequestCode: {}, Stage Latency(us): {}",
+                entry.getKey(), RpcStageLatencyStats.toString(entry.getValue()));
+        }
+    }
+
     public DefaultEventExecutorGroup getDefaultEventExecutorGroup() {
         return defaultEventExecutorGroup;
     }
@@ -694,6 +713,7 @@ public class NettyRemotingServer extends NettyRemotingAbstract implements Remoti
                 } catch (InterruptedException ignored) {
                 }
             }
+            this.stopResponseTimeoutTimer();
         }
 
         @Override
@@ -42,6 +42,16 @@ public class NettySystemConfig {
         "com.rocketmq.remoting.write.buffer.high.water.mark";
     public static final String COM_ROCKETMQ_REMOTING_WRITE_BUFFER_LOW_WATER_MARK =
         "com.rocketmq.remoting.write.buffer.low.water.mark";
+    public static final String COM_ROCKETMQ_REMOTING_SEMAPHORE_FAIR =
+        "com.rocketmq.remoting.semaphore.fair";
+    public static final String COM_ROCKETMQ_REMOTING_RESPONSE_TIMEOUT_WHEEL_ENABLE =
+        "com.rocketmq.remoting.responseTimeoutWheelEnable";
+    public static final String COM_ROCKETMQ_REMOTING_RESPONSE_TIMEOUT_WHEEL_TICK_MILLIS =
+        "com.rocketmq.remoting.responseTimeoutWheelTickMillis";
+    public static final String COM_ROCKETMQ_REMOTING_CLIENT_USE_EPOLL_NATIVE_SELECTOR =
+        "com.rocketmq.remoting.client.useEpollNativeSelector";
+    public static final String COM_ROCKETMQ_REMOTING_RPC_STAGE_LATENCY_ENABLE =
+        "com.rocketmq.remoting.rpcStageLatencyEnable";
 
     public static final boolean NETTY_POOLED_BYTE_BUF_ALLOCATOR_ENABLE = //
         Boolean.parseBoolean(System.getProperty(COM_ROCKETMQ_REMOTING_NETTY_POOLED_BYTE_BUF_ALLOCATOR_ENABLE, "false"));
@@ -67,5 +77,15 @@ public class NettySystemConfig {
         Integer.parseInt(System.getProperty(COM_ROCKETMQ_REMOTING_WRITE_BUFFER_HIGH_WATER_MARK_VALUE, "0"));
     public static int writeBufferLowWaterMark =
         Integer.parseInt(System.getProperty(COM_ROCKETMQ_REMOTING_WRITE_BUFFER_LOW_WATER_MARK, "0"));
+    public static boolean semaphoreFair =
+        Boolean.parseBoolean(System.getProperty(COM_ROCKETMQ_REMOTING_SEMAPHORE_FAIR, "true"));
+    public static boolean responseTimeoutWheelEnable =
+        Boolean.parseBoolean(System.getProperty(COM_ROCKETMQ_REMOTING_RESPONSE_TIMEOUT_WHEEL_ENABLE, "false"));
+    public static int responseTimeoutWheelTickMillis =
+        Integer.parseInt(System.getProperty(COM_ROCKETMQ_REMOTING_RESPONSE_TIMEOUT_WHEEL_TICK_MILLIS, "10"));
+    public static boolean clientUseEpollNativeSelector =
+        Boolean.parseBoolean(System.getProperty(COM_ROCKETMQ_REMOTING_CLIENT_USE_EPOLL_NATIVE_SELECTOR, "false"));
+    public static boolean rpcStageLatencyEnable =
+        Boolean.parseBoolean(System.getProperty(COM_ROCKETMQ_REMOTING_RPC_STAGE_LATENCY_ENABLE, "false"));
 
 }
@@ -18,6 +18,7 @@
 package org.apache.rocketmq.remoting.netty;
 
 import io.netty.channel.Channel;
+import org.apache.rocketmq.remoting.exception.RemotingCommandException;
 import org.apache.rocketmq.remoting.protocol.RemotingCommand;
 
 public class RequestTask implements Runnable {
@@ -81,8 +82,24 @@ public class RequestTask implements Runnable {
     }
 
     public void returnResponse(int code, String remark) {
+        if (request.isBatchRPC()) {
+            // the peer waits on the opaques of the sub requests
+            try {
+                for (RemotingCommand subRequest : request.decodeBatchCommands()) {
+                    if (!subRequest.isOnewayRPC()) {
+                        returnResponse(subRequest.getOpaque(), code, remark);
+                    }
+                }
+            } catch (RemotingCommandException ignored) {
+            }
+            return;
+        }
+        returnResponse(request.getOpaque(), code, remark);
+    }
+
+    private void returnResponse(int opaque, int code, String remark) {
         final RemotingCommand response = RemotingCommand.createResponseCommand(code, remark);
-        response.setOpaque(request.getOpaque());
+        response.setOpaque(opaque);
         this.channel.writeAndFlush(response);
     }
 }
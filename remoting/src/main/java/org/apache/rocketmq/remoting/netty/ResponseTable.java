@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.rocketmq.remoting.netty;
+
+import io.netty.util.collection.IntObjectHashMap;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * On-going requests by opaque. Opaques are handed out sequentially, so their low bits spread the requests evenly over
+ * stripes of primitive keyed maps, each guarded by its own lock, without boxing the keys.
+ */
+public class ResponseTable {
+    private static final int STRIPE_NUM = 64;
+    private static final int STRIPE_MASK = STRIPE_NUM - 1;
+
+    private final Stripe[] stripes = new Stripe[STRIPE_NUM];
+
+    private static class Stripe {
+        private final IntObjectHashMap<ResponseFuture> futures = new IntObjectHashMap<>(64);
+    }
+
+    public ResponseTable() {
+        for (int i = 0; i < STRIPE_NUM; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    private Stripe stripe(int opaque) {
+        return stripes[opaque & STRIPE_MASK];
+    }
+
+    public ResponseFuture put(int opaque, ResponseFuture responseFuture) {
+        Stripe stripe = stripe(opaque);
+        synchronized (stripe) {
+            return stripe.futures.put(opaque, responseFuture);
+        }
+    }
+
+    public ResponseFuture putIfAbsent(int opaque, ResponseFuture responseFuture) {
+        Stripe stripe = stripe(opaque);
+        synchronized (stripe) {
+            ResponseFuture old = stripe.futures.get(opaque);
+            if (old == null) {
+                stripe.futures.put(opaque, responseFuture);
+            }
+            return old;
+        }
+    }
+
+    public ResponseFuture get(int opaque) {
+        Stripe stripe = stripe(opaque);
+        synchronized (stripe) {
+            return stripe.futures.get(opaque);
+        }
+    }
+
+    public ResponseFuture remove(int opaque) {
+        Stripe stripe = stripe(opaque);
+        synchronized (stripe) {
+            return stripe.futures.remove(opaque);
+        }
+    }
+
+    /**
+     * Removes the entry only if it still maps to the given future.
+     */
+    public boolean remove(int opaque, ResponseFuture responseFuture) {
+        Stripe stripe = stripe(opaque);
+        synchronized (stripe) {
+            if (stripe.futures.get(opaque) == responseFuture) {
+                stripe.futures.remove(opaque);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.futures.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return a snapshot of the on-going requests
+     */
+    public List<ResponseFuture> values() {
+        List<ResponseFuture> values = new ArrayList<>();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                values.addAll(stripe.futures.values());
+            }
+        }
+        return values;
+    }
+}
@@ -0,0 +1,346 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.rocketmq.remoting.protocol;
+
+import io.netty.buffer.ByteBuf;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.rocketmq.remoting.CommandCustomHeader;
+import org.apache.rocketmq.remoting.annotation.CFNotNull;
+import org.apache.rocketmq.remoting.exception.RemotingCommandException;
+
+/**
+ * Encoder and decoder of the fields of a {@link CommandCustomHeader} class, built once per class from method handles
+ * bound to the fields and typed parsers, so that headers which do not implement {@link FastCodesHeader} are coded
+ * without looking up, checking and boxing through reflection on every command.
+ */
+public final class CommandCustomHeaderCodec {
+    private static final ClassValue<CommandCustomHeaderCodec> CODECS = new ClassValue<CommandCustomHeaderCodec>() {
+        @Override
+        protected CommandCustomHeaderCodec computeValue(Class<?> type) {
+            return new CommandCustomHeaderCodec(type);
+        }
+    };
+
+    private static final MethodType NEW_INSTANCE_TYPE = MethodType.methodType(CommandCustomHeader.class);
+
+    private final MethodHandle constructor;
+    private final FieldCodec[] fields;
+    private final Map<String, FieldCodec> fieldMap;
+
+    private CommandCustomHeaderCodec(Class<?> classHeader) {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        this.constructor = newConstructor(lookup, classHeader);
+
+        List<FieldCodec> fieldList = new ArrayList<>();
+        for (Class<?> className = classHeader; className != Object.class; className = className.getSuperclass()) {
+            for (Field field : className.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || field.getName().startsWith("this")) {
+                    continue;
+                }
+                fieldList.add(new FieldCodec(lookup, field));
+            }
+        }
+        this.fields = fieldList.toArray(new FieldCodec[0]);
+        this.fieldMap = new HashMap<>(this.fields.length * 2);
+        for (FieldCodec field : this.fields) {
+            this.fieldMap.putIfAbsent(field.name, field);
+        }
+    }
+
+    public static CommandCustomHeaderCodec of(Class<? extends CommandCustomHeader> classHeader) {
+        return CODECS.get(classHeader);
+    }
+
+    private static MethodHandle newConstructor(MethodHandles.Lookup lookup, Class<?> classHeader) {
+        try {
+            Constructor<?> ctor = classHeader.getDeclaredConstructor();
+            ctor.setAccessible(true);
+            return lookup.unreflectConstructor(ctor).asType(NEW_INSTANCE_TYPE);
+        } catch (Throwable e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return a new header, or null if the class can not be instantiated with its no-arg constructor
+     */
+    public CommandCustomHeader newInstance() {
+        if (constructor == null) {
+            return null;
+        }
+        try {
+            return (CommandCustomHeader) constructor.invokeExact();
+        } catch (Throwable e) {
+            return null;
+        }
+    }
+
+    /**
+     * Same contract as the reflective decoding of {@link RemotingCommand}: missing or malformed fields are logged and
+     * skipped, the header is left to {@link CommandCustomHeader#checkFields()}.
+     */
+    public void decode(CommandCustomHeader header, Map<String, String> extFields) {
+        for (FieldCodec field : fields) {
+            try {
+                String value = extFields.get(field.name);
+                if (value == null) {
+                    if (field.notNull) {
+                        throw new RemotingCommandException("the custom field <" + field.name + "> is null");
+                    }
+                    continue;
+                }
+                field.set(header, value);
+            } catch (Throwable e) {
+                RemotingCommand.log.error("Failed field [{}] decoding", field.name, e);
+            }
+        }
+    }
+
+    public void encode(CommandCustomHeader header, Map<String, String> extFields) {
+        for (FieldCodec field : fields) {
+            String value = field.get(header);
+            if (value != null) {
+                extFields.put(field.name, value);
+            }
+        }
+    }
+
+    /**
+     * Writes the non null fields straight into the ext fields section of {@link RocketMQSerializable}.
+     */
+    public void encode(CommandCustomHeader header, ByteBuf out) {
+        for (FieldCodec field : fields) {
+            String value = field.get(header);
+            if (value != null) {
+                out.writeShort(field.nameBytes.length);
+                out.writeBytes(field.nameBytes);
+                RocketMQSerializable.writeStr(out, false, value);
+            }
+        }
+    }
+
+    /**
+     * Writes the non null fields in the {@link RocketMQV2Serializable} format, numbers without going through strings.
+     */
+    public void encode(CommandCustomHeader header, ByteBuf out, RocketMQV2Serializable.EncodeDictionary dictionary) {
+        for (FieldCodec field : fields) {
+            field.writeCompact(header, out, dictionary);
+        }
+    }
+
+    /**
+     * @return true if the encode methods write the given key for this header
+     */
+    public boolean isEncoded(CommandCustomHeader header, String key) {
+        FieldCodec field = fieldMap.get(key);
+        return field != null && field.get(header) != null;
+    }
+
+    private enum FieldKind {
+        STRING,
+        INT,
+        LONG,
+        BOOLEAN,
+        DOUBLE,
+        INTEGER_OBJECT,
+        LONG_OBJECT,
+        BOOLEAN_OBJECT,
+        DOUBLE_OBJECT,
+        UNSUPPORTED;
+
+        static FieldKind of(Class<?> type) {
+            if (type == String.class) {
+                return STRING;
+            } else if (type == int.class) {
+                return INT;
+            } else if (type == long.class) {
+                return LONG;
+            } else if (type == boolean.class) {
+                return BOOLEAN;
+            } else if (type == double.class) {
+                return DOUBLE;
+            } else if (type == Integer.class) {
+                return INTEGER_OBJECT;
+            } else if (type == Long.class) {
+                return LONG_OBJECT;
+            } else if (type == Boolean.class) {
+                return BOOLEAN_OBJECT;
+            } else if (type == Double.class) {
+                return DOUBLE_OBJECT;
+            }
+            return UNSUPPORTED;
+        }
+    }
+
+    private static final class FieldCodec {
+        private final Field field;
+        private final String name;
+        private final byte[] nameBytes;
+        private final boolean notNull;
+        private final FieldKind kind;
+        private final int compactKeyId;
+        private final boolean dictionaryKey;
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+
+        FieldCodec(MethodHandles.Lookup lookup, Field field) {
+            field.setAccessible(true);
+            this.field = field;
+            this.name = field.getName();
+            this.nameBytes = name.getBytes(StandardCharsets.UTF_8);
+            this.notNull = field.getAnnotation(CFNotNull.class) != null;
+            this.kind = FieldKind.of(field.getType());
+            this.compactKeyId = RocketMQV2Serializable.keyId(name);
+            this.dictionaryKey = RocketMQV2Serializable.isDictionaryKey(name);
+
+            Class<?> valueType = field.getType().isPrimitive() ? field.getType() : Object.class;
+            MethodHandle getter;
+            try {
+                getter = lookup.unreflectGetter(field)
+                    .asType(MethodType.methodType(valueType, CommandCustomHeader.class));
+            } catch (IllegalAccessException e) {
+                getter = null;
+            }
+            this.getter = getter;
+
+            MethodHandle setter;
+            try {
+                setter = lookup.unreflectSetter(field)
+                    .asType(MethodType.methodType(void.class, CommandCustomHeader.class, valueType));
+            } catch (IllegalAccessException e) {
+                // final fields, fall back to reflection
+                setter = null;
+            }
+            this.setter = setter;
+        }
+
+        String get(CommandCustomHeader header) {
+            try {
+                if (getter == null) {
+                    Object value = field.get(header);
+                    return value != null ? value.toString() : null;
+                }
+                switch (kind) {
+                    case INT:
+                        return Integer.toString((int) getter.invokeExact(header));
+                    case LONG:
+                        return Long.toString((long) getter.invokeExact(header));
+                    case BOOLEAN:
+                        return Boolean.toString((boolean) getter.invokeExact(header));
+                    case DOUBLE:
+                        return Double.toString((double) getter.invokeExact(header));
+                    default:
+                        Object value = (Object) getter.invokeExact(header);
+                        return value != null ? value.toString() : null;
+                }
+            } catch (Throwable e) {
+                RemotingCommand.log.error("Failed to access field [{}]", name, e);
+                return null;
+            }
+        }
+
+        void writeCompact(CommandCustomHeader header, ByteBuf out,
+            RocketMQV2Serializable.EncodeDictionary dictionary) {
+            long number;
+            try {
+                switch (getter != null ? kind : FieldKind.UNSUPPORTED) {
+                    case INT:
+                        number = (int) getter.invokeExact(header);
+                        break;
+                    case LONG:
+                        number = (long) getter.invokeExact(header);
+                        break;
+                    case INTEGER_OBJECT:
+                    case LONG_OBJECT:
+                        Object value = (Object) getter.invokeExact(header);
+                        if (value == null) {
+                            return;
+                        }
+                        number = ((Number) value).longValue();
+                        break;
+                    default:
+                        String str = get(header);
+                        if (str != null) {
+                            RocketMQV2Serializable.writeField(out, dictionary, compactKeyId, name, dictionaryKey, str);
+                        }
+                        return;
+                }
+            } catch (Throwable e) {
+                RemotingCommand.log.error("Failed to access field [{}]", name, e);
+                return;
+            }
+            RocketMQV2Serializable.writeNumberField(out, compactKeyId, name, number);
+        }
+
+        void set(CommandCustomHeader header, String value) throws Throwable {
+            if (kind == FieldKind.UNSUPPORTED) {
+                throw new RemotingCommandException("the custom field <" + name + "> type is not supported");
+            }
+            if (setter == null) {
+                field.set(header, parse(value));
+                return;
+            }
+            switch (kind) {
+                case INT:
+                    setter.invokeExact(header, Integer.parseInt(value));
+                    break;
+                case LONG:
+                    setter.invokeExact(header, Long.parseLong(value));
+                    break;
+                case BOOLEAN:
+                    setter.invokeExact(header, Boolean.parseBoolean(value));
+                    break;
+                case DOUBLE:
+                    setter.invokeExact(header, Double.parseDouble(value));
+                    break;
+                default:
+                    setter.invokeExact(header, parse(value));
+                    break;
+            }
+        }
+
+        private Object parse(String value) {
+            switch (kind) {
+                case INT:
+                case INTEGER_OBJECT:
+                    return Integer.parseInt(value);
+                case LONG:
+                case LONG_OBJECT:
+                    return Long.parseLong(value);
+                case BOOLEAN:
+                case BOOLEAN_OBJECT:
+                    return Boolean.parseBoolean(value);
+                case DOUBLE:
+                case DOUBLE_OBJECT:
+                    return Double.parseDouble(value);
+                default:
+                    return value;
+            }
+        }
+    }
+}
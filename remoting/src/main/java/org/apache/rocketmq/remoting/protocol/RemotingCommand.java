@@ -26,9 +26,11 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Modifier;
 import java.nio.Buffer;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -48,6 +50,9 @@ public class RemotingCommand {
     static final Logger log = LoggerFactory.getLogger(LoggerName.ROCKETMQ_REMOTING_NAME);
     private static final int RPC_TYPE = 0; // 0, REQUEST_COMMAND
     private static final int RPC_ONEWAY = 1; // 0, RPC
+    private static final int SERIALIZE_V2_SUPPORTED = 2; // 1, the sender decodes ROCKETMQ_V2
+    private static final int RPC_BATCH = 3; // 1, the body carries sub commands
+    private static final int BATCH_SUPPORTED = 4; // 1, the sender decodes batch envelopes
     private static final Map<Class<? extends CommandCustomHeader>, Field[]> CLASS_HASH_MAP =
         new HashMap<>();
     private static final Map<Class, String> CANONICAL_NAME_CACHE = new HashMap<>();
@@ -93,6 +98,10 @@ public class RemotingCommand {
     private transient byte[] body;
     private boolean suspended;
     private Stopwatch processTimer;
+    /**
+     * Elapsed time of the process timer when the current stage of the request began
+     */
+    private transient long stageBeginMicros;
 
     protected RemotingCommand() {
     }
@@ -173,6 +182,51 @@ public class RemotingCommand {
         return createResponseCommand(code, remark, null);
     }
 
+    /**
+     * Wraps requests, or responses, in one envelope whose body is the concatenated frames of the commands. Each sub
+     * command keeps its own code, opaque and flag; the envelope gets an opaque of its own.
+     */
+    public static RemotingCommand createBatchCommand(List<RemotingCommand> commands, boolean response) {
+        RemotingCommand cmd = response ? createResponseCommand(RemotingSysResponseCode.SUCCESS, null)
+            : createRequestCommand(RequestCode.REMOTING_BATCH, null);
+        cmd.markBatchRPC();
+
+        ByteBuffer[] frames = new ByteBuffer[commands.size()];
+        int length = 0;
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = commands.get(i).encode();
+            length += frames[i].remaining();
+        }
+        ByteBuffer body = ByteBuffer.allocate(length);
+        for (ByteBuffer frame : frames) {
+            body.put(frame);
+        }
+        cmd.setBody(body.array());
+        return cmd;
+    }
+
+    /**
+     * @return the sub commands of a batch envelope
+     */
+    public List<RemotingCommand> decodeBatchCommands() throws RemotingCommandException {
+        List<RemotingCommand> commands = new ArrayList<>();
+        if (this.body == null) {
+            return commands;
+        }
+        ByteBuf in = Unpooled.wrappedBuffer(this.body);
+        while (in.isReadable()) {
+            if (in.readableBytes() < 4) {
+                throw new RemotingCommandException("decode error, truncated batch frame");
+            }
+            int length = in.readInt();
+            if (length < 4 || length > in.readableBytes()) {
+                throw new RemotingCommandException("decode error, bad batch frame length: " + length);
+            }
+            commands.add(decode(in.readSlice(length)));
+        }
+        return commands;
+    }
+
     public static RemotingCommand decode(final byte[] array) throws RemotingCommandException {
         ByteBuffer byteBuffer = ByteBuffer.wrap(array);
         return decode(byteBuffer);
@@ -183,6 +237,15 @@ public class RemotingCommand {
     }
 
     public static RemotingCommand decode(final ByteBuf byteBuffer) throws RemotingCommandException {
+        return decode(byteBuffer, null);
+    }
+
+    /**
+     * @param dictionary the header dictionary of the connection the command is read from, see
+     * {@link RocketMQV2Serializable}
+     */
+    public static RemotingCommand decode(final ByteBuf byteBuffer,
+        final RocketMQV2Serializable.DecodeDictionary dictionary) throws RemotingCommandException {
         int length = byteBuffer.readableBytes();
         int oriHeaderLen = byteBuffer.readInt();
         int headerLength = getHeaderLength(oriHeaderLen);
@@ -190,7 +253,7 @@ public class RemotingCommand {
             throw new RemotingCommandException("decode error, bad header length: " + headerLength);
         }
 
-        RemotingCommand cmd = headerDecode(byteBuffer, headerLength, getProtocolType(oriHeaderLen));
+        RemotingCommand cmd = headerDecode(byteBuffer, headerLength, getProtocolType(oriHeaderLen), dictionary);
 
         int bodyLength = length - 4 - headerLength;
         byte[] bodyData = null;
@@ -207,8 +270,8 @@ public class RemotingCommand {
         return length & 0xFFFFFF;
     }
 
-    private static RemotingCommand headerDecode(ByteBuf byteBuffer, int len,
-        SerializeType type) throws RemotingCommandException {
+    private static RemotingCommand headerDecode(ByteBuf byteBuffer, int len, SerializeType type,
+        RocketMQV2Serializable.DecodeDictionary dictionary) throws RemotingCommandException {
         switch (type) {
             case JSON:
                 byte[] headerData = new byte[len];
@@ -220,6 +283,10 @@ public class RemotingCommand {
                 RemotingCommand resultRMQ = RocketMQSerializable.rocketMQProtocolDecode(byteBuffer, len);
                 resultRMQ.setSerializeTypeCurrentRPC(type);
                 return resultRMQ;
+            case ROCKETMQ_V2:
+                RemotingCommand resultV2 = RocketMQV2Serializable.rocketMQV2ProtocolDecode(byteBuffer, len, dictionary);
+                resultV2.setSerializeTypeCurrentRPC(type);
+                return resultV2;
             default:
                 break;
         }
@@ -263,6 +330,10 @@ public class RemotingCommand {
 
     public CommandCustomHeader decodeCommandCustomHeader(Class<? extends CommandCustomHeader> classHeader,
         boolean useFastEncode) throws RemotingCommandException {
+        if (useFastEncode) {
+            return decodeCommandCustomHeaderByCodec(classHeader);
+        }
+
         CommandCustomHeader objectHeader;
         try {
             objectHeader = classHeader.getDeclaredConstructor().newInstance();
@@ -330,6 +401,26 @@ public class RemotingCommand {
         return objectHeader;
     }
 
+    private CommandCustomHeader decodeCommandCustomHeaderByCodec(
+        Class<? extends CommandCustomHeader> classHeader) throws RemotingCommandException {
+        CommandCustomHeaderCodec codec = CommandCustomHeaderCodec.of(classHeader);
+        CommandCustomHeader objectHeader = codec.newInstance();
+        if (objectHeader == null) {
+            return null;
+        }
+
+        if (this.extFields != null) {
+            if (objectHeader instanceof FastCodesHeader) {
+                ((FastCodesHeader) objectHeader).decode(this.extFields);
+            } else {
+                codec.decode(objectHeader, this.extFields);
+            }
+            objectHeader.checkFields();
+        }
+
+        return objectHeader;
+    }
+
     //make it able to test
     Field[] getClazzFields(Class<? extends CommandCustomHeader> classHeader) {
         Field[] field = CLASS_HASH_MAP.get(classHeader);
@@ -389,7 +480,7 @@ public class RemotingCommand {
         result.putInt(length);
 
         // header length
-        result.putInt(markProtocolType(headerData.length, serializeTypeCurrentRPC));
+        result.putInt(markProtocolType(headerData.length, headerSerializeType()));
 
         // header data
         result.put(headerData);
@@ -404,9 +495,17 @@ public class RemotingCommand {
         return result;
     }
 
+    /**
+     * ROCKETMQ_V2 needs a connection to negotiate it, the encoding methods which do not know the connection fall back
+     * to ROCKETMQ.
+     */
+    private SerializeType headerSerializeType() {
+        return SerializeType.ROCKETMQ_V2 == serializeTypeCurrentRPC ? SerializeType.ROCKETMQ : serializeTypeCurrentRPC;
+    }
+
     private byte[] headerEncode() {
         this.makeCustomHeaderToNet();
-        if (SerializeType.ROCKETMQ == serializeTypeCurrentRPC) {
+        if (SerializeType.ROCKETMQ == headerSerializeType()) {
             return RocketMQSerializable.rocketMQProtocolEncode(this);
         } else {
             return RemotingSerializable.encode(this);
@@ -414,6 +513,16 @@ public class RemotingCommand {
     }
 
     public void makeCustomHeaderToNet() {
+        if (this.customHeader != null) {
+            if (null == this.extFields) {
+                this.extFields = new HashMap<>();
+            }
+            CommandCustomHeaderCodec.of(customHeader.getClass()).encode(customHeader, this.extFields);
+        }
+    }
+
+    //make it able to compare with the codec
+    void makeCustomHeaderToNetByReflection() {
         if (this.customHeader != null) {
             Field[] fields = getClazzFields(customHeader.getClass());
             if (null == this.extFields) {
@@ -442,15 +551,24 @@ public class RemotingCommand {
     }
 
     public void fastEncodeHeader(ByteBuf out) {
+        fastEncodeHeader(out, null);
+    }
+
+    /**
+     * @param dictionary the header dictionary of a connection whose peer supports ROCKETMQ_V2, or null to encode
+     * ROCKETMQ_V2 commands as ROCKETMQ
+     */
+    public void fastEncodeHeader(ByteBuf out, RocketMQV2Serializable.EncodeDictionary dictionary) {
         int bodySize = this.body != null ? this.body.length : 0;
         int beginIndex = out.writerIndex();
         // skip 8 bytes
         out.writeLong(0);
         int headerSize;
-        if (SerializeType.ROCKETMQ == serializeTypeCurrentRPC) {
-            if (customHeader != null && !(customHeader instanceof FastCodesHeader)) {
-                this.makeCustomHeaderToNet();
-            }
+        SerializeType serializeType = SerializeType.ROCKETMQ_V2 == serializeTypeCurrentRPC && dictionary != null
+            ? SerializeType.ROCKETMQ_V2 : headerSerializeType();
+        if (SerializeType.ROCKETMQ_V2 == serializeType) {
+            headerSize = RocketMQV2Serializable.rocketMQV2ProtocolEncode(this, out, dictionary);
+        } else if (SerializeType.ROCKETMQ == serializeType) {
             headerSize = RocketMQSerializable.rocketMQProtocolEncode(this, out);
         } else {
             this.makeCustomHeaderToNet();
@@ -459,7 +577,7 @@ public class RemotingCommand {
             out.writeBytes(header);
         }
         out.setInt(beginIndex, 4 + headerSize + bodySize);
-        out.setInt(beginIndex + 4, markProtocolType(headerSize, serializeTypeCurrentRPC));
+        out.setInt(beginIndex + 4, markProtocolType(headerSize, serializeType));
     }
 
     public ByteBuffer encodeHeader() {
@@ -485,7 +603,7 @@ public class RemotingCommand {
         result.putInt(length);
 
         // header length
-        result.putInt(markProtocolType(headerData.length, serializeTypeCurrentRPC));
+        result.putInt(markProtocolType(headerData.length, headerSerializeType()));
 
         // header data
         result.put(headerData);
@@ -514,6 +632,39 @@ public class RemotingCommand {
         this.code = code;
     }
 
+    public void markSerializeV2Supported() {
+        int bits = 1 << SERIALIZE_V2_SUPPORTED;
+        this.flag |= bits;
+    }
+
+    @JSONField(serialize = false)
+    public boolean isSerializeV2Supported() {
+        int bits = 1 << SERIALIZE_V2_SUPPORTED;
+        return (this.flag & bits) == bits;
+    }
+
+    public void markBatchRPC() {
+        int bits = 1 << RPC_BATCH;
+        this.flag |= bits;
+    }
+
+    @JSONField(serialize = false)
+    public boolean isBatchRPC() {
+        int bits = 1 << RPC_BATCH;
+        return (this.flag & bits) == bits;
+    }
+
+    public void markBatchSupported() {
+        int bits = 1 << BATCH_SUPPORTED;
+        this.flag |= bits;
+    }
+
+    @JSONField(serialize = false)
+    public boolean isBatchSupported() {
+        int bits = 1 << BATCH_SUPPORTED;
+        return (this.flag & bits) == bits;
+    }
+
     @JSONField(serialize = false)
     public RemotingCommandType getType() {
         if (this.isResponseType()) {
@@ -628,4 +779,13 @@ public class RemotingCommand {
     public void setProcessTimer(Stopwatch processTimer) {
         this.processTimer = processTimer;
     }
+
+    @JSONField(serialize = false)
+    public long getStageBeginMicros() {
+        return stageBeginMicros;
+    }
+
+    public void setStageBeginMicros(long stageBeginMicros) {
+        this.stageBeginMicros = stageBeginMicros;
+    }
 }
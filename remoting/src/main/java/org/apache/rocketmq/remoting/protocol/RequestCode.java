@@ -106,6 +106,18 @@ public class RequestCode {
     public static final int GET_ROUTEINFO_BY_TOPIC = 105;
 
     public static final int GET_BROKER_CLUSTER_INFO = 106;
+
+    /**
+     * register only the topic configs changed since the last registration
+     */
+    public static final int REGISTER_BROKER_DELTA = 107;
+
+    /**
+     * subscribe the routes of topics, the name server then pushes their changes on the same connection
+     */
+    public static final int SUBSCRIBE_TOPIC_ROUTE = 108;
+
+    public static final int NOTIFY_TOPIC_ROUTE_CHANGED = 109;
     public static final int UPDATE_AND_CREATE_SUBSCRIPTIONGROUP = 200;
     public static final int GET_ALL_SUBSCRIPTIONGROUP_CONFIG = 201;
     public static final int GET_TOPIC_STATS_INFO = 202;
@@ -284,4 +296,9 @@ public class RequestCode {
     public static final int CONTROLLER_GET_NEXT_BROKER_ID = 1012;
 
     public static final int CONTROLLER_APPLY_BROKER_ID = 1013;
+
+    /**
+     * envelope of several requests, see {@link RemotingCommand#createBatchCommand}
+     */
+    public static final int REMOTING_BATCH = 3001;
 }
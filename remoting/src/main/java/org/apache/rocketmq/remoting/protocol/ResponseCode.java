@@ -90,6 +90,11 @@ public class ResponseCode extends RemotingSysResponseCode {
 
     public static final int FLOW_CONTROL = 215;
 
+    /**
+     * the name server does not hold the base version of a delta registration, register all topic configs
+     */
+    public static final int BROKER_FULL_REGISTER_REQUIRED = 216;
+
     public static final int NOT_LEADER_FOR_QUEUE = 501;
 
     public static final int ILLEGAL_OPERATION = 604;
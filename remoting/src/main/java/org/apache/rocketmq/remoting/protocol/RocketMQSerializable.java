@@ -22,6 +22,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import org.apache.rocketmq.remoting.CommandCustomHeader;
 import org.apache.rocketmq.remoting.exception.RemotingCommandException;
 
 import io.netty.buffer.ByteBuf;
@@ -78,17 +79,25 @@ public class RocketMQSerializable {
 
         int mapLenIndex = out.writerIndex();
         out.writeInt(0);
-        if (cmd.readCustomHeader() instanceof FastCodesHeader) {
-            ((FastCodesHeader) cmd.readCustomHeader()).encode(out);
+        CommandCustomHeader customHeader = cmd.readCustomHeader();
+        CommandCustomHeaderCodec codec = null;
+        if (customHeader instanceof FastCodesHeader) {
+            ((FastCodesHeader) customHeader).encode(out);
+        } else if (customHeader != null) {
+            codec = CommandCustomHeaderCodec.of(customHeader.getClass());
+            codec.encode(customHeader, out);
         }
         HashMap<String, String> map = cmd.getExtFields();
         if (map != null && !map.isEmpty()) {
-            map.forEach((k, v) -> {
-                if (k != null && v != null) {
+            for (Map.Entry<String, String> entry : map.entrySet()) {
+                String k = entry.getKey();
+                String v = entry.getValue();
+                // the header fields may also have been put into the ext fields by makeCustomHeaderToNet
+                if (k != null && v != null && (codec == null || !codec.isEncoded(customHeader, k))) {
                     writeStr(out, true, k);
                     writeStr(out, false, v);
                 }
-            });
+            }
         }
         out.setInt(mapLenIndex, out.writerIndex() - mapLenIndex - 4);
         return out.writerIndex() - beginIndex;
@@ -0,0 +1,381 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.rocketmq.remoting.protocol;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.apache.rocketmq.remoting.CommandCustomHeader;
+import org.apache.rocketmq.remoting.exception.RemotingCommandException;
+
+/**
+ * Compact binary header format of {@link SerializeType#ROCKETMQ_V2}.
+ * <pre>
+ * varint code | byte language | varint version | varint opaque | varint flag | string remark | fields | varint 0
+ *
+ * field  = varint keyId value | varint 1 string key value
+ * value  = byte 0 string | byte 1 zigzag varint number | byte 2 varint dictId | byte 3 varint dictId string
+ * string = varint length utf8 bytes, length 0 meaning null
+ * </pre>
+ * Well known keys are written as the ids of {@link #KEYS}. Values of the topic and group keys go through a dictionary
+ * kept per connection and direction, so that they are sent once and referenced by id afterwards. The dictionary is
+ * only usable on a connection which encodes and decodes commands in order, so both sides pass null elsewhere.
+ */
+public class RocketMQV2Serializable {
+    /**
+     * Field ids are the index in this array plus {@link #KEY_ID_BASE}, only append new keys.
+     */
+    private static final String[] KEYS = {
+        // RpcRequestHeader, TopicRequestHeader
+        "ns", "nsd", "bname", "oway", "lo",
+        // SendMessageRequestHeader
+        "producerGroup", "topic", "defaultTopic", "defaultTopicQueueNums", "queueId", "sysFlag", "bornTimestamp",
+        "flag", "properties", "reconsumeTimes", "unitMode", "batch", "maxReconsumeTimes",
+        // SendMessageRequestHeaderV2
+        "a", "b", "c", "d", "e", "f", "g", "h", "i", "j", "k", "l", "m", "n",
+        // SendMessageResponseHeader
+        "msgId", "queueOffset", "transactionId", "batchUniqId",
+        // PullMessageRequestHeader
+        "consumerGroup", "maxMsgNums", "commitOffset", "suspendTimeoutMillis", "subscription", "subVersion",
+        "expressionType", "maxMsgBytes", "requestSource", "proxyFrowardClientId",
+        // PullMessageResponseHeader
+        "suggestWhichBrokerId", "nextBeginOffset", "minOffset", "maxOffset", "offsetDelta", "topicSysFlag",
+        "groupSysFlag", "forbiddenType",
+        // PopMessageRequestHeader, AckMessageRequestHeader
+        "invisibleTime", "pollTime", "bornTime", "initMode", "expType", "exp", "order", "attemptId", "extraInfo",
+        "offset",
+        // misc
+        "group", "brokerName", "clusterName", "setZeroIfNotFound"
+    };
+
+    private static final String[] DICTIONARY_KEYS = {
+        "bname", "producerGroup", "topic", "defaultTopic", "a", "b", "consumerGroup", "group", "brokerName",
+        "clusterName"
+    };
+
+    public static final int MAX_DICTIONARY_SIZE = 4096;
+    private static final int MAX_DICTIONARY_VALUE_LENGTH = 255;
+
+    static final int FIELD_END = 0;
+    static final int FIELD_LITERAL_KEY = 1;
+    static final int KEY_ID_BASE = 2;
+
+    private static final byte VALUE_STRING = 0;
+    private static final byte VALUE_NUMBER = 1;
+    private static final byte VALUE_DICTIONARY_REF = 2;
+    private static final byte VALUE_DICTIONARY_DEF = 3;
+
+    private static final Map<String, Integer> KEY_IDS = new HashMap<>();
+    private static final Set<String> DICTIONARY_KEY_SET = new HashSet<>();
+
+    static {
+        for (int i = 0; i < KEYS.length; i++) {
+            KEY_IDS.putIfAbsent(KEYS[i], i + KEY_ID_BASE);
+        }
+        for (String key : DICTIONARY_KEYS) {
+            DICTIONARY_KEY_SET.add(key);
+        }
+    }
+
+    /**
+     * Values sent on a connection, owned by its encoder.
+     */
+    public static class EncodeDictionary {
+        private final Map<String, Integer> ids = new HashMap<>();
+
+        Integer get(String value) {
+            return ids.get(value);
+        }
+
+        int define(String value) {
+            if (ids.size() >= MAX_DICTIONARY_SIZE || value.length() > MAX_DICTIONARY_VALUE_LENGTH) {
+                return -1;
+            }
+            int id = ids.size();
+            ids.put(value, id);
+            return id;
+        }
+    }
+
+    /**
+     * Values received on a connection, owned by its decoder.
+     */
+    public static class DecodeDictionary {
+        private String[] values = new String[16];
+
+        String get(int id) throws RemotingCommandException {
+            String value = id >= 0 && id < values.length ? values[id] : null;
+            if (value == null) {
+                throw new RemotingCommandException("unknown header dictionary id: " + id);
+            }
+            return value;
+        }
+
+        void define(int id, String value) throws RemotingCommandException {
+            if (id < 0 || id >= MAX_DICTIONARY_SIZE) {
+                throw new RemotingCommandException("header dictionary id out of range: " + id);
+            }
+            if (id >= values.length) {
+                values = Arrays.copyOf(values, Math.min(Math.max(values.length * 2, id + 1), MAX_DICTIONARY_SIZE));
+            }
+            values[id] = value;
+        }
+    }
+
+    /**
+     * @return the id of a well known key, or -1
+     */
+    public static int keyId(String key) {
+        Integer id = KEY_IDS.get(key);
+        return id != null ? id : -1;
+    }
+
+    public static boolean isDictionaryKey(String key) {
+        return DICTIONARY_KEY_SET.contains(key);
+    }
+
+    public static int rocketMQV2ProtocolEncode(RemotingCommand cmd, ByteBuf out, EncodeDictionary dictionary) {
+        int beginIndex = out.writerIndex();
+        writeVarInt(out, cmd.getCode());
+        out.writeByte(cmd.getLanguage().getCode());
+        writeVarInt(out, cmd.getVersion());
+        writeVarInt(out, cmd.getOpaque());
+        writeVarInt(out, cmd.getFlag());
+        writeString(out, cmd.getRemark());
+
+        CommandCustomHeader customHeader = cmd.readCustomHeader();
+        CommandCustomHeaderCodec codec = null;
+        if (customHeader != null) {
+            codec = CommandCustomHeaderCodec.of(customHeader.getClass());
+            codec.encode(customHeader, out, dictionary);
+        }
+        HashMap<String, String> map = cmd.getExtFields();
+        if (map != null && !map.isEmpty()) {
+            for (Map.Entry<String, String> entry : map.entrySet()) {
+                String k = entry.getKey();
+                String v = entry.getValue();
+                if (k != null && v != null && (codec == null || !codec.isEncoded(customHeader, k))) {
+                    writeField(out, dictionary, keyId(k), k, isDictionaryKey(k), v);
+                }
+            }
+        }
+        writeVarInt(out, FIELD_END);
+        return out.writerIndex() - beginIndex;
+    }
+
+    public static RemotingCommand rocketMQV2ProtocolDecode(ByteBuf in, int headerLen,
+        DecodeDictionary dictionary) throws RemotingCommandException {
+        int endIndex = in.readerIndex() + headerLen;
+        RemotingCommand cmd = new RemotingCommand();
+        cmd.setCode(readVarInt(in));
+        cmd.setLanguage(LanguageCode.valueOf(in.readByte()));
+        cmd.setVersion(readVarInt(in));
+        cmd.setOpaque(readVarInt(in));
+        cmd.setFlag(readVarInt(in));
+        cmd.setRemark(readString(in, headerLen));
+
+        HashMap<String, String> extFields = null;
+        for (int keyId = readVarInt(in); keyId != FIELD_END; keyId = readVarInt(in)) {
+            String key;
+            if (keyId == FIELD_LITERAL_KEY) {
+                key = readString(in, headerLen);
+            } else if (keyId >= KEY_ID_BASE && keyId - KEY_ID_BASE < KEYS.length) {
+                key = KEYS[keyId - KEY_ID_BASE];
+            } else {
+                throw new RemotingCommandException("RocketMQ v2 protocol decoding failed, unknown key id: " + keyId);
+            }
+            String value = readValue(in, headerLen, dictionary);
+            if (extFields == null) {
+                extFields = new HashMap<>();
+            }
+            extFields.put(key, value);
+            if (in.readerIndex() > endIndex) {
+                throw new RemotingCommandException("RocketMQ v2 protocol decoding failed, header length: " + headerLen);
+            }
+        }
+        cmd.setExtFields(extFields);
+        return cmd;
+    }
+
+    static void writeField(ByteBuf out, EncodeDictionary dictionary, int keyId, String key, boolean dictionaryKey,
+        String value) {
+        writeKey(out, keyId, key);
+        if (isCanonicalLong(value)) {
+            out.writeByte(VALUE_NUMBER);
+            writeVarLong(out, Long.parseLong(value));
+            return;
+        }
+        if (dictionaryKey && dictionary != null && !value.isEmpty()) {
+            Integer id = dictionary.get(value);
+            if (id != null) {
+                out.writeByte(VALUE_DICTIONARY_REF);
+                writeVarInt(out, id);
+                return;
+            }
+            int newId = dictionary.define(value);
+            if (newId >= 0) {
+                out.writeByte(VALUE_DICTIONARY_DEF);
+                writeVarInt(out, newId);
+                writeString(out, value);
+                return;
+            }
+        }
+        out.writeByte(VALUE_STRING);
+        writeString(out, value);
+    }
+
+    static void writeNumberField(ByteBuf out, int keyId, String key, long value) {
+        writeKey(out, keyId, key);
+        out.writeByte(VALUE_NUMBER);
+        writeVarLong(out, value);
+    }
+
+    private static void writeKey(ByteBuf out, int keyId, String key) {
+        if (keyId >= KEY_ID_BASE) {
+            writeVarInt(out, keyId);
+        } else {
+            writeVarInt(out, FIELD_LITERAL_KEY);
+            writeString(out, key);
+        }
+    }
+
+    private static String readValue(ByteBuf in, int limit, DecodeDictionary dictionary) throws RemotingCommandException {
+        byte type = in.readByte();
+        switch (type) {
+            case VALUE_STRING:
+                return readString(in, limit);
+            case VALUE_NUMBER:
+                return Long.toString(readVarLong(in));
+            case VALUE_DICTIONARY_REF:
+                if (dictionary == null) {
+                    throw new RemotingCommandException("header dictionary reference without a dictionary");
+                }
+                return dictionary.get(readVarInt(in));
+            case VALUE_DICTIONARY_DEF:
+                int id = readVarInt(in);
+                String value = readString(in, limit);
+                if (dictionary != null) {
+                    dictionary.define(id, value);
+                }
+                return value;
+            default:
+                throw new RemotingCommandException("RocketMQ v2 protocol decoding failed, unknown value type: " + type);
+        }
+    }
+
+    private static final String LONG_MAX_DIGITS = "9223372036854775807";
+    private static final String LONG_MIN_DIGITS = "9223372036854775808";
+
+    /**
+     * @return true if the value is the exact decimal form of a long, so that it can be sent as a number and restored
+     * without any difference
+     */
+    static boolean isCanonicalLong(String value) {
+        int length = value.length();
+        boolean negative = length > 0 && value.charAt(0) == '-';
+        int start = negative ? 1 : 0;
+        int digits = length - start;
+        if (digits <= 0 || digits > LONG_MAX_DIGITS.length()) {
+            return false;
+        }
+        if (value.charAt(start) == '0' && (digits > 1 || negative)) {
+            return false;
+        }
+        for (int i = start; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        if (digits == LONG_MAX_DIGITS.length()) {
+            String bound = negative ? LONG_MIN_DIGITS : LONG_MAX_DIGITS;
+            return value.substring(start).compareTo(bound) <= 0;
+        }
+        return true;
+    }
+
+    /**
+     * Writes the UTF-8 length plus one ahead of the bytes, so that 0 stands for null and 1 for the empty string.
+     */
+    static void writeString(ByteBuf out, String value) {
+        if (value == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        int utf8Length = ByteBufUtil.utf8Bytes(value);
+        writeVarInt(out, utf8Length + 1);
+        out.writeCharSequence(value, StandardCharsets.UTF_8);
+    }
+
+    private static String readString(ByteBuf in, int limit) throws RemotingCommandException {
+        int length = readVarInt(in) - 1;
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0 || length > limit) {
+            throw new RemotingCommandException("string length exceed limit:" + limit);
+        }
+        return in.readCharSequence(length, StandardCharsets.UTF_8).toString();
+    }
+
+    static void writeVarInt(ByteBuf out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarInt(ByteBuf in) throws RemotingCommandException {
+        int result = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.readByte();
+            result |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+        throw new RemotingCommandException("malformed varint");
+    }
+
+    static void writeVarLong(ByteBuf out, long value) {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            out.writeByte((int) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        out.writeByte((int) zigzag);
+    }
+
+    static long readVarLong(ByteBuf in) throws RemotingCommandException {
+        long zigzag = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            byte b = in.readByte();
+            zigzag |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return (zigzag >>> 1) ^ -(zigzag & 1);
+            }
+        }
+        throw new RemotingCommandException("malformed varint");
+    }
+}
@@ -19,7 +19,12 @@ package org.apache.rocketmq.remoting.protocol;
 
 public enum SerializeType {
     JSON((byte) 0),
-    ROCKETMQ((byte) 1);
+    ROCKETMQ((byte) 1),
+    /**
+     * Compact binary headers, only sent on connections whose peer announced support for it, otherwise sent as
+     * {@link #ROCKETMQ}.
+     */
+    ROCKETMQ_V2((byte) 2);
 
     private byte code;
 
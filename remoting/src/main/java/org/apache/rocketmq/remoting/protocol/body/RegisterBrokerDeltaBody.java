@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.rocketmq.remoting.protocol.body;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.apache.rocketmq.remoting.protocol.DataVersion;
+import org.apache.rocketmq.remoting.protocol.RemotingSerializable;
+
+/**
+ * Topic configs changed by a broker since the registration of {@link #baseDataVersion}: the added and changed
+ * configs, stamped with the current data version, and the names of the removed topics.
+ */
+public class RegisterBrokerDeltaBody extends RemotingSerializable {
+    private DataVersion baseDataVersion = new DataVersion();
+    private TopicConfigAndMappingSerializeWrapper topicConfigSerializeWrapper = new TopicConfigAndMappingSerializeWrapper();
+    private Set<String> removedTopics = new HashSet<>();
+    private List<String> filterServerList = new ArrayList<>();
+
+    public DataVersion getBaseDataVersion() {
+        return baseDataVersion;
+    }
+
+    public void setBaseDataVersion(DataVersion baseDataVersion) {
+        this.baseDataVersion = baseDataVersion;
+    }
+
+    public TopicConfigAndMappingSerializeWrapper getTopicConfigSerializeWrapper() {
+        return topicConfigSerializeWrapper;
+    }
+
+    public void setTopicConfigSerializeWrapper(TopicConfigAndMappingSerializeWrapper topicConfigSerializeWrapper) {
+        this.topicConfigSerializeWrapper = topicConfigSerializeWrapper;
+    }
+
+    public Set<String> getRemovedTopics() {
+        return removedTopics;
+    }
+
+    public void setRemovedTopics(Set<String> removedTopics) {
+        this.removedTopics = removedTopics;
+    }
+
+    public List<String> getFilterServerList() {
+        return filterServerList;
+    }
+
+    public void setFilterServerList(List<String> filterServerList) {
+        this.filterServerList = filterServerList;
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.rocketmq.remoting.protocol.body;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.rocketmq.remoting.protocol.RemotingSerializable;
+import org.apache.rocketmq.remoting.protocol.route.TopicRouteData;
+
+/**
+ * Routes changed since the versions a client holds, with their new versions.
+ */
+public class TopicRouteChangeBody extends RemotingSerializable {
+    private Map<String/* topic */, TopicRouteData> topicRouteTable = new HashMap<>();
+    private Map<String/* topic */, Long/* version */> topicRouteVersionTable = new HashMap<>();
+
+    public Map<String, TopicRouteData> getTopicRouteTable() {
+        return topicRouteTable;
+    }
+
+    public void setTopicRouteTable(Map<String, TopicRouteData> topicRouteTable) {
+        this.topicRouteTable = topicRouteTable;
+    }
+
+    public Map<String, Long> getTopicRouteVersionTable() {
+        return topicRouteVersionTable;
+    }
+
+    public void setTopicRouteVersionTable(Map<String, Long> topicRouteVersionTable) {
+        this.topicRouteVersionTable = topicRouteVersionTable;
+    }
+}
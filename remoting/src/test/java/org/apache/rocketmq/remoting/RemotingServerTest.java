@@ -103,6 +103,25 @@ public class RemotingServerTest {
 
     }
 
+    @Test
+    public void testInvokeSyncWithEpollClient() throws InterruptedException, RemotingConnectException,
+        RemotingSendRequestException, RemotingTimeoutException {
+        NettyClientConfig nettyClientConfig = new NettyClientConfig();
+        // falls back to NIO where the native transport is not available
+        nettyClientConfig.setUseEpollNativeSelector(true);
+        nettyClientConfig.setClientPooledByteBufAllocatorEnable(true);
+        RemotingClient client = createRemotingClient(nettyClientConfig);
+        try {
+            RemotingCommand request = RemotingCommand.createRequestCommand(0, null);
+            request.setBody(new byte[1024]);
+            RemotingCommand response = client.invokeSync("localhost:" + remotingServer.localListenPort(), request, 1000 * 3);
+            assertNotNull(response);
+            assertThat(response.getBody()).hasSize(1024);
+        } finally {
+            client.shutdown();
+        }
+    }
+
     @Test
     public void testInvokeOneway() throws InterruptedException, RemotingConnectException,
         RemotingTimeoutException, RemotingTooMuchRequestException, RemotingSendRequestException {
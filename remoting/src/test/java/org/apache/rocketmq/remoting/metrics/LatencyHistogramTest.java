@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.rocketmq.remoting.metrics;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketBounds() {
+        long[] values = {0, 1, 7, 8, 15, 16, 17, 100, 1023, 1024, 123456789L, Long.MAX_VALUE};
+        for (long value : values) {
+            int index = LatencyHistogram.index(value);
+            assertThat(LatencyHistogram.highestValue(index)).isGreaterThanOrEqualTo(value);
+            assertThat(LatencyHistogram.highestValue(index) - value).isLessThanOrEqualTo(value / 8);
+            if (index > 0) {
+                assertThat(LatencyHistogram.highestValue(index - 1)).isLessThan(value);
+            }
+        }
+    }
+
+    @Test
+    public void testPercentile() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshotAndReset();
+        assertThat(snapshot.getTotalCount()).isEqualTo(1000);
+        assertThat(snapshot.getMax()).isEqualTo(1000);
+        assertThat(snapshot.getValueAtPercentile(50)).isBetween(500L, 500L + 500 / 8);
+        assertThat(snapshot.getValueAtPercentile(99)).isBetween(990L, 1000L);
+        assertThat(snapshot.getValueAtPercentile(100)).isEqualTo(1000);
+
+        assertThat(histogram.snapshotAndReset().getTotalCount()).isZero();
+    }
+
+    @Test
+    public void testRollStats() {
+        RpcStageLatencyStats stats = new RpcStageLatencyStats();
+        stats.record(10, RpcStageLatencyStats.Stage.QUEUE, 100);
+        stats.record(10, RpcStageLatencyStats.Stage.EXECUTE, 2000);
+        assertThat(stats.getLastWindow()).isEmpty();
+
+        assertThat(stats.rollIfNecessary(0)).isTrue();
+        assertThat(stats.getLastWindow()).containsOnlyKeys(10);
+        String desc = RpcStageLatencyStats.toString(stats.getLastWindow().get(10));
+        assertThat(desc).startsWith("queue: count=1").contains("execute: count=1").doesNotContain("flush");
+
+        assertThat(stats.rollIfNecessary(0)).isTrue();
+        assertThat(stats.getLastWindow()).isEmpty();
+    }
+}
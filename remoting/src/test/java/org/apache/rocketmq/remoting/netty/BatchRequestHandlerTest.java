@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.rocketmq.remoting.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.util.List;
+import org.apache.rocketmq.remoting.protocol.RemotingCommand;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BatchRequestHandlerTest {
+
+    private static RemotingCommand readCommand(EmbeddedChannel client, EmbeddedChannel server) {
+        ByteBuf frame = client.readOutbound();
+        if (frame == null) {
+            return null;
+        }
+        server.writeInbound(frame);
+        return server.readInbound();
+    }
+
+    @Test
+    public void testCoalesceRequests() throws Exception {
+        EmbeddedChannel client = new EmbeddedChannel(new NettyEncoder(), new BatchRequestHandler(0, 32));
+        EmbeddedChannel server = new EmbeddedChannel(new NettyDecoder());
+        NettyCodecContext.getOrCreate(client).markPeerSupportBatch();
+
+        RemotingCommand first = RemotingCommand.createRequestCommand(1, null);
+        RemotingCommand second = RemotingCommand.createRequestCommand(2, null);
+        second.markOnewayRPC();
+        ChannelFuture firstFuture = client.writeAndFlush(first);
+        ChannelFuture secondFuture = client.writeAndFlush(second);
+        assertThat(client.outboundMessages()).isEmpty();
+
+        client.runPendingTasks();
+        assertThat(firstFuture.isSuccess()).isTrue();
+        assertThat(secondFuture.isSuccess()).isTrue();
+
+        RemotingCommand batch = readCommand(client, server);
+        assertThat(batch.isBatchRPC()).isTrue();
+        assertThat(readCommand(client, server)).isNull();
+        List<RemotingCommand> requests = batch.decodeBatchCommands();
+        assertThat(requests).hasSize(2);
+        assertThat(requests.get(0).getOpaque()).isEqualTo(first.getOpaque());
+        assertThat(requests.get(0).getCode()).isEqualTo(1);
+        assertThat(requests.get(1).getOpaque()).isEqualTo(second.getOpaque());
+        assertThat(requests.get(1).isOnewayRPC()).isTrue();
+    }
+
+    @Test
+    public void testWriteThroughBeforeNegotiated() {
+        EmbeddedChannel client = new EmbeddedChannel(new NettyEncoder(), new BatchRequestHandler(0, 32));
+        EmbeddedChannel server = new EmbeddedChannel(new NettyDecoder());
+
+        RemotingCommand request = RemotingCommand.createRequestCommand(1, null);
+        client.writeAndFlush(request);
+        RemotingCommand received = readCommand(client, server);
+        assertThat(received.isBatchRPC()).isFalse();
+        assertThat(received.isBatchSupported()).isTrue();
+        assertThat(received.getOpaque()).isEqualTo(request.getOpaque());
+    }
+
+    @Test
+    public void testMaxNum() throws Exception {
+        EmbeddedChannel client = new EmbeddedChannel(new NettyEncoder(), new BatchRequestHandler(1000000, 2));
+        EmbeddedChannel server = new EmbeddedChannel(new NettyDecoder());
+        NettyCodecContext.getOrCreate(client).markPeerSupportBatch();
+
+        for (int i = 0; i < 3; i++) {
+            client.write(RemotingCommand.createRequestCommand(1, null));
+        }
+        // the non batchable write goes after the pending requests
+        client.writeAndFlush(RemotingCommand.createResponseCommand(0, null));
+
+        assertThat(readCommand(client, server).decodeBatchCommands()).hasSize(2);
+        assertThat(readCommand(client, server).isBatchRPC()).isFalse();
+        assertThat(readCommand(client, server).isResponseType()).isTrue();
+        assertThat(readCommand(client, server)).isNull();
+    }
+}
@@ -16,10 +16,22 @@
  */
 package org.apache.rocketmq.remoting.netty;
 
+import com.google.common.base.Stopwatch;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.rocketmq.remoting.InvokeCallback;
 import org.apache.rocketmq.remoting.common.SemaphoreReleaseOnlyOnce;
 import org.apache.rocketmq.remoting.protocol.RemotingCommand;
+import org.apache.rocketmq.remoting.protocol.RemotingSysResponseCode;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Spy;
@@ -122,4 +134,146 @@ public class NettyRemotingAbstractTest {
         semaphore.acquire(1);
         assertThat(semaphore.availablePermits()).isEqualTo(0);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testResponseTimeoutWheel() throws Exception {
+        NettySystemConfig.responseTimeoutWheelEnable = true;
+        NettyRemotingClient client = new NettyRemotingClient(new NettyClientConfig());
+        try {
+            EmbeddedChannel channel = new EmbeddedChannel();
+            RemotingCommand request = RemotingCommand.createRequestCommand(1, null);
+            CountDownLatch latch = new CountDownLatch(1);
+            long begin = System.currentTimeMillis();
+            client.invokeAsyncImpl(channel, request, 200, responseFuture -> {
+                if (responseFuture.getResponseCommand() == null) {
+                    latch.countDown();
+                }
+            });
+            assertThat(client.responseTable.get(request.getOpaque())).isNotNull();
+
+            assertThat(latch.await(3, TimeUnit.SECONDS)).isTrue();
+            assertThat(System.currentTimeMillis() - begin).isLessThan(1000);
+            assertNull(client.responseTable.get(request.getOpaque()));
+            assertThat(client.semaphoreAsync.availablePermits()).isEqualTo(NettySystemConfig.CLIENT_ASYNC_SEMAPHORE_VALUE);
+        } finally {
+            NettySystemConfig.responseTimeoutWheelEnable = false;
+            client.shutdown();
+        }
+    }
+
+    @Test
+    public void testProcessBatchRequestCommand() throws Exception {
+        NettyRemotingClient client = new NettyRemotingClient(new NettyClientConfig());
+        NettyRequestProcessor processor = new NettyRequestProcessor() {
+            @Override
+            public RemotingCommand processRequest(ChannelHandlerContext ctx, RemotingCommand request) {
+                return RemotingCommand.createResponseCommand(RemotingSysResponseCode.SUCCESS, request.getRemark());
+            }
+
+            @Override
+            public boolean rejectRequest() {
+                return false;
+            }
+        };
+        CountingDirectExecutor sendExecutor = new CountingDirectExecutor();
+        CountingDirectExecutor adminExecutor = new CountingDirectExecutor();
+        client.registerProcessor(1, processor, sendExecutor);
+        client.registerProcessor(3, processor, adminExecutor);
+        EmbeddedChannel channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                client.processMessageReceived(ctx, (RemotingCommand) msg);
+            }
+        });
+
+        RemotingCommand first = RemotingCommand.createRequestCommand(1, null);
+        first.setRemark("first");
+        RemotingCommand admin = RemotingCommand.createRequestCommand(3, null);
+        admin.setRemark("admin");
+        RemotingCommand second = RemotingCommand.createRequestCommand(1, null);
+        second.setRemark("second");
+        RemotingCommand unsupported = RemotingCommand.createRequestCommand(2, null);
+        RemotingCommand batch = RemotingCommand.createBatchCommand(Arrays.asList(first, admin, second, unsupported), false);
+        batch.setProcessTimer(Stopwatch.createStarted());
+        channel.writeInbound(batch);
+
+        // the sub requests of each code run on the executor of their code
+        assertThat(sendExecutor.tasks.get()).isEqualTo(1);
+        assertThat(adminExecutor.tasks.get()).isEqualTo(1);
+
+        RemotingCommand response = channel.readOutbound();
+        assertThat(response.isBatchRPC()).isTrue();
+        assertThat(response.isResponseType()).isTrue();
+        assertThat(response.getOpaque()).isEqualTo(batch.getOpaque());
+        List<RemotingCommand> responses = response.decodeBatchCommands();
+        assertThat(responses).hasSize(2);
+        assertThat(responses.get(0).getOpaque()).isEqualTo(first.getOpaque());
+        assertThat(responses.get(0).getRemark()).isEqualTo("first");
+        assertThat(responses.get(1).getOpaque()).isEqualTo(second.getOpaque());
+        assertThat(responses.get(1).getRemark()).isEqualTo("second");
+
+        response = channel.readOutbound();
+        assertThat(response.isBatchRPC()).isFalse();
+        assertThat(response.getOpaque()).isEqualTo(admin.getOpaque());
+        assertThat(response.getRemark()).isEqualTo("admin");
+
+        response = channel.readOutbound();
+        assertThat(response.getOpaque()).isEqualTo(unsupported.getOpaque());
+        assertThat(response.getCode()).isEqualTo(RemotingSysResponseCode.REQUEST_CODE_NOT_SUPPORTED);
+        assertThat(response.isResponseType()).isTrue();
+        assertNull(channel.readOutbound());
+    }
+
+    @Test
+    public void testProcessBatchResponseCommand() {
+        final Semaphore semaphore = new Semaphore(0);
+        remotingAbstract.responseTable.putIfAbsent(1, new ResponseFuture(null, 1, 3000, null,
+            new SemaphoreReleaseOnlyOnce(semaphore)));
+        remotingAbstract.responseTable.putIfAbsent(2, new ResponseFuture(null, 2, 3000, null,
+            new SemaphoreReleaseOnlyOnce(semaphore)));
+
+        RemotingCommand first = RemotingCommand.createResponseCommand(0, "Foo");
+        first.setOpaque(1);
+        RemotingCommand second = RemotingCommand.createResponseCommand(0, "Bar");
+        second.setOpaque(2);
+        remotingAbstract.processResponseCommand(null,
+            RemotingCommand.createBatchCommand(Arrays.asList(first, second), true));
+
+        assertThat(semaphore.availablePermits()).isEqualTo(2);
+        assertThat(remotingAbstract.responseTable.size()).isEqualTo(0);
+    }
+
+    private static class CountingDirectExecutor extends AbstractExecutorService {
+        private final AtomicInteger tasks = new AtomicInteger();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.incrementAndGet();
+            command.run();
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.rocketmq.remoting.protocol;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import org.apache.rocketmq.remoting.CommandCustomHeader;
+import org.apache.rocketmq.remoting.exception.RemotingCommandException;
+import org.apache.rocketmq.remoting.protocol.header.SendMessageRequestHeader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of coding a SendMessageRequestHeader with the cached codec against the reflective path it replaces.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Fork(value = 1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+public class CommandCustomHeaderCodecBenchmark {
+    private SendMessageRequestHeader header;
+    private RemotingCommand decodeCommand;
+    private ByteBuf out;
+
+    @Setup
+    public void setup() {
+        header = new SendMessageRequestHeader();
+        header.setProducerGroup("BenchmarkGroup");
+        header.setTopic("BenchmarkTopic");
+        header.setDefaultTopic("TBW102");
+        header.setDefaultTopicQueueNums(4);
+        header.setQueueId(1);
+        header.setSysFlag(0);
+        header.setBornTimestamp(System.currentTimeMillis());
+        header.setFlag(0);
+        header.setProperties("KEYS\u0001key\u0002TAGS\u0001tag\u0002");
+        header.setReconsumeTimes(0);
+        header.setBname("broker-a");
+
+        decodeCommand = RemotingCommand.createRequestCommand(RequestCode.SEND_MESSAGE, header);
+        decodeCommand.makeCustomHeaderToNet();
+        out = Unpooled.buffer(1024);
+    }
+
+    @Benchmark
+    public HashMap<String, String> encodeByReflection() {
+        RemotingCommand command = RemotingCommand.createRequestCommand(RequestCode.SEND_MESSAGE, header);
+        command.makeCustomHeaderToNetByReflection();
+        return command.getExtFields();
+    }
+
+    @Benchmark
+    public HashMap<String, String> encodeByCodec() {
+        RemotingCommand command = RemotingCommand.createRequestCommand(RequestCode.SEND_MESSAGE, header);
+        command.makeCustomHeaderToNet();
+        return command.getExtFields();
+    }
+
+    @Benchmark
+    public int fastEncodeByReflection() {
+        RemotingCommand command = RemotingCommand.createRequestCommand(RequestCode.SEND_MESSAGE, header);
+        command.setSerializeTypeCurrentRPC(SerializeType.ROCKETMQ);
+        command.makeCustomHeaderToNetByReflection();
+        command.writeCustomHeader(null);
+        out.clear();
+        command.fastEncodeHeader(out);
+        return out.writerIndex();
+    }
+
+    @Benchmark
+    public int fastEncodeByCodec() {
+        RemotingCommand command = RemotingCommand.createRequestCommand(RequestCode.SEND_MESSAGE, header);
+        command.setSerializeTypeCurrentRPC(SerializeType.ROCKETMQ);
+        out.clear();
+        command.fastEncodeHeader(out);
+        return out.writerIndex();
+    }
+
+    @Benchmark
+    public CommandCustomHeader decodeByReflection() throws RemotingCommandException {
+        return decodeCommand.decodeCommandCustomHeader(SendMessageRequestHeader.class, false);
+    }
+
+    @Benchmark
+    public CommandCustomHeader decodeByCodec() throws RemotingCommandException {
+        return decodeCommand.decodeCommandCustomHeader(SendMessageRequestHeader.class);
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+}
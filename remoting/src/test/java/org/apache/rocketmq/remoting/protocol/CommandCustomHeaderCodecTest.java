@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.rocketmq.remoting.protocol;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.HashMap;
+import org.apache.rocketmq.remoting.CommandCustomHeader;
+import org.apache.rocketmq.remoting.protocol.header.SendMessageRequestHeader;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CommandCustomHeaderCodecTest {
+
+    private static SendMessageRequestHeader newSendMessageRequestHeader() {
+        SendMessageRequestHeader header = new SendMessageRequestHeader();
+        header.setProducerGroup("group");
+        header.setTopic("topic");
+        header.setDefaultTopic("TBW102");
+        header.setDefaultTopicQueueNums(4);
+        header.setQueueId(1);
+        header.setSysFlag(0);
+        header.setBornTimestamp(System.currentTimeMillis());
+        header.setFlag(0);
+        header.setProperties("a\u0001b\u0002");
+        header.setReconsumeTimes(3);
+        header.setBatch(true);
+        header.setBname("broker-a");
+        return header;
+    }
+
+    private static HashMap<String, String> toMap(CommandCustomHeader header) {
+        RemotingCommand command = RemotingCommand.createRequestCommand(0, header);
+        command.makeCustomHeaderToNetByReflection();
+        return command.getExtFields();
+    }
+
+    @Test
+    public void testEncodeSameAsReflection() {
+        SubExtFieldsHeader header = new SubExtFieldsHeader();
+        RemotingCommand byCodec = RemotingCommand.createRequestCommand(1, header);
+        byCodec.makeCustomHeaderToNet();
+        RemotingCommand byReflection = RemotingCommand.createRequestCommand(1, header);
+        byReflection.makeCustomHeaderToNetByReflection();
+        assertThat(byCodec.getExtFields()).isEqualTo(byReflection.getExtFields());
+
+        SendMessageRequestHeader sendHeader = newSendMessageRequestHeader();
+        byCodec = RemotingCommand.createRequestCommand(10, sendHeader);
+        byCodec.makeCustomHeaderToNet();
+        byReflection = RemotingCommand.createRequestCommand(10, sendHeader);
+        byReflection.makeCustomHeaderToNetByReflection();
+        assertThat(byCodec.getExtFields()).isEqualTo(byReflection.getExtFields());
+    }
+
+    @Test
+    public void testDecodeSameAsReflection() throws Exception {
+        SendMessageRequestHeader header = newSendMessageRequestHeader();
+        RemotingCommand command = RemotingCommand.createRequestCommand(10, header);
+        command.makeCustomHeaderToNet();
+
+        SendMessageRequestHeader byCodec =
+            (SendMessageRequestHeader) command.decodeCommandCustomHeader(SendMessageRequestHeader.class);
+        SendMessageRequestHeader byReflection =
+            (SendMessageRequestHeader) command.decodeCommandCustomHeader(SendMessageRequestHeader.class, false);
+        assertThat(toMap(byCodec)).isEqualTo(toMap(byReflection));
+        assertThat(byCodec.getBname()).isEqualTo("broker-a");
+        assertThat(byCodec.isBatch()).isTrue();
+    }
+
+    @Test
+    public void testDecodeMalformedField() throws Exception {
+        RemotingCommand command = RemotingCommand.createRequestCommand(1, null);
+        command.addExtField("stringValue", "str");
+        command.addExtField("intValue", "not a number");
+        command.addExtField("longValue", "1");
+
+        ExtFieldsHeader header = (ExtFieldsHeader) command.decodeCommandCustomHeader(ExtFieldsHeader.class);
+        assertThat(header.getStringValue()).isEqualTo("str");
+        assertThat(header.getIntValue()).isEqualTo(2333);
+        assertThat(header.getLongValue()).isEqualTo(1L);
+    }
+
+    @Test
+    public void testFastEncodeHeaderWithExtFields() throws Exception {
+        SendMessageRequestHeader header = newSendMessageRequestHeader();
+        RemotingCommand command = RemotingCommand.createRequestCommand(10, header);
+        command.setSerializeTypeCurrentRPC(SerializeType.ROCKETMQ);
+        command.addExtField("AccessKey", "rocketmq");
+        // put the header fields into the ext fields as the rpc hooks do, they must not be written twice
+        command.makeCustomHeaderToNet();
+        int fieldNum = command.getExtFields().size();
+
+        ByteBuf out = Unpooled.buffer();
+        command.fastEncodeHeader(out);
+        out.skipBytes(4);
+        RemotingCommand decoded = RemotingCommand.decode(out);
+
+        HashMap<String, String> extFields = decoded.getExtFields();
+        assertThat(extFields).hasSize(fieldNum);
+        assertThat(extFields.get("AccessKey")).isEqualTo("rocketmq");
+        assertThat(extFields.get("producerGroup")).isEqualTo("group");
+
+        SendMessageRequestHeader decodedHeader =
+            (SendMessageRequestHeader) decoded.decodeCommandCustomHeader(SendMessageRequestHeader.class);
+        assertThat(toMap(decodedHeader)).isEqualTo(toMap(header));
+    }
+}
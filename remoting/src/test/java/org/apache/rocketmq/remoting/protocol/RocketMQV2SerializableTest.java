@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.rocketmq.remoting.protocol;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.apache.rocketmq.remoting.netty.NettyDecoder;
+import org.apache.rocketmq.remoting.netty.NettyEncoder;
+import org.apache.rocketmq.remoting.protocol.header.SendMessageRequestHeader;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RocketMQV2SerializableTest {
+
+    private static RemotingCommand newSendMessageRequest(SerializeType serializeType) {
+        SendMessageRequestHeader header = new SendMessageRequestHeader();
+        header.setProducerGroup("please_rename_unique_group_name");
+        header.setTopic("TopicTest");
+        header.setDefaultTopic("TBW102");
+        header.setDefaultTopicQueueNums(4);
+        header.setQueueId(3);
+        header.setSysFlag(0);
+        header.setBornTimestamp(1700000000000L);
+        header.setFlag(0);
+        header.setProperties("UNIQ_KEY\u00017F00000100002A9F0000000000000000\u0002WAIT\u0001true\u0002");
+        header.setReconsumeTimes(0);
+        header.setBname("broker-a");
+        RemotingCommand request = RemotingCommand.createRequestCommand(RequestCode.SEND_MESSAGE, header);
+        request.setSerializeTypeCurrentRPC(serializeType);
+        request.addExtField("AccessKey", "rocketmq2");
+        return request;
+    }
+
+    private static int headerLength(ByteBuf frame) {
+        return RemotingCommand.getHeaderLength(frame.getInt(frame.readerIndex() + 4));
+    }
+
+    private static RemotingCommand decodeFrame(ByteBuf frame,
+        RocketMQV2Serializable.DecodeDictionary dictionary) throws Exception {
+        frame.skipBytes(4);
+        return RemotingCommand.decode(frame, dictionary);
+    }
+
+    @Test
+    public void testEncodeAndDecode() throws Exception {
+        RemotingCommand request = newSendMessageRequest(SerializeType.ROCKETMQ_V2);
+        request.setRemark("remark");
+        RocketMQV2Serializable.EncodeDictionary encodeDictionary = new RocketMQV2Serializable.EncodeDictionary();
+        RocketMQV2Serializable.DecodeDictionary decodeDictionary = new RocketMQV2Serializable.DecodeDictionary();
+
+        ByteBuf frame = Unpooled.buffer();
+        request.fastEncodeHeader(frame, encodeDictionary);
+        assertThat(RemotingCommand.getProtocolType(frame.getInt(4))).isEqualTo(SerializeType.ROCKETMQ_V2);
+        RemotingCommand decoded = decodeFrame(frame, decodeDictionary);
+
+        assertThat(decoded.getCode()).isEqualTo(RequestCode.SEND_MESSAGE);
+        assertThat(decoded.getOpaque()).isEqualTo(request.getOpaque());
+        assertThat(decoded.getFlag()).isEqualTo(request.getFlag());
+        assertThat(decoded.getRemark()).isEqualTo("remark");
+        assertThat(decoded.getSerializeTypeCurrentRPC()).isEqualTo(SerializeType.ROCKETMQ_V2);
+
+        request.makeCustomHeaderToNet();
+        assertThat(decoded.getExtFields()).isEqualTo(request.getExtFields());
+        SendMessageRequestHeader header =
+            (SendMessageRequestHeader) decoded.decodeCommandCustomHeader(SendMessageRequestHeader.class);
+        assertThat(header.getBornTimestamp()).isEqualTo(1700000000000L);
+        assertThat(header.getTopic()).isEqualTo("TopicTest");
+    }
+
+    @Test
+    public void testEmptyAndNullString() throws Exception {
+        RocketMQV2Serializable.EncodeDictionary encodeDictionary = new RocketMQV2Serializable.EncodeDictionary();
+        RocketMQV2Serializable.DecodeDictionary decodeDictionary = new RocketMQV2Serializable.DecodeDictionary();
+        RemotingCommand request = newSendMessageRequest(SerializeType.ROCKETMQ_V2);
+        request.setRemark("");
+        request.addExtField("emptyField", "");
+        ByteBuf frame = Unpooled.buffer();
+        request.fastEncodeHeader(frame, encodeDictionary);
+        assertThat(RemotingCommand.getProtocolType(frame.getInt(4))).isEqualTo(SerializeType.ROCKETMQ_V2);
+        RemotingCommand decoded = decodeFrame(frame, decodeDictionary);
+        assertThat(decoded.getRemark()).isEmpty();
+        assertThat(decoded.getExtFields()).containsEntry("emptyField", "");
+
+        frame = Unpooled.buffer();
+        newSendMessageRequest(SerializeType.ROCKETMQ_V2).fastEncodeHeader(frame, encodeDictionary);
+        assertThat(decodeFrame(frame, decodeDictionary).getRemark()).isNull();
+    }
+
+    @Test
+    public void testDictionaryShrinksHeader() throws Exception {
+        RocketMQV2Serializable.EncodeDictionary encodeDictionary = new RocketMQV2Serializable.EncodeDictionary();
+        RocketMQV2Serializable.DecodeDictionary decodeDictionary = new RocketMQV2Serializable.DecodeDictionary();
+
+        ByteBuf v1Frame = Unpooled.buffer();
+        newSendMessageRequest(SerializeType.ROCKETMQ).fastEncodeHeader(v1Frame);
+        ByteBuf firstFrame = Unpooled.buffer();
+        newSendMessageRequest(SerializeType.ROCKETMQ_V2).fastEncodeHeader(firstFrame, encodeDictionary);
+        ByteBuf secondFrame = Unpooled.buffer();
+        newSendMessageRequest(SerializeType.ROCKETMQ_V2).fastEncodeHeader(secondFrame, encodeDictionary);
+
+        assertThat(headerLength(firstFrame)).isLessThan(headerLength(v1Frame));
+        assertThat(headerLength(secondFrame)).isLessThan(headerLength(firstFrame));
+
+        decodeFrame(firstFrame, decodeDictionary);
+        RemotingCommand decoded = decodeFrame(secondFrame, decodeDictionary);
+        assertThat(decoded.getExtFields().get("producerGroup")).isEqualTo("please_rename_unique_group_name");
+        assertThat(decoded.getExtFields().get("bname")).isEqualTo("broker-a");
+    }
+
+    @Test
+    public void testIsCanonicalLong() {
+        assertThat(RocketMQV2Serializable.isCanonicalLong("0")).isTrue();
+        assertThat(RocketMQV2Serializable.isCanonicalLong("-1")).isTrue();
+        assertThat(RocketMQV2Serializable.isCanonicalLong("9223372036854775807")).isTrue();
+        assertThat(RocketMQV2Serializable.isCanonicalLong("-9223372036854775808")).isTrue();
+        assertThat(RocketMQV2Serializable.isCanonicalLong("9223372036854775808")).isFalse();
+        assertThat(RocketMQV2Serializable.isCanonicalLong("")).isFalse();
+        assertThat(RocketMQV2Serializable.isCanonicalLong("-")).isFalse();
+        assertThat(RocketMQV2Serializable.isCanonicalLong("-0")).isFalse();
+        assertThat(RocketMQV2Serializable.isCanonicalLong("007")).isFalse();
+        assertThat(RocketMQV2Serializable.isCanonicalLong("+7")).isFalse();
+        assertThat(RocketMQV2Serializable.isCanonicalLong("1.0")).isFalse();
+    }
+
+    @Test
+    public void testNegotiateOnConnection() {
+        EmbeddedChannel client = new EmbeddedChannel(new NettyEncoder(), new NettyDecoder());
+        EmbeddedChannel server = new EmbeddedChannel(new NettyEncoder(), new NettyDecoder());
+
+        // the server has not announced anything yet
+        client.writeOutbound(newSendMessageRequest(SerializeType.ROCKETMQ_V2));
+        ByteBuf request = client.readOutbound();
+        assertThat(RemotingCommand.getProtocolType(request.getInt(4))).isEqualTo(SerializeType.ROCKETMQ);
+
+        server.writeInbound(request);
+        RemotingCommand received = server.readInbound();
+        assertThat(received.isSerializeV2Supported()).isTrue();
+
+        RemotingCommand response = RemotingCommand.createResponseCommand(ResponseCode.SUCCESS, null);
+        response.setSerializeTypeCurrentRPC(SerializeType.ROCKETMQ_V2);
+        response.setOpaque(received.getOpaque());
+        server.writeOutbound(response);
+        ByteBuf responseFrame = server.readOutbound();
+        assertThat(RemotingCommand.getProtocolType(responseFrame.getInt(4))).isEqualTo(SerializeType.ROCKETMQ_V2);
+
+        client.writeInbound(responseFrame);
+        RemotingCommand receivedResponse = client.readInbound();
+        assertThat(receivedResponse.getOpaque()).isEqualTo(received.getOpaque());
+
+        client.writeOutbound(newSendMessageRequest(SerializeType.ROCKETMQ_V2));
+        request = client.readOutbound();
+        assertThat(RemotingCommand.getProtocolType(request.getInt(4))).isEqualTo(SerializeType.ROCKETMQ_V2);
+        server.writeInbound(request);
+        received = server.readInbound();
+        assertThat(received.getExtFields().get("topic")).isEqualTo("TopicTest");
+    }
+}
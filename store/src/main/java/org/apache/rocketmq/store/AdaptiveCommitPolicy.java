@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.store;
+
+import org.apache.rocketmq.store.logfile.DefaultMappedFile;
+
+/**
+ * Follows the smoothed write rate of the commit log to pick the pages and the wait interval of the next commit, so
+ * that commits are batched under heavy writes and issued early under light writes.
+ */
+class AdaptiveCommitPolicy {
+    /**
+     * Aims at about one commit per this many milliseconds under steady writes
+     */
+    static final int TARGET_COMMIT_INTERVAL_MS = 1;
+
+    private static final double SMOOTHING_FACTOR = 0.2;
+
+    private long lastWrotePosition = -1;
+    private long lastSampleTimestamp = 0;
+    private double wroteBytesPerMs = 0;
+    private int leastPages;
+    private int interval;
+
+    /**
+     * Sample the wrote position and plan the next commit, call {@link #getLeastPages()} and {@link #getInterval()}
+     * for the result.
+     */
+    public void sample(final long wrotePosition, final long now, final int minPages, final int maxPages,
+        final int maxInterval) {
+        if (now > this.lastSampleTimestamp) {
+            if (this.lastWrotePosition >= 0) {
+                double rate = Math.max(wrotePosition - this.lastWrotePosition, 0) / (double) (now - this.lastSampleTimestamp);
+                this.wroteBytesPerMs += SMOOTHING_FACTOR * (rate - this.wroteBytesPerMs);
+            }
+            this.lastWrotePosition = wrotePosition;
+            this.lastSampleTimestamp = now;
+        }
+        int pages = (int) (this.wroteBytesPerMs * TARGET_COMMIT_INTERVAL_MS / DefaultMappedFile.OS_PAGE_SIZE);
+        this.leastPages = Math.max(minPages, Math.min(pages, maxPages));
+        // wait about as long as the writes take to fill the pages, no longer than configured
+        this.interval = maxInterval;
+        if (this.wroteBytesPerMs > 0) {
+            double fillMs = Math.ceil((double) this.leastPages * DefaultMappedFile.OS_PAGE_SIZE / this.wroteBytesPerMs);
+            this.interval = (int) Math.max(TARGET_COMMIT_INTERVAL_MS, Math.min(maxInterval, fillMs));
+        }
+    }
+
+    public int getLeastPages() {
+        return leastPages;
+    }
+
+    public int getInterval() {
+        return interval;
+    }
+
+    public double getWroteBytesPerMs() {
+        return wroteBytesPerMs;
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.store;
+
+import com.sun.jna.NativeLong;
+import com.sun.jna.Pointer;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.apache.rocketmq.common.MixAll;
+import org.apache.rocketmq.common.ThreadFactoryImpl;
+import org.apache.rocketmq.common.constant.LoggerName;
+import org.apache.rocketmq.logging.org.slf4j.Logger;
+import org.apache.rocketmq.logging.org.slf4j.LoggerFactory;
+import org.apache.rocketmq.store.config.MessageStoreConfig;
+import org.apache.rocketmq.store.logfile.MappedFile;
+import org.apache.rocketmq.store.queue.ConsumeQueueInterface;
+import org.apache.rocketmq.store.queue.CqUnit;
+import org.apache.rocketmq.store.queue.ReferredIterator;
+import org.apache.rocketmq.store.util.LibC;
+import sun.nio.ch.DirectBuffer;
+
+/**
+ * Serves pulls that start at commit log data which is not resident in page cache on a dedicated pool, so the
+ * pull threads do not block on page faults. The commit log ranges of the pull are coalesced and loaded with
+ * positional file channel reads before the result is built from the mapped files.
+ */
+public class ColdReadService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoggerName.STORE_LOGGER_NAME);
+
+    private final DefaultMessageStore messageStore;
+    private final MessageStoreConfig storeConfig;
+    private final ExecutorService coldReadExecutor;
+    private final ThreadLocal<ByteBuffer> readBuffer;
+    private int pageSize = -1;
+
+    public ColdReadService(final DefaultMessageStore messageStore) {
+        this.messageStore = messageStore;
+        this.storeConfig = messageStore.getMessageStoreConfig();
+        this.coldReadExecutor = new ThreadPoolExecutor(
+            storeConfig.getColdReadThreadPoolNums(),
+            storeConfig.getColdReadThreadPoolNums(),
+            1000 * 60,
+            TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(storeConfig.getColdReadThreadPoolQueueCapacity()),
+            new ThreadFactoryImpl("ColdReadThread_", messageStore.getBrokerIdentity()),
+            new ThreadPoolExecutor.AbortPolicy());
+        this.readBuffer = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(storeConfig.getColdReadCoalesceMaxBytes()));
+        try {
+            if (!MixAll.isWindows()) {
+                this.pageSize = LibC.INSTANCE.getpagesize();
+            }
+        } catch (Throwable e) {
+            LOGGER.error("ColdReadService get page size failed, cold read is disabled", e);
+        }
+    }
+
+    public boolean isEnable() {
+        return storeConfig.isColdReadAsyncEnable() && pageSize > 0;
+    }
+
+    /**
+     * Whether the commit log data of the message at offset of the queue is not in page cache.
+     */
+    public boolean isColdRead(final String topic, final int queueId, final long offset) {
+        if (!isEnable()) {
+            return false;
+        }
+        ConsumeQueueInterface consumeQueue = messageStore.findConsumeQueue(topic, queueId);
+        if (null == consumeQueue) {
+            return false;
+        }
+        ReferredIterator<CqUnit> iterator = consumeQueue.iterateFrom(offset);
+        if (null == iterator) {
+            return false;
+        }
+        try {
+            if (!iterator.hasNext()) {
+                return false;
+            }
+            CqUnit cqUnit = iterator.next();
+            return !isResident(cqUnit.getPos(), cqUnit.getSize());
+        } finally {
+            iterator.release();
+        }
+    }
+
+    public CompletableFuture<GetMessageResult> getMessageAsync(final String topic, final int queueId,
+        final long offset, final int maxMsgNums, final int maxTotalMsgSize, final Supplier<GetMessageResult> getMessage) {
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                loadRanges(topic, queueId, offset, maxMsgNums, maxTotalMsgSize);
+                return getMessage.get();
+            }, coldReadExecutor);
+        } catch (RejectedExecutionException e) {
+            LOGGER.warn("Cold read pool is busy, read topic: {} queueId: {} offset: {} in place", topic, queueId, offset);
+            return CompletableFuture.completedFuture(getMessage.get());
+        }
+    }
+
+    private boolean isResident(final long offsetPy, final int size) {
+        MappedFile mappedFile = messageStore.getCommitLog().getMappedFileQueue().findMappedFileByOffset(offsetPy);
+        if (null == mappedFile || !mappedFile.hold()) {
+            return true;
+        }
+        try {
+            int pos = (int) (offsetPy % mappedFile.getFileSize());
+            long address = ((DirectBuffer) mappedFile.getMappedByteBuffer()).address() + pos;
+            long alignedAddress = address - address % pageSize;
+            long length = address + size - alignedAddress;
+            byte[] vec = new byte[(int) ((length + pageSize - 1) / pageSize)];
+            if (LibC.INSTANCE.mincore(new Pointer(alignedAddress), new NativeLong(length), vec) != 0) {
+                return true;
+            }
+            for (byte page : vec) {
+                if ((page & 1) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            mappedFile.release();
+        }
+    }
+
+    private void loadRanges(final String topic, final int queueId, final long offset, final int maxMsgNums,
+        final int maxTotalMsgSize) {
+        ConsumeQueueInterface consumeQueue = messageStore.findConsumeQueue(topic, queueId);
+        if (null == consumeQueue) {
+            return;
+        }
+        ReferredIterator<CqUnit> iterator = consumeQueue.iterateFrom(offset);
+        if (null == iterator) {
+            return;
+        }
+        List<long[]> ranges = new ArrayList<>(maxMsgNums);
+        try {
+            long totalSize = 0;
+            int msgNums = 0;
+            while (iterator.hasNext() && msgNums < maxMsgNums && totalSize < maxTotalMsgSize) {
+                CqUnit cqUnit = iterator.next();
+                ranges.add(new long[] {cqUnit.getPos(), cqUnit.getSize()});
+                totalSize += cqUnit.getSize();
+                msgNums += cqUnit.getBatchNum();
+            }
+        } finally {
+            iterator.release();
+        }
+        for (long[] range : coalesce(ranges, storeConfig.getMappedFileSizeCommitLog(),
+            storeConfig.getColdReadCoalesceGapBytes(), storeConfig.getColdReadCoalesceMaxBytes())) {
+            read(range[0], (int) range[1]);
+        }
+    }
+
+    /**
+     * Merge the ranges of {offset, size} in offset order whose gap is at most maxGap into ranges that do not cross
+     * a file and are at most maxSize long.
+     */
+    static List<long[]> coalesce(final List<long[]> ranges, final int fileSize, final int maxGap, final int maxSize) {
+        List<long[]> merged = new ArrayList<>();
+        long[] current = null;
+        for (long[] range : ranges) {
+            if (null != current
+                && range[0] >= current[0]
+                && range[0] - (current[0] + current[1]) <= maxGap
+                && range[0] / fileSize == current[0] / fileSize
+                && range[0] + range[1] - current[0] <= maxSize) {
+                current[1] = Math.max(current[1], range[0] + range[1] - current[0]);
+                continue;
+            }
+            current = new long[] {range[0], range[1]};
+            merged.add(current);
+        }
+        return merged;
+    }
+
+    private void read(final long offsetPy, final int size) {
+        MappedFile mappedFile = messageStore.getCommitLog().getMappedFileQueue().findMappedFileByOffset(offsetPy);
+        if (null == mappedFile || !mappedFile.hold()) {
+            return;
+        }
+        try {
+            ByteBuffer buffer = readBuffer.get();
+            long pos = offsetPy % mappedFile.getFileSize();
+            long end = pos + size;
+            while (pos < end) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), end - pos));
+                int read = mappedFile.getFileChannel().read(buffer, pos);
+                if (read <= 0) {
+                    break;
+                }
+                pos += read;
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Cold read commitlog offset: {} size: {} failed", offsetPy, size, e);
+        } finally {
+            mappedFile.release();
+        }
+    }
+
+    public void shutdown() {
+        this.coldReadExecutor.shutdown();
+        try {
+            this.coldReadExecutor.awaitTermination(3, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            LOGGER.warn("ColdReadService shutdown interrupted", e);
+        }
+    }
+}
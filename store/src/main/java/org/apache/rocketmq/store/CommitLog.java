@@ -56,8 +56,10 @@ import org.apache.rocketmq.logging.org.slf4j.LoggerFactory;
 import org.apache.rocketmq.store.MessageExtEncoder.PutMessageThreadLocal;
 import org.apache.rocketmq.store.config.BrokerRole;
 import org.apache.rocketmq.store.config.FlushDiskType;
+import org.apache.rocketmq.store.config.MessageStoreConfig;
 import org.apache.rocketmq.store.ha.HAService;
 import org.apache.rocketmq.store.ha.autoswitch.AutoSwitchHAService;
+import org.apache.rocketmq.store.logfile.DefaultMappedFile;
 import org.apache.rocketmq.store.logfile.MappedFile;
 import org.apache.rocketmq.store.util.LibC;
 import sun.nio.ch.DirectBuffer;
@@ -71,6 +73,12 @@ public class CommitLog implements Swappable {
     protected static final Logger log = LoggerFactory.getLogger(LoggerName.STORE_LOGGER_NAME);
     // End of file empty MAGIC CODE cbd43194
     public final static int BLANK_MAGIC_CODE = -875286124;
+    // File at the end of the minimum fixed length empty, TOTALSIZE + MAGICCODE
+    public final static int END_FILE_MIN_BLANK_LENGTH = 4 + 4;
+    // Follows the blank magic code of a blank inside a file, the room left by a failed concurrent append cbd43195
+    public final static int FILLER_MAGIC_CODE = -875286123;
+    // TOTALSIZE + MAGICCODE + FILLER MAGICCODE
+    public final static int FILLER_MIN_LENGTH = 4 + 4 + 4;
     protected final MappedFileQueue mappedFileQueue;
     protected final DefaultMessageStore defaultMessageStore;
 
@@ -88,6 +96,8 @@ public class CommitLog implements Swappable {
 
     protected final TopicQueueLock topicQueueLock;
 
+    private final boolean multiLaneAppend;
+
     private volatile Set<String> fullStorePaths = Collections.emptySet();
 
     private final FlushDiskWatcher flushDiskWatcher;
@@ -124,6 +134,8 @@ public class CommitLog implements Swappable {
 
         this.topicQueueLock = new TopicQueueLock();
 
+        this.multiLaneAppend = messageStore.getMessageStoreConfig().isEnableMultiLaneAppend();
+
         this.commitLogSize = messageStore.getMessageStoreConfig().getMappedFileSizeCommitLog();
     }
 
@@ -392,6 +404,27 @@ public class CommitLog implements Swappable {
         return this.checkMessageAndReturnSize(byteBuffer, checkCRC, checkDupInfo, true);
     }
 
+    /**
+     * Whether the blank record at pos is a filler inside the file rather than the blank at its end, readers skip a
+     * filler and go on with the next record.
+     */
+    public static boolean isFiller(final ByteBuffer byteBuffer, final int pos, final int totalSize) {
+        return totalSize >= FILLER_MIN_LENGTH && pos + totalSize <= byteBuffer.limit()
+            && byteBuffer.getInt(pos + END_FILE_MIN_BLANK_LENGTH) == FILLER_MAGIC_CODE;
+    }
+
+    /**
+     * Blank out [pos, pos + length) of a file, which ends the file if it reaches the end of it, and is a filler
+     * otherwise.
+     */
+    public static void writeBlank(final ByteBuffer byteBuffer, final int pos, final int length, final boolean fileEnd) {
+        byteBuffer.putInt(pos, length);
+        byteBuffer.putInt(pos + 4, BLANK_MAGIC_CODE);
+        if (!fileEnd) {
+            byteBuffer.putInt(pos + END_FILE_MIN_BLANK_LENGTH, FILLER_MAGIC_CODE);
+        }
+    }
+
     private void doNothingForDeadCode(final Object obj) {
         if (obj != null) {
             log.debug(String.valueOf(obj.hashCode()));
@@ -416,6 +449,12 @@ public class CommitLog implements Swappable {
                 case MessageDecoder.MESSAGE_MAGIC_CODE_V2:
                     break;
                 case BLANK_MAGIC_CODE:
+                    if (isFiller(byteBuffer, byteBuffer.position() - END_FILE_MIN_BLANK_LENGTH, totalSize)) {
+                        byteBuffer.position(byteBuffer.position() + totalSize - END_FILE_MIN_BLANK_LENGTH);
+                        DispatchRequest filler = new DispatchRequest(totalSize, true /* success */);
+                        filler.setFiller(true);
+                        return filler;
+                    }
                     return new DispatchRequest(0, true /* success */);
                 default:
                     log.warn("found a illegal magic code 0x" + Integer.toHexString(magicCode));
@@ -649,63 +688,73 @@ public class CommitLog implements Swappable {
                 mappedFile = mappedFiles.get(index);
             }
 
-            ByteBuffer byteBuffer = mappedFile.sliceByteBuffer();
             long processOffset = mappedFile.getFileFromOffset();
-            long mappedFileOffset = 0;
             long lastValidMsgPhyOffset = processOffset;
             long lastConfirmValidMsgPhyOffset = processOffset;
-            // abnormal recover require dispatching
-            boolean doDispatch = true;
-            while (true) {
-                DispatchRequest dispatchRequest = this.checkMessageAndReturnSize(byteBuffer, checkCRCOnRecover, checkDupInfo);
-                int size = dispatchRequest.getMsgSize();
-
-                if (dispatchRequest.isSuccess()) {
-                    // Normal data
-                    if (size > 0) {
-                        lastValidMsgPhyOffset = processOffset + mappedFileOffset;
-                        mappedFileOffset += size;
-
-                        if (this.defaultMessageStore.getMessageStoreConfig().isDuplicationEnable() || this.defaultMessageStore.getBrokerConfig().isEnableControllerMode()) {
-                            if (dispatchRequest.getCommitLogOffset() + size <= this.defaultMessageStore.getCommitLog().getConfirmOffset()) {
+            if (this.isParallelRecoverEnable()) {
+                ParallelCommitLogRecover parallelRecover = new ParallelCommitLogRecover(this.defaultMessageStore, this, checkCRCOnRecover);
+                processOffset = parallelRecover.recover(mappedFiles, index);
+                lastValidMsgPhyOffset = parallelRecover.getLastValidMsgPhyOffset();
+            } else {
+                ByteBuffer byteBuffer = mappedFile.sliceByteBuffer();
+                long mappedFileOffset = 0;
+                // abnormal recover require dispatching
+                boolean doDispatch = true;
+                while (true) {
+                    DispatchRequest dispatchRequest = this.checkMessageAndReturnSize(byteBuffer, checkCRCOnRecover, checkDupInfo);
+                    int size = dispatchRequest.getMsgSize();
+
+                    if (dispatchRequest.isSuccess()) {
+                        // Normal data
+                        if (size > 0) {
+                            lastValidMsgPhyOffset = processOffset + mappedFileOffset;
+                            mappedFileOffset += size;
+
+                            if (dispatchRequest.isFiller()) {
+                                // the room of a failed append, nothing to dispatch
+                                continue;
+                            }
+                            if (this.defaultMessageStore.getMessageStoreConfig().isDuplicationEnable() || this.defaultMessageStore.getBrokerConfig().isEnableControllerMode()) {
+                                if (dispatchRequest.getCommitLogOffset() + size <= this.defaultMessageStore.getCommitLog().getConfirmOffset()) {
+                                    this.getMessageStore().onCommitLogDispatch(dispatchRequest, doDispatch, mappedFile, true, false);
+                                    lastConfirmValidMsgPhyOffset = dispatchRequest.getCommitLogOffset() + size;
+                                }
+                            } else {
                                 this.getMessageStore().onCommitLogDispatch(dispatchRequest, doDispatch, mappedFile, true, false);
-                                lastConfirmValidMsgPhyOffset = dispatchRequest.getCommitLogOffset() + size;
                             }
-                        } else {
-                            this.getMessageStore().onCommitLogDispatch(dispatchRequest, doDispatch, mappedFile, true, false);
                         }
-                    }
-                    // Come the end of the file, switch to the next file
-                    // Since the return 0 representatives met last hole, this can
-                    // not be included in truncate offset
-                    else if (size == 0) {
-                        this.getMessageStore().onCommitLogDispatch(dispatchRequest, doDispatch, mappedFile, true, true);
-                        index++;
-                        if (index >= mappedFiles.size()) {
-                            // The current branch under normal circumstances should
-                            // not happen
-                            log.info("recover physics file over, last mapped file " + mappedFile.getFileName());
-                            break;
-                        } else {
-                            mappedFile = mappedFiles.get(index);
-                            byteBuffer = mappedFile.sliceByteBuffer();
-                            processOffset = mappedFile.getFileFromOffset();
-                            mappedFileOffset = 0;
-                            log.info("recover next physics file, " + mappedFile.getFileName());
+                        // Come the end of the file, switch to the next file
+                        // Since the return 0 representatives met last hole, this can
+                        // not be included in truncate offset
+                        else if (size == 0) {
+                            this.getMessageStore().onCommitLogDispatch(dispatchRequest, doDispatch, mappedFile, true, true);
+                            index++;
+                            if (index >= mappedFiles.size()) {
+                                // The current branch under normal circumstances should
+                                // not happen
+                                log.info("recover physics file over, last mapped file " + mappedFile.getFileName());
+                                break;
+                            } else {
+                                mappedFile = mappedFiles.get(index);
+                                byteBuffer = mappedFile.sliceByteBuffer();
+                                processOffset = mappedFile.getFileFromOffset();
+                                mappedFileOffset = 0;
+                                log.info("recover next physics file, " + mappedFile.getFileName());
+                            }
                         }
-                    }
-                } else {
+                    } else {
 
-                    if (size > 0) {
-                        log.warn("found a half message at {}, it will be truncated.", processOffset + mappedFileOffset);
-                    }
+                        if (size > 0) {
+                            log.warn("found a half message at {}, it will be truncated.", processOffset + mappedFileOffset);
+                        }
 
-                    log.info("recover physics file end, " + mappedFile.getFileName() + " pos=" + byteBuffer.position());
-                    break;
+                        log.info("recover physics file end, " + mappedFile.getFileName() + " pos=" + byteBuffer.position());
+                        break;
+                    }
                 }
-            }
 
-            processOffset += mappedFileOffset;
+                processOffset += mappedFileOffset;
+            }
             if (this.defaultMessageStore.getBrokerConfig().isEnableControllerMode()) {
                 if (this.defaultMessageStore.getConfirmOffset() < this.defaultMessageStore.getMinPhyOffset()) {
                     log.error("confirmOffset {} is less than minPhyOffset {}, correct confirmOffset to minPhyOffset", this.defaultMessageStore.getConfirmOffset(), this.defaultMessageStore.getMinPhyOffset());
@@ -736,6 +785,19 @@ public class CommitLog implements Swappable {
         }
     }
 
+    /**
+     * Parallel recover dispatches the consume queues out of commit log order, so it is not used when the dispatch
+     * depends on the confirm offset or one message may be dispatched to several queues.
+     */
+    private boolean isParallelRecoverEnable() {
+        MessageStoreConfig messageStoreConfig = this.defaultMessageStore.getMessageStoreConfig();
+        return messageStoreConfig.isEnableParallelRecover()
+            && !messageStoreConfig.isDuplicationEnable()
+            && !this.defaultMessageStore.getBrokerConfig().isEnableControllerMode()
+            && !messageStoreConfig.isEnableMultiDispatch()
+            && !messageStoreConfig.isEnableLmq();
+    }
+
     public void truncateDirtyFiles(long phyOffset) {
         if (phyOffset <= this.getFlushedWhere()) {
             this.mappedFileQueue.setFlushedWhere(phyOffset);
@@ -906,69 +968,92 @@ public class CommitLog implements Swappable {
             msg.setEncodedBuff(putMessageThreadLocal.getEncoder().getEncoderBuffer());
             PutMessageContext putMessageContext = new PutMessageContext(topicQueueKey);
 
-            putMessageLock.lock(); //spin or ReentrantLock ,depending on store config
-            try {
-                long beginLockTimestamp = this.defaultMessageStore.getSystemClock().now();
-                this.beginTimeInLock = beginLockTimestamp;
-
-                // Here settings are stored timestamp, in order to ensure an orderly
-                // global
+            if (this.multiLaneAppend) {
+                long beginAppendTimestamp = this.defaultMessageStore.getSystemClock().now();
                 if (!defaultMessageStore.getMessageStoreConfig().isDuplicationEnable()) {
-                    msg.setStoreTimestamp(beginLockTimestamp);
-                }
-
-                if (null == mappedFile || mappedFile.isFull()) {
-                    mappedFile = this.mappedFileQueue.getLastMappedFile(0); // Mark: NewFile may be cause noise
-                    if (isCloseReadAhead()) {
-                        setFileReadMode(mappedFile, LibC.MADV_RANDOM);
-                    }
+                    msg.setStoreTimestamp(beginAppendTimestamp);
                 }
-                if (null == mappedFile) {
-                    log.error("create mapped file1 error, topic: " + msg.getTopic() + " clientAddr: " + msg.getBornHostString());
-                    beginTimeInLock = 0;
+                result = appendMultiLane(msg, mappedFile, putMessageContext, true);
+                if (null == result) {
+                    log.error("create mapped file error, topic: " + msg.getTopic() + " clientAddr: " + msg.getBornHostString());
                     return CompletableFuture.completedFuture(new PutMessageResult(PutMessageStatus.CREATE_MAPPED_FILE_FAILED, null));
                 }
-
-                result = mappedFile.appendMessage(msg, this.appendMessageCallback, putMessageContext);
                 switch (result.getStatus()) {
                     case PUT_OK:
-                        onCommitLogAppend(msg, result, mappedFile);
-                        break;
-                    case END_OF_FILE:
-                        onCommitLogAppend(msg, result, mappedFile);
-                        unlockMappedFile = mappedFile;
-                        // Create a new file, re-write the message
-                        mappedFile = this.mappedFileQueue.getLastMappedFile(0);
-                        if (null == mappedFile) {
-                            // XXX: warn and notify me
-                            log.error("create mapped file2 error, topic: " + msg.getTopic() + " clientAddr: " + msg.getBornHostString());
-                            beginTimeInLock = 0;
-                            return CompletableFuture.completedFuture(new PutMessageResult(PutMessageStatus.CREATE_MAPPED_FILE_FAILED, result));
-                        }
-                        if (isCloseReadAhead()) {
-                            setFileReadMode(mappedFile, LibC.MADV_RANDOM);
-                        }
-                        result = mappedFile.appendMessage(msg, this.appendMessageCallback, putMessageContext);
-                        if (AppendMessageStatus.PUT_OK.equals(result.getStatus())) {
-                            onCommitLogAppend(msg, result, mappedFile);
-                        }
                         break;
                     case MESSAGE_SIZE_EXCEEDED:
                     case PROPERTIES_SIZE_EXCEEDED:
-                        beginTimeInLock = 0;
                         return CompletableFuture.completedFuture(new PutMessageResult(PutMessageStatus.MESSAGE_ILLEGAL, result));
                     case UNKNOWN_ERROR:
-                        beginTimeInLock = 0;
-                        return CompletableFuture.completedFuture(new PutMessageResult(PutMessageStatus.UNKNOWN_ERROR, result));
                     default:
-                        beginTimeInLock = 0;
                         return CompletableFuture.completedFuture(new PutMessageResult(PutMessageStatus.UNKNOWN_ERROR, result));
                 }
+                elapsedTimeInLock = this.defaultMessageStore.getSystemClock().now() - beginAppendTimestamp;
+            } else {
+                putMessageLock.lock(); //spin or ReentrantLock ,depending on store config
+                try {
+                    long beginLockTimestamp = this.defaultMessageStore.getSystemClock().now();
+                    this.beginTimeInLock = beginLockTimestamp;
 
-                elapsedTimeInLock = this.defaultMessageStore.getSystemClock().now() - beginLockTimestamp;
-                beginTimeInLock = 0;
-            } finally {
-                putMessageLock.unlock();
+                    // Here settings are stored timestamp, in order to ensure an orderly
+                    // global
+                    if (!defaultMessageStore.getMessageStoreConfig().isDuplicationEnable()) {
+                        msg.setStoreTimestamp(beginLockTimestamp);
+                    }
+
+                    if (null == mappedFile || mappedFile.isFull()) {
+                        mappedFile = this.mappedFileQueue.getLastMappedFile(0); // Mark: NewFile may be cause noise
+                        if (isCloseReadAhead()) {
+                            setFileReadMode(mappedFile, LibC.MADV_RANDOM);
+                        }
+                    }
+                    if (null == mappedFile) {
+                        log.error("create mapped file1 error, topic: " + msg.getTopic() + " clientAddr: " + msg.getBornHostString());
+                        beginTimeInLock = 0;
+                        return CompletableFuture.completedFuture(new PutMessageResult(PutMessageStatus.CREATE_MAPPED_FILE_FAILED, null));
+                    }
+
+                    result = mappedFile.appendMessage(msg, this.appendMessageCallback, putMessageContext);
+                    switch (result.getStatus()) {
+                        case PUT_OK:
+                            onCommitLogAppend(msg, result, mappedFile);
+                            break;
+                        case END_OF_FILE:
+                            onCommitLogAppend(msg, result, mappedFile);
+                            unlockMappedFile = mappedFile;
+                            // Create a new file, re-write the message
+                            mappedFile = this.mappedFileQueue.getLastMappedFile(0);
+                            if (null == mappedFile) {
+                                // XXX: warn and notify me
+                                log.error("create mapped file2 error, topic: " + msg.getTopic() + " clientAddr: " + msg.getBornHostString());
+                                beginTimeInLock = 0;
+                                return CompletableFuture.completedFuture(new PutMessageResult(PutMessageStatus.CREATE_MAPPED_FILE_FAILED, result));
+                            }
+                            if (isCloseReadAhead()) {
+                                setFileReadMode(mappedFile, LibC.MADV_RANDOM);
+                            }
+                            result = mappedFile.appendMessage(msg, this.appendMessageCallback, putMessageContext);
+                            if (AppendMessageStatus.PUT_OK.equals(result.getStatus())) {
+                                onCommitLogAppend(msg, result, mappedFile);
+                            }
+                            break;
+                        case MESSAGE_SIZE_EXCEEDED:
+                        case PROPERTIES_SIZE_EXCEEDED:
+                            beginTimeInLock = 0;
+                            return CompletableFuture.completedFuture(new PutMessageResult(PutMessageStatus.MESSAGE_ILLEGAL, result));
+                        case UNKNOWN_ERROR:
+                            beginTimeInLock = 0;
+                            return CompletableFuture.completedFuture(new PutMessageResult(PutMessageStatus.UNKNOWN_ERROR, result));
+                        default:
+                            beginTimeInLock = 0;
+                            return CompletableFuture.completedFuture(new PutMessageResult(PutMessageStatus.UNKNOWN_ERROR, result));
+                    }
+
+                    elapsedTimeInLock = this.defaultMessageStore.getSystemClock().now() - beginLockTimestamp;
+                    beginTimeInLock = 0;
+                } finally {
+                    putMessageLock.unlock();
+                }
             }
             // Increase queue offset when messages are successfully written
             if (AppendMessageStatus.PUT_OK.equals(result.getStatus())) {
@@ -1073,60 +1158,81 @@ public class CommitLog implements Swappable {
         try {
             defaultMessageStore.assignOffset(messageExtBatch);
 
-            putMessageLock.lock();
-            try {
-                long beginLockTimestamp = this.defaultMessageStore.getSystemClock().now();
-                this.beginTimeInLock = beginLockTimestamp;
-
-                // Here settings are stored timestamp, in order to ensure an orderly
-                // global
-                messageExtBatch.setStoreTimestamp(beginLockTimestamp);
-
-                if (null == mappedFile || mappedFile.isFull()) {
-                    mappedFile = this.mappedFileQueue.getLastMappedFile(0); // Mark: NewFile may be cause noise
-                    if (isCloseReadAhead()) {
-                        setFileReadMode(mappedFile, LibC.MADV_RANDOM);
-                    }
-                }
-                if (null == mappedFile) {
-                    log.error("Create mapped file1 error, topic: {} clientAddr: {}", messageExtBatch.getTopic(), messageExtBatch.getBornHostString());
-                    beginTimeInLock = 0;
+            if (this.multiLaneAppend) {
+                long beginAppendTimestamp = this.defaultMessageStore.getSystemClock().now();
+                messageExtBatch.setStoreTimestamp(beginAppendTimestamp);
+                result = appendMultiLane(messageExtBatch, mappedFile, putMessageContext, false);
+                if (null == result) {
+                    log.error("Create mapped file error, topic: {} clientAddr: {}", messageExtBatch.getTopic(), messageExtBatch.getBornHostString());
                     return CompletableFuture.completedFuture(new PutMessageResult(PutMessageStatus.CREATE_MAPPED_FILE_FAILED, null));
                 }
-
-                result = mappedFile.appendMessages(messageExtBatch, this.appendMessageCallback, putMessageContext);
                 switch (result.getStatus()) {
                     case PUT_OK:
                         break;
-                    case END_OF_FILE:
-                        unlockMappedFile = mappedFile;
-                        // Create a new file, re-write the message
-                        mappedFile = this.mappedFileQueue.getLastMappedFile(0);
-                        if (null == mappedFile) {
-                            // XXX: warn and notify me
-                            log.error("Create mapped file2 error, topic: {} clientAddr: {}", messageExtBatch.getTopic(), messageExtBatch.getBornHostString());
-                            beginTimeInLock = 0;
-                            return CompletableFuture.completedFuture(new PutMessageResult(PutMessageStatus.CREATE_MAPPED_FILE_FAILED, result));
-                        }
-                        if (isCloseReadAhead()) {
-                            setFileReadMode(mappedFile, LibC.MADV_RANDOM);
-                        }
-                        result = mappedFile.appendMessages(messageExtBatch, this.appendMessageCallback, putMessageContext);
-                        break;
                     case MESSAGE_SIZE_EXCEEDED:
                     case PROPERTIES_SIZE_EXCEEDED:
-                        beginTimeInLock = 0;
                         return CompletableFuture.completedFuture(new PutMessageResult(PutMessageStatus.MESSAGE_ILLEGAL, result));
                     case UNKNOWN_ERROR:
                     default:
-                        beginTimeInLock = 0;
                         return CompletableFuture.completedFuture(new PutMessageResult(PutMessageStatus.UNKNOWN_ERROR, result));
                 }
+                elapsedTimeInLock = this.defaultMessageStore.getSystemClock().now() - beginAppendTimestamp;
+            } else {
+                putMessageLock.lock();
+                try {
+                    long beginLockTimestamp = this.defaultMessageStore.getSystemClock().now();
+                    this.beginTimeInLock = beginLockTimestamp;
 
-                elapsedTimeInLock = this.defaultMessageStore.getSystemClock().now() - beginLockTimestamp;
-                beginTimeInLock = 0;
-            } finally {
-                putMessageLock.unlock();
+                    // Here settings are stored timestamp, in order to ensure an orderly
+                    // global
+                    messageExtBatch.setStoreTimestamp(beginLockTimestamp);
+
+                    if (null == mappedFile || mappedFile.isFull()) {
+                        mappedFile = this.mappedFileQueue.getLastMappedFile(0); // Mark: NewFile may be cause noise
+                        if (isCloseReadAhead()) {
+                            setFileReadMode(mappedFile, LibC.MADV_RANDOM);
+                        }
+                    }
+                    if (null == mappedFile) {
+                        log.error("Create mapped file1 error, topic: {} clientAddr: {}", messageExtBatch.getTopic(), messageExtBatch.getBornHostString());
+                        beginTimeInLock = 0;
+                        return CompletableFuture.completedFuture(new PutMessageResult(PutMessageStatus.CREATE_MAPPED_FILE_FAILED, null));
+                    }
+
+                    result = mappedFile.appendMessages(messageExtBatch, this.appendMessageCallback, putMessageContext);
+                    switch (result.getStatus()) {
+                        case PUT_OK:
+                            break;
+                        case END_OF_FILE:
+                            unlockMappedFile = mappedFile;
+                            // Create a new file, re-write the message
+                            mappedFile = this.mappedFileQueue.getLastMappedFile(0);
+                            if (null == mappedFile) {
+                                // XXX: warn and notify me
+                                log.error("Create mapped file2 error, topic: {} clientAddr: {}", messageExtBatch.getTopic(), messageExtBatch.getBornHostString());
+                                beginTimeInLock = 0;
+                                return CompletableFuture.completedFuture(new PutMessageResult(PutMessageStatus.CREATE_MAPPED_FILE_FAILED, result));
+                            }
+                            if (isCloseReadAhead()) {
+                                setFileReadMode(mappedFile, LibC.MADV_RANDOM);
+                            }
+                            result = mappedFile.appendMessages(messageExtBatch, this.appendMessageCallback, putMessageContext);
+                            break;
+                        case MESSAGE_SIZE_EXCEEDED:
+                        case PROPERTIES_SIZE_EXCEEDED:
+                            beginTimeInLock = 0;
+                            return CompletableFuture.completedFuture(new PutMessageResult(PutMessageStatus.MESSAGE_ILLEGAL, result));
+                        case UNKNOWN_ERROR:
+                        default:
+                            beginTimeInLock = 0;
+                            return CompletableFuture.completedFuture(new PutMessageResult(PutMessageStatus.UNKNOWN_ERROR, result));
+                    }
+
+                    elapsedTimeInLock = this.defaultMessageStore.getSystemClock().now() - beginLockTimestamp;
+                    beginTimeInLock = 0;
+                } finally {
+                    putMessageLock.unlock();
+                }
             }
 
             // Increase queue offset when messages are successfully written
@@ -1154,6 +1260,65 @@ public class CommitLog implements Swappable {
         return handleDiskFlushAndHA(putMessageResult, messageExtBatch, needAckNums, needHandleHA);
     }
 
+    /**
+     * Append a pre-encoded message without holding {@link #putMessageLock} during the memory copy, so that several
+     * sender threads copy into the mapped file at once. The lock is only taken to roll to a new file.
+     *
+     * @return the append result, or null if no mapped file could be created
+     */
+    protected AppendMessageResult appendMultiLane(final MessageExtBrokerInner msg, MappedFile mappedFile,
+        final PutMessageContext putMessageContext, final boolean notifyAppend) {
+        MappedFile fullMappedFile = null;
+        while (true) {
+            if (null == mappedFile) {
+                mappedFile = rollMappedFile(fullMappedFile);
+                if (null == mappedFile) {
+                    return null;
+                }
+            }
+            AppendMessageResult result = mappedFile.appendMessageConcurrently(msg, this.appendMessageCallback, putMessageContext);
+            if (!AppendMessageStatus.END_OF_FILE.equals(result.getStatus())) {
+                if (notifyAppend && AppendMessageStatus.PUT_OK.equals(result.getStatus())) {
+                    onCommitLogAppend(msg, result, mappedFile);
+                }
+                return result;
+            }
+            if (result.getWroteBytes() > 0) {
+                // this lane wrote the blank tail of the file
+                if (notifyAppend) {
+                    onCommitLogAppend(msg, result, mappedFile);
+                }
+                if (this.defaultMessageStore.getMessageStoreConfig().isWarmMapedFileEnable()) {
+                    this.defaultMessageStore.unlockMappedFile(mappedFile);
+                }
+            }
+            fullMappedFile = mappedFile;
+            mappedFile = null;
+        }
+    }
+
+    private MappedFile rollMappedFile(final MappedFile fullMappedFile) {
+        putMessageLock.lock();
+        try {
+            MappedFile lastMappedFile = this.mappedFileQueue.getLastMappedFile();
+            if (lastMappedFile != null && lastMappedFile != fullMappedFile) {
+                // already rolled by another lane
+                return lastMappedFile;
+            }
+            // lanes reserved before the tail may still be copying, wait until the whole file is published
+            while (fullMappedFile != null && !fullMappedFile.isFull()) {
+                Thread.yield();
+            }
+            MappedFile mappedFile = this.mappedFileQueue.getLastMappedFile(0);
+            if (mappedFile != null && isCloseReadAhead()) {
+                setFileReadMode(mappedFile, LibC.MADV_RANDOM);
+            }
+            return mappedFile;
+        } finally {
+            putMessageLock.unlock();
+        }
+    }
+
     private int calcNeedAckNums(int inSyncReplicas) {
         int needAckNums = this.defaultMessageStore.getMessageStoreConfig().getInSyncReplicas();
         if (this.defaultMessageStore.getMessageStoreConfig().isEnableAutoInSyncReplicas()) {
@@ -1349,6 +1514,8 @@ public class CommitLog implements Swappable {
 
         private long lastCommitTimestamp = 0;
 
+        private final AdaptiveCommitPolicy adaptiveCommitPolicy = new AdaptiveCommitPolicy();
+
         @Override
         public String getServiceName() {
             if (CommitLog.this.defaultMessageStore.getBrokerConfig().isInBrokerContainer()) {
@@ -1357,16 +1524,39 @@ public class CommitLog implements Swappable {
             return CommitRealTimeService.class.getSimpleName();
         }
 
+        /**
+         * Commit the files one after another in a single round when the earlier ones are filled up.
+         */
+        private boolean commitFilledFiles(final int commitDataLeastPages) {
+            boolean result = CommitLog.this.mappedFileQueue.commit(commitDataLeastPages);
+            while (!result
+                && CommitLog.this.mappedFileQueue.getCommittedWhere() % CommitLog.this.mappedFileQueue.getMappedFileSize() == 0
+                && CommitLog.this.mappedFileQueue.remainHowManyDataToCommit() > 0) {
+                if (CommitLog.this.mappedFileQueue.commit(commitDataLeastPages)) {
+                    break;
+                }
+            }
+            return result;
+        }
+
         @Override
         public void run() {
             CommitLog.log.info(this.getServiceName() + " service started");
             while (!this.isStopped()) {
-                int interval = CommitLog.this.defaultMessageStore.getMessageStoreConfig().getCommitIntervalCommitLog();
+                MessageStoreConfig messageStoreConfig = CommitLog.this.defaultMessageStore.getMessageStoreConfig();
+                int interval = messageStoreConfig.getCommitIntervalCommitLog();
+
+                int commitDataLeastPages = messageStoreConfig.getCommitCommitLogLeastPages();
 
-                int commitDataLeastPages = CommitLog.this.defaultMessageStore.getMessageStoreConfig().getCommitCommitLogLeastPages();
+                int commitDataThoroughInterval = messageStoreConfig.getCommitCommitLogThoroughInterval();
 
-                int commitDataThoroughInterval =
-                    CommitLog.this.defaultMessageStore.getMessageStoreConfig().getCommitCommitLogThoroughInterval();
+                boolean adaptive = messageStoreConfig.isCommitCommitLogAdaptive();
+                if (adaptive) {
+                    this.adaptiveCommitPolicy.sample(CommitLog.this.mappedFileQueue.getMaxWrotePosition(),
+                        System.currentTimeMillis(), commitDataLeastPages, messageStoreConfig.getCommitCommitLogMaxPages(), interval);
+                    commitDataLeastPages = this.adaptiveCommitPolicy.getLeastPages();
+                    interval = this.adaptiveCommitPolicy.getInterval();
+                }
 
                 long begin = System.currentTimeMillis();
                 if (begin >= (this.lastCommitTimestamp + commitDataThoroughInterval)) {
@@ -1375,11 +1565,20 @@ public class CommitLog implements Swappable {
                 }
 
                 try {
-                    boolean result = CommitLog.this.mappedFileQueue.commit(commitDataLeastPages);
+                    long beginNanos = System.nanoTime();
+                    long committedWhere = CommitLog.this.mappedFileQueue.getCommittedWhere();
+                    boolean result = adaptive ? this.commitFilledFiles(commitDataLeastPages)
+                        : CommitLog.this.mappedFileQueue.commit(commitDataLeastPages);
                     long end = System.currentTimeMillis();
                     if (!result) {
                         this.lastCommitTimestamp = end; // result = false means some data committed.
                         CommitLog.this.flushManager.wakeUpFlush();
+                        if (adaptive) {
+                            CommitLog.this.getMessageStore().getPerfCounter().flowOnce("COMMIT_DATA_TIME_US",
+                                (int) TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - beginNanos));
+                            CommitLog.this.getMessageStore().getPerfCounter().flowOnce("COMMIT_DATA_PAGES",
+                                (int) ((CommitLog.this.mappedFileQueue.getCommittedWhere() - committedWhere) / DefaultMappedFile.OS_PAGE_SIZE));
+                        }
                     }
                     CommitLog.this.getMessageStore().getPerfCounter().flowOnce("COMMIT_DATA_TIME_MS", (int) (end - begin));
                     if (end - begin > 500) {
@@ -1738,15 +1937,6 @@ public class CommitLog implements Swappable {
     }
 
     class DefaultAppendMessageCallback implements AppendMessageCallback {
-        // File at the end of the minimum fixed length empty
-        private static final int END_FILE_MIN_BLANK_LENGTH = 4 + 4;
-        // Store the message content
-        private final ByteBuffer msgStoreItemMemory;
-
-        DefaultAppendMessageCallback() {
-            this.msgStoreItemMemory = ByteBuffer.allocate(END_FILE_MIN_BLANK_LENGTH);
-        }
-
         public AppendMessageResult doAppend(final long fileFromOffset, final ByteBuffer byteBuffer, final int maxBlank,
             final MessageExtBrokerInner msgInner, PutMessageContext putMessageContext) {
             // STORETIMESTAMP + STOREHOSTADDRESS + OFFSET <br>
@@ -1789,15 +1979,14 @@ public class CommitLog implements Swappable {
 
             // Determines whether there is sufficient free space
             if ((msgLen + END_FILE_MIN_BLANK_LENGTH) > maxBlank) {
-                this.msgStoreItemMemory.clear();
+                // Write directly to the target buffer, multi-lane appenders may claim file tails concurrently
                 // 1 TOTALSIZE
-                this.msgStoreItemMemory.putInt(maxBlank);
+                byteBuffer.putInt(maxBlank);
                 // 2 MAGICCODE
-                this.msgStoreItemMemory.putInt(CommitLog.BLANK_MAGIC_CODE);
+                byteBuffer.putInt(CommitLog.BLANK_MAGIC_CODE);
                 // 3 The remaining space may be any value
                 // Here the length of the specially set maxBlank
                 final long beginTimeMills = CommitLog.this.defaultMessageStore.now();
-                byteBuffer.put(this.msgStoreItemMemory.array(), 0, 8);
                 return new AppendMessageResult(AppendMessageStatus.END_OF_FILE, wroteOffset,
                     maxBlank, /* only wrote 8 bytes, but declare wrote maxBlank for compute write position */
                     msgIdSupplier, msgInner.getStoreTimestamp(),
@@ -1873,17 +2062,15 @@ public class CommitLog implements Swappable {
                 totalMsgLen += msgLen;
                 // Determines whether there is sufficient free space
                 if ((totalMsgLen + END_FILE_MIN_BLANK_LENGTH) > maxBlank) {
-                    this.msgStoreItemMemory.clear();
-                    // 1 TOTALSIZE
-                    this.msgStoreItemMemory.putInt(maxBlank);
-                    // 2 MAGICCODE
-                    this.msgStoreItemMemory.putInt(CommitLog.BLANK_MAGIC_CODE);
-                    // 3 The remaining space may be any value
                     //ignore previous read
                     messagesByteBuff.reset();
                     // Here the length of the specially set maxBlank
                     byteBuffer.reset(); //ignore the previous appended messages
-                    byteBuffer.put(this.msgStoreItemMemory.array(), 0, 8);
+                    // 1 TOTALSIZE
+                    byteBuffer.putInt(maxBlank);
+                    // 2 MAGICCODE
+                    byteBuffer.putInt(CommitLog.BLANK_MAGIC_CODE);
+                    // 3 The remaining space may be any value
                     return new AppendMessageResult(AppendMessageStatus.END_OF_FILE, wroteOffset, maxBlank, msgIdSupplier, messageExtBatch.getStoreTimestamp(),
                         beginQueueOffset, CommitLog.this.defaultMessageStore.now() - beginTimeMills);
                 }
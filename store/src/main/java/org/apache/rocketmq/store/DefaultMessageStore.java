@@ -131,6 +131,10 @@ public class DefaultMessageStore implements MessageStore {
 
     private final IndexService indexService;
 
+    private final ColdReadService coldReadService;
+
+    private final ReadAheadService readAheadService;
+
     private final AllocateMappedFileService allocateMappedFileService;
 
     private ReputMessageService reputMessageService;
@@ -229,6 +233,8 @@ public class DefaultMessageStore implements MessageStore {
         this.correctLogicOffsetService = new CorrectLogicOffsetService();
         this.storeStatsService = new StoreStatsService(getBrokerIdentity());
         this.indexService = new IndexService(this);
+        this.coldReadService = new ColdReadService(this);
+        this.readAheadService = new ReadAheadService(this);
 
         if (!messageStoreConfig.isEnableDLegerCommitLog() && !this.messageStoreConfig.isDuplicationEnable()) {
             if (brokerConfig.isEnableControllerMode()) {
@@ -478,6 +484,8 @@ public class DefaultMessageStore implements MessageStore {
             }
 
             this.storeStatsService.shutdown();
+            this.coldReadService.shutdown();
+            this.readAheadService.shutdown();
             this.commitLog.shutdown();
             this.reputMessageService.shutdown();
             // dispatch-related services must be shut down after reputMessageService
@@ -757,7 +765,7 @@ public class DefaultMessageStore implements MessageStore {
     @Override
     public CompletableFuture<GetMessageResult> getMessageAsync(String group, String topic,
         int queueId, long offset, int maxMsgNums, MessageFilter messageFilter) {
-        return CompletableFuture.completedFuture(getMessage(group, topic, queueId, offset, maxMsgNums, messageFilter));
+        return getMessageAsync(group, topic, queueId, offset, maxMsgNums, MAX_PULL_MSG_SIZE, messageFilter);
     }
 
     @Override
@@ -918,6 +926,11 @@ public class DefaultMessageStore implements MessageStore {
                 long memory = (long) (StoreUtil.TOTAL_PHYSICAL_MEMORY_SIZE
                     * (this.messageStoreConfig.getAccessMessageInMemoryMaxRatio() / 100.0));
                 getResult.setSuggestPullingFromSlave(diff > memory);
+
+                if (GetMessageStatus.FOUND == status) {
+                    this.readAheadService.onPulled(group, topic, queueId, offset, nextBeginOffset,
+                        estimateInMemByCommitOffset(maxPhyOffsetPulling, maxOffsetPy));
+                }
             }
         } else {
             status = GetMessageStatus.NO_MATCHED_LOGIC_QUEUE;
@@ -947,6 +960,10 @@ public class DefaultMessageStore implements MessageStore {
     @Override
     public CompletableFuture<GetMessageResult> getMessageAsync(String group, String topic,
         int queueId, long offset, int maxMsgNums, int maxTotalMsgSize, MessageFilter messageFilter) {
+        if (!this.shutdown && this.coldReadService.isColdRead(topic, queueId, offset)) {
+            return this.coldReadService.getMessageAsync(topic, queueId, offset, maxMsgNums, maxTotalMsgSize,
+                () -> getMessage(group, topic, queueId, offset, maxMsgNums, maxTotalMsgSize, messageFilter));
+        }
         return CompletableFuture.completedFuture(getMessage(group, topic, queueId, offset, maxMsgNums, maxTotalMsgSize, messageFilter));
     }
 
@@ -2058,7 +2075,7 @@ public class DefaultMessageStore implements MessageStore {
     @Override
     public void onCommitLogDispatch(DispatchRequest dispatchRequest, boolean doDispatch, MappedFile commitLogFile,
         boolean isRecover, boolean isFileEnd) {
-        if (doDispatch && !isFileEnd) {
+        if (doDispatch && !isFileEnd && !dispatchRequest.isFiller()) {
             this.doDispatch(dispatchRequest);
         }
     }
@@ -2799,7 +2816,11 @@ public class DefaultMessageStore implements MessageStore {
                         }
 
                         if (dispatchRequest.isSuccess()) {
-                            if (size > 0) {
+                            if (dispatchRequest.isFiller()) {
+                                // the room of a failed append, nothing to dispatch
+                                this.reputFromOffset += size;
+                                readSize += size;
+                            } else if (size > 0) {
                                 DefaultMessageStore.this.doDispatch(dispatchRequest);
 
                                 if (DefaultMessageStore.this.brokerConfig.isLongPollingEnable()
@@ -2930,7 +2951,9 @@ public class DefaultMessageStore implements MessageStore {
                             while (tmpByteBuffer.hasRemaining()) {
                                 DispatchRequest dispatchRequest = DefaultMessageStore.this.commitLog.checkMessageAndReturnSize(tmpByteBuffer, false, false, false);
                                 if (dispatchRequest.isSuccess()) {
-                                    dispatchRequestList.add(dispatchRequest);
+                                    if (!dispatchRequest.isFiller()) {
+                                        dispatchRequestList.add(dispatchRequest);
+                                    }
                                 } else {
                                     LOGGER.error("[BUG]read total count not equals msg total size.");
                                 }
@@ -2978,24 +3001,33 @@ public class DefaultMessageStore implements MessageStore {
 
         private final List<DispatchRequest[]> dispatchRequestsList = new ArrayList<>();
 
+        private final DispatchPipeline dispatchPipeline;
+
+        public DispatchService() {
+            MessageStoreConfig storeConfig = DefaultMessageStore.this.getMessageStoreConfig();
+            // requests of multi-dispatch and lmq are also written to other queues, which breaks the lane partition
+            if (storeConfig.isEnableDispatchPipeline() && !storeConfig.isEnableMultiDispatch() && !storeConfig.isEnableLmq()) {
+                this.dispatchPipeline = new DispatchPipeline(DefaultMessageStore.this, this::notifyMessageArriving);
+            } else {
+                this.dispatchPipeline = null;
+            }
+        }
+
         // dispatchRequestsList:[
         //      {dispatchRequests:[{dispatchRequest}, {dispatchRequest}]},
         //      {dispatchRequests:[{dispatchRequest}, {dispatchRequest}]}]
-        private void dispatch() {
+        private void dispatch() throws InterruptedException {
             dispatchRequestsList.clear();
             dispatchRequestOrderlyQueue.get(dispatchRequestsList);
             if (!dispatchRequestsList.isEmpty()) {
                 for (DispatchRequest[] dispatchRequests : dispatchRequestsList) {
+                    if (dispatchPipeline != null) {
+                        dispatchPipeline.dispatch(dispatchRequests);
+                    }
                     for (DispatchRequest dispatchRequest : dispatchRequests) {
-                        DefaultMessageStore.this.doDispatch(dispatchRequest);
-                        // wake up long-polling
-                        if (DefaultMessageStore.this.brokerConfig.isLongPollingEnable()
-                                && DefaultMessageStore.this.messageArrivingListener != null) {
-                            DefaultMessageStore.this.messageArrivingListener.arriving(dispatchRequest.getTopic(),
-                                    dispatchRequest.getQueueId(), dispatchRequest.getConsumeQueueOffset() + 1,
-                                    dispatchRequest.getTagsCode(), dispatchRequest.getStoreTimestamp(),
-                                    dispatchRequest.getBitMap(), dispatchRequest.getPropertiesMap());
-                            DefaultMessageStore.this.reputMessageService.notifyMessageArrive4MultiQueue(dispatchRequest);
+                        if (dispatchPipeline == null) {
+                            DefaultMessageStore.this.doDispatch(dispatchRequest);
+                            notifyMessageArriving(dispatchRequest);
                         }
                         if (!DefaultMessageStore.this.getMessageStoreConfig().isDuplicationEnable() &&
                                 DefaultMessageStore.this.getMessageStoreConfig().getBrokerRole() == BrokerRole.SLAVE) {
@@ -3010,6 +3042,41 @@ public class DefaultMessageStore implements MessageStore {
             }
         }
 
+        private void notifyMessageArriving(DispatchRequest dispatchRequest) {
+            // wake up long-polling
+            if (DefaultMessageStore.this.brokerConfig.isLongPollingEnable()
+                    && DefaultMessageStore.this.messageArrivingListener != null) {
+                DefaultMessageStore.this.messageArrivingListener.arriving(dispatchRequest.getTopic(),
+                        dispatchRequest.getQueueId(), dispatchRequest.getConsumeQueueOffset() + 1,
+                        dispatchRequest.getTagsCode(), dispatchRequest.getStoreTimestamp(),
+                        dispatchRequest.getBitMap(), dispatchRequest.getPropertiesMap());
+                DefaultMessageStore.this.reputMessageService.notifyMessageArrive4MultiQueue(dispatchRequest);
+            }
+        }
+
+        /**
+         * @return the bytes handed over to the dispatch pipeline but not dispatched yet
+         */
+        public long behind() {
+            return dispatchPipeline == null ? 0 : dispatchPipeline.behindBytes();
+        }
+
+        @Override
+        public void start() {
+            if (dispatchPipeline != null) {
+                dispatchPipeline.start();
+            }
+            super.start();
+        }
+
+        @Override
+        public void shutdown() {
+            super.shutdown();
+            if (dispatchPipeline != null) {
+                dispatchPipeline.shutdown();
+            }
+        }
+
         @Override
         public void run() {
             DefaultMessageStore.LOGGER.info(this.getServiceName() + " service started");
@@ -3067,6 +3134,11 @@ public class DefaultMessageStore implements MessageStore {
             this.dispatchService.start();
         }
 
+        @Override
+        public long behind() {
+            return super.behind() + this.dispatchService.behind();
+        }
+
         @Override
         public void doReput() {
             if (this.reputFromOffset < DefaultMessageStore.this.commitLog.getMinOffset()) {
@@ -3151,6 +3223,10 @@ public class DefaultMessageStore implements MessageStore {
                 case MessageDecoder.MESSAGE_MAGIC_CODE_V2:
                     break;
                 case MessageDecoder.BLANK_MAGIC_CODE:
+                    if (CommitLog.isFiller(byteBuffer, byteBuffer.position() - CommitLog.END_FILE_MIN_BLANK_LENGTH, totalSize)) {
+                        // dispatched as a part of the batch, which skips it
+                        break;
+                    }
                     return 0;
                 default:
                     return -1;
@@ -0,0 +1,286 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.store;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import org.apache.rocketmq.common.ServiceThread;
+import org.apache.rocketmq.common.constant.LoggerName;
+import org.apache.rocketmq.logging.org.slf4j.Logger;
+import org.apache.rocketmq.logging.org.slf4j.LoggerFactory;
+import org.apache.rocketmq.store.config.BrokerRole;
+import org.apache.rocketmq.store.config.MessageStoreConfig;
+
+/**
+ * Fans the dispatch requests out to worker threads instead of running every dispatcher on the dispatch thread.
+ * <p>
+ * Consume queues are built by lanes partitioned by topic and queue id, so the requests of one queue are still
+ * dispatched in commit log order. The dispatchers placed before the consume queue dispatcher, like the filter bit
+ * map calculation, run in the lanes ahead of building the consume queue, so they may be called concurrently for
+ * different queues. Every dispatcher placed after the consume queue dispatcher, like index building, runs on a
+ * worker of its own and sees all the requests in commit log order.
+ * <p>
+ * As the lanes complete requests out of commit log order, they do not advance the store checkpoint of the consume
+ * queues. It is advanced here to the low watermark of the lanes, the store timestamp up to which every request
+ * handed over has built its consume queue.
+ */
+public class DispatchPipeline {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoggerName.STORE_LOGGER_NAME);
+    private static final int MAX_PENDING_BATCHES = 1024;
+
+    private final DefaultMessageStore messageStore;
+    private final Consumer<DispatchRequest> afterConsumeQueue;
+    private final AtomicLong pendingBatches = new AtomicLong(0);
+    /**
+     * Store timestamp of the last request handed over
+     */
+    private volatile long handedTimestamp = 0;
+    private long checkpointTimestamp = 0;
+    private Worker[] lanes;
+    private Worker[] postWorkers;
+
+    /**
+     * @param afterConsumeQueue called in the lane once the consume queue of the request is built
+     */
+    public DispatchPipeline(final DefaultMessageStore messageStore, final Consumer<DispatchRequest> afterConsumeQueue) {
+        this.messageStore = messageStore;
+        this.afterConsumeQueue = afterConsumeQueue;
+    }
+
+    public void start() {
+        List<CommitLogDispatcher> preDispatchers = new ArrayList<>();
+        List<CommitLogDispatcher> postDispatchers = new ArrayList<>();
+        CommitLogDispatcher consumeQueueDispatcher = null;
+        for (CommitLogDispatcher dispatcher : messageStore.getDispatcherList()) {
+            if (null == consumeQueueDispatcher && dispatcher instanceof DefaultMessageStore.CommitLogDispatcherBuildConsumeQueue) {
+                consumeQueueDispatcher = dispatcher;
+            } else if (null == consumeQueueDispatcher) {
+                preDispatchers.add(dispatcher);
+            } else {
+                postDispatchers.add(dispatcher);
+            }
+        }
+
+        List<CommitLogDispatcher> laneDispatchers = new ArrayList<>(preDispatchers);
+        if (null != consumeQueueDispatcher) {
+            laneDispatchers.add(consumeQueueDispatcher);
+        }
+        int laneNums = Math.max(messageStore.getMessageStoreConfig().getDispatchPipelineLaneNums(), 1);
+        this.lanes = new Worker[laneNums];
+        for (int i = 0; i < laneNums; i++) {
+            this.lanes[i] = new Worker("DispatchLane" + i, laneDispatchers, afterConsumeQueue, true);
+        }
+        this.postWorkers = new Worker[postDispatchers.size()];
+        for (int i = 0; i < postDispatchers.size(); i++) {
+            CommitLogDispatcher dispatcher = postDispatchers.get(i);
+            this.postWorkers[i] = new Worker("Dispatch" + dispatcher.getClass().getSimpleName(),
+                Arrays.asList(dispatcher), null, false);
+        }
+        for (Worker worker : lanes) {
+            worker.start();
+        }
+        for (Worker worker : postWorkers) {
+            worker.start();
+        }
+        LOGGER.info("DispatchPipeline started, lanes: {}, lane dispatchers: {}, post dispatchers: {}",
+            laneNums, laneDispatchers.size(), postDispatchers.size());
+    }
+
+    /**
+     * Hand over a batch of requests in commit log order, blocks when the workers fall too far behind.
+     */
+    @SuppressWarnings("unchecked")
+    public void dispatch(final DispatchRequest[] dispatchRequests) throws InterruptedException {
+        if (dispatchRequests.length == 0) {
+            return;
+        }
+        List<DispatchRequest>[] partitions = new List[lanes.length];
+        long[] partitionBytes = new long[lanes.length];
+        long batchBytes = 0;
+        long batchTimestamp = handedTimestamp;
+        for (DispatchRequest request : dispatchRequests) {
+            request.setDeferCheckpoint(true);
+            int lane = ((request.getTopic().hashCode() * 31 + request.getQueueId()) & Integer.MAX_VALUE) % lanes.length;
+            if (null == partitions[lane]) {
+                partitions[lane] = new ArrayList<>();
+            }
+            partitions[lane].add(request);
+            partitionBytes[lane] += request.getMsgSize();
+            batchBytes += request.getMsgSize();
+            batchTimestamp = Math.max(batchTimestamp, request.getStoreTimestamp());
+        }
+        // count the requests in the lanes before publishing the timestamp, a lane is caught up with it only after
+        // completing them
+        for (int i = 0; i < lanes.length; i++) {
+            if (null != partitions[i]) {
+                lanes[i].handedRequests.addAndGet(partitions[i].size());
+            }
+        }
+        handedTimestamp = batchTimestamp;
+        for (int i = 0; i < lanes.length; i++) {
+            if (null != partitions[i]) {
+                lanes[i].put(partitions[i], partitionBytes[i]);
+            }
+        }
+        List<DispatchRequest> batch = Arrays.asList(dispatchRequests);
+        for (Worker worker : postWorkers) {
+            worker.put(batch, batchBytes);
+        }
+    }
+
+    /**
+     * @return whether every request handed over has been dispatched
+     */
+    public boolean isEmpty() {
+        return pendingBatches.get() == 0;
+    }
+
+    /**
+     * @return the bytes of the requests handed over but not dispatched by every worker yet, positive as long as the
+     * pipeline is not empty
+     */
+    public long behindBytes() {
+        long laneBytes = 0;
+        for (Worker worker : lanes) {
+            laneBytes += worker.pendingBytes.get();
+        }
+        long behind = laneBytes;
+        for (Worker worker : postWorkers) {
+            behind = Math.max(behind, worker.pendingBytes.get());
+        }
+        return isEmpty() ? behind : Math.max(behind, 1);
+    }
+
+    /**
+     * Advance the store checkpoint to the low watermark of the lanes, the last completed request of a lane that is
+     * behind, or the last request handed over if every lane is caught up.
+     */
+    private synchronized void advanceCheckpoint() {
+        long watermark = handedTimestamp;
+        for (Worker lane : lanes) {
+            if (lane.completedRequests.get() != lane.handedRequests.get()) {
+                watermark = Math.min(watermark, lane.completedTimestamp);
+            }
+        }
+        if (watermark <= checkpointTimestamp) {
+            return;
+        }
+        checkpointTimestamp = watermark;
+        MessageStoreConfig storeConfig = messageStore.getMessageStoreConfig();
+        if (storeConfig.getBrokerRole() == BrokerRole.SLAVE || storeConfig.isEnableDLegerCommitLog()) {
+            messageStore.getStoreCheckpoint().setPhysicMsgTimestamp(watermark);
+        }
+        messageStore.getStoreCheckpoint().setLogicsMsgTimestamp(watermark);
+    }
+
+    public void shutdown() {
+        for (Worker worker : lanes) {
+            worker.shutdown();
+        }
+        for (Worker worker : postWorkers) {
+            worker.shutdown();
+        }
+        if (!isEmpty()) {
+            LOGGER.warn("DispatchPipeline shutdown with {} batches not dispatched", pendingBatches.get());
+        }
+    }
+
+    private class Worker extends ServiceThread {
+        private final String name;
+        private final List<CommitLogDispatcher> dispatchers;
+        private final Consumer<DispatchRequest> afterDispatch;
+        private final BlockingQueue<List<DispatchRequest>> queue = new LinkedBlockingQueue<>(MAX_PENDING_BATCHES);
+        private final AtomicLong pendingBytes = new AtomicLong(0);
+        private final boolean lane;
+        private final AtomicLong handedRequests = new AtomicLong(0);
+        private final AtomicLong completedRequests = new AtomicLong(0);
+        private volatile long completedTimestamp = 0;
+
+        Worker(final String name, final List<CommitLogDispatcher> dispatchers,
+            final Consumer<DispatchRequest> afterDispatch, final boolean lane) {
+            this.name = name;
+            this.dispatchers = dispatchers;
+            this.afterDispatch = afterDispatch;
+            this.lane = lane;
+        }
+
+        void put(final List<DispatchRequest> batch, final long batchBytes) throws InterruptedException {
+            pendingBatches.incrementAndGet();
+            pendingBytes.addAndGet(batchBytes);
+            queue.put(batch);
+        }
+
+        private void dispatch(final List<DispatchRequest> batch) {
+            for (DispatchRequest request : batch) {
+                try {
+                    for (CommitLogDispatcher dispatcher : dispatchers) {
+                        dispatcher.dispatch(request);
+                    }
+                    if (null != afterDispatch) {
+                        afterDispatch.accept(request);
+                    }
+                } catch (Throwable e) {
+                    LOGGER.warn(this.getServiceName() + " dispatch has exception. ", e);
+                } finally {
+                    pendingBytes.addAndGet(-request.getMsgSize());
+                    completedTimestamp = request.getStoreTimestamp();
+                    completedRequests.incrementAndGet();
+                }
+            }
+            if (lane) {
+                advanceCheckpoint();
+            }
+            pendingBatches.decrementAndGet();
+        }
+
+        @Override
+        public void run() {
+            LOGGER.info(this.getServiceName() + " service started");
+
+            while (!this.isStopped()) {
+                try {
+                    List<DispatchRequest> batch = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (null != batch) {
+                        dispatch(batch);
+                    }
+                } catch (InterruptedException e) {
+                    LOGGER.warn(this.getServiceName() + " service interrupted. ", e);
+                }
+            }
+
+            for (List<DispatchRequest> batch = queue.poll(); batch != null; batch = queue.poll()) {
+                dispatch(batch);
+            }
+
+            LOGGER.info(this.getServiceName() + " service end");
+        }
+
+        @Override
+        public String getServiceName() {
+            if (messageStore.getBrokerConfig().isInBrokerContainer()) {
+                return messageStore.getBrokerIdentity().getIdentifier() + name;
+            }
+            return name;
+        }
+    }
+}
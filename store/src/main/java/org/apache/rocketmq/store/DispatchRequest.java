@@ -45,6 +45,12 @@ public class DispatchRequest {
 
     private String offsetId;
 
+    // the room of a failed append, see CommitLog#FILLER_MAGIC_CODE
+    private boolean filler;
+
+    // the store checkpoint is advanced by the dispatcher instead of the consume queue, see DispatchPipeline
+    private boolean deferCheckpoint;
+
     public DispatchRequest(
         final String topic,
         final int queueId,
@@ -228,6 +234,22 @@ public class DispatchRequest {
         this.offsetId = offsetId;
     }
 
+    public boolean isFiller() {
+        return filler;
+    }
+
+    public void setFiller(boolean filler) {
+        this.filler = filler;
+    }
+
+    public boolean isDeferCheckpoint() {
+        return deferCheckpoint;
+    }
+
+    public void setDeferCheckpoint(boolean deferCheckpoint) {
+        this.deferCheckpoint = deferCheckpoint;
+    }
+
     @Override
     public String toString() {
         return "DispatchRequest{" +
@@ -0,0 +1,310 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.store;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.rocketmq.common.ThreadFactoryImpl;
+import org.apache.rocketmq.common.constant.LoggerName;
+import org.apache.rocketmq.common.message.MessageDecoder;
+import org.apache.rocketmq.logging.org.slf4j.Logger;
+import org.apache.rocketmq.logging.org.slf4j.LoggerFactory;
+import org.apache.rocketmq.store.logfile.MappedFile;
+import org.apache.rocketmq.store.queue.ConsumeQueueInterface;
+
+/**
+ * Recovers the commit log after an abnormal shutdown with several threads. Message boundaries are walked on the
+ * calling thread and cut into segments, the segments are checked in parallel, and checked segments are dispatched
+ * in commit log order. Consume queues are built by workers partitioned by topic and queue id, so each queue is
+ * still built in order. Messages that a consume queue already holds are skipped, so only the part of each queue
+ * that was not flushed is rebuilt. A message failing to be put into its consume queue is retried, and the recovery
+ * fails if it keeps failing.
+ */
+class ParallelCommitLogRecover {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoggerName.STORE_LOGGER_NAME);
+    private static final int SEGMENT_MSG_NUMS = 4096;
+    private static final int MAX_PENDING_DISPATCH_PER_WORKER = 10000;
+    private static final int CONSUME_QUEUE_DISPATCH_RETRY_TIMES = 3;
+    private static final long CONSUME_QUEUE_DISPATCH_RETRY_INTERVAL_MILLIS = 100;
+
+    private final DefaultMessageStore messageStore;
+    private final CommitLog commitLog;
+    private final boolean checkCRC;
+    private final int threadNums;
+    private final List<CommitLogDispatcher> inlineDispatchers = new ArrayList<>();
+    private CommitLogDispatcher consumeQueueDispatcher;
+    /**
+     * The queues whose rebuilding failed, their later messages are not dispatched so that no queue has a hole
+     */
+    private final Set<String> failedQueues = ConcurrentHashMap.newKeySet();
+    private final AtomicReference<Throwable> dispatchFailure = new AtomicReference<>();
+
+    private List<MappedFile> mappedFiles;
+    private int walkIndex;
+    private int walkPosition;
+    private boolean walkEnd;
+    private long lastValidMsgPhyOffset;
+
+    ParallelCommitLogRecover(final DefaultMessageStore messageStore, final CommitLog commitLog, final boolean checkCRC) {
+        this.messageStore = messageStore;
+        this.commitLog = commitLog;
+        this.checkCRC = checkCRC;
+        this.threadNums = Math.max(messageStore.getMessageStoreConfig().getParallelRecoverThreadNums(), 1);
+        for (CommitLogDispatcher dispatcher : messageStore.getDispatcherList()) {
+            if (dispatcher instanceof DefaultMessageStore.CommitLogDispatcherBuildConsumeQueue) {
+                this.consumeQueueDispatcher = dispatcher;
+            } else {
+                this.inlineDispatchers.add(dispatcher);
+            }
+        }
+    }
+
+    /**
+     * @return the commit log offset where the valid data ends
+     */
+    long recover(final List<MappedFile> mappedFiles, final int fromIndex) {
+        this.mappedFiles = mappedFiles;
+        this.walkIndex = fromIndex;
+        this.walkPosition = 0;
+        this.walkEnd = false;
+        long processOffset = mappedFiles.get(fromIndex).getFileFromOffset();
+        this.lastValidMsgPhyOffset = processOffset;
+
+        ExecutorService checkExecutor = new ThreadPoolExecutor(threadNums, threadNums, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), new ThreadFactoryImpl("RecoverCheckThread_"));
+        ExecutorService[] dispatchExecutors = new ExecutorService[threadNums];
+        for (int i = 0; i < dispatchExecutors.length; i++) {
+            dispatchExecutors[i] = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(MAX_PENDING_DISPATCH_PER_WORKER), new ThreadFactoryImpl("RecoverDispatchThread_" + i + "_"),
+                (r, executor) -> {
+                    try {
+                        executor.getQueue().put(r);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RejectedExecutionException(e);
+                    }
+                });
+        }
+
+        long beginTime = System.currentTimeMillis();
+        long msgNums = 0;
+        Deque<Future<Segment>> checking = new ArrayDeque<>();
+        try {
+            while (true) {
+                while (!walkEnd && checking.size() < threadNums * 2) {
+                    final Segment segment = nextSegment();
+                    checking.add(checkExecutor.submit(() -> check(segment)));
+                }
+                Future<Segment> future = checking.poll();
+                if (null == future) {
+                    break;
+                }
+                Segment segment;
+                try {
+                    segment = future.get();
+                } catch (InterruptedException | ExecutionException e) {
+                    LOGGER.error("Check commitlog segment failed, stop recovering here", e);
+                    break;
+                }
+                dispatch(segment, dispatchExecutors);
+                msgNums += segment.requests.size();
+                processOffset = segment.validEndOffset;
+                if (segment.failed || segment.last || null != dispatchFailure.get()) {
+                    break;
+                }
+            }
+        } finally {
+            for (Future<Segment> future : checking) {
+                future.cancel(true);
+            }
+            checkExecutor.shutdownNow();
+            for (ExecutorService executor : dispatchExecutors) {
+                executor.shutdown();
+            }
+            for (ExecutorService executor : dispatchExecutors) {
+                try {
+                    while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                        LOGGER.info("Waiting for consume queues to be rebuilt");
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    LOGGER.warn("Interrupted when waiting for consume queues to be rebuilt", e);
+                }
+            }
+        }
+        Throwable failure = dispatchFailure.get();
+        if (null != failure) {
+            // fail the load like the sequential recovery does, instead of starting with messages missing in a queue
+            throw new RuntimeException("Rebuild consume queues " + failedQueues + " failed", failure);
+        }
+        LOGGER.info("Parallel recover {} messages end at {}, cost {} ms", msgNums, processOffset,
+            System.currentTimeMillis() - beginTime);
+        return processOffset;
+    }
+
+    long getLastValidMsgPhyOffset() {
+        return lastValidMsgPhyOffset;
+    }
+
+    /**
+     * Cut the next segment by walking the total size and magic code of the messages only, the messages are fully
+     * checked later by {@link #check(Segment)}.
+     */
+    private Segment nextSegment() {
+        MappedFile mappedFile = mappedFiles.get(walkIndex);
+        ByteBuffer byteBuffer = mappedFile.sliceByteBuffer();
+        int fileSize = mappedFile.getFileSize();
+        Segment segment = new Segment(mappedFile, walkPosition);
+        int msgNums = 0;
+        while (msgNums < SEGMENT_MSG_NUMS) {
+            if (walkPosition + 8 > fileSize) {
+                segment.last = true;
+                break;
+            }
+            int totalSize = byteBuffer.getInt(walkPosition);
+            int magicCode = byteBuffer.getInt(walkPosition + 4);
+            if (magicCode == CommitLog.BLANK_MAGIC_CODE && CommitLog.isFiller(byteBuffer, walkPosition, totalSize)) {
+                // the room of a failed append
+                walkPosition += totalSize;
+                continue;
+            }
+            if (magicCode == CommitLog.BLANK_MAGIC_CODE) {
+                segment.endPosition = walkPosition;
+                walkIndex++;
+                walkPosition = 0;
+                if (walkIndex >= mappedFiles.size()) {
+                    LOGGER.info("recover physics file over, last mapped file " + mappedFile.getFileName());
+                    segment.last = true;
+                } else {
+                    LOGGER.info("recover next physics file, " + mappedFiles.get(walkIndex).getFileName());
+                }
+                walkEnd = segment.last;
+                return segment;
+            }
+            if (magicCode != MessageDecoder.MESSAGE_MAGIC_CODE && magicCode != MessageDecoder.MESSAGE_MAGIC_CODE_V2
+                || totalSize <= 0 || walkPosition + totalSize > fileSize) {
+                if (totalSize > 0) {
+                    LOGGER.warn("found a half message at {}, it will be truncated.", mappedFile.getFileFromOffset() + walkPosition);
+                }
+                segment.last = true;
+                break;
+            }
+            walkPosition += totalSize;
+            msgNums++;
+        }
+        segment.endPosition = walkPosition;
+        walkEnd = segment.last;
+        return segment;
+    }
+
+    private Segment check(final Segment segment) {
+        ByteBuffer byteBuffer = segment.mappedFile.sliceByteBuffer();
+        byteBuffer.position(segment.startPosition);
+        long fileFromOffset = segment.mappedFile.getFileFromOffset();
+        while (byteBuffer.position() < segment.endPosition) {
+            int position = byteBuffer.position();
+            DispatchRequest dispatchRequest = commitLog.checkMessageAndReturnSize(byteBuffer, checkCRC, false);
+            if (!dispatchRequest.isSuccess() || dispatchRequest.getMsgSize() <= 0) {
+                LOGGER.info("recover physics file end, " + segment.mappedFile.getFileName() + " pos=" + position);
+                segment.failed = true;
+                segment.validEndOffset = fileFromOffset + position;
+                return segment;
+            }
+            if (!dispatchRequest.isFiller()) {
+                segment.requests.add(dispatchRequest);
+            }
+        }
+        segment.validEndOffset = fileFromOffset + segment.endPosition;
+        return segment;
+    }
+
+    private void dispatch(final Segment segment, final ExecutorService[] dispatchExecutors) {
+        for (DispatchRequest request : segment.requests) {
+            for (CommitLogDispatcher dispatcher : inlineDispatchers) {
+                dispatcher.dispatch(request);
+            }
+            if (null != consumeQueueDispatcher) {
+                int partition = ((request.getTopic().hashCode() * 31 + request.getQueueId()) & Integer.MAX_VALUE)
+                    % dispatchExecutors.length;
+                dispatchExecutors[partition].execute(() -> dispatchToConsumeQueue(request));
+            }
+            lastValidMsgPhyOffset = request.getCommitLogOffset();
+        }
+    }
+
+    private void dispatchToConsumeQueue(final DispatchRequest request) {
+        String queueKey = request.getTopic() + "-" + request.getQueueId();
+        if (failedQueues.contains(queueKey)) {
+            return;
+        }
+        for (int times = 1; ; times++) {
+            try {
+                ConsumeQueueInterface consumeQueue = messageStore.getQueueStore()
+                    .findOrCreateConsumeQueue(request.getTopic(), request.getQueueId());
+                if (request.getCommitLogOffset() < consumeQueue.getMaxPhysicOffset()) {
+                    // already in the consume queue
+                    return;
+                }
+                consumeQueueDispatcher.dispatch(request);
+                return;
+            } catch (Throwable e) {
+                if (times >= CONSUME_QUEUE_DISPATCH_RETRY_TIMES) {
+                    LOGGER.error("Rebuild consume queue {} failed at commitlog offset {}, stop rebuilding it",
+                        queueKey, request.getCommitLogOffset(), e);
+                    failedQueues.add(queueKey);
+                    dispatchFailure.compareAndSet(null, e);
+                    return;
+                }
+                LOGGER.warn("Rebuild consume queue {} failed at commitlog offset {}, retry {} times",
+                    queueKey, request.getCommitLogOffset(), times, e);
+            }
+            try {
+                Thread.sleep(CONSUME_QUEUE_DISPATCH_RETRY_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    static class Segment {
+        private final MappedFile mappedFile;
+        private final int startPosition;
+        private final List<DispatchRequest> requests = new ArrayList<>();
+        private int endPosition;
+        private long validEndOffset;
+        private boolean failed;
+        private boolean last;
+
+        Segment(final MappedFile mappedFile, final int startPosition) {
+            this.mappedFile = mappedFile;
+            this.startPosition = startPosition;
+        }
+    }
+}
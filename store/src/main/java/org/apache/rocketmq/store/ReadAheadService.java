@@ -0,0 +1,207 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.store;
+
+import com.sun.jna.NativeLong;
+import com.sun.jna.Pointer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.rocketmq.common.MixAll;
+import org.apache.rocketmq.common.ThreadFactoryImpl;
+import org.apache.rocketmq.common.constant.LoggerName;
+import org.apache.rocketmq.logging.org.slf4j.Logger;
+import org.apache.rocketmq.logging.org.slf4j.LoggerFactory;
+import org.apache.rocketmq.store.config.MessageStoreConfig;
+import org.apache.rocketmq.store.logfile.MappedFile;
+import org.apache.rocketmq.store.queue.ConsumeQueueInterface;
+import org.apache.rocketmq.store.queue.CqUnit;
+import org.apache.rocketmq.store.queue.ReferredIterator;
+import org.apache.rocketmq.store.util.LibC;
+import sun.nio.ch.DirectBuffer;
+
+/**
+ * Detects consumers that pull a queue sequentially and prefetches the commit log data of the units ahead of them
+ * with madvise(WILLNEED), so catching up consumers do not fault on every message. Pulls of the hot tail are left to
+ * the page cache.
+ */
+public class ReadAheadService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoggerName.STORE_LOGGER_NAME);
+    private static final int SEQUENTIAL_PULL_THRESHOLD = 2;
+    private static final int MAX_ACCESS_STATE_NUM = 100_000;
+    private static final long ACCESS_STATE_EXPIRE_MILLIS = 60 * 1000;
+    private static final long EXPIRE_INTERVAL_MILLIS = 1000;
+
+    private final DefaultMessageStore messageStore;
+    private final MessageStoreConfig storeConfig;
+    private final ExecutorService prefetchExecutor;
+    private final ConcurrentMap<String, AccessState> accessStateTable = new ConcurrentHashMap<>();
+    private final AtomicLong lastExpireTimestamp = new AtomicLong(0);
+    private int pageSize = -1;
+
+    public ReadAheadService(final DefaultMessageStore messageStore) {
+        this.messageStore = messageStore;
+        this.storeConfig = messageStore.getMessageStoreConfig();
+        this.prefetchExecutor = new ThreadPoolExecutor(
+            storeConfig.getReadAheadThreadPoolNums(),
+            storeConfig.getReadAheadThreadPoolNums(),
+            1000 * 60,
+            TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(1024),
+            new ThreadFactoryImpl("ReadAheadThread_", messageStore.getBrokerIdentity()),
+            new ThreadPoolExecutor.AbortPolicy());
+        try {
+            if (!MixAll.isWindows()) {
+                this.pageSize = LibC.INSTANCE.getpagesize();
+            }
+        } catch (Throwable e) {
+            LOGGER.error("ReadAheadService get page size failed, read ahead is disabled", e);
+        }
+    }
+
+    public boolean isEnable() {
+        return storeConfig.isReadAheadEnable() && pageSize > 0;
+    }
+
+    /**
+     * Record a pull of the queue, and prefetch the units after nextBeginOffset once the group is seen pulling the
+     * queue sequentially.
+     *
+     * @param hot whether the pulled data is estimated to be in memory
+     */
+    public void onPulled(final String group, final String topic, final int queueId, final long offset,
+        final long nextBeginOffset, final boolean hot) {
+        if (!isEnable() || null == group) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        String key = group + "@" + topic + "@" + queueId;
+        AccessState state = accessStateTable.get(key);
+        if (null == state) {
+            if (accessStateTable.size() >= MAX_ACCESS_STATE_NUM && !expireAccessStates(now)) {
+                return;
+            }
+            state = accessStateTable.computeIfAbsent(key, k -> new AccessState());
+        }
+        long prefetchFrom;
+        long prefetchTo;
+        synchronized (state) {
+            state.lastAccessTimestamp = now;
+            if (offset == state.nextOffset) {
+                state.sequentialPulls++;
+            } else {
+                state.sequentialPulls = 0;
+                state.prefetchedOffset = -1;
+            }
+            state.nextOffset = nextBeginOffset;
+            int units = storeConfig.getReadAheadUnits();
+            if (hot || state.sequentialPulls < SEQUENTIAL_PULL_THRESHOLD
+                || state.prefetchedOffset - nextBeginOffset > units / 2) {
+                return;
+            }
+            prefetchFrom = Math.max(nextBeginOffset, state.prefetchedOffset);
+            prefetchTo = nextBeginOffset + units;
+            state.prefetchedOffset = prefetchTo;
+        }
+        try {
+            prefetchExecutor.execute(() -> prefetch(topic, queueId, prefetchFrom, (int) (prefetchTo - prefetchFrom)));
+        } catch (RejectedExecutionException ignored) {
+            // read ahead is best effort
+        }
+    }
+
+    /**
+     * Drop the states of the queues not pulled for a while, at most once a second. The queues pulled while the table
+     * is still full are not tracked until some states expire.
+     *
+     * @return whether there is room for a new state
+     */
+    private boolean expireAccessStates(final long now) {
+        long last = lastExpireTimestamp.get();
+        if (now - last < EXPIRE_INTERVAL_MILLIS || !lastExpireTimestamp.compareAndSet(last, now)) {
+            return false;
+        }
+        accessStateTable.values().removeIf(state -> now - state.lastAccessTimestamp > ACCESS_STATE_EXPIRE_MILLIS);
+        return accessStateTable.size() < MAX_ACCESS_STATE_NUM;
+    }
+
+    void prefetch(final String topic, final int queueId, final long offset, final int units) {
+        ConsumeQueueInterface consumeQueue = messageStore.findConsumeQueue(topic, queueId);
+        if (null == consumeQueue) {
+            return;
+        }
+        ReferredIterator<CqUnit> iterator = consumeQueue.iterateFrom(offset);
+        if (null == iterator) {
+            return;
+        }
+        List<long[]> ranges = new ArrayList<>(units);
+        try {
+            for (int i = 0; i < units && iterator.hasNext(); i++) {
+                CqUnit cqUnit = iterator.next();
+                ranges.add(new long[] {cqUnit.getPos(), cqUnit.getSize()});
+            }
+        } finally {
+            iterator.release();
+        }
+        for (long[] range : ColdReadService.coalesce(ranges, storeConfig.getMappedFileSizeCommitLog(),
+            storeConfig.getReadAheadCoalesceGapBytes(), storeConfig.getReadAheadCoalesceMaxBytes())) {
+            willNeed(range[0], (int) range[1]);
+        }
+    }
+
+    private void willNeed(final long offsetPy, final int size) {
+        MappedFile mappedFile = messageStore.getCommitLog().getMappedFileQueue().findMappedFileByOffset(offsetPy);
+        if (null == mappedFile || !mappedFile.hold()) {
+            return;
+        }
+        try {
+            int pos = (int) (offsetPy % mappedFile.getFileSize());
+            long address = ((DirectBuffer) mappedFile.getMappedByteBuffer()).address() + pos;
+            long alignedAddress = address - address % pageSize;
+            long length = Math.min(address + size, address - pos + mappedFile.getFileSize()) - alignedAddress;
+            int ret = LibC.INSTANCE.madvise(new Pointer(alignedAddress), new NativeLong(length), LibC.MADV_WILLNEED);
+            if (ret != 0) {
+                LOGGER.debug("Read ahead commitlog offset: {} size: {} ret: {}", offsetPy, size, ret);
+            }
+        } finally {
+            mappedFile.release();
+        }
+    }
+
+    public void shutdown() {
+        this.prefetchExecutor.shutdown();
+        try {
+            this.prefetchExecutor.awaitTermination(3, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            LOGGER.warn("ReadAheadService shutdown interrupted", e);
+        }
+    }
+
+    static class AccessState {
+        private long nextOffset = -1;
+        private int sequentialPulls = 0;
+        private long prefetchedOffset = -1;
+        private volatile long lastAccessTimestamp;
+    }
+}
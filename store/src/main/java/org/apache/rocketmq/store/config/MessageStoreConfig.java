@@ -80,6 +80,12 @@ public class MessageStoreConfig {
     private boolean timerInterceptDelayLevel = false;
     private int timerMaxDelaySec = 3600 * 24 * 3;
     private boolean timerWheelEnable = true;
+    /**
+     * Keep messages delayed beyond the roll window in coarser minute/hour/day wheels instead of rolling them through
+     * the commit log every roll window. A message is put to the commit log again each time it cascades to a finer
+     * wheel, and delays beyond fileReservedTime are still rolled, so the cascade wheels never outlive the commit log.
+     */
+    private boolean timerEnableHierarchicalWheel = false;
 
     /**
      * 1. Register to broker after (startTime + disappearTimeAfterStart)
@@ -134,6 +140,12 @@ public class MessageStoreConfig {
      */
     private boolean useReentrantLockWhenPutMessage = true;
 
+    /**
+     * Reserve CommitLog space with an atomic position allocator and copy encoded messages outside putMessageLock,
+     * so that several sender threads can append to the same mapped file at once.
+     */
+    private boolean enableMultiLaneAppend = false;
+
     // Whether schedule flush
     @ImportantField
     private boolean flushCommitLogTimed = true;
@@ -164,10 +176,17 @@ public class MessageStoreConfig {
     // This ensures no on-the-wire or on-disk corruption to the messages occurred.
     // This check adds some overhead,so it may be disabled in cases seeking extreme performance.
     private boolean checkCRCOnRecover = true;
+    // Whether check and dispatch the CommitLog with multiple threads when recovering abnormally
+    private boolean enableParallelRecover = false;
+    private int parallelRecoverThreadNums = 4;
     // How many pages are to be flushed when flush CommitLog
     private int flushCommitLogLeastPages = 4;
     // How many pages are to be committed when commit data to file
     private int commitCommitLogLeastPages = 4;
+    // Whether adapt the pages to commit, between commitCommitLogLeastPages and commitCommitLogMaxPages, and the commit
+    // interval, up to commitIntervalCommitLog, to the write rate
+    private boolean commitCommitLogAdaptive = false;
+    private int commitCommitLogMaxPages = 256;
     // Flush page size when the disk in warming state
     private int flushLeastPagesWhenWarmMapedFile = 1024 / 4 * 16;
     // How many pages are to be flushed when flush ConsumeQueue
@@ -190,6 +209,16 @@ public class MessageStoreConfig {
     private int maxHashSlotNum = 5000000;
     private int maxIndexNum = 5000000 * 4;
     private int maxMsgsNumBatch = 64;
+    /**
+     * Build index on a dedicated thread in batches, so that index building does not slow down reput.
+     */
+    private boolean enableBuildIndexAsync = false;
+    /**
+     * Bits per key of the bloom filter kept for each index file, 0 means disabled. Each index file then costs
+     * maxIndexNum * indexBloomFilterBitsPerKey / 8 bytes of heap for as long as it is kept, about 24MB with the
+     * default maxIndexNum and 10 bits per key, so lower maxIndexNum or keep few index files before enabling it.
+     */
+    private int indexBloomFilterBitsPerKey = 0;
     @ImportantField
     private boolean messageIndexSafe = false;
     private int haListenPort = 10912;
@@ -385,6 +414,28 @@ public class MessageStoreConfig {
     private int timerColdDataCheckIntervalMs = 60 * 1000;
     private int sampleSteps = 32;
     private int accessMessageInMemoryHotRatio = 26;
+    /**
+     * Serve pulls starting at commit log data that is not in page cache on a dedicated pool, see ColdReadService.
+     */
+    private boolean coldReadAsyncEnable = false;
+    private int coldReadThreadPoolNums = 8;
+    private int coldReadThreadPoolQueueCapacity = 10000;
+    /**
+     * Commit log ranges of one cold pull closer than this are loaded with one read.
+     */
+    private int coldReadCoalesceGapBytes = 16 * 1024;
+    private int coldReadCoalesceMaxBytes = 1024 * 1024;
+    /**
+     * Prefetch the commit log data ahead of groups pulling a queue sequentially, see ReadAheadService.
+     */
+    private boolean readAheadEnable = false;
+    private int readAheadUnits = 256;
+    private int readAheadThreadPoolNums = 2;
+    /**
+     * Commit log ranges of one prefetch closer than this are advised with one madvise call.
+     */
+    private int readAheadCoalesceGapBytes = 64 * 1024;
+    private int readAheadCoalesceMaxBytes = 4 * 1024 * 1024;
     /**
      * Build ConsumeQueue concurrently with multi-thread
      */
@@ -392,6 +443,14 @@ public class MessageStoreConfig {
 
     private int batchDispatchRequestThreadPoolNums = 16;
 
+    /**
+     * Run the dispatchers on worker threads when building ConsumeQueue concurrently, ConsumeQueue is built by lanes
+     * partitioned by topic and queue id
+     */
+    private boolean enableDispatchPipeline = false;
+
+    private int dispatchPipelineLaneNums = 4;
+
     public boolean isDebugLockEnable() {
         return debugLockEnable;
     }
@@ -616,6 +675,22 @@ public class MessageStoreConfig {
         this.checkCRCOnRecover = checkCRCOnRecover;
     }
 
+    public boolean isEnableParallelRecover() {
+        return enableParallelRecover;
+    }
+
+    public void setEnableParallelRecover(boolean enableParallelRecover) {
+        this.enableParallelRecover = enableParallelRecover;
+    }
+
+    public int getParallelRecoverThreadNums() {
+        return parallelRecoverThreadNums;
+    }
+
+    public void setParallelRecoverThreadNums(int parallelRecoverThreadNums) {
+        this.parallelRecoverThreadNums = parallelRecoverThreadNums;
+    }
+
     public String getStorePathCommitLog() {
         if (storePathCommitLog == null) {
             return storePathRootDir + File.separator + "commitlog";
@@ -947,6 +1022,22 @@ public class MessageStoreConfig {
         this.cleanFileForciblyEnable = cleanFileForciblyEnable;
     }
 
+    public boolean isEnableBuildIndexAsync() {
+        return enableBuildIndexAsync;
+    }
+
+    public void setEnableBuildIndexAsync(boolean enableBuildIndexAsync) {
+        this.enableBuildIndexAsync = enableBuildIndexAsync;
+    }
+
+    public int getIndexBloomFilterBitsPerKey() {
+        return indexBloomFilterBitsPerKey;
+    }
+
+    public void setIndexBloomFilterBitsPerKey(int indexBloomFilterBitsPerKey) {
+        this.indexBloomFilterBitsPerKey = indexBloomFilterBitsPerKey;
+    }
+
     public boolean isMessageIndexSafe() {
         return messageIndexSafe;
     }
@@ -1035,6 +1126,14 @@ public class MessageStoreConfig {
         this.useReentrantLockWhenPutMessage = useReentrantLockWhenPutMessage;
     }
 
+    public boolean isEnableMultiLaneAppend() {
+        return enableMultiLaneAppend;
+    }
+
+    public void setEnableMultiLaneAppend(boolean enableMultiLaneAppend) {
+        this.enableMultiLaneAppend = enableMultiLaneAppend;
+    }
+
     public int getCommitCommitLogLeastPages() {
         return commitCommitLogLeastPages;
     }
@@ -1043,6 +1142,22 @@ public class MessageStoreConfig {
         this.commitCommitLogLeastPages = commitCommitLogLeastPages;
     }
 
+    public boolean isCommitCommitLogAdaptive() {
+        return commitCommitLogAdaptive;
+    }
+
+    public void setCommitCommitLogAdaptive(boolean commitCommitLogAdaptive) {
+        this.commitCommitLogAdaptive = commitCommitLogAdaptive;
+    }
+
+    public int getCommitCommitLogMaxPages() {
+        return commitCommitLogMaxPages;
+    }
+
+    public void setCommitCommitLogMaxPages(int commitCommitLogMaxPages) {
+        this.commitCommitLogMaxPages = commitCommitLogMaxPages;
+    }
+
     public int getCommitCommitLogThoroughInterval() {
         return commitCommitLogThoroughInterval;
     }
@@ -1574,6 +1689,14 @@ public class MessageStoreConfig {
         this.timerWheelEnable = timerWheelEnable;
     }
 
+    public boolean isTimerEnableHierarchicalWheel() {
+        return timerEnableHierarchicalWheel;
+    }
+
+    public void setTimerEnableHierarchicalWheel(boolean timerEnableHierarchicalWheel) {
+        this.timerEnableHierarchicalWheel = timerEnableHierarchicalWheel;
+    }
+
     public boolean isTimerStopDequeue() {
         return timerStopDequeue;
     }
@@ -1663,6 +1786,86 @@ public class MessageStoreConfig {
         this.coldDataScanEnable = coldDataScanEnable;
     }
 
+    public boolean isColdReadAsyncEnable() {
+        return coldReadAsyncEnable;
+    }
+
+    public void setColdReadAsyncEnable(boolean coldReadAsyncEnable) {
+        this.coldReadAsyncEnable = coldReadAsyncEnable;
+    }
+
+    public int getColdReadThreadPoolNums() {
+        return coldReadThreadPoolNums;
+    }
+
+    public void setColdReadThreadPoolNums(int coldReadThreadPoolNums) {
+        this.coldReadThreadPoolNums = coldReadThreadPoolNums;
+    }
+
+    public int getColdReadThreadPoolQueueCapacity() {
+        return coldReadThreadPoolQueueCapacity;
+    }
+
+    public void setColdReadThreadPoolQueueCapacity(int coldReadThreadPoolQueueCapacity) {
+        this.coldReadThreadPoolQueueCapacity = coldReadThreadPoolQueueCapacity;
+    }
+
+    public int getColdReadCoalesceGapBytes() {
+        return coldReadCoalesceGapBytes;
+    }
+
+    public void setColdReadCoalesceGapBytes(int coldReadCoalesceGapBytes) {
+        this.coldReadCoalesceGapBytes = coldReadCoalesceGapBytes;
+    }
+
+    public int getColdReadCoalesceMaxBytes() {
+        return coldReadCoalesceMaxBytes;
+    }
+
+    public void setColdReadCoalesceMaxBytes(int coldReadCoalesceMaxBytes) {
+        this.coldReadCoalesceMaxBytes = coldReadCoalesceMaxBytes;
+    }
+
+    public boolean isReadAheadEnable() {
+        return readAheadEnable;
+    }
+
+    public void setReadAheadEnable(boolean readAheadEnable) {
+        this.readAheadEnable = readAheadEnable;
+    }
+
+    public int getReadAheadUnits() {
+        return readAheadUnits;
+    }
+
+    public void setReadAheadUnits(int readAheadUnits) {
+        this.readAheadUnits = readAheadUnits;
+    }
+
+    public int getReadAheadThreadPoolNums() {
+        return readAheadThreadPoolNums;
+    }
+
+    public void setReadAheadThreadPoolNums(int readAheadThreadPoolNums) {
+        this.readAheadThreadPoolNums = readAheadThreadPoolNums;
+    }
+
+    public int getReadAheadCoalesceGapBytes() {
+        return readAheadCoalesceGapBytes;
+    }
+
+    public void setReadAheadCoalesceGapBytes(int readAheadCoalesceGapBytes) {
+        this.readAheadCoalesceGapBytes = readAheadCoalesceGapBytes;
+    }
+
+    public int getReadAheadCoalesceMaxBytes() {
+        return readAheadCoalesceMaxBytes;
+    }
+
+    public void setReadAheadCoalesceMaxBytes(int readAheadCoalesceMaxBytes) {
+        this.readAheadCoalesceMaxBytes = readAheadCoalesceMaxBytes;
+    }
+
     public int getTimerColdDataCheckIntervalMs() {
         return timerColdDataCheckIntervalMs;
     }
@@ -1710,4 +1913,20 @@ public class MessageStoreConfig {
     public void setBatchDispatchRequestThreadPoolNums(int batchDispatchRequestThreadPoolNums) {
         this.batchDispatchRequestThreadPoolNums = batchDispatchRequestThreadPoolNums;
     }
+
+    public boolean isEnableDispatchPipeline() {
+        return enableDispatchPipeline;
+    }
+
+    public void setEnableDispatchPipeline(boolean enableDispatchPipeline) {
+        this.enableDispatchPipeline = enableDispatchPipeline;
+    }
+
+    public int getDispatchPipelineLaneNums() {
+        return dispatchPipelineLaneNums;
+    }
+
+    public void setDispatchPipelineLaneNums(int dispatchPipelineLaneNums) {
+        this.dispatchPipelineLaneNums = dispatchPipelineLaneNums;
+    }
 }
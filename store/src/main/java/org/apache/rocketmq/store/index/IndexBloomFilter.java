@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.store.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter over the key hashes of one {@link IndexFile}.
+ * <p>
+ * Index units only keep the hash of a key, so testing the hash gives no false negatives compared with
+ * {@link IndexFile#selectPhyOffset}. Bits are written by the single index building thread and read by query threads.
+ */
+public class IndexBloomFilter {
+    private final int numBits;
+    private final int numHashes;
+    private final AtomicLongArray bits;
+
+    public IndexBloomFilter(final int expectedKeys, final int bitsPerKey) {
+        long wanted = Math.max(64L, (long) expectedKeys * bitsPerKey);
+        // round up to whole words, and keep the bit index in int range
+        this.numBits = (int) Math.min((wanted + 63) & ~63L, Integer.MAX_VALUE & ~63);
+        this.numHashes = Math.max(1, Math.min(8, (int) Math.round(bitsPerKey * Math.log(2))));
+        this.bits = new AtomicLongArray(this.numBits >>> 6);
+    }
+
+    public void put(final int keyHash) {
+        int h1 = mix(keyHash);
+        int h2 = mix(h1 ^ 0x9E3779B9) | 1;
+        for (int i = 0; i < this.numHashes; i++) {
+            int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % this.numBits;
+            int word = bit >>> 6;
+            long mask = 1L << (bit & 63);
+            long value = this.bits.get(word);
+            if ((value & mask) == 0) {
+                this.bits.set(word, value | mask);
+            }
+        }
+    }
+
+    public boolean mightContain(final int keyHash) {
+        int h1 = mix(keyHash);
+        int h2 = mix(h1 ^ 0x9E3779B9) | 1;
+        for (int i = 0; i < this.numHashes; i++) {
+            int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % this.numBits;
+            if ((this.bits.get(bit >>> 6) & (1L << (bit & 63))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Persist the filter, {@code indexCount} is stored along so a stale file is detected on load.
+     */
+    public void writeTo(final File file, final int indexCount) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream fileStream = new FileOutputStream(tmp)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileStream));
+            out.writeInt(indexCount);
+            out.writeInt(this.numBits);
+            out.writeInt(this.numHashes);
+            for (int i = 0; i < this.bits.length(); i++) {
+                out.writeLong(this.bits.get(i));
+            }
+            out.flush();
+            fileStream.getFD().sync();
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("rename " + tmp + " to " + file + " failed");
+        }
+    }
+
+    /**
+     * @return true if the file matches this filter's shape and was written at {@code indexCount}
+     */
+    public boolean readFrom(final File file, final int indexCount) throws IOException {
+        if (!file.exists()) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != indexCount || in.readInt() != this.numBits || in.readInt() != this.numHashes) {
+                return false;
+            }
+            for (int i = 0; i < this.bits.length(); i++) {
+                this.bits.set(i, in.readLong());
+            }
+            return true;
+        }
+    }
+
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -16,10 +16,13 @@
  */
 package org.apache.rocketmq.store.index;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import org.apache.rocketmq.common.UtilAll;
 import org.apache.rocketmq.common.constant.LoggerName;
 import org.apache.rocketmq.logging.org.slf4j.Logger;
@@ -45,12 +48,14 @@ public class IndexFile {
      */
     private static int indexSize = 20;
     private static int invalidIndex = 0;
+    static final String BLOOM_FILTER_SUFFIX = ".bloom";
     private final int hashSlotNum;
     private final int indexNum;
     private final int fileTotalSize;
     private final MappedFile mappedFile;
     private final MappedByteBuffer mappedByteBuffer;
     private final IndexHeader indexHeader;
+    private volatile IndexBloomFilter bloomFilter;
 
     public IndexFile(final String fileName, final int hashSlotNum, final int indexNum,
         final long endPhyOffset, final long endTimestamp) throws IOException {
@@ -87,8 +92,36 @@ public class IndexFile {
         this.indexHeader.load();
     }
 
+    /**
+     * Attach a bloom filter over the key hashes of this file, loaded from its sidecar file if that is up to date,
+     * otherwise rebuilt from the index units already written.
+     */
+    public void initBloomFilter(final int bitsPerKey) {
+        IndexBloomFilter filter = new IndexBloomFilter(this.indexNum, bitsPerKey);
+        int indexCount = this.indexHeader.getIndexCount();
+        boolean loaded = false;
+        try {
+            loaded = filter.readFrom(bloomFilterFile(), indexCount);
+        } catch (IOException e) {
+            log.warn("load bloom filter of index file {} failed, rebuild it", this.getFileName(), e);
+        }
+        if (!loaded) {
+            // index units are numbered from 1
+            for (int i = 1; i < indexCount; i++) {
+                int absIndexPos = IndexHeader.INDEX_HEADER_SIZE + this.hashSlotNum * hashSlotSize + i * indexSize;
+                filter.put(this.mappedByteBuffer.getInt(absIndexPos));
+            }
+        }
+        this.bloomFilter = filter;
+    }
+
+    private File bloomFilterFile() {
+        return new File(this.mappedFile.getFileName() + BLOOM_FILTER_SUFFIX);
+    }
+
     public void shutdown() {
         this.flush();
+        this.flushBloomFilter();
         UtilAll.cleanBuffer(this.mappedByteBuffer);
     }
 
@@ -100,6 +133,20 @@ public class IndexFile {
             this.mappedFile.release();
             log.info("flush index file elapsed time(ms) " + (System.currentTimeMillis() - beginTime));
         }
+        if (this.isWriteFull()) {
+            this.flushBloomFilter();
+        }
+    }
+
+    private void flushBloomFilter() {
+        IndexBloomFilter filter = this.bloomFilter;
+        if (filter != null) {
+            try {
+                filter.writeTo(bloomFilterFile(), this.indexHeader.getIndexCount());
+            } catch (IOException e) {
+                log.warn("flush bloom filter of index file {} failed", this.getFileName(), e);
+            }
+        }
     }
 
     public boolean isWriteFull() {
@@ -107,7 +154,14 @@ public class IndexFile {
     }
 
     public boolean destroy(final long intervalForcibly) {
-        return this.mappedFile.destroy(intervalForcibly);
+        boolean destroyed = this.mappedFile.destroy(intervalForcibly);
+        if (destroyed) {
+            File bloomFile = bloomFilterFile();
+            if (bloomFile.exists() && !bloomFile.delete()) {
+                log.warn("delete bloom filter file {} failed", bloomFile);
+            }
+        }
+        return destroyed;
     }
 
     public boolean putKey(final String key, final long phyOffset, final long storeTimestamp) {
@@ -146,6 +200,11 @@ public class IndexFile {
 
                 this.mappedByteBuffer.putInt(absSlotPos, this.indexHeader.getIndexCount());
 
+                IndexBloomFilter filter = this.bloomFilter;
+                if (filter != null) {
+                    filter.put(keyHash);
+                }
+
                 if (this.indexHeader.getIndexCount() <= 1) {
                     this.indexHeader.setBeginPhyOffset(phyOffset);
                     this.indexHeader.setBeginTimestamp(storeTimestamp);
@@ -170,6 +229,80 @@ public class IndexFile {
         return false;
     }
 
+    /**
+     * Put the keys [from, to) of a batch. The index units are appended in one sequential run, and the hash slots are
+     * updated afterwards in slot order, once per slot, instead of a slot read-modify-write per key.
+     *
+     * @return how many keys were put, fewer than to - from if the file is full or fails
+     */
+    public int putKeys(final String[] keys, final long[] phyOffsets, final long[] storeTimestamps, final int from,
+        final int to) {
+        int count = Math.min(to - from, this.indexNum - this.indexHeader.getIndexCount());
+        if (count <= 0) {
+            log.warn("Over index file capacity: index count = " + this.indexHeader.getIndexCount()
+                + "; index max num = " + this.indexNum);
+            return 0;
+        }
+
+        // the last unit of each slot written by this batch
+        TreeMap<Integer, Integer> slotValues = new TreeMap<>();
+        int put = 0;
+        try {
+            for (; put < count; put++) {
+                int keyHash = indexKeyHashMethod(keys[from + put]);
+                int slotPos = keyHash % this.hashSlotNum;
+                Integer slotValue = slotValues.get(slotPos);
+                if (slotValue == null) {
+                    slotValue = this.mappedByteBuffer.getInt(IndexHeader.INDEX_HEADER_SIZE + slotPos * hashSlotSize);
+                    if (slotValue <= invalidIndex || slotValue > this.indexHeader.getIndexCount()) {
+                        slotValue = invalidIndex;
+                    }
+                }
+
+                long phyOffset = phyOffsets[from + put];
+                long storeTimestamp = storeTimestamps[from + put];
+                long timeDiff = (storeTimestamp - this.indexHeader.getBeginTimestamp()) / 1000;
+                if (this.indexHeader.getBeginTimestamp() <= 0 || timeDiff < 0) {
+                    timeDiff = 0;
+                } else if (timeDiff > Integer.MAX_VALUE) {
+                    timeDiff = Integer.MAX_VALUE;
+                }
+
+                int indexCount = this.indexHeader.getIndexCount();
+                int absIndexPos = IndexHeader.INDEX_HEADER_SIZE + this.hashSlotNum * hashSlotSize + indexCount * indexSize;
+                this.mappedByteBuffer.putInt(absIndexPos, keyHash);
+                this.mappedByteBuffer.putLong(absIndexPos + 4, phyOffset);
+                this.mappedByteBuffer.putInt(absIndexPos + 4 + 8, (int) timeDiff);
+                this.mappedByteBuffer.putInt(absIndexPos + 4 + 8 + 4, slotValue);
+                slotValues.put(slotPos, indexCount);
+
+                IndexBloomFilter filter = this.bloomFilter;
+                if (filter != null) {
+                    filter.put(keyHash);
+                }
+
+                if (indexCount <= 1) {
+                    this.indexHeader.setBeginPhyOffset(phyOffset);
+                    this.indexHeader.setBeginTimestamp(storeTimestamp);
+                }
+                if (invalidIndex == slotValue) {
+                    this.indexHeader.incHashSlotCount();
+                }
+                this.indexHeader.incIndexCount();
+                this.indexHeader.setEndPhyOffset(phyOffset);
+                this.indexHeader.setEndTimestamp(storeTimestamp);
+            }
+        } catch (Exception e) {
+            log.error("putKeys exception, Key: " + keys[from + put], e);
+        } finally {
+            // readers only follow slots to units already written
+            for (Map.Entry<Integer, Integer> entry : slotValues.entrySet()) {
+                this.mappedByteBuffer.putInt(IndexHeader.INDEX_HEADER_SIZE + entry.getKey() * hashSlotSize, entry.getValue());
+            }
+        }
+        return put;
+    }
+
     public int indexKeyHashMethod(final String key) {
         int keyHash = key.hashCode();
         int keyHashPositive = Math.abs(keyHash);
@@ -191,6 +324,14 @@ public class IndexFile {
         return this.indexHeader.getEndPhyOffset();
     }
 
+    /**
+     * @return false if no unit of this file can match the key, true if it may
+     */
+    public boolean mayContainKey(final String key) {
+        IndexBloomFilter filter = this.bloomFilter;
+        return filter == null || filter.mightContain(indexKeyHashMethod(key));
+    }
+
     public boolean isTimeMatched(final long begin, final long end) {
         boolean result = begin < this.indexHeader.getBeginTimestamp() && end > this.indexHeader.getEndTimestamp();
         result = result || begin >= this.indexHeader.getBeginTimestamp() && begin <= this.indexHeader.getEndTimestamp();
@@ -21,9 +21,13 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import org.apache.rocketmq.common.AbstractBrokerRunnable;
+import org.apache.rocketmq.common.ServiceThread;
 import org.apache.rocketmq.common.UtilAll;
 import org.apache.rocketmq.common.constant.LoggerName;
 import org.apache.rocketmq.logging.org.slf4j.Logger;
@@ -40,19 +44,33 @@ public class IndexService {
      * Maximum times to attempt index file creation.
      */
     private static final int MAX_TRY_IDX_CREATE = 3;
+    /**
+     * Capacity of the pending requests of the async index builder, reput blocks when it is full.
+     */
+    private static final int MAX_PENDING_BUILD_REQUESTS = 64 * 1024;
+    private static final int MAX_BUILD_BATCH_SIZE = 1024;
     private final DefaultMessageStore defaultMessageStore;
     private final int hashSlotNum;
     private final int indexNum;
+    private final int bloomFilterBitsPerKey;
     private final String storePath;
     private final ArrayList<IndexFile> indexFileList = new ArrayList<>();
     private final ReadWriteLock readWriteLock = new ReentrantReadWriteLock();
+    private final IndexBuildService indexBuildService;
+    /**
+     * Requests are built inline until the async index builder is started, recovery dispatches them from load()
+     * and would block on the full queue before the builder runs.
+     */
+    private volatile boolean indexBuildServiceStarted = false;
 
     public IndexService(final DefaultMessageStore store) {
         this.defaultMessageStore = store;
         this.hashSlotNum = store.getMessageStoreConfig().getMaxHashSlotNum();
         this.indexNum = store.getMessageStoreConfig().getMaxIndexNum();
+        this.bloomFilterBitsPerKey = store.getMessageStoreConfig().getIndexBloomFilterBitsPerKey();
         this.storePath =
             StorePathConfigHelper.getStorePathIndex(defaultMessageStore.getMessageStoreConfig().getStorePathRootDir());
+        this.indexBuildService = store.getMessageStoreConfig().isEnableBuildIndexAsync() ? new IndexBuildService() : null;
     }
 
     public boolean load(final boolean lastExitOK) {
@@ -62,6 +80,9 @@ public class IndexService {
             // ascending order
             Arrays.sort(files);
             for (File file : files) {
+                if (file.getName().contains(IndexFile.BLOOM_FILTER_SUFFIX)) {
+                    continue;
+                }
                 try {
                     IndexFile f = new IndexFile(file.getPath(), this.hashSlotNum, this.indexNum, 0, 0);
                     f.load();
@@ -74,6 +95,10 @@ public class IndexService {
                         }
                     }
 
+                    if (this.bloomFilterBitsPerKey > 0) {
+                        f.initBloomFilter(this.bloomFilterBitsPerKey);
+                    }
+
                     LOGGER.info("load index file OK, " + f.getFileName());
                     this.indexFileList.add(f);
                 } catch (IOException e) {
@@ -85,6 +110,11 @@ public class IndexService {
             }
         }
 
+        if (this.bloomFilterBitsPerKey > 0) {
+            long bytesPerFile = (long) this.indexNum * this.bloomFilterBitsPerKey / 8;
+            LOGGER.info("index bloom filters take {} bytes of heap per index file, {} bytes for {} loaded files",
+                bytesPerFile, bytesPerFile * this.indexFileList.size(), this.indexFileList.size());
+        }
         return true;
     }
 
@@ -180,9 +210,10 @@ public class IndexService {
                         indexLastUpdatePhyoffset = f.getEndPhyOffset();
                     }
 
-                    if (f.isTimeMatched(begin, end)) {
+                    String idxKey = buildKey(topic, key);
+                    if (f.isTimeMatched(begin, end) && f.mayContainKey(idxKey)) {
 
-                        f.selectPhyOffset(phyOffsets, buildKey(topic, key), maxNum, begin, end);
+                        f.selectPhyOffset(phyOffsets, idxKey, maxNum, begin, end);
                     }
 
                     if (f.getBeginTimestamp() < begin) {
@@ -208,50 +239,62 @@ public class IndexService {
     }
 
     public void buildIndex(DispatchRequest req) {
+        if (this.indexBuildService != null && this.indexBuildServiceStarted) {
+            this.indexBuildService.putRequest(req);
+            return;
+        }
         IndexFile indexFile = retryGetAndCreateIndexFile();
         if (indexFile != null) {
-            long endPhyOffset = indexFile.getEndPhyOffset();
-            DispatchRequest msg = req;
-            String topic = msg.getTopic();
-            String keys = msg.getKeys();
-            if (msg.getCommitLogOffset() < endPhyOffset) {
-                return;
-            }
+            buildIndex(indexFile, req);
+        } else {
+            LOGGER.error("build index error, stop building index");
+        }
+    }
 
-            final int tranType = MessageSysFlag.getTransactionValue(msg.getSysFlag());
-            switch (tranType) {
-                case MessageSysFlag.TRANSACTION_NOT_TYPE:
-                case MessageSysFlag.TRANSACTION_PREPARED_TYPE:
-                case MessageSysFlag.TRANSACTION_COMMIT_TYPE:
-                    break;
-                case MessageSysFlag.TRANSACTION_ROLLBACK_TYPE:
-                    return;
-            }
+    /**
+     * @return the index file to write the next request to, or null on failure
+     */
+    private IndexFile buildIndex(IndexFile indexFile, DispatchRequest req) {
+        long endPhyOffset = indexFile.getEndPhyOffset();
+        DispatchRequest msg = req;
+        String topic = msg.getTopic();
+        String keys = msg.getKeys();
+        if (msg.getCommitLogOffset() < endPhyOffset) {
+            return indexFile;
+        }
 
-            if (req.getUniqKey() != null) {
-                indexFile = putKey(indexFile, msg, buildKey(topic, req.getUniqKey()));
-                if (indexFile == null) {
-                    LOGGER.error("putKey error commitlog {} uniqkey {}", req.getCommitLogOffset(), req.getUniqKey());
-                    return;
-                }
+        final int tranType = MessageSysFlag.getTransactionValue(msg.getSysFlag());
+        switch (tranType) {
+            case MessageSysFlag.TRANSACTION_NOT_TYPE:
+            case MessageSysFlag.TRANSACTION_PREPARED_TYPE:
+            case MessageSysFlag.TRANSACTION_COMMIT_TYPE:
+                break;
+            case MessageSysFlag.TRANSACTION_ROLLBACK_TYPE:
+                return indexFile;
+        }
+
+        if (req.getUniqKey() != null) {
+            indexFile = putKey(indexFile, msg, buildKey(topic, req.getUniqKey()));
+            if (indexFile == null) {
+                LOGGER.error("putKey error commitlog {} uniqkey {}", req.getCommitLogOffset(), req.getUniqKey());
+                return null;
             }
+        }
 
-            if (keys != null && keys.length() > 0) {
-                String[] keyset = keys.split(MessageConst.KEY_SEPARATOR);
-                for (int i = 0; i < keyset.length; i++) {
-                    String key = keyset[i];
-                    if (key.length() > 0) {
-                        indexFile = putKey(indexFile, msg, buildKey(topic, key));
-                        if (indexFile == null) {
-                            LOGGER.error("putKey error commitlog {} uniqkey {}", req.getCommitLogOffset(), req.getUniqKey());
-                            return;
-                        }
+        if (keys != null && keys.length() > 0) {
+            String[] keyset = keys.split(MessageConst.KEY_SEPARATOR);
+            for (int i = 0; i < keyset.length; i++) {
+                String key = keyset[i];
+                if (key.length() > 0) {
+                    indexFile = putKey(indexFile, msg, buildKey(topic, key));
+                    if (indexFile == null) {
+                        LOGGER.error("putKey error commitlog {} uniqkey {}", req.getCommitLogOffset(), req.getUniqKey());
+                        return null;
                     }
                 }
             }
-        } else {
-            LOGGER.error("build index error, stop building index");
         }
+        return indexFile;
     }
 
     private IndexFile putKey(IndexFile indexFile, DispatchRequest msg, String idxKey) {
@@ -329,6 +372,9 @@ public class IndexService {
                 indexFile =
                     new IndexFile(fileName, this.hashSlotNum, this.indexNum, lastUpdateEndPhyOffset,
                         lastUpdateIndexTimestamp);
+                if (this.bloomFilterBitsPerKey > 0) {
+                    indexFile.initBloomFilter(this.bloomFilterBitsPerKey);
+                }
                 this.readWriteLock.writeLock().lock();
                 this.indexFileList.add(indexFile);
             } catch (Exception e) {
@@ -375,10 +421,17 @@ public class IndexService {
     }
 
     public void start() {
-
+        if (this.indexBuildService != null) {
+            this.indexBuildService.start();
+            this.indexBuildServiceStarted = true;
+        }
     }
 
     public void shutdown() {
+        if (this.indexBuildService != null) {
+            // builds the pending requests before exit
+            this.indexBuildService.shutdown();
+        }
         try {
             this.readWriteLock.writeLock().lock();
             for (IndexFile f : this.indexFileList) {
@@ -395,4 +448,143 @@ public class IndexService {
             this.readWriteLock.writeLock().unlock();
         }
     }
+
+    /**
+     * Builds index on its own thread. Requests queued by reput are drained in batches, the last index file is
+     * looked up once per batch, and the keys of a batch are put in one run, see {@link IndexFile#putKeys}.
+     */
+    class IndexBuildService extends ServiceThread {
+        private final BlockingQueue<DispatchRequest> requestQueue = new LinkedBlockingQueue<>(MAX_PENDING_BUILD_REQUESTS);
+        private final List<DispatchRequest> batch = new ArrayList<>(MAX_BUILD_BATCH_SIZE);
+        /**
+         * Keys of the batch with the offsets and store timestamps of their messages, in commit log order
+         */
+        private String[] keys = new String[MAX_BUILD_BATCH_SIZE];
+        private long[] phyOffsets = new long[MAX_BUILD_BATCH_SIZE];
+        private long[] storeTimestamps = new long[MAX_BUILD_BATCH_SIZE];
+        private int keyNum;
+
+        public void putRequest(final DispatchRequest request) {
+            try {
+                this.requestQueue.put(request);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LOGGER.warn("Interrupted when putting index build request, commitlog {}", request.getCommitLogOffset());
+            }
+        }
+
+        public int pendingRequests() {
+            return this.requestQueue.size();
+        }
+
+        @Override
+        public String getServiceName() {
+            if (defaultMessageStore.getBrokerConfig().isInBrokerContainer()) {
+                return defaultMessageStore.getBrokerIdentity().getIdentifier() + IndexBuildService.class.getSimpleName();
+            }
+            return IndexBuildService.class.getSimpleName();
+        }
+
+        @Override
+        public void run() {
+            LOGGER.info(this.getServiceName() + " service started");
+
+            while (!this.isStopped()) {
+                try {
+                    DispatchRequest first = this.requestQueue.poll(100, TimeUnit.MILLISECONDS);
+                    if (first != null) {
+                        this.buildBatch(first);
+                    }
+                } catch (InterruptedException e) {
+                    LOGGER.warn(this.getServiceName() + " interrupted", e);
+                } catch (Throwable e) {
+                    LOGGER.error(this.getServiceName() + " service has exception. ", e);
+                }
+            }
+
+            DispatchRequest remaining;
+            while ((remaining = this.requestQueue.poll()) != null) {
+                this.buildBatch(remaining);
+            }
+            LOGGER.info(this.getServiceName() + " service end");
+        }
+
+        /**
+         * Collects the keys of the whole batch first, so that they are put into the index file in one run.
+         */
+        private void buildBatch(final DispatchRequest first) {
+            this.batch.add(first);
+            this.requestQueue.drainTo(this.batch, MAX_BUILD_BATCH_SIZE - 1);
+            try {
+                IndexFile indexFile = retryGetAndCreateIndexFile();
+                if (indexFile == null) {
+                    LOGGER.error("build index error, skip the index of commitlog [{}, {}]", first.getCommitLogOffset(),
+                        this.batch.get(this.batch.size() - 1).getCommitLogOffset());
+                    return;
+                }
+                long endPhyOffset = indexFile.getEndPhyOffset();
+                for (DispatchRequest request : this.batch) {
+                    if (request.getCommitLogOffset() >= endPhyOffset) {
+                        this.addKeys(request);
+                    }
+                }
+
+                int from = 0;
+                while (from < this.keyNum) {
+                    int put = indexFile.putKeys(this.keys, this.phyOffsets, this.storeTimestamps, from, this.keyNum);
+                    from += put;
+                    if (from >= this.keyNum) {
+                        break;
+                    }
+                    LOGGER.warn("Index file [" + indexFile.getFileName() + "] took " + put + " keys of the batch, trying to get another one");
+                    IndexFile nextIndexFile = retryGetAndCreateIndexFile();
+                    if (nextIndexFile == null) {
+                        LOGGER.error("build index error, skip the index of commitlog [{}, {}]", this.phyOffsets[from],
+                            this.phyOffsets[this.keyNum - 1]);
+                        return;
+                    }
+                    if (put == 0 && nextIndexFile == indexFile) {
+                        // the file is not full but fails to take the key, skip it rather than the whole batch
+                        LOGGER.error("putKey error commitlog {} key {}", this.phyOffsets[from], this.keys[from]);
+                        from++;
+                    }
+                    indexFile = nextIndexFile;
+                }
+            } finally {
+                this.batch.clear();
+                Arrays.fill(this.keys, 0, this.keyNum, null);
+                this.keyNum = 0;
+            }
+        }
+
+        private void addKeys(final DispatchRequest request) {
+            if (MessageSysFlag.getTransactionValue(request.getSysFlag()) == MessageSysFlag.TRANSACTION_ROLLBACK_TYPE) {
+                return;
+            }
+            if (request.getUniqKey() != null) {
+                this.addKey(request, buildKey(request.getTopic(), request.getUniqKey()));
+            }
+            String keys = request.getKeys();
+            if (keys != null && keys.length() > 0) {
+                for (String key : keys.split(MessageConst.KEY_SEPARATOR)) {
+                    if (key.length() > 0) {
+                        this.addKey(request, buildKey(request.getTopic(), key));
+                    }
+                }
+            }
+        }
+
+        private void addKey(final DispatchRequest request, final String key) {
+            if (this.keyNum == this.keys.length) {
+                int capacity = this.keys.length * 2;
+                this.keys = Arrays.copyOf(this.keys, capacity);
+                this.phyOffsets = Arrays.copyOf(this.phyOffsets, capacity);
+                this.storeTimestamps = Arrays.copyOf(this.storeTimestamps, capacity);
+            }
+            this.keys[this.keyNum] = key;
+            this.phyOffsets[this.keyNum] = request.getCommitLogOffset();
+            this.storeTimestamps[this.keyNum] = request.getStoreTimestamp();
+            this.keyNum++;
+        }
+    }
 }
@@ -687,7 +687,8 @@ public class CompactionLog {
                 SelectMappedBufferResult smb = null;
                 try {
                     smb = iterator.next();
-                    MessageExt msgExt = MessageDecoder.decode(smb.getByteBuffer(), true, true);
+                    // the raw message is put as it is, the body is only checked for being empty
+                    MessageExt msgExt = MessageDecoder.decode(smb.getByteBuffer(), true, false);
                     if (msgExt == null) {
                         // file end
                         break;
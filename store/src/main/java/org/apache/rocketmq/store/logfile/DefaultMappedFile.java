@@ -49,6 +49,7 @@ import org.apache.rocketmq.logging.org.slf4j.LoggerFactory;
 import org.apache.rocketmq.store.AppendMessageCallback;
 import org.apache.rocketmq.store.AppendMessageResult;
 import org.apache.rocketmq.store.AppendMessageStatus;
+import org.apache.rocketmq.store.CommitLog;
 import org.apache.rocketmq.store.CompactionAppendMsgCallback;
 import org.apache.rocketmq.store.PutMessageContext;
 import org.apache.rocketmq.store.SelectMappedBufferResult;
@@ -73,8 +74,13 @@ public class DefaultMappedFile extends AbstractMappedFile {
     protected static final AtomicIntegerFieldUpdater<DefaultMappedFile> WROTE_POSITION_UPDATER;
     protected static final AtomicIntegerFieldUpdater<DefaultMappedFile> COMMITTED_POSITION_UPDATER;
     protected static final AtomicIntegerFieldUpdater<DefaultMappedFile> FLUSHED_POSITION_UPDATER;
+    protected static final AtomicIntegerFieldUpdater<DefaultMappedFile> RESERVED_POSITION_UPDATER;
 
     protected volatile int wrotePosition;
+    /**
+     * Position handed out to concurrent appenders, never behind wrotePosition while appends are in flight.
+     */
+    protected volatile int reservedPosition;
     protected volatile int committedPosition;
     protected volatile int flushedPosition;
     protected int fileSize;
@@ -112,6 +118,7 @@ public class DefaultMappedFile extends AbstractMappedFile {
         WROTE_POSITION_UPDATER = AtomicIntegerFieldUpdater.newUpdater(DefaultMappedFile.class, "wrotePosition");
         COMMITTED_POSITION_UPDATER = AtomicIntegerFieldUpdater.newUpdater(DefaultMappedFile.class, "committedPosition");
         FLUSHED_POSITION_UPDATER = AtomicIntegerFieldUpdater.newUpdater(DefaultMappedFile.class, "flushedPosition");
+        RESERVED_POSITION_UPDATER = AtomicIntegerFieldUpdater.newUpdater(DefaultMappedFile.class, "reservedPosition");
 
         Method isLoaded0method = null;
         // On the windows platform and openjdk 11 method isLoaded0 always returns false.
@@ -297,6 +304,72 @@ public class DefaultMappedFile extends AbstractMappedFile {
         return new AppendMessageResult(AppendMessageStatus.UNKNOWN_ERROR);
     }
 
+    @Override
+    public AppendMessageResult appendMessageConcurrently(final MessageExtBrokerInner messageExt,
+        final AppendMessageCallback cb, PutMessageContext putMessageContext) {
+        assert messageExt != null;
+        assert cb != null;
+
+        final boolean isBatch = messageExt instanceof MessageExtBatch && !((MessageExtBatch) messageExt).isInnerBatch();
+        final int msgLen = messageExt.getEncodedBuff().remaining();
+
+        // reserve [currentPos, currentPos + reserveLen), the tail of the file is reserved as a whole if msg not fits
+        int currentPos;
+        int reserveLen;
+        while (true) {
+            int reserved = RESERVED_POSITION_UPDATER.get(this);
+            currentPos = Math.max(reserved, WROTE_POSITION_UPDATER.get(this));
+            if (currentPos >= this.fileSize) {
+                return new AppendMessageResult(AppendMessageStatus.END_OF_FILE, this.fileFromOffset + this.fileSize, 0, 0);
+            }
+            int maxBlank = this.fileSize - currentPos;
+            reserveLen = msgLen + CommitLog.END_FILE_MIN_BLANK_LENGTH > maxBlank ? maxBlank : msgLen;
+            if (RESERVED_POSITION_UPDATER.compareAndSet(this, reserved, currentPos + reserveLen)) {
+                break;
+            }
+        }
+
+        AppendMessageResult result = null;
+        ByteBuffer byteBuffer = appendMessageBuffer().slice();
+        try {
+            byteBuffer.position(currentPos);
+            if (isBatch) {
+                result = cb.doAppend(this.getFileFromOffset(), byteBuffer, this.fileSize - currentPos,
+                    (MessageExtBatch) messageExt, putMessageContext);
+            } else {
+                result = cb.doAppend(this.getFileFromOffset(), byteBuffer, this.fileSize - currentPos,
+                    messageExt, putMessageContext);
+            }
+        } catch (Throwable e) {
+            log.error("Error occurred when append message to mappedFile concurrently.", e);
+        } finally {
+            if (result == null || result.getWroteBytes() < reserveLen) {
+                // readers step over the blank instead of stopping at a hole in the middle of the file
+                CommitLog.writeBlank(byteBuffer, currentPos, reserveLen, currentPos + reserveLen == this.fileSize);
+            }
+            // publish even on failure, otherwise the appenders behind this one would wait forever
+            publishWrotePosition(currentPos, reserveLen);
+        }
+        if (result == null) {
+            return new AppendMessageResult(AppendMessageStatus.UNKNOWN_ERROR);
+        }
+        this.storeTimestamp = result.getStoreTimestamp();
+        return result;
+    }
+
+    /**
+     * Advance wrotePosition over a reserved region once all regions reserved before it have been published.
+     */
+    private void publishWrotePosition(final int from, final int length) {
+        int spins = 0;
+        while (WROTE_POSITION_UPDATER.get(this) != from) {
+            if (++spins > 64) {
+                Thread.yield();
+            }
+        }
+        WROTE_POSITION_UPDATER.set(this, from + length);
+    }
+
     protected ByteBuffer appendMessageBuffer() {
         this.mappedByteBufferAccessCountSinceLastSwap++;
         return writeBuffer != null ? writeBuffer : this.mappedByteBuffer;
@@ -584,6 +657,7 @@ public class DefaultMappedFile extends AbstractMappedFile {
     @Override
     public void setWrotePosition(int pos) {
         WROTE_POSITION_UPDATER.set(this, pos);
+        RESERVED_POSITION_UPDATER.set(this, pos);
     }
 
     /**
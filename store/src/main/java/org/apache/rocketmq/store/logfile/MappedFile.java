@@ -97,6 +97,22 @@ public interface MappedFile {
      */
     AppendMessageResult appendMessages(MessageExtBatch message, AppendMessageCallback messageCallback, PutMessageContext putMessageContext);
 
+    /**
+     * Appends a pre-encoded message or batch without requiring the caller to hold the put message lock.
+     * <p>
+     * Space is reserved with an atomic position allocator, so several threads may copy into this file at the same
+     * time. The wrote position is published in reservation order, readers never see a partially copied region.
+     * If the message does not fit, the caller reserves the tail of the file and gets {@code END_OF_FILE}; a caller
+     * that finds the tail already reserved by another thread gets {@code END_OF_FILE} with zero wrote bytes.
+     *
+     * @param message a message whose encoded buffer is ready
+     * @param messageCallback the specific call back to execute the real append action
+     * @param putMessageContext
+     * @return the append result
+     */
+    AppendMessageResult appendMessageConcurrently(MessageExtBrokerInner message, AppendMessageCallback messageCallback,
+        PutMessageContext putMessageContext);
+
     AppendMessageResult appendMessage(final ByteBuffer byteBufferMsg, final CompactionAppendMsgCallback cb);
 
     /**
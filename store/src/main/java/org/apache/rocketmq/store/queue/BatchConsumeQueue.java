@@ -492,10 +492,12 @@ public class BatchConsumeQueue implements ConsumeQueueInterface {
                 request.getMsgSize(), request.getTagsCode(),
                 request.getStoreTimestamp(), request.getMsgBaseOffset(), request.getBatchSize());
             if (result) {
-                if (BrokerRole.SLAVE == this.messageStore.getMessageStoreConfig().getBrokerRole()) {
-                    this.messageStore.getStoreCheckpoint().setPhysicMsgTimestamp(request.getStoreTimestamp());
+                if (!request.isDeferCheckpoint()) {
+                    if (BrokerRole.SLAVE == this.messageStore.getMessageStoreConfig().getBrokerRole()) {
+                        this.messageStore.getStoreCheckpoint().setPhysicMsgTimestamp(request.getStoreTimestamp());
+                    }
+                    this.messageStore.getStoreCheckpoint().setLogicsMsgTimestamp(request.getStoreTimestamp());
                 }
-                this.messageStore.getStoreCheckpoint().setLogicsMsgTimestamp(request.getStoreTimestamp());
                 return;
             } else {
                 // XXX: warn and notify me
@@ -94,6 +94,13 @@ public class TimerMessageStore {
     public static final int MAGIC_DEFAULT = 1;
     public static final int MAGIC_ROLL = 1 << 1;
     public static final int MAGIC_DELETE = 1 << 2;
+    public static final int MAGIC_CASCADE = 1 << 3;
+    // Slot precision and slot count of the cascade wheels in hierarchical mode, from fine to coarse.
+    // The window of each wheel is at least three slots of the next coarser one, see cascade().
+    public static final int[] CASCADE_WHEEL_PRECISION_SECS = {60, 3600, DAY_SECS};
+    public static final String[] CASCADE_WHEEL_NAMES = {"minute", "hour", "day"};
+    public static final int CASCADE_MINUTE_SLOTS = 3 * 60;
+    public static final int CASCADE_HOUR_SLOTS = 3 * 24;
     public boolean debug = false;
 
     protected static final String ENQUEUE_PUT = "enqueue_put";
@@ -110,6 +117,8 @@ public class TimerMessageStore {
 
     private final MessageStore messageStore;
     private final TimerWheel timerWheel;
+    // Coarser wheels of hierarchical mode, level i + 1 is cascadeWheels[i], empty if disabled
+    private final TimerWheel[] cascadeWheels;
     private final TimerLog timerLog;
     private final TimerCheckpoint timerCheckpoint;
 
@@ -129,6 +138,7 @@ public class TimerMessageStore {
     protected volatile long commitQueueOffset;
     protected volatile long lastCommitReadTimeMs;
     protected volatile long lastCommitQueueOffset;
+    private long lastCascadeTimeMs = -1;
 
     private long lastEnqueueButExpiredTime;
     private long lastEnqueueButExpiredStoreTime;
@@ -190,6 +200,9 @@ public class TimerMessageStore {
             this.timerRollWindowSlots = storeConfig.getTimerRollWindowSlot();
         }
 
+        this.cascadeWheels = storeConfig.isTimerEnableHierarchicalWheel()
+            ? createCascadeWheels(storeConfig.getStorePathRootDir()) : new TimerWheel[0];
+
         bufferLocal = new ThreadLocal<ByteBuffer>() {
             @Override
             protected ByteBuffer initialValue() {
@@ -246,6 +259,33 @@ public class TimerMessageStore {
         return rootDir + File.separator + "timerlog";
     }
 
+    public static String getCascadeWheelPath(final String rootDir, final String name) {
+        return rootDir + File.separator + "timerwheel_" + name;
+    }
+
+    private TimerWheel[] createCascadeWheels(final String rootDir) throws IOException {
+        int daySlots = storeConfig.getTimerMaxDelaySec() / DAY_SECS + 2;
+        int[] slots = {CASCADE_MINUTE_SLOTS, CASCADE_HOUR_SLOTS, daySlots};
+        List<TimerWheel> wheels = new ArrayList<>(slots.length);
+        long finerWindowMs = (long) timerRollWindowSlots * precisionMs;
+        for (int i = 0; i < slots.length; i++) {
+            long levelPrecisionMs = CASCADE_WHEEL_PRECISION_SECS[i] * 1000L;
+            if (finerWindowMs < 3 * levelPrecisionMs) {
+                LOGGER.warn("Timer roll window {}ms is too small for the {} wheel, use {} cascade wheels",
+                    finerWindowMs, CASCADE_WHEEL_NAMES[i], i);
+                break;
+            }
+            wheels.add(new TimerWheel(getCascadeWheelPath(rootDir, CASCADE_WHEEL_NAMES[i]),
+                slots[i], (int) levelPrecisionMs));
+            finerWindowMs = slots[i] * levelPrecisionMs;
+        }
+        if (storeConfig.getTimerMaxDelaySec() * 1000L >= getCascadeHorizonMs()) {
+            LOGGER.warn("Timer max delay {}s is beyond the commit log retention of {}h, longer delays are rolled",
+                storeConfig.getTimerMaxDelaySec(), storeConfig.getFileReservedTime());
+        }
+        return wheels.toArray(new TimerWheel[0]);
+    }
+
     private void calcTimerDistribution() {
         long startTime = System.currentTimeMillis();
         List<Integer> timerDist = this.timerMetrics.getTimerDistList();
@@ -416,7 +456,11 @@ public class TimerMessageStore {
                     }
                     long delayTime = bf.getLong() + bf.getInt();
                     if (TimerLog.UNIT_SIZE == size && isMagicOK(magic)) {
-                        timerWheel.reviseSlot(delayTime, TimerWheel.IGNORE, sbr.getStartOffset() + position, true);
+                        if (isCascade(magic)) {
+                            reviseCascadeSlot(bf, position, sbr.getStartOffset() + position);
+                        } else {
+                            timerWheel.reviseSlot(delayTime, TimerWheel.IGNORE, sbr.getStartOffset() + position, true);
+                        }
                     }
                 } catch (Exception e) {
                     LOGGER.error("Recover timerLog error", e);
@@ -436,6 +480,18 @@ public class TimerMessageStore {
         return checkOffset;
     }
 
+    private void reviseCascadeSlot(ByteBuffer bf, int position, long offset) {
+        // a cascade unit keeps its level in the delayed time field and the real delayed time in the reserved field
+        int level = bf.getInt(position + 24);
+        long delayedTime = bf.getLong(position + TimerLog.UNIT_SIZE - 8);
+        if (level < 1 || level > cascadeWheels.length) {
+            LOGGER.warn("Timer cascade unit of level {} at {} cannot be recovered, delayedTime:{} cascadeWheels:{}",
+                level, offset, delayedTime, cascadeWheels.length);
+            return;
+        }
+        cascadeWheels[level - 1].reviseSlot(delayedTime, TimerWheel.IGNORE, offset, true);
+    }
+
     public static boolean isMagicOK(int magic) {
         return (magic | 0xF) == 0xF;
     }
@@ -527,6 +583,9 @@ public class TimerMessageStore {
             dequeuePutMessageServices[i].shutdown();
         }
         timerWheel.shutdown(false);
+        for (TimerWheel wheel : cascadeWheels) {
+            wheel.shutdown(false);
+        }
 
         this.scheduler.shutdown();
         UtilAll.cleanBuffer(this.bufferLocal.get());
@@ -697,7 +756,8 @@ public class TimerMessageStore {
         LOGGER.debug("Do enqueue [{}] [{}]", new Timestamp(delayedTime), messageExt);
         //copy the value first, avoid concurrent problem
         long tmpWriteTimeMs = currWriteTimeMs;
-        boolean needRoll = delayedTime - tmpWriteTimeMs >= (long) timerRollWindowSlots * precisionMs;
+        int level = getWheelLevel(delayedTime, tmpWriteTimeMs);
+        boolean needRoll = level < 0;
         int magic = MAGIC_DEFAULT;
         if (needRoll) {
             magic = magic | MAGIC_ROLL;
@@ -713,29 +773,152 @@ public class TimerMessageStore {
             magic = magic | MAGIC_DELETE;
         }
         String realTopic = messageExt.getProperty(MessageConst.PROPERTY_REAL_TOPIC);
-        Slot slot = timerWheel.getSlot(delayedTime);
+        boolean res;
+        if (level > 0) {
+            res = appendToWheel(cascadeWheels[level - 1], delayedTime, tmpWriteTimeMs, level, magic | MAGIC_CASCADE,
+                offsetPy, sizePy, hashTopicForMetrics(realTopic), delayedTime);
+        } else {
+            res = appendToWheel(timerWheel, delayedTime, tmpWriteTimeMs, (int) (delayedTime - tmpWriteTimeMs), magic,
+                offsetPy, sizePy, hashTopicForMetrics(realTopic), 0);
+        }
+        if (res) {
+            addMetric(messageExt, isDelete ? -1 : 1);
+        }
+        return res;
+    }
+
+    /**
+     * The wheel that a message delayed to delayedTime goes to, 0 for the timer wheel, i for cascadeWheels[i - 1],
+     * and -1 if it is beyond all wheels and has to be rolled. A cascade unit points at the message it was enqueued
+     * for until it is cascaded, so the cascade wheels only take delays within the commit log retention.
+     */
+    private int getWheelLevel(long delayedTime, long currTimeMs) {
+        long delayMs = delayedTime - currTimeMs;
+        if (delayMs < (long) timerRollWindowSlots * precisionMs) {
+            return 0;
+        }
+        if (delayMs >= getCascadeHorizonMs()) {
+            return -1;
+        }
+        for (int i = 0; i < cascadeWheels.length; i++) {
+            if (delayMs < (long) cascadeWheels[i].slotsTotal * cascadeWheels[i].precisionMs) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The commit log retention less one hour slot, read on each call since fileReservedTime can be updated online.
+     */
+    private long getCascadeHorizonMs() {
+        return TimeUnit.HOURS.toMillis(storeConfig.getFileReservedTime()) - CASCADE_WHEEL_PRECISION_SECS[1] * 1000L;
+    }
+
+    /**
+     * Append a unit to the timer log and link it to the slot of delayedTime in the given wheel. The enqueue
+     * and the cascade in dequeue both append, so they are serialized here.
+     */
+    private synchronized boolean appendToWheel(TimerWheel wheel, long delayedTime, long enqueueTimeMs,
+        int delayField, int magic, long offsetPy, int sizePy, int topicHash, long reserved) {
+        Slot slot = wheel.getSlot(delayedTime);
         ByteBuffer tmpBuffer = timerLogBuffer;
         tmpBuffer.clear();
         tmpBuffer.putInt(TimerLog.UNIT_SIZE); //size
         tmpBuffer.putLong(slot.lastPos); //prev pos
         tmpBuffer.putInt(magic); //magic
-        tmpBuffer.putLong(tmpWriteTimeMs); //currWriteTime
-        tmpBuffer.putInt((int) (delayedTime - tmpWriteTimeMs)); //delayTime
+        tmpBuffer.putLong(enqueueTimeMs); //currWriteTime
+        tmpBuffer.putInt(delayField); //delayTime, or level for cascade units
         tmpBuffer.putLong(offsetPy); //offset
         tmpBuffer.putInt(sizePy); //size
-        tmpBuffer.putInt(hashTopicForMetrics(realTopic)); //hashcode of real topic
-        tmpBuffer.putLong(0); //reserved value, just set to 0 now
+        tmpBuffer.putInt(topicHash); //hashcode of real topic
+        tmpBuffer.putLong(reserved); //reserved value, the delayed time for cascade units
         long ret = timerLog.append(tmpBuffer.array(), 0, TimerLog.UNIT_SIZE);
         if (-1 != ret) {
             // If it's a delete message, then slot's total num -1
             // TODO: check if the delete msg is in the same slot with "the msg to be deleted".
-            timerWheel.putSlot(delayedTime, slot.firstPos == -1 ? ret : slot.firstPos, ret,
-                isDelete ? slot.num - 1 : slot.num + 1, slot.magic);
-            addMetric(messageExt, isDelete ? -1 : 1);
+            wheel.putSlot(delayedTime, slot.firstPos == -1 ? ret : slot.firstPos, ret,
+                needDelete(magic) ? slot.num - 1 : slot.num + 1, slot.magic);
         }
         return -1 != ret;
     }
 
+    /**
+     * Roll the units of each cascade wheel slot that starts one slot after readTimeMs, coarser wheels first. The
+     * units of such a slot are due in less than two of its slots, which fits into the window of the finer wheels,
+     * and nothing is enqueued to it any more since a unit only goes to a cascade wheel when it is due in at least
+     * three of its slots. Each unit is linked to the timer wheel slot of readTimeMs as a roll unit, so the message
+     * is put to the commit log again and enqueued to a finer wheel with its new offset, like a rolled message.
+     * The timer log cleanup relies on this, it only checks the last unit of a file against the commit log.
+     */
+    protected boolean cascade(long readTimeMs) {
+        for (int level = cascadeWheels.length; level > 0; level--) {
+            TimerWheel wheel = cascadeWheels[level - 1];
+            if (readTimeMs % wheel.precisionMs != 0) {
+                continue;
+            }
+            Slot slot = wheel.getSlot(readTimeMs + wheel.precisionMs);
+            if (-1 == slot.timeMs) {
+                continue;
+            }
+            if (!cascadeSlot(level, slot, readTimeMs)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean cascadeSlot(int level, Slot slot, long readTimeMs) {
+        perfCounterTicks.startTick("dequeue_cascade");
+        long currOffsetPy = slot.lastPos;
+        int cascadeNum = 0;
+        LinkedList<SelectMappedBufferResult> sbrs = new LinkedList<>();
+        SelectMappedBufferResult timeSbr = null;
+        try {
+            while (currOffsetPy != -1) {
+                if (null == timeSbr || timeSbr.getStartOffset() > currOffsetPy) {
+                    timeSbr = timerLog.getWholeBuffer(currOffsetPy);
+                    if (null != timeSbr) {
+                        sbrs.add(timeSbr);
+                    }
+                }
+                if (null == timeSbr) {
+                    break;
+                }
+                ByteBuffer bf = timeSbr.getByteBuffer();
+                bf.position((int) (currOffsetPy % timerLogFileSize));
+                bf.getInt(); //size
+                long prevPos = bf.getLong();
+                int magic = bf.getInt();
+                long enqueueTime = bf.getLong();
+                bf.getInt(); //level
+                long offsetPy = bf.getLong();
+                int sizePy = bf.getInt();
+                int topicHash = bf.getInt();
+
+                if (readTimeMs - enqueueTime > Integer.MAX_VALUE) {
+                    enqueueTime = readTimeMs;
+                }
+                boolean res = appendToWheel(timerWheel, readTimeMs, enqueueTime, (int) (readTimeMs - enqueueTime),
+                    (magic & ~MAGIC_CASCADE) | MAGIC_ROLL, offsetPy, sizePy, topicHash, 0);
+                if (!res) {
+                    LOGGER.error("Cascade timer unit at {} of level {} failed", currOffsetPy, level);
+                    return false;
+                }
+                cascadeNum++;
+                currOffsetPy = prevPos;
+            }
+        } finally {
+            for (SelectMappedBufferResult sbr : sbrs) {
+                sbr.release();
+            }
+            perfCounterTicks.endTick("dequeue_cascade");
+        }
+        LOGGER.info("Cascade {} timer units of slot {} from {} wheel at {}", cascadeNum, slot.timeMs,
+            CASCADE_WHEEL_NAMES[level - 1], readTimeMs);
+        return true;
+    }
+
     @SuppressWarnings("NonAtomicOperationOnVolatileField")
     public int warmDequeue() {
         if (!isRunningDequeue()) {
@@ -873,6 +1056,13 @@ public class TimerMessageStore {
             return -1;
         }
 
+        if (cascadeWheels.length > 0 && lastCascadeTimeMs != currReadTimeMs) {
+            if (!cascade(currReadTimeMs)) {
+                return -1;
+            }
+            lastCascadeTimeMs = currReadTimeMs;
+        }
+
         Slot slot = timerWheel.getSlot(currReadTimeMs);
         if (-1 == slot.timeMs) {
             moveReadTime();
@@ -1205,6 +1395,18 @@ public class TimerMessageStore {
                     long offsetPy = bf.getLong();
                     int sizePy = bf.getInt();
                     int hashCode = bf.getInt();
+                    if (isCascade(magic)) {
+                        // skip the units already moved to finer wheels, they are counted there
+                        int level = (int) (delayedTime - enqueueTime);
+                        if (level < 1 || level > cascadeWheels.length) {
+                            continue;
+                        }
+                        delayedTime = bf.getLong();
+                        int levelPrecisionMs = cascadeWheels[level - 1].precisionMs;
+                        if (delayedTime / levelPrecisionMs * levelPrecisionMs - levelPrecisionMs <= readTimeMs) {
+                            continue;
+                        }
+                    }
                     if (delayedTime < readTimeMs) {
                         continue;
                     }
@@ -1602,6 +1804,10 @@ public class TimerMessageStore {
         return (magic & MAGIC_DELETE) != 0;
     }
 
+    public boolean isCascade(int magic) {
+        return (magic & MAGIC_CASCADE) != 0;
+    }
+
     public class TimerFlushService extends ServiceThread {
         private final SimpleDateFormat sdf = new SimpleDateFormat("MM-dd HH:mm:ss");
 
@@ -1626,6 +1832,9 @@ public class TimerMessageStore {
                     prepareTimerCheckPoint();
                     timerLog.getMappedFileQueue().flush(0);
                     timerWheel.flush();
+                    for (TimerWheel wheel : cascadeWheels) {
+                        wheel.flush();
+                    }
                     timerCheckpoint.flush();
                     if (System.currentTimeMillis() - start > storeConfig.getTimerProgressLogIntervalMs()) {
                         start = System.currentTimeMillis();
@@ -1755,6 +1964,10 @@ public class TimerMessageStore {
         return timerWheel;
     }
 
+    public TimerWheel[] getCascadeWheels() {
+        return cascadeWheels;
+    }
+
     public TimerLog getTimerLog() {
         return timerLog;
     }
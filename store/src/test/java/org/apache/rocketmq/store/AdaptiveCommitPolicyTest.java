@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.store;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AdaptiveCommitPolicyTest {
+    private static final int MIN_PAGES = 4;
+    private static final int MAX_PAGES = 256;
+    private static final int MAX_INTERVAL = 200;
+
+    private final AdaptiveCommitPolicy policy = new AdaptiveCommitPolicy();
+    private long wrotePosition = 0;
+    private long now = 1000;
+
+    @Test
+    public void testLightWrites() {
+        drive(10, 100);
+        assertThat(policy.getLeastPages()).isEqualTo(MIN_PAGES);
+        assertThat(policy.getInterval()).isEqualTo(MAX_INTERVAL);
+
+        // the pages are filled within the configured interval
+        drive(1024, 100);
+        assertThat(policy.getLeastPages()).isEqualTo(MIN_PAGES);
+        assertThat(policy.getInterval()).isBetween(16, 17);
+    }
+
+    @Test
+    public void testHeavyWrites() {
+        drive(100 * 1024, 100);
+        assertThat(policy.getLeastPages()).isBetween(24, 25);
+        assertThat(policy.getInterval()).isEqualTo(AdaptiveCommitPolicy.TARGET_COMMIT_INTERVAL_MS);
+
+        // no more than the max pages
+        drive(4 * 1024 * 1024, 100);
+        assertThat(policy.getLeastPages()).isEqualTo(MAX_PAGES);
+        assertThat(policy.getInterval()).isEqualTo(AdaptiveCommitPolicy.TARGET_COMMIT_INTERVAL_MS);
+    }
+
+    @Test
+    public void testWritesStop() {
+        drive(4 * 1024 * 1024, 100);
+        assertThat(policy.getLeastPages()).isEqualTo(MAX_PAGES);
+
+        drive(0, 100);
+        assertThat(policy.getLeastPages()).isEqualTo(MIN_PAGES);
+        assertThat(policy.getInterval()).isEqualTo(MAX_INTERVAL);
+    }
+
+    @Test
+    public void testSampleWithinTheSameMillisecond() {
+        drive(100 * 1024, 100);
+        double wroteBytesPerMs = policy.getWroteBytesPerMs();
+
+        wrotePosition += 100 * 1024 * 1024;
+        policy.sample(wrotePosition, now, MIN_PAGES, MAX_PAGES, MAX_INTERVAL);
+        assertThat(policy.getWroteBytesPerMs()).isEqualTo(wroteBytesPerMs);
+    }
+
+    private void drive(long bytesPerMs, int samples) {
+        for (int i = 0; i < samples; i++) {
+            wrotePosition += bytesPerMs * 10;
+            now += 10;
+            policy.sample(wrotePosition, now, MIN_PAGES, MAX_PAGES, MAX_INTERVAL);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.store;
+
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ColdReadServiceTest {
+
+    @Test
+    public void testCoalesce() {
+        List<long[]> ranges = Arrays.asList(
+            new long[] {0, 100},
+            new long[] {100, 100},
+            new long[] {250, 50},
+            new long[] {10000, 100},
+            new long[] {1000 * 1000 - 50, 50},
+            new long[] {1000 * 1000, 100});
+
+        List<long[]> merged = ColdReadService.coalesce(ranges, 1000 * 1000, 64, 4096);
+
+        Assert.assertEquals(4, merged.size());
+        Assert.assertArrayEquals(new long[] {0, 300}, merged.get(0));
+        Assert.assertArrayEquals(new long[] {10000, 100}, merged.get(1));
+        // ranges are not merged across files
+        Assert.assertArrayEquals(new long[] {1000 * 1000 - 50, 50}, merged.get(2));
+        Assert.assertArrayEquals(new long[] {1000 * 1000, 100}, merged.get(3));
+    }
+
+    @Test
+    public void testCoalesceMaxSize() {
+        List<long[]> ranges = Arrays.asList(
+            new long[] {0, 100},
+            new long[] {100, 100},
+            new long[] {200, 100});
+
+        List<long[]> merged = ColdReadService.coalesce(ranges, 1000 * 1000, 64, 200);
+
+        Assert.assertEquals(2, merged.size());
+        Assert.assertArrayEquals(new long[] {0, 200}, merged.get(0));
+        Assert.assertArrayEquals(new long[] {200, 100}, merged.get(1));
+    }
+}
@@ -720,6 +720,115 @@ public class DefaultMessageStoreTest {
         }
     }
 
+    @Test
+    public void testParallelRecover() throws Exception {
+        String topic = "parallelRecoverTopic";
+        messageBody = storeMessage.getBytes();
+        for (int i = 0; i < 400; i++) {
+            MessageExtBrokerInner messageExtBrokerInner = buildMessage();
+            messageExtBrokerInner.setTopic(topic);
+            messageExtBrokerInner.setQueueId(i % 4);
+            messageStore.putMessage(messageExtBrokerInner);
+        }
+        StoreTestUtil.waitCommitLogReput((DefaultMessageStore) messageStore);
+        long lastPhyOffset = messageStore.getMaxPhyOffset();
+        long[] lastCqOffsets = new long[4];
+        for (int queueId = 0; queueId < 4; queueId++) {
+            lastCqOffsets[queueId] = messageStore.getMaxOffsetInQueue(topic, queueId);
+        }
+
+        MessageExtBrokerInner messageExtBrokerInner = buildMessage();
+        messageExtBrokerInner.setTopic(topic);
+        messageExtBrokerInner.setQueueId(0);
+        messageStore.putMessage(messageExtBrokerInner);
+        messageStore.shutdown();
+
+        //damage last message and add abort file
+        damageCommitLog((DefaultMessageStore) messageStore, lastPhyOffset);
+        String storeRootDir = ((DefaultMessageStore) messageStore).getMessageStoreConfig().getStorePathRootDir();
+        File file = new File(StorePathConfigHelper.getAbortFile(storeRootDir));
+        UtilAll.ensureDirOK(file.getParent());
+        file.createNewFile();
+
+        messageStore = buildMessageStore(storeRootDir);
+        ((DefaultMessageStore) messageStore).getMessageStoreConfig().setEnableParallelRecover(true);
+        assertTrue(messageStore.load());
+        messageStore.start();
+        assertEquals(lastPhyOffset, messageStore.getMaxPhyOffset());
+        for (int queueId = 0; queueId < 4; queueId++) {
+            assertEquals(lastCqOffsets[queueId], messageStore.getMaxOffsetInQueue(topic, queueId));
+        }
+    }
+
+    @Test
+    public void testParallelRecoverRetryConsumeQueue() throws Exception {
+        String topic = "parallelRecoverTopic";
+        DefaultMessageStore store = prepareParallelRecover(topic);
+        AtomicInteger failedTimes = new AtomicInteger();
+        failConsumeQueueDispatch(store, 1, failedTimes, 2);
+
+        assertTrue(store.load());
+        store.start();
+        assertEquals(2, failedTimes.get());
+        for (int queueId = 0; queueId < 4; queueId++) {
+            assertEquals(100, store.getMaxOffsetInQueue(topic, queueId));
+        }
+    }
+
+    @Test
+    public void testParallelRecoverConsumeQueueFailed() throws Exception {
+        DefaultMessageStore store = prepareParallelRecover("parallelRecoverTopic");
+        failConsumeQueueDispatch(store, 1, new AtomicInteger(), Integer.MAX_VALUE);
+
+        // not started with messages missing in the consume queue
+        Assert.assertFalse(store.load());
+    }
+
+    /**
+     * Put 100 messages into each of the 4 queues of the topic, remove the consume queue 1 and restart abnormally
+     */
+    private DefaultMessageStore prepareParallelRecover(String topic) throws Exception {
+        messageBody = storeMessage.getBytes();
+        for (int i = 0; i < 400; i++) {
+            MessageExtBrokerInner messageExtBrokerInner = buildMessage();
+            messageExtBrokerInner.setTopic(topic);
+            messageExtBrokerInner.setQueueId(i % 4);
+            messageStore.putMessage(messageExtBrokerInner);
+        }
+        StoreTestUtil.waitCommitLogReput((DefaultMessageStore) messageStore);
+        messageStore.shutdown();
+
+        String storeRootDir = ((DefaultMessageStore) messageStore).getMessageStoreConfig().getStorePathRootDir();
+        UtilAll.deleteFile(new File(StorePathConfigHelper.getStorePathConsumeQueue(storeRootDir)
+            + File.separator + topic + File.separator + 1));
+        File file = new File(StorePathConfigHelper.getAbortFile(storeRootDir));
+        UtilAll.ensureDirOK(file.getParent());
+        file.createNewFile();
+
+        messageStore = buildMessageStore(storeRootDir);
+        ((DefaultMessageStore) messageStore).getMessageStoreConfig().setEnableParallelRecover(true);
+        return (DefaultMessageStore) messageStore;
+    }
+
+    private void failConsumeQueueDispatch(DefaultMessageStore store, int queueId, AtomicInteger failedTimes,
+        int maxFailedTimes) {
+        List<CommitLogDispatcher> dispatchers = store.getDispatcherList();
+        for (int i = 0; i < dispatchers.size(); i++) {
+            if (dispatchers.get(i) instanceof DefaultMessageStore.CommitLogDispatcherBuildConsumeQueue) {
+                dispatchers.set(i, store.new CommitLogDispatcherBuildConsumeQueue() {
+                    @Override
+                    public void dispatch(DispatchRequest request) {
+                        if (request.getQueueId() == queueId && failedTimes.get() < maxFailedTimes) {
+                            failedTimes.incrementAndGet();
+                            throw new RuntimeException("put consume queue failed");
+                        }
+                        super.dispatch(request);
+                    }
+                });
+            }
+        }
+    }
+
     @Test
     public void testStorePathOK() {
         if (messageStore instanceof DefaultMessageStore) {
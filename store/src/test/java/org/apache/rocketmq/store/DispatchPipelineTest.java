@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.store;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.rocketmq.common.BrokerConfig;
+import org.apache.rocketmq.store.config.MessageStoreConfig;
+import org.junit.Assert;
+import org.junit.Test;
+
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DispatchPipelineTest {
+
+    @Test
+    public void testDispatchInQueueOrder() throws Exception {
+        Map<String, List<Long>> dispatched = new ConcurrentHashMap<>();
+        AtomicInteger afterDispatchTimes = new AtomicInteger();
+        LinkedList<CommitLogDispatcher> dispatchers = new LinkedList<>();
+        dispatchers.add(request -> dispatched.computeIfAbsent(request.getTopic() + "-" + request.getQueueId(),
+            k -> new ArrayList<>()).add(request.getCommitLogOffset()));
+
+        MessageStoreConfig storeConfig = new MessageStoreConfig();
+        storeConfig.setDispatchPipelineLaneNums(3);
+        DefaultMessageStore messageStore = mock(DefaultMessageStore.class);
+        when(messageStore.getMessageStoreConfig()).thenReturn(storeConfig);
+        when(messageStore.getBrokerConfig()).thenReturn(new BrokerConfig());
+        when(messageStore.getDispatcherList()).thenReturn(dispatchers);
+
+        DispatchPipeline pipeline = new DispatchPipeline(messageStore, request -> afterDispatchTimes.incrementAndGet());
+        pipeline.start();
+        try {
+            long offset = 0;
+            for (int batch = 0; batch < 100; batch++) {
+                DispatchRequest[] requests = new DispatchRequest[10];
+                for (int i = 0; i < requests.length; i++) {
+                    requests[i] = new DispatchRequest("topic" + i % 2, i % 4, offset, offset++, 1, 0);
+                }
+                pipeline.dispatch(requests);
+            }
+            await().atMost(5, TimeUnit.SECONDS).until(pipeline::isEmpty);
+        } finally {
+            pipeline.shutdown();
+        }
+
+        Assert.assertEquals(1000, afterDispatchTimes.get());
+        int total = 0;
+        for (List<Long> offsets : dispatched.values()) {
+            for (int i = 1; i < offsets.size(); i++) {
+                Assert.assertTrue(offsets.get(i - 1) < offsets.get(i));
+            }
+            total += offsets.size();
+        }
+        Assert.assertEquals(1000, total);
+    }
+
+    @Test
+    public void testFailedRequestAndBehindBytes() throws Exception {
+        CountDownLatch gate = new CountDownLatch(1);
+        List<Long> dispatched = new ArrayList<>();
+        LinkedList<CommitLogDispatcher> dispatchers = new LinkedList<>();
+        dispatchers.add(request -> {
+            try {
+                gate.await();
+            } catch (InterruptedException ignored) {
+            }
+            if (request.getCommitLogOffset() == 3) {
+                throw new RuntimeException("dispatch failed");
+            }
+            dispatched.add(request.getCommitLogOffset());
+        });
+
+        MessageStoreConfig storeConfig = new MessageStoreConfig();
+        storeConfig.setDispatchPipelineLaneNums(1);
+        DefaultMessageStore messageStore = mock(DefaultMessageStore.class);
+        when(messageStore.getMessageStoreConfig()).thenReturn(storeConfig);
+        when(messageStore.getBrokerConfig()).thenReturn(new BrokerConfig());
+        when(messageStore.getDispatcherList()).thenReturn(dispatchers);
+
+        DispatchPipeline pipeline = new DispatchPipeline(messageStore, request -> { });
+        pipeline.start();
+        try {
+            DispatchRequest[] requests = new DispatchRequest[10];
+            for (int i = 0; i < requests.length; i++) {
+                requests[i] = new DispatchRequest("topic", 0, i, i, 100, 0);
+            }
+            pipeline.dispatch(requests);
+            Assert.assertFalse(pipeline.isEmpty());
+            Assert.assertTrue(pipeline.behindBytes() > 0);
+            Assert.assertTrue(pipeline.behindBytes() <= 1000);
+
+            gate.countDown();
+            await().atMost(5, TimeUnit.SECONDS).until(pipeline::isEmpty);
+            Assert.assertEquals(0, pipeline.behindBytes());
+        } finally {
+            pipeline.shutdown();
+        }
+
+        // the failed request does not abandon the rest of the batch
+        Assert.assertEquals(9, dispatched.size());
+        Assert.assertFalse(dispatched.contains(3L));
+        Assert.assertEquals(9L, (long) dispatched.get(8));
+    }
+
+    @Test
+    public void testCheckpointLowWatermark() throws Exception {
+        CountDownLatch gate = new CountDownLatch(1);
+        List<Long> dispatched = new CopyOnWriteArrayList<>();
+        LinkedList<CommitLogDispatcher> dispatchers = new LinkedList<>();
+        dispatchers.add(request -> {
+            if (request.getQueueId() == 1) {
+                try {
+                    gate.await();
+                } catch (InterruptedException ignored) {
+                }
+            }
+            if (request.isDeferCheckpoint()) {
+                dispatched.add(request.getStoreTimestamp());
+            }
+        });
+
+        MessageStoreConfig storeConfig = new MessageStoreConfig();
+        storeConfig.setDispatchPipelineLaneNums(2);
+        StoreCheckpoint storeCheckpoint = mock(StoreCheckpoint.class);
+        DefaultMessageStore messageStore = mock(DefaultMessageStore.class);
+        when(messageStore.getMessageStoreConfig()).thenReturn(storeConfig);
+        when(messageStore.getBrokerConfig()).thenReturn(new BrokerConfig());
+        when(messageStore.getDispatcherList()).thenReturn(dispatchers);
+        when(messageStore.getStoreCheckpoint()).thenReturn(storeCheckpoint);
+
+        DispatchPipeline pipeline = new DispatchPipeline(messageStore, request -> { });
+        pipeline.start();
+        try {
+            // queue 1 goes to the other lane than queue 0 and holds its first request
+            DispatchRequest[] requests = new DispatchRequest[10];
+            for (int i = 0; i < requests.length; i++) {
+                requests[i] = new DispatchRequest("topic", i == 0 ? 1 : 0, i, 100, 0, i + 1, i, null, null, 0, 0, null);
+            }
+            pipeline.dispatch(requests);
+            await().atMost(5, TimeUnit.SECONDS).until(() -> dispatched.size() == 9);
+            verify(storeCheckpoint, never()).setLogicsMsgTimestamp(anyLong());
+
+            gate.countDown();
+            await().atMost(5, TimeUnit.SECONDS).until(pipeline::isEmpty);
+            verify(storeCheckpoint, timeout(5000)).setLogicsMsgTimestamp(10);
+        } finally {
+            pipeline.shutdown();
+        }
+    }
+}
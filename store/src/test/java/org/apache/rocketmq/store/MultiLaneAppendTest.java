@@ -0,0 +1,220 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.rocketmq.store;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.rocketmq.common.BrokerConfig;
+import org.apache.rocketmq.common.UtilAll;
+import org.apache.rocketmq.common.message.MessageDecoder;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.apache.rocketmq.common.message.MessageExtBatch;
+import org.apache.rocketmq.common.message.MessageExtBrokerInner;
+import org.apache.rocketmq.store.config.FlushDiskType;
+import org.apache.rocketmq.store.config.MessageStoreConfig;
+import org.apache.rocketmq.store.logfile.MappedFile;
+import org.apache.rocketmq.store.stats.BrokerStatsManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+public class MultiLaneAppendTest {
+    private static final String TOPIC = "multi-lane-topic";
+    private static final int THREADS = 8;
+    private static final int MSG_PER_THREAD = 200;
+
+    private final String storePath = System.getProperty("java.io.tmpdir") + File.separator + "multilaneappendstore";
+    private MessageStore messageStore;
+
+    @Before
+    public void init() throws Exception {
+        messageStore = createMessageStore();
+    }
+
+    private MessageStore createMessageStore() throws Exception {
+        MessageStoreConfig messageStoreConfig = new MessageStoreConfig();
+        // small files so that lanes keep racing on file rolls
+        messageStoreConfig.setMappedFileSizeCommitLog(1024 * 8);
+        messageStoreConfig.setMappedFileSizeConsumeQueue(1024 * 4);
+        messageStoreConfig.setMaxHashSlotNum(100);
+        messageStoreConfig.setMaxIndexNum(100 * 10);
+        messageStoreConfig.setFlushDiskType(FlushDiskType.ASYNC_FLUSH);
+        messageStoreConfig.setEnableMultiLaneAppend(true);
+        messageStoreConfig.setStorePathRootDir(storePath);
+        messageStoreConfig.setStorePathCommitLog(storePath + File.separator + "commitlog");
+        messageStoreConfig.setHaListenPort(0);
+        MessageStore store = new DefaultMessageStore(messageStoreConfig, new BrokerStatsManager("simpleTest", true),
+            (topic, queueId, logicOffset, tagsCode, msgStoreTime, filterBitMap, properties) -> {
+            }, new BrokerConfig(), new ConcurrentHashMap<>());
+        assertThat(store.load()).isTrue();
+        store.start();
+        return store;
+    }
+
+    @After
+    public void destroy() {
+        messageStore.shutdown();
+        messageStore.destroy();
+        UtilAll.deleteFile(new File(storePath));
+    }
+
+    @Test
+    public void testConcurrentAppendKeepsQueueOrder() throws Exception {
+        CountDownLatch latch = new CountDownLatch(THREADS);
+        AtomicInteger failed = new AtomicInteger();
+        for (int t = 0; t < THREADS; t++) {
+            final int queueId = t % 4;
+            final int producer = t;
+            new Thread(() -> {
+                try {
+                    for (int i = 0; i < MSG_PER_THREAD; i++) {
+                        PutMessageResult result = messageStore.putMessage(buildMessage(queueId, producer + "-" + i));
+                        if (!result.isOk()) {
+                            failed.incrementAndGet();
+                        }
+                    }
+                } finally {
+                    latch.countDown();
+                }
+            }).start();
+        }
+        latch.await();
+        assertThat(failed.get()).isZero();
+
+        long expectedPerQueue = THREADS / 4 * MSG_PER_THREAD;
+        for (int queueId = 0; queueId < 4; queueId++) {
+            final int q = queueId;
+            await().atMost(5, SECONDS).until(() -> messageStore.getMaxOffsetInQueue(TOPIC, q) == expectedPerQueue);
+
+            Map<String, Integer> lastSeqPerProducer = new ConcurrentHashMap<>();
+            long lastPhyOffset = -1;
+            for (long offset = 0; offset < expectedPerQueue; offset++) {
+                GetMessageResult getResult = messageStore.getMessage("group", TOPIC, q, offset, 1, null);
+                assertThat(getResult.getStatus()).isEqualTo(GetMessageStatus.FOUND);
+                List<ByteBuffer> buffers = getResult.getMessageBufferList();
+                MessageExt msg = MessageDecoder.decode(buffers.get(0));
+                getResult.release();
+
+                assertThat(msg.getQueueOffset()).isEqualTo(offset);
+                assertThat(msg.getCommitLogOffset()).isGreaterThan(lastPhyOffset);
+                lastPhyOffset = msg.getCommitLogOffset();
+
+                String[] body = new String(msg.getBody(), StandardCharsets.UTF_8).split("-");
+                int seq = Integer.parseInt(body[1]);
+                Integer last = lastSeqPerProducer.put(body[0], seq);
+                assertThat(last == null ? -1 : last).isEqualTo(seq - 1);
+            }
+        }
+    }
+
+    @Test
+    public void testCommitLogHasNoHoles() throws Exception {
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final int producer = t;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < MSG_PER_THREAD; i++) {
+                    messageStore.putMessage(buildMessage(producer, producer + "-" + i));
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        long total = 0;
+        for (int queueId = 0; queueId < THREADS; queueId++) {
+            final int q = queueId;
+            await().atMost(5, SECONDS).until(() -> messageStore.getMaxOffsetInQueue(TOPIC, q) == MSG_PER_THREAD);
+            total += messageStore.getMaxOffsetInQueue(TOPIC, q);
+        }
+        assertThat(total).isEqualTo((long) THREADS * MSG_PER_THREAD);
+        assertThat(messageStore.dispatchBehindBytes()).isZero();
+    }
+
+    @Test
+    public void testFailedAppendLeavesFiller() throws Exception {
+        assertThat(messageStore.putMessage(buildMessage(0, "0-0")).isOk()).isTrue();
+        MappedFile mappedFile = ((DefaultMessageStore) messageStore).getCommitLog().getMappedFileQueue().getLastMappedFile();
+        int fillerPosition = mappedFile.getWrotePosition();
+
+        MessageExtBrokerInner failedMsg = buildMessage(0, "failed");
+        failedMsg.setEncodedBuff(ByteBuffer.allocate(128));
+        AppendMessageResult result = mappedFile.appendMessageConcurrently(failedMsg, new AppendMessageCallback() {
+            @Override
+            public AppendMessageResult doAppend(long fileFromOffset, ByteBuffer byteBuffer, int maxBlank,
+                MessageExtBrokerInner msg, PutMessageContext putMessageContext) {
+                throw new RuntimeException("mock append failure");
+            }
+
+            @Override
+            public AppendMessageResult doAppend(long fileFromOffset, ByteBuffer byteBuffer, int maxBlank,
+                MessageExtBatch messageExtBatch, PutMessageContext putMessageContext) {
+                throw new RuntimeException("mock append failure");
+            }
+        }, new PutMessageContext(TOPIC + "-0"));
+        assertThat(result.getStatus()).isEqualTo(AppendMessageStatus.UNKNOWN_ERROR);
+        assertThat(mappedFile.getWrotePosition()).isEqualTo(fillerPosition + 128);
+
+        SelectMappedBufferResult filler = mappedFile.selectMappedBuffer(fillerPosition);
+        DispatchRequest dispatchRequest = messageStore.checkMessageAndReturnSize(filler.getByteBuffer(), false, false, false);
+        filler.release();
+        assertThat(dispatchRequest.isSuccess()).isTrue();
+        assertThat(dispatchRequest.isFiller()).isTrue();
+        assertThat(dispatchRequest.getMsgSize()).isEqualTo(128);
+
+        // the messages behind the filler are dispatched, and survive a restart
+        assertThat(messageStore.putMessage(buildMessage(0, "0-1")).isOk()).isTrue();
+        await().atMost(5, SECONDS).until(() -> messageStore.getMaxOffsetInQueue(TOPIC, 0) == 2);
+        assertThat(messageStore.dispatchBehindBytes()).isZero();
+        long maxPhyOffset = messageStore.getMaxPhyOffset();
+
+        messageStore.shutdown();
+        messageStore = createMessageStore();
+        assertThat(messageStore.getMaxPhyOffset()).isEqualTo(maxPhyOffset);
+        assertThat(messageStore.getMaxOffsetInQueue(TOPIC, 0)).isEqualTo(2);
+    }
+
+    private MessageExtBrokerInner buildMessage(int queueId, String body) {
+        MessageExtBrokerInner msg = new MessageExtBrokerInner();
+        msg.setTopic(TOPIC);
+        msg.setTags("TAG");
+        msg.setKeys("key");
+        msg.setBody(body.getBytes(StandardCharsets.UTF_8));
+        msg.setQueueId(queueId);
+        msg.setBornTimestamp(System.currentTimeMillis());
+        msg.setStoreHost(new InetSocketAddress("127.0.0.1", 8123));
+        msg.setBornHost(new InetSocketAddress("127.0.0.1", 8124));
+        msg.setPropertiesString(MessageDecoder.messageProperties2String(msg.getProperties()));
+        return msg;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.store;
+
+import org.apache.rocketmq.store.config.MessageStoreConfig;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ReadAheadServiceTest {
+    private static final String GROUP = "FooBarGroup";
+    private static final String TOPIC = "FooBar";
+
+    private ReadAheadService readAheadService;
+
+    @Before
+    public void init() {
+        MessageStoreConfig storeConfig = new MessageStoreConfig();
+        storeConfig.setReadAheadEnable(true);
+        storeConfig.setReadAheadUnits(16);
+        DefaultMessageStore messageStore = mock(DefaultMessageStore.class);
+        when(messageStore.getMessageStoreConfig()).thenReturn(storeConfig);
+
+        readAheadService = spy(new ReadAheadService(messageStore));
+        // madvise needs the page size of the platform
+        Assume.assumeTrue(readAheadService.isEnable());
+        doNothing().when(readAheadService).prefetch(anyString(), anyInt(), anyLong(), anyInt());
+    }
+
+    @After
+    public void destroy() {
+        if (readAheadService != null) {
+            readAheadService.shutdown();
+        }
+    }
+
+    @Test
+    public void testSequentialPulls() {
+        readAheadService.onPulled(GROUP, TOPIC, 0, 0, 8, false);
+        readAheadService.onPulled(GROUP, TOPIC, 0, 8, 16, false);
+        verify(readAheadService, after(200).never()).prefetch(anyString(), anyInt(), anyLong(), anyInt());
+
+        // the third sequential pull prefetches the units ahead of the consumer
+        readAheadService.onPulled(GROUP, TOPIC, 0, 16, 24, false);
+        verify(readAheadService, timeout(1000)).prefetch(TOPIC, 0, 24, 16);
+
+        // no prefetch while more than half of the prefetched units are left
+        readAheadService.onPulled(GROUP, TOPIC, 0, 24, 30, false);
+        verify(readAheadService, after(200).never()).prefetch(TOPIC, 0, 40, 6);
+
+        // only the units not prefetched yet
+        readAheadService.onPulled(GROUP, TOPIC, 0, 30, 32, false);
+        verify(readAheadService, timeout(1000)).prefetch(TOPIC, 0, 40, 8);
+    }
+
+    @Test
+    public void testNonSequentialPulls() {
+        readAheadService.onPulled(GROUP, TOPIC, 0, 0, 8, false);
+        readAheadService.onPulled(GROUP, TOPIC, 0, 8, 16, false);
+        // a seek starts the detection over
+        readAheadService.onPulled(GROUP, TOPIC, 0, 100, 108, false);
+        readAheadService.onPulled(GROUP, TOPIC, 0, 108, 116, false);
+        // other groups and queues are tracked on their own
+        readAheadService.onPulled(GROUP, TOPIC, 1, 16, 24, false);
+        readAheadService.onPulled("OtherGroup", TOPIC, 0, 16, 24, false);
+        verify(readAheadService, after(200).never()).prefetch(anyString(), anyInt(), anyLong(), anyInt());
+
+        readAheadService.onPulled(GROUP, TOPIC, 0, 116, 124, false);
+        verify(readAheadService, timeout(1000)).prefetch(TOPIC, 0, 124, 16);
+    }
+
+    @Test
+    public void testHotPulls() {
+        for (int i = 0; i < 8; i++) {
+            readAheadService.onPulled(GROUP, TOPIC, 0, i * 8, i * 8 + 8, true);
+        }
+        verify(readAheadService, after(200).never()).prefetch(anyString(), anyInt(), anyLong(), anyInt());
+
+        readAheadService.onPulled(GROUP, TOPIC, 0, 64, 72, false);
+        verify(readAheadService, timeout(1000)).prefetch(TOPIC, 0, 72, 16);
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.store.benchmark;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.rocketmq.common.BrokerConfig;
+import org.apache.rocketmq.common.UtilAll;
+import org.apache.rocketmq.common.message.MessageDecoder;
+import org.apache.rocketmq.common.message.MessageExtBrokerInner;
+import org.apache.rocketmq.store.DefaultMessageStore;
+import org.apache.rocketmq.store.config.FlushDiskType;
+import org.apache.rocketmq.store.config.MessageStoreConfig;
+import org.apache.rocketmq.store.stats.BrokerStatsManager;
+
+/**
+ * Builds the temp dir stores and the messages shared by the store benchmarks.
+ */
+public class BenchmarkStoreUtil {
+    private static final SocketAddress BORN_HOST = new InetSocketAddress("127.0.0.1", 0);
+    private static final SocketAddress STORE_HOST = new InetSocketAddress("127.0.0.1", 8123);
+
+    public static MessageStoreConfig newStoreConfig() {
+        MessageStoreConfig messageStoreConfig = new MessageStoreConfig();
+        messageStoreConfig.setMappedFileSizeCommitLog(1024 * 1024 * 1024);
+        messageStoreConfig.setMappedFileSizeConsumeQueue(1024 * 1024 * 10);
+        messageStoreConfig.setFlushDiskType(FlushDiskType.ASYNC_FLUSH);
+        messageStoreConfig.setHaListenPort(0);
+        messageStoreConfig.setStorePathRootDir(System.getProperty("java.io.tmpdir") + File.separator
+            + "store-benchmark-" + UUID.randomUUID());
+        return messageStoreConfig;
+    }
+
+    public static DefaultMessageStore startStore(MessageStoreConfig messageStoreConfig) throws Exception {
+        DefaultMessageStore messageStore = new DefaultMessageStore(messageStoreConfig,
+            new BrokerStatsManager("benchmark", true), null, new BrokerConfig(), new ConcurrentHashMap<>());
+        if (!messageStore.load()) {
+            throw new IllegalStateException("Load store failed, root dir: " + messageStoreConfig.getStorePathRootDir());
+        }
+        messageStore.start();
+        return messageStore;
+    }
+
+    public static void destroyStore(DefaultMessageStore messageStore) {
+        if (messageStore == null) {
+            return;
+        }
+        messageStore.shutdown();
+        messageStore.destroy();
+        UtilAll.deleteFile(new File(messageStore.getMessageStoreConfig().getStorePathRootDir()));
+    }
+
+    public static MessageExtBrokerInner buildMessage(String topic, int queueId, byte[] body, String keys) {
+        MessageExtBrokerInner msg = new MessageExtBrokerInner();
+        msg.setTopic(topic);
+        msg.setTags("TAG1");
+        msg.setKeys(keys);
+        msg.setBody(body);
+        msg.setQueueId(queueId);
+        msg.setSysFlag(0);
+        msg.setBornTimestamp(System.currentTimeMillis());
+        msg.setStoreHost(STORE_HOST);
+        msg.setBornHost(BORN_HOST);
+        msg.setPropertiesString(MessageDecoder.messageProperties2String(msg.getProperties()));
+        return msg;
+    }
+
+    public static SocketAddress getBornHost() {
+        return BORN_HOST;
+    }
+
+    public static SocketAddress getStoreHost() {
+        return STORE_HOST;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.store.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.rocketmq.common.message.Message;
+import org.apache.rocketmq.common.message.MessageDecoder;
+import org.apache.rocketmq.common.message.MessageExtBatch;
+import org.apache.rocketmq.common.message.MessageExtBrokerInner;
+import org.apache.rocketmq.store.DefaultMessageStore;
+import org.apache.rocketmq.store.PutMessageResult;
+import org.apache.rocketmq.store.config.MessageStoreConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of appending single and batch messages to the commit log, by body size and put message lock.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+public class CommitLogPutBenchmark {
+    private static final String TOPIC = "BenchmarkTopic";
+    private static final int QUEUE_NUM = 8;
+    private static final int BATCH_SIZE = 16;
+
+    @Param({"128", "1024", "4096"})
+    private int bodySize;
+
+    @Param({"true", "false"})
+    private boolean useReentrantLock;
+
+    private DefaultMessageStore messageStore;
+    private byte[] body;
+    private byte[] batchBody;
+
+    @Setup
+    public void setup() throws Exception {
+        MessageStoreConfig messageStoreConfig = BenchmarkStoreUtil.newStoreConfig();
+        messageStoreConfig.setUseReentrantLockWhenPutMessage(useReentrantLock);
+        messageStore = BenchmarkStoreUtil.startStore(messageStoreConfig);
+        body = new byte[bodySize];
+
+        List<Message> messages = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            messages.add(new Message(TOPIC, "TAG1", body));
+        }
+        batchBody = MessageDecoder.encodeMessages(messages);
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkStoreUtil.destroyStore(messageStore);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public PutMessageResult asyncPutMessage() {
+        MessageExtBrokerInner msg = BenchmarkStoreUtil.buildMessage(TOPIC,
+            (int) (Thread.currentThread().getId() % QUEUE_NUM), body, null);
+        return messageStore.getCommitLog().asyncPutMessage(msg).join();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public PutMessageResult asyncPutMessages() {
+        MessageExtBatch messageExtBatch = new MessageExtBatch();
+        messageExtBatch.setTopic(TOPIC);
+        messageExtBatch.setQueueId((int) (Thread.currentThread().getId() % QUEUE_NUM));
+        messageExtBatch.setBody(batchBody);
+        messageExtBatch.setBornTimestamp(System.currentTimeMillis());
+        messageExtBatch.setBornHost(BenchmarkStoreUtil.getBornHost());
+        messageExtBatch.setStoreHost(BenchmarkStoreUtil.getStoreHost());
+        return messageStore.getCommitLog().asyncPutMessages(messageExtBatch).join();
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+}
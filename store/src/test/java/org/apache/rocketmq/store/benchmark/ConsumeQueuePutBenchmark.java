@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.store.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.rocketmq.store.DefaultMessageStore;
+import org.apache.rocketmq.store.DispatchRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of writing consume queue units, the way the reput service does, spread over a number of queues.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+public class ConsumeQueuePutBenchmark {
+    private static final String TOPIC = "BenchmarkTopic";
+    private static final int MSG_SIZE = 1024;
+
+    @Param({"1", "64", "1024"})
+    private int queueNum;
+
+    private DefaultMessageStore messageStore;
+    private long[] queueOffsets;
+    private long commitLogOffset;
+    private int next;
+
+    @Setup
+    public void setup() throws Exception {
+        messageStore = BenchmarkStoreUtil.startStore(BenchmarkStoreUtil.newStoreConfig());
+        queueOffsets = new long[queueNum];
+        commitLogOffset = 0;
+        next = 0;
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkStoreUtil.destroyStore(messageStore);
+    }
+
+    @Benchmark
+    public void putMessagePositionInfo() {
+        int queueId = next++ % queueNum;
+        DispatchRequest request = new DispatchRequest(TOPIC, queueId, commitLogOffset, MSG_SIZE, 0L,
+            System.currentTimeMillis(), queueOffsets[queueId]++, null, null, 0, 0, null);
+        commitLogOffset += MSG_SIZE;
+        messageStore.putMessagePositionInfo(request);
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+}
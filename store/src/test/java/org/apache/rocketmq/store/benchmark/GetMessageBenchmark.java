@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.store.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.apache.rocketmq.store.DefaultMessageStore;
+import org.apache.rocketmq.store.GetMessageResult;
+import org.apache.rocketmq.store.StoreTestUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latency of pulling 32 messages from the store. Hot pulls read the last units of the queues like consumers at the
+ * tail. Cold pulls read random offsets over the whole queues like catching up consumers. They only miss the page cache
+ * when the store is larger than memory or the cache is dropped before the run, so size msgNum accordingly.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+public class GetMessageBenchmark {
+    private static final String TOPIC = "BenchmarkTopic";
+    private static final String GROUP = "BenchmarkGroup";
+    private static final int QUEUE_NUM = 8;
+    private static final int PULL_BATCH = 32;
+    private static final int HOT_WINDOW = 1024;
+
+    @Param({"1000000"})
+    private int msgNum;
+
+    @Param({"1024"})
+    private int bodySize;
+
+    private DefaultMessageStore messageStore;
+    private long queueMaxOffset;
+
+    @Setup
+    public void setup() throws Exception {
+        messageStore = BenchmarkStoreUtil.startStore(BenchmarkStoreUtil.newStoreConfig());
+        byte[] body = new byte[bodySize];
+        for (int i = 0; i < msgNum; i++) {
+            messageStore.putMessage(BenchmarkStoreUtil.buildMessage(TOPIC, i % QUEUE_NUM, body, null));
+        }
+        StoreTestUtil.waitCommitLogReput(messageStore);
+        queueMaxOffset = messageStore.getMaxOffsetInQueue(TOPIC, 0);
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkStoreUtil.destroyStore(messageStore);
+    }
+
+    private int pull(long offset) {
+        GetMessageResult result = messageStore.getMessage(GROUP, TOPIC,
+            ThreadLocalRandom.current().nextInt(QUEUE_NUM), offset, PULL_BATCH, null);
+        if (result == null) {
+            return 0;
+        }
+        int size = result.getBufferTotalSize();
+        result.release();
+        return size;
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int getMessageHot() {
+        long window = Math.min(HOT_WINDOW, queueMaxOffset);
+        return pull(queueMaxOffset - window + ThreadLocalRandom.current().nextLong(Math.max(window - PULL_BATCH, 1)));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int getMessageCold() {
+        return pull(ThreadLocalRandom.current().nextLong(Math.max(queueMaxOffset - PULL_BATCH, 1)));
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.store.benchmark;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.apache.rocketmq.store.DefaultMessageStore;
+import org.apache.rocketmq.store.StoreTestUtil;
+import org.apache.rocketmq.store.index.IndexService;
+import org.apache.rocketmq.store.index.QueryOffsetResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latency of looking up the commit log offsets of a message key in the index files.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+public class IndexQueryBenchmark {
+    private static final String TOPIC = "BenchmarkTopic";
+
+    @Param({"100000"})
+    private int keyNum;
+
+    @Param({"4"})
+    private int msgNumPerKey;
+
+    private DefaultMessageStore messageStore;
+    private IndexService indexService;
+
+    @Setup
+    public void setup() throws Exception {
+        messageStore = BenchmarkStoreUtil.startStore(BenchmarkStoreUtil.newStoreConfig());
+        byte[] body = new byte[128];
+        for (int i = 0; i < msgNumPerKey; i++) {
+            for (int key = 0; key < keyNum; key++) {
+                messageStore.putMessage(BenchmarkStoreUtil.buildMessage(TOPIC, key % 8, body, "key-" + key));
+            }
+        }
+        StoreTestUtil.waitCommitLogReput(messageStore);
+
+        Field field = DefaultMessageStore.class.getDeclaredField("indexService");
+        field.setAccessible(true);
+        indexService = (IndexService) field.get(messageStore);
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkStoreUtil.destroyStore(messageStore);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public QueryOffsetResult queryOffset() {
+        String key = "key-" + ThreadLocalRandom.current().nextInt(keyNum);
+        return indexService.queryOffset(TOPIC, key, 32, 0, Long.MAX_VALUE);
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+}
@@ -70,4 +70,68 @@ public class IndexFileTest {
         File file = new File("200");
         UtilAll.deleteFile(file);
     }
+
+    @Test
+    public void testPutKeys() throws Exception {
+        IndexFile indexFile = new IndexFile("400", HASH_SLOT_NUM, INDEX_NUM, 0, 0);
+        int keyNum = INDEX_NUM + 100;
+        String[] keys = new String[keyNum];
+        long[] phyOffsets = new long[keyNum];
+        long[] storeTimestamps = new long[keyNum];
+        for (int i = 0; i < keyNum; i++) {
+            // each key is put twice, and several keys share a slot
+            keys[i] = Long.toString(i / 2);
+            phyOffsets[i] = i;
+            storeTimestamps[i] = System.currentTimeMillis();
+        }
+
+        assertThat(indexFile.putKeys(keys, phyOffsets, storeTimestamps, 0, 100)).isEqualTo(100);
+        // put over index file capacity.
+        assertThat(indexFile.putKeys(keys, phyOffsets, storeTimestamps, 100, keyNum)).isEqualTo(INDEX_NUM - 1 - 100);
+        assertThat(indexFile.putKeys(keys, phyOffsets, storeTimestamps, INDEX_NUM - 1, keyNum)).isZero();
+        assertThat(indexFile.isWriteFull()).isTrue();
+        assertThat(indexFile.getEndPhyOffset()).isEqualTo(INDEX_NUM - 2);
+
+        final List<Long> phyOffsetsRead = new ArrayList<>();
+        indexFile.selectPhyOffset(phyOffsetsRead, "60", 10, 0, Long.MAX_VALUE);
+        assertThat(phyOffsetsRead).containsExactly(121L, 120L);
+        phyOffsetsRead.clear();
+        indexFile.selectPhyOffset(phyOffsetsRead, "49", 10, 0, Long.MAX_VALUE);
+        assertThat(phyOffsetsRead).containsExactly(99L, 98L);
+        indexFile.destroy(0);
+        UtilAll.deleteFile(new File("400"));
+    }
+
+    @Test
+    public void testBloomFilter() throws Exception {
+        IndexFile indexFile = new IndexFile("300", HASH_SLOT_NUM, INDEX_NUM, 0, 0);
+        indexFile.initBloomFilter(10);
+        for (long i = 0; i < (INDEX_NUM - 1); i++) {
+            assertThat(indexFile.putKey(Long.toString(i), i, System.currentTimeMillis())).isTrue();
+        }
+        for (long i = 0; i < (INDEX_NUM - 1); i++) {
+            assertThat(indexFile.mayContainKey(Long.toString(i))).isTrue();
+        }
+        int falsePositives = 0;
+        for (long i = 10000; i < 20000; i++) {
+            if (indexFile.mayContainKey(Long.toString(i))) {
+                falsePositives++;
+            }
+        }
+        assertThat(falsePositives).isLessThan(500);
+
+        // the filter is persisted once the file is full, and rebuilt from index units without it
+        indexFile.flush();
+        assertThat(new File("300" + IndexFile.BLOOM_FILTER_SUFFIX)).exists();
+        indexFile.initBloomFilter(10);
+        assertThat(indexFile.mayContainKey("60")).isTrue();
+        new File("300" + IndexFile.BLOOM_FILTER_SUFFIX).delete();
+        indexFile.initBloomFilter(10);
+        assertThat(indexFile.mayContainKey("60")).isTrue();
+
+        indexFile.flush();
+        indexFile.destroy(0);
+        assertThat(new File("300" + IndexFile.BLOOM_FILTER_SUFFIX)).doesNotExist();
+        UtilAll.deleteFile(new File("300"));
+    }
 }
@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.rocketmq.store.index;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.rocketmq.common.BrokerConfig;
+import org.apache.rocketmq.common.UtilAll;
+import org.apache.rocketmq.common.message.MessageDecoder;
+import org.apache.rocketmq.common.message.MessageExtBrokerInner;
+import org.apache.rocketmq.store.DefaultMessageStore;
+import org.apache.rocketmq.store.DispatchRequest;
+import org.apache.rocketmq.store.QueryMessageResult;
+import org.apache.rocketmq.store.config.FlushDiskType;
+import org.apache.rocketmq.store.config.MessageStoreConfig;
+import org.apache.rocketmq.store.stats.BrokerStatsManager;
+import org.junit.After;
+import org.junit.Test;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+public class IndexServiceTest {
+    private static final String TOPIC = "index-service-topic";
+    private static final int MSG_NUM = 500;
+
+    private final String storePath = System.getProperty("java.io.tmpdir") + File.separator + "indexservice-" + UUID.randomUUID();
+    private DefaultMessageStore messageStore;
+
+    @After
+    public void destroy() {
+        if (messageStore != null) {
+            messageStore.shutdown();
+            messageStore.destroy();
+        }
+        UtilAll.deleteFile(new File(storePath));
+    }
+
+    @Test
+    public void testBuildIndexAsyncWithBloomFilter() throws Exception {
+        messageStore = createStore();
+        for (int i = 0; i < MSG_NUM; i++) {
+            assertThat(messageStore.putMessage(buildMessage("key-" + i)).isOk()).isTrue();
+        }
+
+        await().atMost(5, SECONDS).until(() -> queryMessageCount("key-" + (MSG_NUM - 1)) == 1);
+        for (int i = 0; i < MSG_NUM; i += 50) {
+            assertThat(queryMessageCount("key-" + i)).isEqualTo(1);
+        }
+        assertThat(queryMessageCount("absent-key")).isZero();
+
+        // pending requests are built on shutdown, and bloom filters come back on restart
+        messageStore.shutdown();
+        messageStore = createStore();
+        assertThat(queryMessageCount("key-0")).isEqualTo(1);
+        assertThat(queryMessageCount("key-" + (MSG_NUM - 1))).isEqualTo(1);
+    }
+
+    @Test
+    public void testBuildIndexInlineBeforeStart() throws Exception {
+        messageStore = createStore(false);
+        IndexService indexService = new IndexService(messageStore);
+        try {
+            // as recovery does in load(), nothing drains the queue of the async builder yet
+            for (int i = 0; i < MSG_NUM; i++) {
+                indexService.buildIndex(new DispatchRequest(TOPIC, 0, i * 100L, 100, 0, System.currentTimeMillis(), i,
+                    "key-" + i, null, 0, 0, null));
+            }
+            assertThat(indexService.queryOffset(TOPIC, "key-0", 32, 0, Long.MAX_VALUE).getPhyOffsets()).containsExactly(0L);
+            assertThat(indexService.queryOffset(TOPIC, "key-" + (MSG_NUM - 1), 32, 0, Long.MAX_VALUE).getPhyOffsets())
+                .containsExactly((MSG_NUM - 1) * 100L);
+        } finally {
+            indexService.shutdown();
+        }
+    }
+
+    private int queryMessageCount(String key) {
+        QueryMessageResult result = messageStore.queryMessage(TOPIC, key, 32, 0, Long.MAX_VALUE);
+        try {
+            return result.getMessageMapedList().size();
+        } finally {
+            result.release();
+        }
+    }
+
+    private DefaultMessageStore createStore() throws Exception {
+        return createStore(true);
+    }
+
+    private DefaultMessageStore createStore(boolean start) throws Exception {
+        MessageStoreConfig messageStoreConfig = new MessageStoreConfig();
+        messageStoreConfig.setMappedFileSizeCommitLog(1024 * 1024);
+        messageStoreConfig.setMappedFileSizeConsumeQueue(1024 * 4);
+        // several index files so that the bloom filters have files to skip
+        messageStoreConfig.setMaxHashSlotNum(64);
+        messageStoreConfig.setMaxIndexNum(256);
+        messageStoreConfig.setEnableBuildIndexAsync(true);
+        messageStoreConfig.setIndexBloomFilterBitsPerKey(10);
+        messageStoreConfig.setFlushDiskType(FlushDiskType.ASYNC_FLUSH);
+        messageStoreConfig.setStorePathRootDir(storePath);
+        messageStoreConfig.setStorePathCommitLog(storePath + File.separator + "commitlog");
+        messageStoreConfig.setHaListenPort(0);
+        DefaultMessageStore store = new DefaultMessageStore(messageStoreConfig, new BrokerStatsManager("simpleTest", true),
+            (topic, queueId, logicOffset, tagsCode, msgStoreTime, filterBitMap, properties) -> {
+            }, new BrokerConfig(), new ConcurrentHashMap<>());
+        assertThat(store.load()).isTrue();
+        if (start) {
+            store.start();
+        }
+        return store;
+    }
+
+    private MessageExtBrokerInner buildMessage(String key) {
+        MessageExtBrokerInner msg = new MessageExtBrokerInner();
+        msg.setTopic(TOPIC);
+        msg.setTags("TAG");
+        msg.setKeys(key);
+        msg.setBody(key.getBytes(StandardCharsets.UTF_8));
+        msg.setQueueId(0);
+        msg.setBornTimestamp(System.currentTimeMillis());
+        msg.setStoreHost(new InetSocketAddress("127.0.0.1", 8123));
+        msg.setBornHost(new InetSocketAddress("127.0.0.1", 8124));
+        msg.setPropertiesString(MessageDecoder.messageProperties2String(msg.getProperties()));
+        return msg;
+    }
+}
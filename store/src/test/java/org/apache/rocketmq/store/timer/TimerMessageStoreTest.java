@@ -49,6 +49,7 @@ import org.apache.rocketmq.common.message.MessageExtBrokerInner;
 import org.apache.rocketmq.store.MessageStore;
 import org.apache.rocketmq.store.PutMessageResult;
 import org.apache.rocketmq.store.PutMessageStatus;
+import org.apache.rocketmq.store.SelectMappedBufferResult;
 import org.apache.rocketmq.store.config.FlushDiskType;
 import org.apache.rocketmq.store.config.MessageStoreConfig;
 import org.apache.rocketmq.store.stats.BrokerStatsManager;
@@ -486,6 +487,54 @@ public class TimerMessageStoreTest {
         storeConfig.setTimerRollWindowSlot(Integer.MAX_VALUE);
     }
 
+    @Test
+    public void testHierarchicalWheelCascade() throws Exception {
+        storeConfig.setTimerEnableHierarchicalWheel(true);
+        storeConfig.setTimerMaxDelaySec(30 * TimerMessageStore.DAY_SECS);
+        storeConfig.setFileReservedTime(7 * 24);
+        String topic = "TimerTest_testHierarchicalWheelCascade";
+
+        TimerMessageStore timerMessageStore = createTimerMessageStore(null);
+        timerMessageStore.load();
+        TimerWheel[] cascadeWheels = timerMessageStore.getCascadeWheels();
+        assertEquals(3, cascadeWheels.length);
+
+        long dayMs = TimerMessageStore.DAY_SECS * 1000L;
+        long curr = System.currentTimeMillis() / precisionMs * precisionMs;
+        long delayedTime = curr + 5 * dayMs;
+        timerMessageStore.currWriteTimeMs = curr;
+
+        MessageExtBrokerInner inner = buildMessage(delayedTime, topic, false);
+        MessageAccessor.putProperty(inner, MessageConst.PROPERTY_REAL_TOPIC, topic);
+        assertTrue(timerMessageStore.doEnqueue(1024, 256, delayedTime, inner));
+        assertEquals(-1, timerMessageStore.getTimerWheel().getSlot(delayedTime).timeMs);
+        assertEquals(1, cascadeWheels[2].getSlot(delayedTime).num);
+
+        // beyond the commit log retention the message is rolled instead
+        long retainedTime = curr + 10 * dayMs;
+        assertTrue(timerMessageStore.doEnqueue(2048, 256, retainedTime, inner));
+        assertEquals(-1, cascadeWheels[2].getSlot(retainedTime).timeMs);
+
+        // one day before the day slot, the unit is rolled from the timer wheel slot being read
+        long readTimeMs = delayedTime / dayMs * dayMs - dayMs;
+        assertTrue(timerMessageStore.cascade(readTimeMs));
+        assertEquals(-1, cascadeWheels[1].getSlot(delayedTime).timeMs);
+        Slot slot = timerMessageStore.getTimerWheel().getSlot(readTimeMs);
+        assertEquals(1, slot.num);
+
+        SelectMappedBufferResult sbr = timerMessageStore.getTimerLog().getTimerMessage(slot.lastPos);
+        ByteBuffer unit = sbr.getByteBuffer();
+        unit.getInt(); //size
+        unit.getLong(); //prev pos
+        int magic = unit.getInt();
+        long enqueueTime = unit.getLong();
+        assertEquals(readTimeMs, enqueueTime + unit.getInt());
+        assertEquals(1024, unit.getLong());
+        assertEquals(TimerMessageStore.MAGIC_DEFAULT | TimerMessageStore.MAGIC_ROLL, magic);
+        sbr.release();
+        assertEquals(2, timerMessageStore.getTimerMetrics().getTimingCount(topic));
+    }
+
     public ByteBuffer getOneMessage(String topic, int queue, long offset, int timeout) throws Exception {
         int retry = timeout / 100;
         while (retry-- > 0) {